@@ -27,7 +27,6 @@ package java.io;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -51,12 +50,13 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import jdk.internal.misc.Unsafe;
 import jdk.internal.reflect.CallerSensitive;
 import jdk.internal.reflect.Reflection;
 import jdk.internal.reflect.ReflectionFactory;
+import jdk.internal.util.ConcurrentReferenceHashMap;
+import jdk.internal.util.ConcurrentReferenceHashMap.Strength;
 import sun.reflect.misc.ReflectUtil;
 import jdk.internal.misc.SharedSecrets;
 import jdk.internal.misc.JavaSecurityAccess;
@@ -95,19 +95,46 @@ public class ObjectStreamClass implements Serializable {
 
     private static class Caches {
         /** cache mapping local classes -> descriptors */
-        static final ConcurrentMap<WeakClassKey,Reference<?>> localDescs =
-            new ConcurrentHashMap<>();
+        static final ConcurrentReferenceHashMap<Class<?>,Object> localDescs =
+            new ConcurrentReferenceHashMap<>(Strength.WEAK, Strength.SOFT, true);
 
-        /** cache mapping field group/local desc pairs -> field reflectors */
-        static final ConcurrentMap<FieldReflectorKey,Reference<?>> reflectors =
-            new ConcurrentHashMap<>();
+        /**
+         * cache mapping local classes -> field formats -> field reflectors;
+         * the inner maps hold their reflectors softly
+         */
+        static final ConcurrentReferenceHashMap<Class<?>,
+            ConcurrentReferenceHashMap<String,Object>> reflectors =
+            new ConcurrentReferenceHashMap<>(Strength.WEAK, Strength.STRONG, true);
+
+        /** cache mapping field formats with no local class -> reflectors */
+        static final ConcurrentReferenceHashMap<String,Object> nullClassReflectors =
+            newReflectorMap();
+
+        private static ConcurrentReferenceHashMap<String,Object> newReflectorMap() {
+            return new ConcurrentReferenceHashMap<>(Strength.STRONG,
+                                                    Strength.SOFT,
+                                                    false, 2, 1);
+        }
 
-        /** queue for WeakReferences to local classes */
-        private static final ReferenceQueue<Class<?>> localDescsQueue =
-            new ReferenceQueue<>();
-        /** queue for WeakReferences to field reflectors keys */
-        private static final ReferenceQueue<Class<?>> reflectorsQueue =
-            new ReferenceQueue<>();
+        /**
+         * Returns the field reflector cache for the given local class (which
+         * may be null), creating it if necessary.
+         */
+        static ConcurrentReferenceHashMap<String,Object> reflectorsFor(Class<?> cl) {
+            if (cl == null) {
+                return nullClassReflectors;
+            }
+            ConcurrentReferenceHashMap<String,Object> map = reflectors.get(cl);
+            if (map == null) {
+                ConcurrentReferenceHashMap<String,Object> newMap =
+                    newReflectorMap();
+                map = reflectors.putIfAbsent(cl, newMap);
+                if (map == null) {
+                    map = newMap;
+                }
+            }
+            return map;
+        }
     }
 
     /** class associated with this descriptor (if any) */
@@ -334,26 +361,11 @@ public class ObjectStreamClass implements Serializable {
         if (!(all || Serializable.class.isAssignableFrom(cl))) {
             return null;
         }
-        processQueue(Caches.localDescsQueue, Caches.localDescs);
-        WeakClassKey key = new WeakClassKey(cl, Caches.localDescsQueue);
-        Reference<?> ref = Caches.localDescs.get(key);
-        Object entry = null;
-        if (ref != null) {
-            entry = ref.get();
-        }
+        Object entry = Caches.localDescs.get(cl);
         EntryFuture future = null;
         if (entry == null) {
             EntryFuture newEntry = new EntryFuture();
-            Reference<?> newRef = new SoftReference<>(newEntry);
-            do {
-                if (ref != null) {
-                    Caches.localDescs.remove(key, ref);
-                }
-                ref = Caches.localDescs.putIfAbsent(key, newRef);
-                if (ref != null) {
-                    entry = ref.get();
-                }
-            } while (ref != null && entry == null);
+            entry = Caches.localDescs.putIfAbsent(cl, newEntry);
             if (entry == null) {
                 future = newEntry;
             }
@@ -383,7 +395,7 @@ public class ObjectStreamClass implements Serializable {
                 entry = th;
             }
             if (future.set(entry)) {
-                Caches.localDescs.put(key, new SoftReference<>(entry));
+                Caches.localDescs.put(cl, entry);
             } else {
                 // nested lookup call already set future
                 entry = future.get();
@@ -2216,27 +2228,14 @@ public class ObjectStreamClass implements Serializable {
         // class irrelevant if no fields
         Class<?> cl = (localDesc != null && fields.length > 0) ?
             localDesc.cl : null;
-        processQueue(Caches.reflectorsQueue, Caches.reflectors);
-        FieldReflectorKey key = new FieldReflectorKey(cl, fields,
-                                                      Caches.reflectorsQueue);
-        Reference<?> ref = Caches.reflectors.get(key);
-        Object entry = null;
-        if (ref != null) {
-            entry = ref.get();
-        }
+        ConcurrentReferenceHashMap<String,Object> cache =
+            Caches.reflectorsFor(cl);
+        String sigs = fieldSignatures(fields);
+        Object entry = cache.get(sigs);
         EntryFuture future = null;
         if (entry == null) {
             EntryFuture newEntry = new EntryFuture();
-            Reference<?> newRef = new SoftReference<>(newEntry);
-            do {
-                if (ref != null) {
-                    Caches.reflectors.remove(key, ref);
-                }
-                ref = Caches.reflectors.putIfAbsent(key, newRef);
-                if (ref != null) {
-                    entry = ref.get();
-                }
-            } while (ref != null && entry == null);
+            entry = cache.putIfAbsent(sigs, newEntry);
             if (entry == null) {
                 future = newEntry;
             }
@@ -2253,7 +2252,7 @@ public class ObjectStreamClass implements Serializable {
                 entry = th;
             }
             future.set(entry);
-            Caches.reflectors.put(key, new SoftReference<>(entry));
+            cache.put(sigs, entry);
         }
 
         if (entry instanceof FieldReflector) {
@@ -2270,49 +2269,16 @@ public class ObjectStreamClass implements Serializable {
     }
 
     /**
-     * FieldReflector cache lookup key.  Keys are considered equal if they
-     * refer to the same class and equivalent field formats.
+     * Returns the field format used as FieldReflector cache key: the names
+     * and signatures of the given fields, in order.
      */
-    private static class FieldReflectorKey extends WeakReference<Class<?>> {
-
-        private final String sigs;
-        private final int hash;
-        private final boolean nullClass;
-
-        FieldReflectorKey(Class<?> cl, ObjectStreamField[] fields,
-                          ReferenceQueue<Class<?>> queue)
-        {
-            super(cl, queue);
-            nullClass = (cl == null);
-            StringBuilder sbuf = new StringBuilder();
-            for (int i = 0; i < fields.length; i++) {
-                ObjectStreamField f = fields[i];
-                sbuf.append(f.getName()).append(f.getSignature());
-            }
-            sigs = sbuf.toString();
-            hash = System.identityHashCode(cl) + sigs.hashCode();
-        }
-
-        public int hashCode() {
-            return hash;
-        }
-
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-
-            if (obj instanceof FieldReflectorKey) {
-                FieldReflectorKey other = (FieldReflectorKey) obj;
-                Class<?> referent;
-                return (nullClass ? other.nullClass
-                                  : ((referent = get()) != null) &&
-                                    (referent == other.get())) &&
-                    sigs.equals(other.sigs);
-            } else {
-                return false;
-            }
+    private static String fieldSignatures(ObjectStreamField[] fields) {
+        StringBuilder sbuf = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            ObjectStreamField f = fields[i];
+            sbuf.append(f.getName()).append(f.getSignature());
         }
+        return sbuf.toString();
     }
 
     /**
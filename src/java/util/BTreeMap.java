@@ -0,0 +1,2364 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * A B+tree based {@link NavigableMap} implementation.  The map is sorted
+ * according to the {@linkplain Comparable natural ordering} of its keys,
+ * or by a {@link Comparator} provided at map creation time, depending on
+ * which constructor is used, exactly as for {@link TreeMap}.
+ *
+ * <p>Unlike {@code TreeMap}, which allocates one node per mapping, this
+ * class stores up to 64 keys and values per node in arrays.  All mappings
+ * live in leaf nodes that are linked in key order, so iteration and range
+ * scans over views returned by {@code subMap}, {@code headMap} and
+ * {@code tailMap} proceed sequentially through arrays rather than chasing
+ * a pointer per element, and the tree is only a few levels deep even for
+ * very large maps.  This implementation provides guaranteed log(n) time
+ * cost for the {@code containsKey}, {@code get}, {@code put} and
+ * {@code remove} operations, and constructing a map from a
+ * {@link SortedMap} (or {@code putAll} of one into an empty map) builds
+ * the tree bottom-up in linear time.
+ *
+ * <p>Note that the ordering maintained by a B-tree map, like any sorted
+ * map, and whether or not an explicit comparator is provided, must be
+ * <em>consistent with {@code equals}</em> if this sorted map is to
+ * correctly implement the {@code Map} interface.  (See {@code Comparable}
+ * or {@code Comparator} for a precise definition of <em>consistent with
+ * equals</em>.)
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <em>must</em> be synchronized
+ * externally.  (A structural modification is any operation that adds or
+ * deletes one or more mappings; merely changing the value associated
+ * with an existing key is not a structural modification.)  This is
+ * typically accomplished by synchronizing on some object that naturally
+ * encapsulates the map.  If no such object exists, the map should be
+ * "wrapped" using the
+ * {@link Collections#synchronizedNavigableMap Collections.synchronizedNavigableMap}
+ * method.
+ *
+ * <p>The iterators returned by the {@code iterator} method of the
+ * collections returned by all of this class's "collection view methods"
+ * are <em>fail-fast</em>: if the map is structurally modified at any
+ * time after the iterator is created, in any way except through the
+ * iterator's own {@code remove} method, the iterator will throw a {@link
+ * ConcurrentModificationException}.  Fail-fast iterators throw
+ * {@code ConcurrentModificationException} on a best-effort basis, and
+ * should be used only to detect bugs.
+ *
+ * <p>The spliterators of the collection views of the map itself split by
+ * subtree, so parallel streams over a large map divide the work along
+ * node boundaries.
+ *
+ * <p>All {@code Map.Entry} pairs returned by the navigation methods of
+ * this class and its views represent snapshots of mappings at the time
+ * they were produced, and do <strong>not</strong> support the
+ * {@code Entry.setValue} method.  Entries returned by entry set iterators
+ * write through to the map.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/java.base/java/util/package-summary.html#CollectionsFramework">
+ * Java Collections Framework</a>.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see Map
+ * @see TreeMap
+ * @see BTreeSet
+ * @see Comparable
+ * @see Comparator
+ * @since 12
+ */
+public class BTreeMap<K,V>
+    extends AbstractMap<K,V>
+    implements NavigableMap<K,V>, Cloneable, java.io.Serializable
+{
+    /*
+     * Implementation overview:
+     *
+     * The tree is a B+tree.  Leaf nodes hold keys and values in parallel
+     * arrays and are doubly linked; branch nodes hold n separator keys
+     * and n+1 children, child i containing keys k with
+     * keys[i-1] <= k < keys[i].  Separators are copies of keys that were
+     * the first key of a right sibling when it was split off, and are
+     * not updated on removal: any value between the greatest key of the
+     * left subtree (exclusive) and the least key of the right subtree
+     * (inclusive) routes correctly.
+     *
+     * Every node other than the root holds between MIN_KEYS and
+     * NODE_CAPACITY keys, so leaves are never empty except for an empty
+     * root.  Inserting into a non-full leaf or removing from a leaf with
+     * more than MIN_KEYS keys touches only that leaf.  Otherwise the
+     * operation is redone top-down from the root, splitting full nodes
+     * (on insert) or refilling minimal ones by borrowing from or merging
+     * with a sibling (on remove) before descending into them, as in
+     * Cormen et al.  Restructuring is only done when the operation is
+     * known to add or delete a mapping, so non-structural operations
+     * never invalidate positions held by iterators.
+     */
+
+    private static final long serialVersionUID = 3580916317460346235L;
+
+    /**
+     * The maximum number of keys in a node.
+     */
+    static final int NODE_CAPACITY = 64;
+
+    /**
+     * The minimum number of keys in a non-root node.
+     */
+    static final int MIN_KEYS = NODE_CAPACITY / 2 - 1;
+
+    /**
+     * The number of keys (or children) per node when bulk loading,
+     * leaving room for later insertions.
+     */
+    static final int BULK_FILL = NODE_CAPACITY * 3 / 4;
+
+    /**
+     * The comparator used to maintain order in this map, or null if it
+     * uses the natural ordering of its keys.
+     *
+     * @serial
+     */
+    private final Comparator<? super K> comparator;
+
+    private transient Node<K,V> root;
+
+    /**
+     * The first and last leaves.
+     */
+    private transient Leaf<K,V> head, tail;
+
+    /**
+     * The number of entries in the tree
+     */
+    private transient int size;
+
+    /**
+     * The number of structural modifications to the tree.
+     */
+    private transient int modCount;
+
+    /**
+     * Constructs a new, empty map, using the natural ordering of its
+     * keys.  All keys inserted into the map must implement the {@link
+     * Comparable} interface and must be <em>mutually comparable</em>.
+     * If the user attempts to put a key into the map that violates this
+     * constraint, the {@code put(Object key, Object value)} call will
+     * throw a {@code ClassCastException}.
+     */
+    public BTreeMap() {
+        comparator = null;
+    }
+
+    /**
+     * Constructs a new, empty map, ordered according to the given
+     * comparator.  All keys inserted into the map must be <em>mutually
+     * comparable</em> by the given comparator.
+     *
+     * @param comparator the comparator that will be used to order this map.
+     *        If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public BTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given
+     * map, ordered according to the <em>natural ordering</em> of its
+     * keys.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in m are not {@link
+     *         Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(Map<? extends K, ? extends V> m) {
+        comparator = null;
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.  This method runs in
+     * linear time.
+     *
+     * @param  m the sorted map whose mappings are to be placed in this
+     *         map, and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(SortedMap<K, ? extends V> m) {
+        comparator = m.comparator();
+        try {
+            buildFromSorted(m.size(), m.entrySet().iterator(), null, null);
+        } catch (java.io.IOException | ClassNotFoundException cannotHappen) {
+        }
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    static class Node<K,V> {
+        final Object[] keys = new Object[NODE_CAPACITY];
+        int n;
+    }
+
+    static final class Leaf<K,V> extends Node<K,V> {
+        final Object[] vals = new Object[NODE_CAPACITY];
+        Leaf<K,V> prev, next;
+    }
+
+    static final class Branch<K,V> extends Node<K,V> {
+        @SuppressWarnings("unchecked")
+        final Node<K,V>[] kids = (Node<K,V>[]) new Node<?,?>[NODE_CAPACITY + 1];
+    }
+
+    /* ---------------- Search -------------- */
+
+    /**
+     * Compares two keys using the correct comparison method for this map.
+     */
+    @SuppressWarnings("unchecked")
+    final int compare(Object k1, Object k2) {
+        return comparator==null ? ((Comparable<? super K>)k1).compareTo((K)k2)
+            : comparator.compare((K)k1, (K)k2);
+    }
+
+    /**
+     * Returns the index of the child of b that may hold the key.
+     */
+    final int childIndex(Branch<K,V> b, Object key) {
+        Object[] ks = b.keys;
+        int lo = 0, hi = b.n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key, ks[mid]) < 0)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the key in the node, or
+     * {@code -(insertion point) - 1} if absent.
+     */
+    final int search(Node<K,V> x, Object key) {
+        Object[] ks = x.keys;
+        int lo = 0, hi = x.n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(ks[mid], key);
+            if (c < 0)
+                lo = mid + 1;
+            else if (c > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Returns the leaf that holds the key if present, or null if the map
+     * has never held a mapping.
+     */
+    @SuppressWarnings("unchecked")
+    final Leaf<K,V> findLeaf(Object key) {
+        if (comparator == null)
+            Objects.requireNonNull(key);
+        Node<K,V> x = root;
+        if (x == null)
+            return null;
+        while (x instanceof Branch) {
+            Branch<K,V> b = (Branch<K,V>) x;
+            x = b.kids[childIndex(b, key)];
+        }
+        return (Leaf<K,V>) x;
+    }
+
+    // Control values OR'ed as arguments to findNear
+    static final int EQ = 1;
+    static final int LT = 2;
+    static final int GT = 0; // Actually checked as !LT
+
+    /**
+     * Returns the index in leaf f of the nearest key satisfying the
+     * relation, as -1 or f.n if it lies in the previous or next leaf.
+     */
+    final int nearIndex(Leaf<K,V> f, Object key, int rel) {
+        int i = search(f, key);
+        if (i >= 0)
+            return ((rel & EQ) != 0) ? i : ((rel & LT) != 0) ? i - 1 : i + 1;
+        int ins = -(i + 1);
+        return ((rel & LT) != 0) ? ins - 1 : ins;
+    }
+
+    /**
+     * A position of a mapping: a leaf and an index within it, or a null
+     * leaf if there is none.
+     */
+    static class Cursor<K,V> {
+        Leaf<K,V> leaf;
+        int index;
+    }
+
+    /**
+     * Positions the cursor at the mapping with the least key greater
+     * than (GT), the greatest key less than (LT), or equal to (EQ) the
+     * given key, as selected by rel.
+     */
+    final void seekNear(Cursor<K,V> c, Object key, int rel) {
+        Leaf<K,V> f = findLeaf(key);
+        int i = 0;
+        if (f != null) {
+            i = nearIndex(f, key, rel);
+            if (i < 0) {
+                f = f.prev;
+                i = (f == null) ? 0 : f.n - 1;
+            } else if (i >= f.n) {
+                f = f.next;
+                i = 0;
+            }
+        }
+        c.leaf = f;
+        c.index = i;
+    }
+
+    final void seekFirst(Cursor<K,V> c) {
+        Leaf<K,V> f = head;
+        c.leaf = (f == null || f.n == 0) ? null : f;
+        c.index = 0;
+    }
+
+    final void seekLast(Cursor<K,V> c) {
+        Leaf<K,V> f = tail;
+        c.leaf = (f == null || f.n == 0) ? null : f;
+        c.index = (f == null) ? 0 : f.n - 1;
+    }
+
+    /**
+     * Returns a snapshot of the mapping nearest to the key as selected
+     * by rel, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    final Map.Entry<K,V> getNearEntry(Object key, int rel) {
+        Leaf<K,V> f = findLeaf(key);
+        if (f == null)
+            return null;
+        int i = nearIndex(f, key, rel);
+        if (i < 0) {
+            if ((f = f.prev) == null)
+                return null;
+            i = f.n - 1;
+        } else if (i >= f.n) {
+            if ((f = f.next) == null)
+                return null;
+            i = 0;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>((K) f.keys[i],
+                                                      (V) f.vals[i]);
+    }
+
+    /* ---------------- Query Operations -------------- */
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified
+     * key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public boolean containsKey(Object key) {
+        Leaf<K,V> f = findLeaf(key);
+        return f != null && search(f, key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the map
+     * size, but scans values sequentially in leaf order.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if a mapping to {@code value} exists;
+     *         {@code false} otherwise
+     */
+    public boolean containsValue(Object value) {
+        for (Leaf<K,V> f = head; f != null; f = f.next) {
+            Object[] vs = f.vals;
+            for (int i = 0, n = f.n; i < n; ++i) {
+                if (Objects.equals(value, vs[i]))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * <p>A return value of {@code null} does not <em>necessarily</em>
+     * indicate that the map contains no mapping for the key; it's also
+     * possible that the map explicitly maps the key to {@code null}.
+     * The {@link #containsKey containsKey} operation may be used to
+     * distinguish these two cases.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf<K,V> f = findLeaf(key);
+        int i;
+        return (f == null || (i = search(f, key)) < 0) ? null : (V) f.vals[i];
+    }
+
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public K firstKey() {
+        Leaf<K,V> f = head;
+        if (f == null || f.n == 0)
+            throw new NoSuchElementException();
+        return (K) f.keys[0];
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public K lastKey() {
+        Leaf<K,V> f = tail;
+        if (f == null || f.n == 0)
+            throw new NoSuchElementException();
+        return (K) f.keys[f.n - 1];
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     * These mappings replace any mappings that this map had for any
+     * of the keys currently in the specified map.  If this map is empty
+     * and the specified map is a {@link SortedMap} with the same
+     * ordering, the tree is built in linear time.
+     *
+     * @param  map mappings to be stored in this map
+     * @throws ClassCastException if the class of a key or value in
+     *         the specified map prevents it from being stored in this map
+     * @throws NullPointerException if the specified map is null or
+     *         the specified map contains a null key and this map does not
+     *         permit null keys
+     */
+    public void putAll(Map<? extends K, ? extends V> map) {
+        int mapSize = map.size();
+        if (size==0 && mapSize!=0 && map instanceof SortedMap) {
+            Comparator<?> c = ((SortedMap<?,?>)map).comparator();
+            if (c == comparator || (c != null && c.equals(comparator))) {
+                ++modCount;
+                try {
+                    buildFromSorted(mapSize, map.entrySet().iterator(),
+                                    null, null);
+                } catch (java.io.IOException | ClassNotFoundException cannotHappen) {
+                }
+                return;
+            }
+        }
+        super.putAll(map);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Leaf<K,V> f = findLeaf(key);
+        if (f == null) {
+            compare(key, key); // type (and possibly null) check
+            root = head = tail = f = new Leaf<>();
+        }
+        int i = search(f, key);
+        if (i >= 0) {
+            V oldValue = (V) f.vals[i];
+            f.vals[i] = value;
+            return oldValue;
+        }
+        if (f.n < NODE_CAPACITY)
+            insertAt(f, -(i + 1), key, value);
+        else
+            insertSplitting(key, value);
+        ++size;
+        ++modCount;
+        return null;
+    }
+
+    /**
+     * Removes the mapping for this key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Leaf<K,V> f = findLeaf(key);
+        int i;
+        if (f == null || (i = search(f, key)) < 0)
+            return null;
+        V oldValue = (V) f.vals[i];
+        deleteAt(f, i);
+        return oldValue;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        modCount++;
+        size = 0;
+        root = head = tail = null;
+    }
+
+    /**
+     * Returns a shallow copy of this {@code BTreeMap} instance. (The keys
+     * and values themselves are not cloned.)
+     *
+     * @return a shallow copy of this map
+     */
+    public Object clone() {
+        BTreeMap<?,?> clone;
+        try {
+            clone = (BTreeMap<?,?>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+
+        // Put clone into "virgin" state (except for comparator)
+        clone.root = null;
+        clone.head = null;
+        clone.tail = null;
+        clone.size = 0;
+        clone.modCount = 0;
+        clone.entrySet = null;
+        clone.navigableKeySet = null;
+        clone.descendingMap = null;
+
+        // Initialize clone with our mappings
+        try {
+            clone.buildFromSorted(size, entrySet().iterator(), null, null);
+        } catch (java.io.IOException | ClassNotFoundException cannotHappen) {
+        }
+
+        return clone;
+    }
+
+    // NavigableMap API methods
+
+    public Map.Entry<K,V> firstEntry() {
+        return exportEntry(head, 0);
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        Leaf<K,V> f = tail;
+        return exportEntry(f, (f == null) ? 0 : f.n - 1);
+    }
+
+    public Map.Entry<K,V> pollFirstEntry() {
+        Leaf<K,V> f = head;
+        Map.Entry<K,V> result = exportEntry(f, 0);
+        if (result != null)
+            deleteAt(f, 0);
+        return result;
+    }
+
+    public Map.Entry<K,V> pollLastEntry() {
+        Leaf<K,V> f = tail;
+        Map.Entry<K,V> result = exportEntry(f, (f == null) ? 0 : f.n - 1);
+        if (result != null)
+            deleteAt(f, f.n - 1);
+        return result;
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return getNearEntry(key, LT);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K lowerKey(K key) {
+        return keyOrNull(getNearEntry(key, LT));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        return getNearEntry(key, LT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K floorKey(K key) {
+        return keyOrNull(getNearEntry(key, LT|EQ));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return getNearEntry(key, GT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K ceilingKey(K key) {
+        return keyOrNull(getNearEntry(key, GT|EQ));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        return getNearEntry(key, GT);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K higherKey(K key) {
+        return keyOrNull(getNearEntry(key, GT));
+    }
+
+    // Views
+
+    /**
+     * Fields initialized to contain an instance of the entry set view
+     * the first time this view is requested.  Views are stateless, so
+     * there's no reason to create more than one.
+     */
+    private transient EntrySet<K,V> entrySet;
+    private transient KeySet<K> navigableKeySet;
+    private transient NavigableMap<K,V> descendingMap;
+
+    /**
+     * Returns a {@link NavigableSet} view of the keys contained in this
+     * map.  The set's iterator returns the keys in ascending order.  The
+     * set's spliterator is <em>late-binding</em>, <em>fail-fast</em>, and
+     * additionally reports {@link Spliterator#SORTED} and
+     * {@link Spliterator#ORDERED} with an encounter order that is
+     * ascending key order.  The set is backed by the map, so changes to
+     * the map are reflected in the set, and vice-versa.  The set
+     * supports element removal, which removes the corresponding mapping
+     * from the map, but does not support the {@code add} or
+     * {@code addAll} operations.
+     */
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> nks = navigableKeySet;
+        return (nks != null) ? nks : (navigableKeySet = new KeySet<>(this));
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map.  The collection's iterator returns the values in ascending
+     * order of the corresponding keys.  The collection is backed by the
+     * map, so changes to the map are reflected in the collection, and
+     * vice-versa.
+     */
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values<>(this);
+            values = vs;
+        }
+        return vs;
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * The set's iterator returns the entries in ascending key order.  The
+     * set is backed by the map, so changes to the map are reflected in
+     * the set, and vice-versa.  Entries returned by the iterator support
+     * {@code setValue}, which writes through to the map.
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySet<K,V> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet<>(this));
+    }
+
+    public NavigableMap<K, V> descendingMap() {
+        NavigableMap<K, V> km = descendingMap;
+        return (km != null) ? km :
+            (descendingMap = new SubMap<>(this,
+                                          true, null, true,
+                                          true, null, true, true));
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                    K toKey,   boolean toInclusive) {
+        return new SubMap<>(this,
+                            false, fromKey, fromInclusive,
+                            false, toKey,   toInclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        return new SubMap<>(this,
+                            true,  null,  true,
+                            false, toKey, inclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap<>(this,
+                            false, fromKey, inclusive,
+                            true,  null,    true, false);
+    }
+
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (Leaf<K,V> f = head; f != null; f = f.next) {
+            Object[] ks = f.keys, vs = f.vals;
+            for (int i = 0; i < f.n; ++i) {
+                action.accept((K) ks[i], (V) vs[i]);
+                if (expectedModCount != modCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int expectedModCount = modCount;
+        for (Leaf<K,V> f = head; f != null; f = f.next) {
+            Object[] ks = f.keys, vs = f.vals;
+            for (int i = 0; i < f.n; ++i) {
+                vs[i] = function.apply((K) ks[i], (V) vs[i]);
+                if (expectedModCount != modCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /* ---------------- Structural modification -------------- */
+
+    /**
+     * Inserts a mapping into a leaf that is not full.
+     */
+    private static <K,V> void insertAt(Leaf<K,V> f, int i, Object key,
+                                       Object value) {
+        int n = f.n;
+        System.arraycopy(f.keys, i, f.keys, i + 1, n - i);
+        System.arraycopy(f.vals, i, f.vals, i + 1, n - i);
+        f.keys[i] = key;
+        f.vals[i] = value;
+        f.n = n + 1;
+    }
+
+    /**
+     * Removes a mapping from a leaf without rebalancing.
+     */
+    private static <K,V> void removeAt(Leaf<K,V> f, int i) {
+        int n = f.n - 1;
+        System.arraycopy(f.keys, i + 1, f.keys, i, n - i);
+        System.arraycopy(f.vals, i + 1, f.vals, i, n - i);
+        f.keys[n] = null;
+        f.vals[n] = null;
+        f.n = n;
+    }
+
+    /**
+     * Inserts an absent key whose leaf is full, splitting full nodes on
+     * the way down.
+     */
+    private void insertSplitting(K key, V value) {
+        Node<K,V> r = root;
+        if (r.n == NODE_CAPACITY) {
+            Branch<K,V> b = new Branch<>();
+            b.kids[0] = r;
+            splitChild(b, 0);
+            root = b;
+        }
+        Node<K,V> x = root;
+        while (x instanceof Branch) {
+            Branch<K,V> b = (Branch<K,V>) x;
+            int ci = childIndex(b, key);
+            if (b.kids[ci].n == NODE_CAPACITY) {
+                splitChild(b, ci);
+                if (compare(key, b.keys[ci]) >= 0)
+                    ++ci;
+            }
+            x = b.kids[ci];
+        }
+        @SuppressWarnings("unchecked") Leaf<K,V> f = (Leaf<K,V>) x;
+        insertAt(f, -(search(f, key) + 1), key, value);
+    }
+
+    /**
+     * Splits the full child ci of the non-full branch b in two.
+     */
+    private void splitChild(Branch<K,V> b, int ci) {
+        Node<K,V> c = b.kids[ci];
+        int h = NODE_CAPACITY >>> 1;
+        Object sep;
+        Node<K,V> right;
+        if (c instanceof Leaf) {
+            Leaf<K,V> l = (Leaf<K,V>) c, r = new Leaf<>();
+            int m = l.n - h;
+            System.arraycopy(l.keys, h, r.keys, 0, m);
+            System.arraycopy(l.vals, h, r.vals, 0, m);
+            Arrays.fill(l.keys, h, l.n, null);
+            Arrays.fill(l.vals, h, l.n, null);
+            r.n = m;
+            l.n = h;
+            if ((r.next = l.next) != null)
+                r.next.prev = r;
+            else
+                tail = r;
+            r.prev = l;
+            l.next = r;
+            sep = r.keys[0];
+            right = r;
+        } else {
+            Branch<K,V> l = (Branch<K,V>) c, r = new Branch<>();
+            int m = l.n - h - 1;
+            sep = l.keys[h];
+            System.arraycopy(l.keys, h + 1, r.keys, 0, m);
+            System.arraycopy(l.kids, h + 1, r.kids, 0, m + 1);
+            Arrays.fill(l.keys, h, l.n, null);
+            Arrays.fill(l.kids, h + 1, l.n + 1, null);
+            r.n = m;
+            l.n = h;
+            right = r;
+        }
+        int n = b.n;
+        System.arraycopy(b.keys, ci, b.keys, ci + 1, n - ci);
+        System.arraycopy(b.kids, ci + 1, b.kids, ci + 2, n - ci);
+        b.keys[ci] = sep;
+        b.kids[ci + 1] = right;
+        b.n = n + 1;
+    }
+
+    /**
+     * Deletes the mapping at index i of leaf f, rebalancing if needed.
+     */
+    final void deleteAt(Leaf<K,V> f, int i) {
+        if (f.n > MIN_KEYS || f == root)
+            removeAt(f, i);
+        else
+            deleteRebalancing(f.keys[i]);
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Deletes a present key whose leaf is minimal, refilling minimal
+     * nodes on the way down.
+     */
+    private void deleteRebalancing(Object key) {
+        Node<K,V> x = root;
+        while (x instanceof Branch) {
+            Branch<K,V> b = (Branch<K,V>) x;
+            int ci = childIndex(b, key);
+            if (b.kids[ci].n <= MIN_KEYS) {
+                ci = fillChild(b, ci);
+                if (b.n == 0) // only possible at root
+                    root = b.kids[0];
+            }
+            x = b.kids[ci];
+        }
+        @SuppressWarnings("unchecked") Leaf<K,V> f = (Leaf<K,V>) x;
+        removeAt(f, search(f, key));
+    }
+
+    /**
+     * Gives the minimal child ci of b an extra key, by borrowing from a
+     * sibling or merging with one, and returns the new index of the
+     * child holding its keys.
+     */
+    private int fillChild(Branch<K,V> b, int ci) {
+        if (ci > 0 && b.kids[ci - 1].n > MIN_KEYS)
+            borrowFromLeft(b, ci);
+        else if (ci < b.n && b.kids[ci + 1].n > MIN_KEYS)
+            borrowFromRight(b, ci);
+        else if (ci < b.n)
+            merge(b, ci);
+        else
+            merge(b, --ci);
+        return ci;
+    }
+
+    private static <K,V> void borrowFromLeft(Branch<K,V> b, int ci) {
+        Node<K,V> c = b.kids[ci], s = b.kids[ci - 1];
+        int n = c.n, sn = s.n;
+        System.arraycopy(c.keys, 0, c.keys, 1, n);
+        if (c instanceof Leaf) {
+            Leaf<K,V> lc = (Leaf<K,V>) c, ls = (Leaf<K,V>) s;
+            System.arraycopy(lc.vals, 0, lc.vals, 1, n);
+            lc.keys[0] = ls.keys[sn - 1];
+            lc.vals[0] = ls.vals[sn - 1];
+            ls.vals[sn - 1] = null;
+            b.keys[ci - 1] = lc.keys[0];
+        } else {
+            Branch<K,V> bc = (Branch<K,V>) c, bs = (Branch<K,V>) s;
+            System.arraycopy(bc.kids, 0, bc.kids, 1, n + 1);
+            bc.keys[0] = b.keys[ci - 1];
+            bc.kids[0] = bs.kids[sn];
+            bs.kids[sn] = null;
+            b.keys[ci - 1] = bs.keys[sn - 1];
+        }
+        s.keys[sn - 1] = null;
+        s.n = sn - 1;
+        c.n = n + 1;
+    }
+
+    private static <K,V> void borrowFromRight(Branch<K,V> b, int ci) {
+        Node<K,V> c = b.kids[ci], s = b.kids[ci + 1];
+        int n = c.n, sn = s.n;
+        if (c instanceof Leaf) {
+            Leaf<K,V> lc = (Leaf<K,V>) c, ls = (Leaf<K,V>) s;
+            lc.keys[n] = ls.keys[0];
+            lc.vals[n] = ls.vals[0];
+            System.arraycopy(ls.vals, 1, ls.vals, 0, sn - 1);
+            ls.vals[sn - 1] = null;
+            System.arraycopy(ls.keys, 1, ls.keys, 0, sn - 1);
+            b.keys[ci] = ls.keys[0];
+        } else {
+            Branch<K,V> bc = (Branch<K,V>) c, bs = (Branch<K,V>) s;
+            bc.keys[n] = b.keys[ci];
+            bc.kids[n + 1] = bs.kids[0];
+            b.keys[ci] = bs.keys[0];
+            System.arraycopy(bs.keys, 1, bs.keys, 0, sn - 1);
+            System.arraycopy(bs.kids, 1, bs.kids, 0, sn);
+            bs.kids[sn] = null;
+        }
+        s.keys[sn - 1] = null;
+        s.n = sn - 1;
+        c.n = n + 1;
+    }
+
+    /**
+     * Merges child j+1 of b into child j.
+     */
+    private void merge(Branch<K,V> b, int j) {
+        Node<K,V> l = b.kids[j], r = b.kids[j + 1];
+        int ln = l.n, rn = r.n;
+        if (l instanceof Leaf) {
+            Leaf<K,V> ll = (Leaf<K,V>) l, lr = (Leaf<K,V>) r;
+            System.arraycopy(lr.keys, 0, ll.keys, ln, rn);
+            System.arraycopy(lr.vals, 0, ll.vals, ln, rn);
+            ll.n = ln + rn;
+            if ((ll.next = lr.next) != null)
+                ll.next.prev = ll;
+            else
+                tail = ll;
+        } else {
+            Branch<K,V> bl = (Branch<K,V>) l, br = (Branch<K,V>) r;
+            bl.keys[ln] = b.keys[j];
+            System.arraycopy(br.keys, 0, bl.keys, ln + 1, rn);
+            System.arraycopy(br.kids, 0, bl.kids, ln + 1, rn + 1);
+            bl.n = ln + rn + 1;
+        }
+        int n = b.n;
+        System.arraycopy(b.keys, j + 1, b.keys, j, n - j - 1);
+        System.arraycopy(b.kids, j + 2, b.kids, j + 1, n - j - 1);
+        b.keys[n - 1] = null;
+        b.kids[n] = null;
+        b.n = n - 1;
+    }
+
+    /**
+     * Returns the number of groups to divide count items into when bulk
+     * loading, such that each group holds at least minPerGroup items
+     * and at most one node's worth.
+     */
+    private static int groups(int count, int minPerGroup) {
+        int g = (count + BULK_FILL - 1) / BULK_FILL;
+        return (g == 2 && count < 2 * minPerGroup) ? 1 : g;
+    }
+
+    /**
+     * Linear time tree building algorithm from sorted data.  Can accept
+     * keys and/or values from iterator or stream, in the same way as
+     * {@code TreeMap.buildFromSorted}.  Leaves are filled to about three
+     * quarters of capacity and then branch levels are built bottom-up
+     * from the first key of each child.  It is assumed that the
+     * comparator of the map is already set prior to calling this method.
+     *
+     * @param size the number of keys (or key-value pairs) to be read from
+     *        the iterator or stream
+     * @param it If non-null, new entries are created from entries
+     *        or keys read from this iterator.
+     * @param str If non-null, new entries are created from keys and
+     *        possibly values read from this stream in serialized form.
+     *        Exactly one of it and str should be non-null.
+     * @param defaultVal if non-null, this default value is used for
+     *        each value in the map.  If null, each value is read from
+     *        iterator or stream, as described above.
+     * @throws java.io.IOException propagated from stream reads. This cannot
+     *         occur if str is null.
+     * @throws ClassNotFoundException propagated from readObject.
+     *         This cannot occur if str is null.
+     */
+    @SuppressWarnings("unchecked")
+    private void buildFromSorted(int size, Iterator<?> it,
+                                 java.io.ObjectInputStream str,
+                                 V defaultVal)
+        throws  java.io.IOException, ClassNotFoundException {
+        this.size = size;
+        root = head = tail = null;
+        if (size == 0)
+            return;
+        int m = groups(size, MIN_KEYS);
+        Node<K,V>[] level = (Node<K,V>[]) new Node<?,?>[m];
+        Object[] lows = new Object[m];
+        Leaf<K,V> prev = null;
+        int q = size / m, rem = size % m;
+        for (int j = 0; j < m; ++j) {
+            Leaf<K,V> f = new Leaf<>();
+            int cnt = q + (j < rem ? 1 : 0);
+            for (int i = 0; i < cnt; ++i) {
+                Object key;
+                Object value;
+                if (it != null) {
+                    if (defaultVal==null) {
+                        Map.Entry<?,?> entry = (Map.Entry<?,?>)it.next();
+                        key = entry.getKey();
+                        value = entry.getValue();
+                    } else {
+                        key = it.next();
+                        value = defaultVal;
+                    }
+                } else { // use stream
+                    key = str.readObject();
+                    value = (defaultVal != null ? defaultVal : str.readObject());
+                }
+                f.keys[i] = key;
+                f.vals[i] = value;
+            }
+            f.n = cnt;
+            if ((f.prev = prev) != null)
+                prev.next = f;
+            else
+                head = f;
+            prev = f;
+            level[j] = f;
+            lows[j] = f.keys[0];
+        }
+        tail = prev;
+        while (m > 1) {
+            int g = groups(m, MIN_KEYS + 1);
+            q = m / g;
+            rem = m % g;
+            // Each group's first child is at or after its own slot, so
+            // the level arrays can be rewritten in place
+            for (int j = 0, src = 0; j < g; ++j) {
+                Branch<K,V> b = new Branch<>();
+                int cnt = q + (j < rem ? 1 : 0);
+                Object low = lows[src];
+                for (int c = 0; c < cnt; ++c, ++src) {
+                    b.kids[c] = level[src];
+                    if (c > 0)
+                        b.keys[c - 1] = lows[src];
+                }
+                b.n = cnt - 1;
+                level[j] = b;
+                lows[j] = low;
+            }
+            m = g;
+        }
+        root = level[0];
+    }
+
+    /**
+     * Save the state of the {@code BTreeMap} instance to a stream (i.e.,
+     * serialize it).
+     *
+     * @serialData The <em>size</em> of the BTreeMap (the number of
+     *             key-value mappings) is emitted (int), followed by the
+     *             key (Object) and value (Object) for each key-value
+     *             mapping represented by the BTreeMap. The key-value
+     *             mappings are emitted in key-order (as determined by the
+     *             BTreeMap's Comparator, or by the keys' natural ordering
+     *             if the BTreeMap has no Comparator).
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        // Write out the Comparator and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out size (number of Mappings)
+        s.writeInt(size);
+
+        // Write out keys and values (alternating)
+        for (Leaf<K,V> f = head; f != null; f = f.next) {
+            for (int i = 0; i < f.n; ++i) {
+                s.writeObject(f.keys[i]);
+                s.writeObject(f.vals[i]);
+            }
+        }
+    }
+
+    /**
+     * Reconstitute the {@code BTreeMap} instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        // Read in the Comparator and any hidden stuff
+        s.defaultReadObject();
+
+        // Read in size
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+
+        buildFromSorted(size, null, s, null);
+    }
+
+    /** Intended to be called only from BTreeSet.readObject */
+    void readBTreeSet(int size, java.io.ObjectInputStream s, V defaultVal)
+        throws java.io.IOException, ClassNotFoundException {
+        buildFromSorted(size, null, s, defaultVal);
+    }
+
+    /** Intended to be called only from BTreeSet.addAll */
+    void addAllForBTreeSet(SortedSet<? extends K> set, V defaultVal) {
+        try {
+            buildFromSorted(set.size(), set.iterator(), null, defaultVal);
+        } catch (java.io.IOException | ClassNotFoundException cannotHappen) {
+        }
+    }
+
+    // Little utilities
+
+    /**
+     * Return SimpleImmutableEntry for the mapping at index i of leaf f,
+     * or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    static <K,V> Map.Entry<K,V> exportEntry(Leaf<K,V> f, int i) {
+        return (f == null || i < 0 || i >= f.n) ? null :
+            new AbstractMap.SimpleImmutableEntry<>((K) f.keys[i],
+                                                   (V) f.vals[i]);
+    }
+
+    /**
+     * Return key for entry, or null if null
+     */
+    static <K,V> K keyOrNull(Map.Entry<K,V> e) {
+        return (e == null) ? null : e.getKey();
+    }
+
+    /**
+     * Returns the key corresponding to the specified Entry.
+     * @throws NoSuchElementException if the Entry is null
+     */
+    static <K> K key(Map.Entry<K,?> e) {
+        if (e==null)
+            throw new NoSuchElementException();
+        return e.getKey();
+    }
+
+    /* ---------------- Iterators -------------- */
+
+    /**
+     * Entry returned by entry set iterators, writing values through to
+     * the map.  Changing a value is not a structural modification, so
+     * the iteration is not disturbed.
+     */
+    static final class WriteThroughEntry<K,V>
+        extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = -2361924478314316549L;
+        final transient BTreeMap<K,V> map;
+
+        WriteThroughEntry(BTreeMap<K,V> map, K key, V value) {
+            super(key, value);
+            this.map = map;
+        }
+
+        public V setValue(V value) {
+            map.put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Base class for iterators over a range of the map in either
+     * direction.  The position of the next mapping is kept as a leaf and
+     * index, and iteration stops at the fence key.
+     */
+    abstract class PrivateEntryIterator<T> extends Cursor<K,V>
+        implements Iterator<T> {
+        final boolean descending;
+        final boolean unbounded;
+        final Object fenceKey;
+        final boolean fenceInclusive;
+        Leaf<K,V> lastLeaf;     // leaf of last returned, or null
+        int lastIndex;
+        int expectedModCount;
+
+        PrivateEntryIterator() {
+            this(false, true, null, true, true, null, true);
+        }
+
+        PrivateEntryIterator(boolean descending,
+                             boolean fromStart, Object lo, boolean loInclusive,
+                             boolean toEnd,     Object hi, boolean hiInclusive) {
+            this.descending = descending;
+            expectedModCount = modCount;
+            if (descending) {
+                if (toEnd)
+                    seekLast(this);
+                else
+                    seekNear(this, hi, hiInclusive ? LT|EQ : LT);
+                unbounded = fromStart;
+                fenceKey = lo;
+                fenceInclusive = loInclusive;
+            } else {
+                if (fromStart)
+                    seekFirst(this);
+                else
+                    seekNear(this, lo, loInclusive ? GT|EQ : GT);
+                unbounded = toEnd;
+                fenceKey = hi;
+                fenceInclusive = hiInclusive;
+            }
+            checkFence();
+        }
+
+        private void checkFence() {
+            Leaf<K,V> f = leaf;
+            if (f != null && !unbounded) {
+                int c = compare(f.keys[index], fenceKey);
+                if (descending ? (c < 0 || (c == 0 && !fenceInclusive))
+                               : (c > 0 || (c == 0 && !fenceInclusive)))
+                    leaf = null;
+            }
+        }
+
+        public final boolean hasNext() {
+            return leaf != null;
+        }
+
+        /**
+         * Advances past the next mapping, which is left at lastLeaf and
+         * lastIndex.
+         */
+        final void step() {
+            Leaf<K,V> f = leaf;
+            if (f == null)
+                throw new NoSuchElementException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int i = index;
+            lastLeaf = f;
+            lastIndex = i;
+            if (descending) {
+                if (--i < 0 && (f = f.prev) != null)
+                    i = f.n - 1;
+            } else if (++i >= f.n) {
+                f = f.next;
+                i = 0;
+            }
+            leaf = f;
+            index = i;
+            checkFence();
+        }
+
+        public void remove() {
+            Leaf<K,V> lf = lastLeaf;
+            if (lf == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            Leaf<K,V> f = leaf;
+            if (lf.n > MIN_KEYS || lf == root) {
+                // removal confined to lf
+                if (f == lf && !descending)
+                    --index;
+                deleteAt(lf, lastIndex);
+            } else {
+                Object nextKey = (f == null) ? null : f.keys[index];
+                deleteAt(lf, lastIndex);
+                if (f != null) {
+                    leaf = f = findLeaf(nextKey);
+                    index = search(f, nextKey);
+                }
+            }
+            expectedModCount = modCount;
+            lastLeaf = null;
+        }
+    }
+
+    final class EntryIterator extends PrivateEntryIterator<Map.Entry<K,V>> {
+        EntryIterator() {}
+        EntryIterator(boolean descending,
+                      boolean fromStart, Object lo, boolean loInclusive,
+                      boolean toEnd,     Object hi, boolean hiInclusive) {
+            super(descending, fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+        }
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            step();
+            return new WriteThroughEntry<>(BTreeMap.this,
+                                           (K) lastLeaf.keys[lastIndex],
+                                           (V) lastLeaf.vals[lastIndex]);
+        }
+    }
+
+    final class ValueIterator extends PrivateEntryIterator<V> {
+        ValueIterator() {}
+        ValueIterator(boolean descending,
+                      boolean fromStart, Object lo, boolean loInclusive,
+                      boolean toEnd,     Object hi, boolean hiInclusive) {
+            super(descending, fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+        }
+        @SuppressWarnings("unchecked")
+        public V next() {
+            step();
+            return (V) lastLeaf.vals[lastIndex];
+        }
+    }
+
+    final class KeyIterator extends PrivateEntryIterator<K> {
+        KeyIterator() {}
+        KeyIterator(boolean descending,
+                    boolean fromStart, Object lo, boolean loInclusive,
+                    boolean toEnd,     Object hi, boolean hiInclusive) {
+            super(descending, fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+        }
+        @SuppressWarnings("unchecked")
+        public K next() {
+            step();
+            return (K) lastLeaf.keys[lastIndex];
+        }
+    }
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator();
+    }
+
+    Iterator<K> descendingKeyIterator() {
+        return new KeyIterator(true, true, null, true, true, null, true);
+    }
+
+    /**
+     * Counts the mappings between two positions, inclusive, summing whole
+     * leaves in between.
+     */
+    static <K,V> int countBetween(Leaf<K,V> f, int i, Leaf<K,V> last, int j) {
+        if (f == last)
+            return Math.max(0, j - i + 1);
+        int count = f.n - i;
+        for (f = f.next; f != last; f = f.next)
+            count += f.n;
+        return count + j + 1;
+    }
+
+    /* ---------------- Views -------------- */
+
+    static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+        private final NavigableMap<E, ?> m;
+        KeySet(NavigableMap<E,?> map) { m = map; }
+
+        public Iterator<E> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<E,?>)m).keyIterator();
+            else
+                return ((BTreeMap.SubMap<E,?>)m).keyIterator();
+        }
+
+        public Iterator<E> descendingIterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<E,?>)m).descendingKeyIterator();
+            else
+                return ((BTreeMap.SubMap<E,?>)m).descendingKeyIterator();
+        }
+
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public void clear() { m.clear(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E pollFirst() {
+            Map.Entry<E,?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public E pollLast() {
+            Map.Entry<E,?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public boolean remove(Object o) {
+            int oldSize = size();
+            m.remove(o);
+            return size() != oldSize;
+        }
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive,
+                                      E toElement,   boolean toInclusive) {
+            return new KeySet<>(m.subMap(fromElement, fromInclusive,
+                                         toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(m.tailMap(fromElement, inclusive));
+        }
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(m.descendingMap());
+        }
+
+        public Spliterator<E> spliterator() {
+            return keySpliteratorFor(m);
+        }
+    }
+
+    static final class Values<K,V> extends AbstractCollection<V> {
+        private final NavigableMap<K,V> m;
+        Values(NavigableMap<K,V> map) { m = map; }
+
+        public Iterator<V> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<K,V>)m).new ValueIterator();
+            else
+                return ((BTreeMap.SubMap<K,V>)m).valueIterator();
+        }
+
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsValue(o); }
+        public void clear() { m.clear(); }
+
+        public Spliterator<V> spliterator() {
+            if (m instanceof BTreeMap)
+                return new ValueSpliterator<>((BTreeMap<K,V>)m);
+            return Spliterators.spliterator(this, Spliterator.ORDERED);
+        }
+    }
+
+    static final class EntrySet<K,V> extends AbstractSet<Map.Entry<K,V>> {
+        private final NavigableMap<K,V> m;
+        EntrySet(NavigableMap<K,V> map) { m = map; }
+
+        public Iterator<Map.Entry<K,V>> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<K,V>)m).new EntryIterator();
+            else
+                return ((BTreeMap.SubMap<K,V>)m).entryIterator();
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Object key = entry.getKey();
+            return m.containsKey(key) &&
+                Objects.equals(m.get(key), entry.getValue());
+        }
+
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            return m.remove(entry.getKey(), entry.getValue());
+        }
+
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public void clear() { m.clear(); }
+
+        public Spliterator<Map.Entry<K,V>> spliterator() {
+            if (m instanceof BTreeMap)
+                return new EntrySpliterator<>((BTreeMap<K,V>)m);
+            return Spliterators.spliterator(this, Spliterator.DISTINCT |
+                                            Spliterator.ORDERED);
+        }
+    }
+
+    static <K> Spliterator<K> keySpliteratorFor(NavigableMap<K,?> m) {
+        if (m instanceof BTreeMap) {
+            @SuppressWarnings("unchecked") BTreeMap<K,Object> t =
+                (BTreeMap<K,Object>) m;
+            return new KeySpliterator<>(t);
+        }
+        // Iterator-based spliterators can only report natural ordering
+        return Spliterators.spliterator(m.navigableKeySet(),
+                                        Spliterator.DISTINCT |
+                                        Spliterator.ORDERED |
+                                        (m.comparator() == null ?
+                                         Spliterator.SORTED : 0));
+    }
+
+    /**
+     * Submaps returned by {@link BTreeMap} submap operations, and its
+     * descending map, represent a subrange of mappings of the underlying
+     * map, traversed in either direction.  Instances of this class
+     * support all methods of their underlying maps, differing in that
+     * mappings outside their range are ignored, and attempts to add
+     * mappings outside their ranges result in {@link
+     * IllegalArgumentException}.
+     *
+     * @serial include
+     */
+    static final class SubMap<K,V> extends AbstractMap<K,V>
+        implements NavigableMap<K,V>, java.io.Serializable {
+        private static final long serialVersionUID = -7361585203446432087L;
+
+        /**
+         * The backing map.
+         */
+        final BTreeMap<K,V> m;
+
+        /**
+         * Endpoints are represented as triples (fromStart, lo,
+         * loInclusive) and (toEnd, hi, hiInclusive). If fromStart is
+         * true, then the low (absolute) bound is the start of the
+         * backing map, and the other values are ignored. Otherwise,
+         * if loInclusive is true, lo is an inclusive bound, else lo
+         * is exclusive. Similarly for the upper bound.
+         */
+        final K lo, hi;
+        final boolean fromStart, toEnd;
+        final boolean loInclusive, hiInclusive;
+
+        /** direction */
+        final boolean descending;
+
+        SubMap(BTreeMap<K,V> m,
+               boolean fromStart, K lo, boolean loInclusive,
+               boolean toEnd,     K hi, boolean hiInclusive,
+               boolean descending) {
+            if (!fromStart && !toEnd) {
+                if (m.compare(lo, hi) > 0)
+                    throw new IllegalArgumentException("fromKey > toKey");
+            } else {
+                if (!fromStart) // type check
+                    m.compare(lo, lo);
+                if (!toEnd)
+                    m.compare(hi, hi);
+            }
+
+            this.m = m;
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        // internal utilities
+
+        final boolean tooLow(Object key) {
+            if (!fromStart) {
+                int c = m.compare(key, lo);
+                if (c < 0 || (c == 0 && !loInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        final boolean tooHigh(Object key) {
+            if (!toEnd) {
+                int c = m.compare(key, hi);
+                if (c > 0 || (c == 0 && !hiInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        final boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        final boolean inClosedRange(Object key) {
+            return (fromStart || m.compare(key, lo) >= 0)
+                && (toEnd || m.compare(hi, key) >= 0);
+        }
+
+        final boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        /*
+         * Absolute versions of relation operations, ignoring direction.
+         */
+
+        final Map.Entry<K,V> absLowest() {
+            Map.Entry<K,V> e =
+                (fromStart ?  m.firstEntry() :
+                 m.getNearEntry(lo, loInclusive ? GT|EQ : GT));
+            return (e == null || tooHigh(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absHighest() {
+            Map.Entry<K,V> e =
+                (toEnd ?  m.lastEntry() :
+                 m.getNearEntry(hi, hiInclusive ? LT|EQ : LT));
+            return (e == null || tooLow(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absCeiling(K key) {
+            if (tooLow(key))
+                return absLowest();
+            Map.Entry<K,V> e = m.getNearEntry(key, GT|EQ);
+            return (e == null || tooHigh(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absHigher(K key) {
+            if (tooLow(key))
+                return absLowest();
+            Map.Entry<K,V> e = m.getNearEntry(key, GT);
+            return (e == null || tooHigh(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absFloor(K key) {
+            if (tooHigh(key))
+                return absHighest();
+            Map.Entry<K,V> e = m.getNearEntry(key, LT|EQ);
+            return (e == null || tooLow(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absLower(K key) {
+            if (tooHigh(key))
+                return absHighest();
+            Map.Entry<K,V> e = m.getNearEntry(key, LT);
+            return (e == null || tooLow(e.getKey())) ? null : e;
+        }
+
+        // iterators
+
+        Iterator<K> keyIterator() {
+            return m.new KeyIterator(descending, fromStart, lo, loInclusive,
+                                     toEnd, hi, hiInclusive);
+        }
+
+        Iterator<K> descendingKeyIterator() {
+            return m.new KeyIterator(!descending, fromStart, lo, loInclusive,
+                                     toEnd, hi, hiInclusive);
+        }
+
+        Iterator<V> valueIterator() {
+            return m.new ValueIterator(descending, fromStart, lo, loInclusive,
+                                       toEnd, hi, hiInclusive);
+        }
+
+        Iterator<Map.Entry<K,V>> entryIterator() {
+            return m.new EntryIterator(descending, fromStart, lo, loInclusive,
+                                       toEnd, hi, hiInclusive);
+        }
+
+        // public methods
+
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        /**
+         * Returns the number of mappings in range.  Whole leaves inside
+         * the range are counted without visiting their keys.
+         */
+        public int size() {
+            if (fromStart && toEnd)
+                return m.size();
+            Cursor<K,V> a = new Cursor<>(), b = new Cursor<>();
+            if (fromStart)
+                m.seekFirst(a);
+            else
+                m.seekNear(a, lo, loInclusive ? GT|EQ : GT);
+            if (toEnd)
+                m.seekLast(b);
+            else
+                m.seekNear(b, hi, hiInclusive ? LT|EQ : LT);
+            if (a.leaf == null || b.leaf == null ||
+                m.compare(a.leaf.keys[a.index], b.leaf.keys[b.index]) > 0)
+                return 0;
+            return countBetween(a.leaf, a.index, b.leaf, b.index);
+        }
+
+        public void clear() {
+            if (fromStart && toEnd) {
+                m.clear();
+                return;
+            }
+            for (Iterator<K> it = keyIterator(); it.hasNext(); ) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        public final boolean containsKey(Object key) {
+            return inRange(key) && m.containsKey(key);
+        }
+
+        public final V put(K key, V value) {
+            if (!inRange(key))
+                throw new IllegalArgumentException("key out of range");
+            return m.put(key, value);
+        }
+
+        public final V get(Object key) {
+            return !inRange(key) ? null :  m.get(key);
+        }
+
+        public final V remove(Object key) {
+            return !inRange(key) ? null : m.remove(key);
+        }
+
+        public final Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(m.comparator())
+                              : m.comparator();
+        }
+
+        public final K firstKey() {
+            return key(descending ? absHighest() : absLowest());
+        }
+
+        public final K lastKey() {
+            return key(descending ? absLowest() : absHighest());
+        }
+
+        public final Map.Entry<K,V> firstEntry() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        public final Map.Entry<K,V> lastEntry() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        public final Map.Entry<K,V> pollFirstEntry() {
+            Map.Entry<K,V> e = firstEntry();
+            if (e != null)
+                m.remove(e.getKey());
+            return e;
+        }
+
+        public final Map.Entry<K,V> pollLastEntry() {
+            Map.Entry<K,V> e = lastEntry();
+            if (e != null)
+                m.remove(e.getKey());
+            return e;
+        }
+
+        public final Map.Entry<K,V> ceilingEntry(K key) {
+            return descending ? absFloor(key) : absCeiling(key);
+        }
+
+        public final K ceilingKey(K key) {
+            return keyOrNull(ceilingEntry(key));
+        }
+
+        public final Map.Entry<K,V> higherEntry(K key) {
+            return descending ? absLower(key) : absHigher(key);
+        }
+
+        public final K higherKey(K key) {
+            return keyOrNull(higherEntry(key));
+        }
+
+        public final Map.Entry<K,V> floorEntry(K key) {
+            return descending ? absCeiling(key) : absFloor(key);
+        }
+
+        public final K floorKey(K key) {
+            return keyOrNull(floorEntry(key));
+        }
+
+        public final Map.Entry<K,V> lowerEntry(K key) {
+            return descending ? absHigher(key) : absLower(key);
+        }
+
+        public final K lowerKey(K key) {
+            return keyOrNull(lowerEntry(key));
+        }
+
+        // Views
+
+        transient NavigableMap<K,V> descendingMapView;
+        transient EntrySet<K,V> entrySetView;
+        transient KeySet<K> navigableKeySetView;
+
+        public final NavigableSet<K> navigableKeySet() {
+            KeySet<K> nksv = navigableKeySetView;
+            return (nksv != null) ? nksv :
+                (navigableKeySetView = new BTreeMap.KeySet<>(this));
+        }
+
+        public final Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        public Collection<V> values() {
+            return new Values<>(this);
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            EntrySet<K,V> es = entrySetView;
+            return (es != null) ? es : (entrySetView = new EntrySet<>(this));
+        }
+
+        public NavigableMap<K,V> descendingMap() {
+            NavigableMap<K,V> mv = descendingMapView;
+            return (mv != null) ? mv :
+                (descendingMapView =
+                 new SubMap<>(m,
+                              fromStart, lo, loInclusive,
+                              toEnd,     hi, hiInclusive, !descending));
+        }
+
+        public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                        K toKey,   boolean toInclusive) {
+            if (descending) { // flip senses
+                K tk = fromKey;
+                fromKey = toKey;
+                toKey = tk;
+                boolean ti = fromInclusive;
+                fromInclusive = toInclusive;
+                toInclusive = ti;
+            }
+            if (!inRange(fromKey, fromInclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (!inRange(toKey, toInclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            return new SubMap<>(m,
+                                false, fromKey, fromInclusive,
+                                false, toKey,   toInclusive, descending);
+        }
+
+        public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            return descending ?
+                new SubMap<>(m,
+                             false, toKey, inclusive,
+                             toEnd, hi,    hiInclusive, true) :
+                new SubMap<>(m,
+                             fromStart, lo,    loInclusive,
+                             false,     toKey, inclusive, false);
+        }
+
+        public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            return descending ?
+                new SubMap<>(m,
+                             fromStart, lo,      loInclusive,
+                             false,     fromKey, inclusive, true) :
+                new SubMap<>(m,
+                             false, fromKey, inclusive,
+                             toEnd, hi,      hiInclusive, false);
+        }
+
+        public SortedMap<K,V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        public SortedMap<K,V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        public SortedMap<K,V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+
+    /* ---------------- Spliterators -------------- */
+
+    /**
+     * Base class for spliterators over the whole map.  Before traversal
+     * starts, a spliterator covers a range of slots (children of a
+     * branch, or keys of a leaf) of one node, and splits by halving that
+     * range, descending when it reaches a single child.  Traversal then
+     * walks the leaf chain from the first to the last leaf of the range.
+     * Binding to the map is late, on first use.
+     */
+    abstract static class BTreeSpliterator<K,V> {
+        final BTreeMap<K,V> map;
+        Node<K,V> node;         // node whose slots are covered, until traversal
+        int lo, hi;             // slot range in node
+        Leaf<K,V> leaf;         // current leaf during traversal, or null
+        int index;              // current index in leaf
+        int cur;                // index of element returned by advance
+        Leaf<K,V> lastLeaf;     // last leaf of range
+        int lastHi;             // fence index in last leaf
+        int est;                // size estimate (exact if unsplit), or -1
+        boolean split;          // true if this or its source has been split
+        int expectedModCount;   // for CME checks
+
+        BTreeSpliterator(BTreeMap<K,V> map) {
+            this.map = map;
+            this.est = -1;
+        }
+
+        BTreeSpliterator(BTreeMap<K,V> map, Node<K,V> node, int lo, int hi,
+                         int est, int expectedModCount) {
+            this.map = map;
+            this.node = node;
+            this.lo = lo;
+            this.hi = hi;
+            this.est = est;
+            this.split = true;
+            this.expectedModCount = expectedModCount;
+        }
+
+        static int slots(Node<?,?> x) {
+            return (x instanceof Leaf) ? x.n : x.n + 1;
+        }
+
+        final int getEstimate() { // force initialization
+            int s;
+            if ((s = est) < 0) {
+                BTreeMap<K,V> t = map;
+                Node<K,V> r = t.root;
+                expectedModCount = t.modCount;
+                est = s = t.size;
+                if (r != null && s > 0) {
+                    node = r;
+                    lo = 0;
+                    hi = slots(r);
+                }
+            }
+            return s;
+        }
+
+        /**
+         * Narrows the range to at least two slots if possible, returning
+         * the node to split, or null if none.
+         */
+        final Node<K,V> splittable() {
+            getEstimate();
+            Node<K,V> x = node;
+            if (x == null)
+                return null;
+            while (hi - lo == 1 && x instanceof Branch) {
+                node = x = ((Branch<K,V>) x).kids[lo];
+                lo = 0;
+                hi = slots(x);
+            }
+            return (hi - lo < 2) ? null : x;
+        }
+
+        /**
+         * Converts the slot range into a leaf range once traversal starts.
+         */
+        final void startTraversal() {
+            getEstimate();
+            Node<K,V> x = node;
+            if (x != null) {
+                node = null;
+                if (x instanceof Leaf) {
+                    leaf = lastLeaf = (Leaf<K,V>) x;
+                    index = lo;
+                    lastHi = hi;
+                } else {
+                    Branch<K,V> b = (Branch<K,V>) x;
+                    Node<K,V> first = b.kids[lo], last = b.kids[hi - 1];
+                    while (first instanceof Branch)
+                        first = ((Branch<K,V>) first).kids[0];
+                    while (last instanceof Branch)
+                        last = ((Branch<K,V>) last).kids[last.n];
+                    leaf = (Leaf<K,V>) first;
+                    index = 0;
+                    lastLeaf = (Leaf<K,V>) last;
+                    lastHi = last.n;
+                }
+            }
+        }
+
+        /**
+         * Returns the leaf of the next element, leaving its index in
+         * {@code cur} and advancing past it, or null if none.
+         */
+        final Leaf<K,V> advance() {
+            startTraversal();
+            Leaf<K,V> f = leaf;
+            if (f != null) {
+                int i = cur = index;
+                if (++i < ((f == lastLeaf) ? lastHi : f.n))
+                    index = i;
+                else {
+                    leaf = (f == lastLeaf) ? null : f.next;
+                    index = 0;
+                }
+            }
+            return f;
+        }
+
+        final void checkForComodification() {
+            if (map.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public final long estimateSize() {
+            return (long) getEstimate();
+        }
+    }
+
+    static final class KeySpliterator<K,V>
+        extends BTreeSpliterator<K,V> implements Spliterator<K> {
+        KeySpliterator(BTreeMap<K,V> map) {
+            super(map);
+        }
+
+        KeySpliterator(BTreeMap<K,V> map, Node<K,V> node, int lo, int hi,
+                       int est, int expectedModCount) {
+            super(map, node, lo, hi, est, expectedModCount);
+        }
+
+        public KeySpliterator<K,V> trySplit() {
+            Node<K,V> x = splittable();
+            if (x == null)
+                return null;
+            int mid = (lo + hi) >>> 1;
+            split = true;
+            KeySpliterator<K,V> prefix = new KeySpliterator<>(
+                map, x, lo, mid, est >>>= 1, expectedModCount);
+            lo = mid;
+            return prefix;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super K> action) {
+            Objects.requireNonNull(action);
+            Leaf<K,V> f = advance();
+            if (f == null)
+                return false;
+            action.accept((K) f.keys[cur]);
+            checkForComodification();
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super K> action) {
+            Objects.requireNonNull(action);
+            startTraversal();
+            Leaf<K,V> f = leaf, last = lastLeaf;
+            int i = index;
+            leaf = null;
+            for (; f != null; f = f.next, i = 0) {
+                Object[] ks = f.keys;
+                int end = (f == last) ? lastHi : f.n;
+                for (; i < end; ++i)
+                    action.accept((K) ks[i]);
+                if (f == last)
+                    break;
+            }
+            checkForComodification();
+        }
+
+        public int characteristics() {
+            return (split ? 0 : Spliterator.SIZED) |
+                Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED;
+        }
+
+        public final Comparator<? super K> getComparator() {
+            return map.comparator;
+        }
+    }
+
+    static final class ValueSpliterator<K,V>
+        extends BTreeSpliterator<K,V> implements Spliterator<V> {
+        ValueSpliterator(BTreeMap<K,V> map) {
+            super(map);
+        }
+
+        ValueSpliterator(BTreeMap<K,V> map, Node<K,V> node, int lo, int hi,
+                         int est, int expectedModCount) {
+            super(map, node, lo, hi, est, expectedModCount);
+        }
+
+        public ValueSpliterator<K,V> trySplit() {
+            Node<K,V> x = splittable();
+            if (x == null)
+                return null;
+            int mid = (lo + hi) >>> 1;
+            split = true;
+            ValueSpliterator<K,V> prefix = new ValueSpliterator<>(
+                map, x, lo, mid, est >>>= 1, expectedModCount);
+            lo = mid;
+            return prefix;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            Leaf<K,V> f = advance();
+            if (f == null)
+                return false;
+            action.accept((V) f.vals[cur]);
+            checkForComodification();
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            startTraversal();
+            Leaf<K,V> f = leaf, last = lastLeaf;
+            int i = index;
+            leaf = null;
+            for (; f != null; f = f.next, i = 0) {
+                Object[] vs = f.vals;
+                int end = (f == last) ? lastHi : f.n;
+                for (; i < end; ++i)
+                    action.accept((V) vs[i]);
+                if (f == last)
+                    break;
+            }
+            checkForComodification();
+        }
+
+        public int characteristics() {
+            return (split ? 0 : Spliterator.SIZED) | Spliterator.ORDERED;
+        }
+    }
+
+    static final class EntrySpliterator<K,V>
+        extends BTreeSpliterator<K,V>
+        implements Spliterator<Map.Entry<K,V>> {
+        EntrySpliterator(BTreeMap<K,V> map) {
+            super(map);
+        }
+
+        EntrySpliterator(BTreeMap<K,V> map, Node<K,V> node, int lo, int hi,
+                         int est, int expectedModCount) {
+            super(map, node, lo, hi, est, expectedModCount);
+        }
+
+        public EntrySpliterator<K,V> trySplit() {
+            Node<K,V> x = splittable();
+            if (x == null)
+                return null;
+            int mid = (lo + hi) >>> 1;
+            split = true;
+            EntrySpliterator<K,V> prefix = new EntrySpliterator<>(
+                map, x, lo, mid, est >>>= 1, expectedModCount);
+            lo = mid;
+            return prefix;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super Map.Entry<K,V>> action) {
+            Objects.requireNonNull(action);
+            Leaf<K,V> f = advance();
+            if (f == null)
+                return false;
+            int i = cur;
+            action.accept(new WriteThroughEntry<>(map, (K) f.keys[i],
+                                                  (V) f.vals[i]));
+            checkForComodification();
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super Map.Entry<K,V>> action) {
+            Objects.requireNonNull(action);
+            startTraversal();
+            Leaf<K,V> f = leaf, last = lastLeaf;
+            int i = index;
+            leaf = null;
+            for (; f != null; f = f.next, i = 0) {
+                Object[] ks = f.keys, vs = f.vals;
+                int end = (f == last) ? lastHi : f.n;
+                for (; i < end; ++i)
+                    action.accept(new WriteThroughEntry<>(map, (K) ks[i],
+                                                          (V) vs[i]));
+                if (f == last)
+                    break;
+            }
+            checkForComodification();
+        }
+
+        public int characteristics() {
+            return (split ? 0 : Spliterator.SIZED) |
+                Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Comparator<Map.Entry<K,V>> getComparator() {
+            // Adapt or create a key-based comparator
+            if (map.comparator != null) {
+                return Map.Entry.comparingByKey(map.comparator);
+            }
+            else {
+                return (Comparator<Map.Entry<K,V>> & Serializable) (e1, e2) -> {
+                    Comparable<? super K> k1 = (Comparable<? super K>) e1.getKey();
+                    return k1.compareTo(e2.getKey());
+                };
+            }
+        }
+    }
+}
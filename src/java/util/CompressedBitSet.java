@@ -0,0 +1,1830 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compressed set of bits indexed by nonnegative integers, with the
+ * same basic operations as {@link BitSet}.  The index space is divided
+ * into chunks of 65536 bits, keyed by the high 16 bits of the index.
+ * Only chunks holding at least one set bit are stored, each in one of
+ * three containers, whichever is smallest:
+ * <ul>
+ * <li>a sorted array of 16-bit values, for sparse chunks of at most
+ *     4096 bits;
+ * <li>a 65536-bit bitmap, for dense chunks;
+ * <li>a sorted array of runs of consecutive set bits.
+ * </ul>
+ * The memory used is thus proportional to the number of set bits (or
+ * runs) rather than to the largest index, and logical operations visit
+ * only the chunks present in either operand.
+ *
+ * <p>Containers are converted between forms as bits are set and
+ * cleared; {@link #compact()} may be used to convert every container to
+ * its smallest form after bulk modification.
+ *
+ * <p>Besides the {@code BitSet} operations, this class supports
+ * {@linkplain #rank rank} and {@linkplain #select select} queries, a
+ * {@linkplain #stream() stream} of set indices that splits by chunk for
+ * parallel use, and a portable {@linkplain #writeTo serialized form}
+ * laid out so that it can be read directly from a memory-mapped file.
+ * {@link #valueOf(BitSet)} and {@link #toBitSet()} convert to and from a
+ * {@code BitSet} in time linear in its word count.
+ *
+ * <p>Unless otherwise noted, passing a null parameter to any of the
+ * methods in a {@code CompressedBitSet} will result in a
+ * {@code NullPointerException}.
+ *
+ * <p>A {@code CompressedBitSet} is not safe for multithreaded use without
+ * external synchronization.
+ *
+ * @see BitSet
+ * @since 12
+ */
+public class CompressedBitSet implements Cloneable, java.io.Serializable {
+    /*
+     * The set is a sorted array of 16-bit keys, one per non-empty chunk,
+     * and a parallel array of containers.  Every stored container is
+     * non-empty, and array containers never hold more than ARRAY_MAX
+     * values.  Containers are otherwise free to be in any form; the
+     * binary operations produce results in their smallest form, while
+     * single-bit updates only convert when a form overflows (array to
+     * bitmap above ARRAY_MAX values, bitmap to array at or below it,
+     * runs to the best form when they stop paying for themselves).
+     *
+     * Operations never share containers between sets: containers taken
+     * from the other operand of a logical operation are copied.
+     */
+
+    /** The number of bits addressed by a container's key. */
+    private static final int CHUNK_BITS = 16;
+
+    /** The number of bits in a container. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** The number of words in a bitmap container. */
+    private static final int CHUNK_WORDS = CHUNK_SIZE >>> 6;
+
+    /** The maximum cardinality of an array container. */
+    private static final int ARRAY_MAX = 4096;
+
+    /** Serialized form magic number. */
+    private static final int SERIAL_COOKIE = 0x3b3a3e01;
+
+    private static final int ARRAY = 0, BITMAP = 1, RUNS = 2;
+
+    /** The keys of the non-empty containers, ascending. */
+    private transient char[] keys;
+
+    /** The containers, parallel to keys. */
+    private transient Container[] containers;
+
+    /** The number of containers in use. */
+    private transient int size;
+
+    private static final long serialVersionUID = -2164581735215623849L;
+
+    /**
+     * Creates a new, empty compressed bit set.
+     */
+    public CompressedBitSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    private CompressedBitSet(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /* ---------------- Containers -------------- */
+
+    /**
+     * The bits of one chunk.  Values are the low 16 bits of an index, in
+     * the range 0 to 65535.  Mutators return the container to store in
+     * place of the receiver, which may be a converted copy.
+     */
+    abstract static class Container {
+        /** The number of values in this container. */
+        int card;
+
+        abstract int type();
+
+        abstract boolean contains(int x);
+
+        abstract Container add(int x);
+
+        abstract Container remove(int x);
+
+        /** Returns the least value {@code >= from}, or -1 if none. */
+        abstract int next(int from);
+
+        /** Returns the greatest value {@code <= from}, or -1 if none. */
+        abstract int prev(int from);
+
+        /** Returns the least absent value {@code >= from}, or CHUNK_SIZE. */
+        abstract int nextAbsent(int from);
+
+        /** Returns the number of values {@code <= x}. */
+        abstract int rank(int x);
+
+        /** Returns the value at (zero-based) position j. */
+        abstract int select(int j);
+
+        abstract void forEach(int base, IntConsumer action);
+
+        /** ORs the values into w starting at word offset off. */
+        abstract void orInto(long[] w, int off);
+
+        /** Returns the number of payload bytes in the serialized form. */
+        abstract int payloadSize();
+
+        /** Returns the count field of the serialized form. */
+        abstract int serialCount();
+
+        abstract void writePayload(ByteBuffer bb);
+
+        /**
+         * Returns the bits of this container as words, which must not be
+         * modified if this is a bitmap container.
+         */
+        long[] bits() {
+            long[] w = new long[CHUNK_WORDS];
+            orInto(w, 0);
+            return w;
+        }
+
+        /** Returns a modifiable copy of the bits of this container. */
+        long[] copyOfBits() {
+            return bits();
+        }
+
+        abstract Container copy();
+    }
+
+    static final class ArrayContainer extends Container {
+        char[] values;
+
+        ArrayContainer(char[] values, int card) {
+            this.values = values;
+            this.card = card;
+        }
+
+        /** Creates a container holding the card bits set in w. */
+        static ArrayContainer of(long[] w, int card) {
+            char[] a = new char[card];
+            int k = 0;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                for (long x = w[i]; x != 0; x &= x - 1)
+                    a[k++] = (char) ((i << 6) + Long.numberOfTrailingZeros(x));
+            }
+            return new ArrayContainer(a, card);
+        }
+
+        int type() { return ARRAY; }
+
+        boolean contains(int x) {
+            return Arrays.binarySearch(values, 0, card, (char) x) >= 0;
+        }
+
+        Container add(int x) {
+            int i = Arrays.binarySearch(values, 0, card, (char) x);
+            if (i >= 0)
+                return this;
+            int n = card;
+            if (n == ARRAY_MAX) {
+                long[] w = bits();
+                w[x >>> 6] |= 1L << x;
+                return new BitmapContainer(w, n + 1);
+            }
+            i = -(i + 1);
+            char[] a = values;
+            if (n == a.length)
+                values = a = Arrays.copyOf(a, Math.min(ARRAY_MAX,
+                                                       Math.max(4, n << 1)));
+            System.arraycopy(a, i, a, i + 1, n - i);
+            a[i] = (char) x;
+            card = n + 1;
+            return this;
+        }
+
+        Container remove(int x) {
+            int i = Arrays.binarySearch(values, 0, card, (char) x);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, --card - i);
+            }
+            return this;
+        }
+
+        int next(int from) {
+            int i = Arrays.binarySearch(values, 0, card, (char) from);
+            if (i < 0)
+                i = -(i + 1);
+            return (i < card) ? values[i] : -1;
+        }
+
+        int prev(int from) {
+            int i = Arrays.binarySearch(values, 0, card, (char) from);
+            if (i < 0)
+                i = -(i + 2);
+            return (i >= 0) ? values[i] : -1;
+        }
+
+        int nextAbsent(int from) {
+            int i = Arrays.binarySearch(values, 0, card, (char) from);
+            if (i < 0)
+                return from;
+            while (++i < card && values[i] == ++from)
+                ;
+            return from + (i < card ? 0 : 1);
+        }
+
+        int rank(int x) {
+            int i = Arrays.binarySearch(values, 0, card, (char) x);
+            return (i >= 0) ? i + 1 : -(i + 1);
+        }
+
+        int select(int j) {
+            return values[j];
+        }
+
+        void forEach(int base, IntConsumer action) {
+            char[] a = values;
+            for (int i = 0, n = card; i < n; i++)
+                action.accept(base | a[i]);
+        }
+
+        void orInto(long[] w, int off) {
+            char[] a = values;
+            for (int i = 0, n = card; i < n; i++) {
+                int v = a[i];
+                w[off + (v >>> 6)] |= 1L << v;
+            }
+        }
+
+        int payloadSize() { return card << 1; }
+
+        int serialCount() { return card; }
+
+        void writePayload(ByteBuffer bb) {
+            bb.asCharBuffer().put(values, 0, card);
+            bb.position(bb.position() + (card << 1));
+        }
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, card), card);
+        }
+    }
+
+    static final class BitmapContainer extends Container {
+        final long[] words;
+
+        BitmapContainer(long[] words, int card) {
+            this.words = words;
+            this.card = card;
+        }
+
+        int type() { return BITMAP; }
+
+        boolean contains(int x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        Container add(int x) {
+            long w = words[x >>> 6];
+            if ((w & (1L << x)) == 0) {
+                words[x >>> 6] = w | (1L << x);
+                card++;
+            }
+            return this;
+        }
+
+        Container remove(int x) {
+            long w = words[x >>> 6];
+            if ((w & (1L << x)) != 0) {
+                words[x >>> 6] = w & ~(1L << x);
+                if (--card <= ARRAY_MAX)
+                    return ArrayContainer.of(words, card);
+            }
+            return this;
+        }
+
+        int next(int from) {
+            return nextSetBit(words, from);
+        }
+
+        int prev(int from) {
+            int u = from >>> 6;
+            long word = words[u] & (-1L >>> -(from + 1));
+            while (true) {
+                if (word != 0)
+                    return (u + 1) * 64 - 1 - Long.numberOfLeadingZeros(word);
+                if (u-- == 0)
+                    return -1;
+                word = words[u];
+            }
+        }
+
+        int nextAbsent(int from) {
+            return nextClearBit(words, from);
+        }
+
+        int rank(int x) {
+            int u = x >>> 6, r = 0;
+            for (int i = 0; i < u; i++)
+                r += Long.bitCount(words[i]);
+            return r + Long.bitCount(words[u] & ((2L << x) - 1));
+        }
+
+        int select(int j) {
+            for (int i = 0; ; i++) {
+                long w = words[i];
+                int c = Long.bitCount(w);
+                if (j < c) {
+                    for (; j > 0; j--)
+                        w &= w - 1;
+                    return (i << 6) + Long.numberOfTrailingZeros(w);
+                }
+                j -= c;
+            }
+        }
+
+        void forEach(int base, IntConsumer action) {
+            long[] ws = words;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                for (long w = ws[i]; w != 0; w &= w - 1)
+                    action.accept(base | ((i << 6) + Long.numberOfTrailingZeros(w)));
+            }
+        }
+
+        void orInto(long[] w, int off) {
+            long[] ws = words;
+            for (int i = 0; i < CHUNK_WORDS; i++)
+                w[off + i] |= ws[i];
+        }
+
+        long[] bits() {
+            return words;
+        }
+
+        long[] copyOfBits() {
+            return words.clone();
+        }
+
+        int payloadSize() { return CHUNK_WORDS << 3; }
+
+        int serialCount() { return card - 1; }
+
+        void writePayload(ByteBuffer bb) {
+            bb.asLongBuffer().put(words);
+            bb.position(bb.position() + (CHUNK_WORDS << 3));
+        }
+
+        Container copy() {
+            return new BitmapContainer(words.clone(), card);
+        }
+    }
+
+    /**
+     * Runs are stored as pairs of (start, length - 1).
+     */
+    static final class RunContainer extends Container {
+        char[] runs;
+        int nruns;
+
+        RunContainer(char[] runs, int nruns, int card) {
+            this.runs = runs;
+            this.nruns = nruns;
+            this.card = card;
+        }
+
+        /** Creates a container holding the bits set in w. */
+        static RunContainer of(long[] w, int nruns, int card) {
+            char[] r = new char[nruns << 1];
+            int k = 0;
+            for (int s = nextSetBit(w, 0); s >= 0; ) {
+                int e = nextClearBit(w, s);
+                r[k++] = (char) s;
+                r[k++] = (char) (e - s - 1);
+                s = (e < CHUNK_SIZE) ? nextSetBit(w, e) : -1;
+            }
+            return new RunContainer(r, nruns, card);
+        }
+
+        static RunContainer full() {
+            return new RunContainer(new char[] { 0, CHUNK_MASK }, 1, CHUNK_SIZE);
+        }
+
+        int type() { return RUNS; }
+
+        private int start(int i) { return runs[i << 1]; }
+
+        private int end(int i) { return runs[i << 1] + runs[(i << 1) + 1]; }
+
+        /** Returns the index of the last run starting at or before x, or -1. */
+        private int runBefore(int x) {
+            int lo = 0, hi = nruns - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[mid << 1] <= x)
+                    lo = mid + 1;
+                else
+                    hi = mid - 1;
+            }
+            return hi;
+        }
+
+        boolean contains(int x) {
+            int i = runBefore(x);
+            return i >= 0 && x <= end(i);
+        }
+
+        /**
+         * Returns this container, or its best form if the runs no
+         * longer use less space than the alternatives.
+         */
+        private Container checkRuns() {
+            return (4 * nruns < Math.min(2 * card, CHUNK_WORDS << 3))
+                ? this : best(bits());
+        }
+
+        private void insertRun(int i, int start, int lengthMinusOne) {
+            int n = nruns;
+            if ((n + 1) << 1 > runs.length)
+                runs = Arrays.copyOf(runs, Math.max(4, runs.length << 1));
+            System.arraycopy(runs, i << 1, runs, (i + 1) << 1, (n - i) << 1);
+            runs[i << 1] = (char) start;
+            runs[(i << 1) + 1] = (char) lengthMinusOne;
+            nruns = n + 1;
+        }
+
+        Container add(int x) {
+            int i = runBefore(x);
+            if (i >= 0 && x <= end(i))
+                return this;
+            card++;
+            boolean joinsPrev = i >= 0 && end(i) + 1 == x;
+            boolean joinsNext = i + 1 < nruns && start(i + 1) == x + 1;
+            if (joinsPrev && joinsNext) {
+                runs[(i << 1) + 1] = (char) (end(i + 1) - start(i));
+                System.arraycopy(runs, (i + 2) << 1, runs, (i + 1) << 1,
+                                 (nruns - i - 2) << 1);
+                nruns--;
+            } else if (joinsPrev) {
+                runs[(i << 1) + 1]++;
+            } else if (joinsNext) {
+                runs[(i + 1) << 1] = (char) x;
+                runs[((i + 1) << 1) + 1]++;
+            } else {
+                insertRun(i + 1, x, 0);
+                return checkRuns();
+            }
+            return this;
+        }
+
+        Container remove(int x) {
+            int i = runBefore(x);
+            int s, e;
+            if (i < 0 || x > (e = end(i)))
+                return this;
+            s = start(i);
+            card--;
+            if (s == e) {
+                System.arraycopy(runs, (i + 1) << 1, runs, i << 1,
+                                 (nruns - i - 1) << 1);
+                nruns--;
+            } else if (x == s) {
+                runs[i << 1]++;
+                runs[(i << 1) + 1]--;
+            } else if (x == e) {
+                runs[(i << 1) + 1]--;
+            } else {
+                runs[(i << 1) + 1] = (char) (x - 1 - s);
+                insertRun(i + 1, x + 1, e - x - 1);
+                return checkRuns();
+            }
+            return (card <= ARRAY_MAX && 4 * nruns >= 2 * card)
+                ? best(bits()) : this;
+        }
+
+        int next(int from) {
+            int i = runBefore(from);
+            if (i >= 0 && from <= end(i))
+                return from;
+            return (i + 1 < nruns) ? start(i + 1) : -1;
+        }
+
+        int prev(int from) {
+            int i = runBefore(from);
+            return (i < 0) ? -1 : Math.min(from, end(i));
+        }
+
+        int nextAbsent(int from) {
+            int i = runBefore(from);
+            return (i >= 0 && from <= end(i)) ? end(i) + 1 : from;
+        }
+
+        int rank(int x) {
+            int i = runBefore(x);
+            if (i < 0)
+                return 0;
+            int r = 0;
+            for (int j = 0; j < i; j++)
+                r += runs[(j << 1) + 1] + 1;
+            return r + Math.min(x, end(i)) - start(i) + 1;
+        }
+
+        int select(int j) {
+            for (int i = 0; ; i++) {
+                int len = runs[(i << 1) + 1] + 1;
+                if (j < len)
+                    return start(i) + j;
+                j -= len;
+            }
+        }
+
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0, n = nruns; i < n; i++) {
+                for (int v = start(i), e = end(i); v <= e; v++)
+                    action.accept(base | v);
+            }
+        }
+
+        void orInto(long[] w, int off) {
+            for (int i = 0, n = nruns; i < n; i++)
+                setRange(w, off, start(i), end(i) + 1);
+        }
+
+        int payloadSize() { return nruns << 2; }
+
+        int serialCount() { return nruns; }
+
+        void writePayload(ByteBuffer bb) {
+            bb.asCharBuffer().put(runs, 0, nruns << 1);
+            bb.position(bb.position() + (nruns << 2));
+        }
+
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, nruns << 1), nruns, card);
+        }
+    }
+
+    /* ---------------- Word utilities -------------- */
+
+    /** Returns the first set bit of w at or after from, or -1. */
+    static int nextSetBit(long[] w, int from) {
+        int u = from >>> 6;
+        long word = w[u] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (u << 6) + Long.numberOfTrailingZeros(word);
+            if (++u == CHUNK_WORDS)
+                return -1;
+            word = w[u];
+        }
+    }
+
+    /** Returns the first clear bit of w at or after from, or CHUNK_SIZE. */
+    static int nextClearBit(long[] w, int from) {
+        int u = from >>> 6;
+        long word = ~w[u] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (u << 6) + Long.numberOfTrailingZeros(word);
+            if (++u == CHUNK_WORDS)
+                return CHUNK_SIZE;
+            word = ~w[u];
+        }
+    }
+
+    /** Sets bits [from, to) of the chunk at word offset off of w. */
+    static void setRange(long[] w, int off, int from, int to) {
+        int startWord = off + (from >>> 6);
+        int endWord = off + ((to - 1) >>> 6);
+        long firstWordMask = -1L << from;
+        long lastWordMask  = -1L >>> -to;
+        if (startWord == endWord) {
+            w[startWord] |= (firstWordMask & lastWordMask);
+        } else {
+            w[startWord] |= firstWordMask;
+            for (int i = startWord + 1; i < endWord; i++)
+                w[i] = -1L;
+            w[endWord] |= lastWordMask;
+        }
+    }
+
+    /** Clears bits [from, to) of the chunk in w. */
+    static void clearRange(long[] w, int from, int to) {
+        int startWord = from >>> 6;
+        int endWord = (to - 1) >>> 6;
+        long firstWordMask = -1L << from;
+        long lastWordMask  = -1L >>> -to;
+        if (startWord == endWord) {
+            w[startWord] &= ~(firstWordMask & lastWordMask);
+        } else {
+            w[startWord] &= ~firstWordMask;
+            for (int i = startWord + 1; i < endWord; i++)
+                w[i] = 0;
+            w[endWord] &= ~lastWordMask;
+        }
+    }
+
+    /**
+     * Returns the smallest container holding the bits of w, taking
+     * ownership of w, or null if no bits are set.
+     */
+    static Container best(long[] w) {
+        int card = 0, nruns = 0;
+        long carry = 0;
+        for (int i = 0; i < CHUNK_WORDS; i++) {
+            long x = w[i];
+            card += Long.bitCount(x);
+            nruns += Long.bitCount(x & ~((x << 1) | carry));
+            carry = x >>> 63;
+        }
+        if (card == 0)
+            return null;
+        if (4 * nruns < Math.min(2 * card, CHUNK_WORDS << 3))
+            return RunContainer.of(w, nruns, card);
+        if (card <= ARRAY_MAX)
+            return ArrayContainer.of(w, card);
+        return new BitmapContainer(w, card);
+    }
+
+    /* ---------------- Container operations -------------- */
+
+    /**
+     * Returns the values of a for which b.contains is the given value,
+     * or null if none.
+     */
+    private static Container filter(ArrayContainer a, Container b,
+                                    boolean present) {
+        char[] vs = a.values, r = new char[a.card];
+        int k = 0;
+        for (int i = 0, n = a.card; i < n; i++) {
+            if (b.contains(vs[i]) == present)
+                r[k++] = vs[i];
+        }
+        return (k == 0) ? null : new ArrayContainer(r, k);
+    }
+
+    private static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer)
+            return filter((ArrayContainer) a, b, true);
+        if (b instanceof ArrayContainer)
+            return filter((ArrayContainer) b, a, true);
+        long[] w = a.copyOfBits(), v = b.bits();
+        for (int i = 0; i < CHUNK_WORDS; i++)
+            w[i] &= v[i];
+        return best(w);
+    }
+
+    private static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer)
+            return filter((ArrayContainer) a, b, false);
+        long[] w = a.copyOfBits(), v = b.bits();
+        for (int i = 0; i < CHUNK_WORDS; i++)
+            w[i] &= ~v[i];
+        return best(w);
+    }
+
+    /**
+     * Merges two array containers whose combined size is at most
+     * ARRAY_MAX, keeping values in both unless exclusive.
+     */
+    private static Container merge(ArrayContainer a, ArrayContainer b,
+                                   boolean exclusive) {
+        char[] x = a.values, y = b.values, r = new char[a.card + b.card];
+        int i = 0, j = 0, k = 0, m = a.card, n = b.card;
+        while (i < m && j < n) {
+            char p = x[i], q = y[j];
+            if (p < q) {
+                r[k++] = p; i++;
+            } else if (p > q) {
+                r[k++] = q; j++;
+            } else {
+                if (!exclusive)
+                    r[k++] = p;
+                i++; j++;
+            }
+        }
+        while (i < m)
+            r[k++] = x[i++];
+        while (j < n)
+            r[k++] = y[j++];
+        return (k == 0) ? null : new ArrayContainer(r, k);
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a.card == CHUNK_SIZE)
+            return a.copy();
+        if (b.card == CHUNK_SIZE)
+            return b.copy();
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+            a.card + b.card <= ARRAY_MAX)
+            return merge((ArrayContainer) a, (ArrayContainer) b, false);
+        long[] w = a.copyOfBits(), v = b.bits();
+        for (int i = 0; i < CHUNK_WORDS; i++)
+            w[i] |= v[i];
+        return best(w);
+    }
+
+    private static Container xor(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+            a.card + b.card <= ARRAY_MAX)
+            return merge((ArrayContainer) a, (ArrayContainer) b, true);
+        long[] w = a.copyOfBits(), v = b.bits();
+        for (int i = 0; i < CHUNK_WORDS; i++)
+            w[i] ^= v[i];
+        return best(w);
+    }
+
+    private static boolean sameBits(Container a, Container b) {
+        if (a.card != b.card)
+            return false;
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+            return Arrays.equals(((ArrayContainer) a).values, 0, a.card,
+                                 ((ArrayContainer) b).values, 0, b.card);
+        return Arrays.equals(a.bits(), b.bits());
+    }
+
+    /* ---------------- Key array management -------------- */
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, size, (char) key);
+    }
+
+    private void insertAt(int i, int key, Container c) {
+        int n = size;
+        if (n == keys.length) {
+            int cap = Math.max(4, n + (n >>> 1));
+            keys = Arrays.copyOf(keys, cap);
+            containers = Arrays.copyOf(containers, cap);
+        }
+        System.arraycopy(keys, i, keys, i + 1, n - i);
+        System.arraycopy(containers, i, containers, i + 1, n - i);
+        keys[i] = (char) key;
+        containers[i] = c;
+        size = n + 1;
+    }
+
+    private void removeAt(int i) {
+        int n = --size;
+        System.arraycopy(keys, i + 1, keys, i, n - i);
+        System.arraycopy(containers, i + 1, containers, i, n - i);
+        containers[n] = null;
+    }
+
+    /** Stores c at index i, or removes the container if c is empty. */
+    private void update(int i, Container c) {
+        if (c == null || c.card == 0)
+            removeAt(i);
+        else
+            containers[i] = c;
+    }
+
+    /**
+     * Checks that fromIndex ... toIndex is a valid range of bit indices.
+     */
+    private static void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        if (toIndex < 0)
+            throw new IndexOutOfBoundsException("toIndex < 0: " + toIndex);
+        if (fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex +
+                                                " > toIndex: " + toIndex);
+    }
+
+    /* ---------------- Single bit operations -------------- */
+
+    /**
+     * Sets the bit at the specified index to {@code true}.
+     *
+     * @param  bitIndex a bit index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+        int key = bitIndex >>> CHUNK_BITS, i = indexOf(key);
+        if (i >= 0)
+            containers[i] = containers[i].add(bitIndex & CHUNK_MASK);
+        else
+            insertAt(-(i + 1), key,
+                     new ArrayContainer(new char[] { (char) bitIndex }, 1));
+    }
+
+    /**
+     * Sets the bit at the specified index to the specified value.
+     *
+     * @param  bitIndex a bit index
+     * @param  value a boolean value to set
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex, boolean value) {
+        if (value)
+            set(bitIndex);
+        else
+            clear(bitIndex);
+    }
+
+    /**
+     * Sets the bit specified by the index to {@code false}.
+     *
+     * @param  bitIndex the index of the bit to be cleared
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void clear(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+        int i = indexOf(bitIndex >>> CHUNK_BITS);
+        if (i >= 0)
+            update(i, containers[i].remove(bitIndex & CHUNK_MASK));
+    }
+
+    /**
+     * Sets the bit at the specified index to the complement of its
+     * current value.
+     *
+     * @param  bitIndex the index of the bit to flip
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void flip(int bitIndex) {
+        if (get(bitIndex))
+            clear(bitIndex);
+        else
+            set(bitIndex);
+    }
+
+    /**
+     * Returns the value of the bit with the specified index.
+     *
+     * @param  bitIndex   the bit index
+     * @return the value of the bit with the specified index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public boolean get(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+        int i = indexOf(bitIndex >>> CHUNK_BITS);
+        return i >= 0 && containers[i].contains(bitIndex & CHUNK_MASK);
+    }
+
+    /* ---------------- Range operations -------------- */
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code true}.  Chunks
+     * covered entirely are stored as a single run.
+     *
+     * @param  fromIndex index of the first bit to be set
+     * @param  toIndex index after the last bit to be set
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void set(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int firstKey = fromIndex >>> CHUNK_BITS, lastKey = (toIndex - 1) >>> CHUNK_BITS;
+        for (int key = firstKey; key <= lastKey; key++) {
+            int from = (key == firstKey) ? fromIndex & CHUNK_MASK : 0;
+            int to = (key == lastKey) ? ((toIndex - 1) & CHUNK_MASK) + 1 : CHUNK_SIZE;
+            int i = indexOf(key);
+            if (from == 0 && to == CHUNK_SIZE) {
+                if (i >= 0)
+                    containers[i] = RunContainer.full();
+                else
+                    insertAt(-(i + 1), key, RunContainer.full());
+            } else {
+                long[] w = (i >= 0) ? containers[i].copyOfBits()
+                                    : new long[CHUNK_WORDS];
+                setRange(w, 0, from, to);
+                if (i >= 0)
+                    containers[i] = best(w);
+                else
+                    insertAt(-(i + 1), key, best(w));
+            }
+        }
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code false}.
+     *
+     * @param  fromIndex index of the first bit to be cleared
+     * @param  toIndex index after the last bit to be cleared
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void clear(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int firstKey = fromIndex >>> CHUNK_BITS, lastKey = (toIndex - 1) >>> CHUNK_BITS;
+        int i = indexOf(firstKey);
+        if (i < 0)
+            i = -(i + 1);
+        while (i < size && keys[i] <= lastKey) {
+            int key = keys[i];
+            int from = (key == firstKey) ? fromIndex & CHUNK_MASK : 0;
+            int to = (key == lastKey) ? ((toIndex - 1) & CHUNK_MASK) + 1 : CHUNK_SIZE;
+            Container c = null;
+            if (from != 0 || to != CHUNK_SIZE) {
+                long[] w = containers[i].copyOfBits();
+                clearRange(w, from, to);
+                c = best(w);
+            }
+            if (c == null)
+                removeAt(i);
+            else
+                containers[i++] = c;
+        }
+    }
+
+    /**
+     * Sets all of the bits in this set to {@code false}.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /* ---------------- Queries -------------- */
+
+    /**
+     * Returns the index of the first bit that is set to {@code true}
+     * that occurs on or after the specified starting index. If no such
+     * bit exists then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        int i = indexOf(fromIndex >>> CHUNK_BITS);
+        if (i >= 0) {
+            int v = containers[i].next(fromIndex & CHUNK_MASK);
+            if (v >= 0)
+                return (keys[i] << CHUNK_BITS) | v;
+            i++;
+        } else {
+            i = -(i + 1);
+        }
+        return (i < size) ? (keys[i] << CHUNK_BITS) | containers[i].next(0) : -1;
+    }
+
+    /**
+     * Returns the index of the first bit that is set to {@code false}
+     * that occurs on or after the specified starting index.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next clear bit
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextClearBit(int fromIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        int key = fromIndex >>> CHUNK_BITS, from = fromIndex & CHUNK_MASK;
+        int i = indexOf(key);
+        if (i < 0)
+            return fromIndex;
+        for (;;) {
+            int v = containers[i].nextAbsent(from);
+            if (v < CHUNK_SIZE)
+                return (key << CHUNK_BITS) | v;
+            // chunk is set to its end; continue only into an adjacent chunk
+            ++key;
+            if (++i >= size || keys[i] != key)
+                return key << CHUNK_BITS;
+            from = 0;
+        }
+    }
+
+    /**
+     * Returns the index of the nearest bit that is set to {@code true}
+     * that occurs on or before the specified starting index.
+     * If no such bit exists, or if {@code -1} is given as the
+     * starting index, then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the previous set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is less
+     *         than {@code -1}
+     */
+    public int previousSetBit(int fromIndex) {
+        if (fromIndex < 0) {
+            if (fromIndex == -1)
+                return -1;
+            throw new IndexOutOfBoundsException(
+                "fromIndex < -1: " + fromIndex);
+        }
+        int i = indexOf(fromIndex >>> CHUNK_BITS);
+        if (i >= 0) {
+            int v = containers[i].prev(fromIndex & CHUNK_MASK);
+            if (v >= 0)
+                return (keys[i] << CHUNK_BITS) | v;
+            i--;
+        } else {
+            i = -(i + 2);
+        }
+        return (i >= 0) ?
+            (keys[i] << CHUNK_BITS) | containers[i].prev(CHUNK_MASK) : -1;
+    }
+
+    /**
+     * Returns the "logical size" of this set: the index of the highest
+     * set bit plus one.  Returns zero if the set contains no set bits.
+     *
+     * @return the logical size of this set
+     */
+    public int length() {
+        int n = size;
+        return (n == 0) ? 0 :
+            ((keys[n - 1] << CHUNK_BITS) | containers[n - 1].prev(CHUNK_MASK)) + 1;
+    }
+
+    /**
+     * Returns true if this set contains no bits that are set
+     * to {@code true}.
+     *
+     * @return boolean indicating whether this set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of bits set to {@code true} in this set.  This
+     * takes time proportional to the number of containers.
+     *
+     * @return the number of bits set to {@code true} in this set
+     */
+    public int cardinality() {
+        int sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += containers[i].card;
+        return sum;
+    }
+
+    /**
+     * Returns the number of bits set to {@code true} at indices less than
+     * or equal to the specified index.
+     *
+     * @param  bitIndex a bit index
+     * @return the number of set bits at or below {@code bitIndex}
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int rank(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+        int key = bitIndex >>> CHUNK_BITS, r = 0;
+        for (int i = 0; i < size; i++) {
+            int k = keys[i];
+            if (k < key)
+                r += containers[i].card;
+            else {
+                if (k == key)
+                    r += containers[i].rank(bitIndex & CHUNK_MASK);
+                break;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns the index of the set bit of the given rank, counting from
+     * zero; that is, the index {@code i} such that {@code get(i)} is
+     * {@code true} and {@code rank(i) == j + 1}.
+     *
+     * @param  j the zero-based position of the set bit
+     * @return the index of the {@code j}th set bit
+     * @throws IndexOutOfBoundsException if {@code j} is negative or not
+     *         less than {@link #cardinality()}
+     */
+    public int select(int j) {
+        if (j >= 0) {
+            int r = j;
+            for (int i = 0; i < size; i++) {
+                Container c = containers[i];
+                if (r < c.card)
+                    return (keys[i] << CHUNK_BITS) | c.select(r);
+                r -= c.card;
+            }
+        }
+        throw new IndexOutOfBoundsException("j: " + j);
+    }
+
+    /* ---------------- Logical operations -------------- */
+
+    /**
+     * Returns true if the specified set has any bits set to {@code true}
+     * that are also set to {@code true} in this set.
+     *
+     * @param  set set to intersect with
+     * @return boolean indicating whether this set intersects
+     *         the specified set
+     */
+    public boolean intersects(CompressedBitSet set) {
+        for (int i = 0, j = 0; i < size && j < set.size; ) {
+            int c = keys[i] - set.keys[j];
+            if (c < 0)
+                i++;
+            else if (c > 0)
+                j++;
+            else if (and(containers[i++], set.containers[j++]) != null)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Performs a logical <b>AND</b> of this target set with the argument
+     * set.  Only chunks present in both sets are examined.
+     *
+     * @param set a compressed bit set
+     */
+    public void and(CompressedBitSet set) {
+        if (this == set)
+            return;
+        int k = 0;
+        for (int i = 0, j = 0; i < size && j < set.size; ) {
+            int c = keys[i] - set.keys[j];
+            if (c < 0)
+                i++;
+            else if (c > 0)
+                j++;
+            else {
+                Container r = and(containers[i], set.containers[j]);
+                if (r != null) {
+                    keys[k] = keys[i];
+                    containers[k++] = r;
+                }
+                i++;
+                j++;
+            }
+        }
+        Arrays.fill(containers, k, size, null);
+        size = k;
+    }
+
+    /**
+     * Clears all of the bits in this set whose corresponding bit is set
+     * in the specified set.
+     *
+     * @param set the set with which to mask this set
+     */
+    public void andNot(CompressedBitSet set) {
+        int k = 0, i = 0;
+        for (int j = 0; i < size && j < set.size; ) {
+            int c = keys[i] - set.keys[j];
+            if (c < 0) {
+                keys[k] = keys[i];
+                containers[k++] = containers[i++];
+            } else if (c > 0) {
+                j++;
+            } else {
+                Container r = andNot(containers[i], set.containers[j]);
+                if (r != null) {
+                    keys[k] = keys[i];
+                    containers[k++] = r;
+                }
+                i++;
+                j++;
+            }
+        }
+        for (; i < size; i++) {
+            keys[k] = keys[i];
+            containers[k++] = containers[i];
+        }
+        Arrays.fill(containers, k, size, null);
+        size = k;
+    }
+
+    /**
+     * Performs a logical <b>OR</b> of this set with the set argument.
+     *
+     * @param set a compressed bit set
+     */
+    public void or(CompressedBitSet set) {
+        if (this != set)
+            merge(set, false);
+    }
+
+    /**
+     * Performs a logical <b>XOR</b> of this set with the set argument.
+     *
+     * @param set a compressed bit set
+     */
+    public void xor(CompressedBitSet set) {
+        if (this == set)
+            clear();
+        else
+            merge(set, true);
+    }
+
+    /**
+     * Replaces the containers by the union or symmetric difference of
+     * this set's and the given set's.
+     */
+    private void merge(CompressedBitSet set, boolean exclusive) {
+        int m = size, n = set.size, k = 0, i = 0, j = 0;
+        char[] ks = new char[m + n];
+        Container[] cs = new Container[m + n];
+        while (i < m && j < n) {
+            int c = keys[i] - set.keys[j];
+            if (c < 0) {
+                ks[k] = keys[i];
+                cs[k++] = containers[i++];
+            } else if (c > 0) {
+                ks[k] = set.keys[j];
+                cs[k++] = set.containers[j++].copy();
+            } else {
+                Container r = exclusive
+                    ? xor(containers[i], set.containers[j])
+                    : or(containers[i], set.containers[j]);
+                if (r != null) {
+                    ks[k] = keys[i];
+                    cs[k++] = r;
+                }
+                i++;
+                j++;
+            }
+        }
+        for (; i < m; i++) {
+            ks[k] = keys[i];
+            cs[k++] = containers[i];
+        }
+        for (; j < n; j++) {
+            ks[k] = set.keys[j];
+            cs[k++] = set.containers[j].copy();
+        }
+        keys = ks;
+        containers = cs;
+        size = k;
+    }
+
+    /**
+     * Converts every container to the smallest of its array, bitmap and
+     * run forms.  This is worthwhile after many single-bit updates.
+     */
+    public void compact() {
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            Container b = best(c.copyOfBits());
+            if (b.type() != c.type())
+                containers[i] = b;
+        }
+        if (keys.length > size) {
+            keys = Arrays.copyOf(keys, Math.max(4, size));
+            containers = Arrays.copyOf(containers, Math.max(4, size));
+        }
+    }
+
+    /* ---------------- Conversion -------------- */
+
+    /**
+     * Returns a new compressed bit set containing all the bits in the
+     * given bit set.
+     *
+     * @param bs a bit set
+     * @return a {@code CompressedBitSet} with the same bits set
+     */
+    public static CompressedBitSet valueOf(BitSet bs) {
+        return valueOf(bs.toLongArray());
+    }
+
+    /**
+     * Returns a new compressed bit set containing all the bits in the
+     * given long array, in the little-endian layout used by
+     * {@link BitSet#valueOf(long[])}.
+     *
+     * @param longs a long array containing a little-endian representation
+     *        of a sequence of bits to be used as the initial bits of the
+     *        new set
+     * @return a {@code CompressedBitSet} containing all the bits in the
+     *         long array
+     */
+    public static CompressedBitSet valueOf(long[] longs) {
+        int n = (longs.length + CHUNK_WORDS - 1) / CHUNK_WORDS;
+        n = Math.min(n, 1 << (31 - CHUNK_BITS));
+        char[] ks = new char[Math.max(4, n)];
+        Container[] cs = new Container[ks.length];
+        int k = 0;
+        for (int key = 0; key < n; key++) {
+            int off = key * CHUNK_WORDS;
+            int len = Math.min(CHUNK_WORDS, longs.length - off);
+            long any = 0;
+            for (int i = 0; i < len; i++)
+                any |= longs[off + i];
+            if (any != 0) {
+                Container c = best(Arrays.copyOfRange(longs, off, off + CHUNK_WORDS));
+                ks[k] = (char) key;
+                cs[k++] = c;
+            }
+        }
+        return new CompressedBitSet(ks, cs, k);
+    }
+
+    /**
+     * Returns a new {@code BitSet} containing all the bits in this set.
+     *
+     * @return a {@code BitSet} with the same bits set
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(toLongArray());
+    }
+
+    /**
+     * Returns a new long array containing all the bits in this set, in
+     * the little-endian layout used by {@link BitSet#toLongArray()}.
+     *
+     * @return a long array containing a little-endian representation
+     *         of all the bits in this set
+     */
+    public long[] toLongArray() {
+        if (size == 0)
+            return new long[0];
+        long[] w = new long[(previousSetBit(Integer.MAX_VALUE) >>> 6) + 1];
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            int off = keys[i] * CHUNK_WORDS;
+            if (c instanceof BitmapContainer)
+                System.arraycopy(((BitmapContainer) c).words, 0, w, off,
+                                 Math.min(CHUNK_WORDS, w.length - off));
+            else
+                c.orInto(w, off);
+        }
+        return w;
+    }
+
+    /* ---------------- Stream -------------- */
+
+    /**
+     * Returns a stream of indices for which this set contains a bit in
+     * the set state, in order from lowest to highest.  The size of the
+     * stream is the number of bits in the set state, equal to the value
+     * returned by the {@link #cardinality()} method.
+     *
+     * <p>The stream's spliterator splits by chunk, and reports exact
+     * sizes for each part.  The stream binds to this set when the
+     * terminal stream operation commences (specifically, the spliterator
+     * for the stream is <a href="Spliterator.html#binding"><em>late-binding</em></a>).
+     * If the set is modified during that operation then the result is
+     * undefined.
+     *
+     * @return a stream of integers representing set indices
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(new ChunkSpliterator(0, -1, 0, -1),
+                                       false);
+    }
+
+    /**
+     * Spliterator over containers lo (inclusive) to hi (exclusive),
+     * starting at value pos of container lo.
+     */
+    final class ChunkSpliterator implements Spliterator.OfInt {
+        private int lo;
+        private int hi;    // -1 until used
+        private int pos;
+        private int est;   // exact remaining count
+
+        ChunkSpliterator(int lo, int hi, int pos, int est) {
+            this.lo = lo;
+            this.hi = hi;
+            this.pos = pos;
+            this.est = est;
+        }
+
+        private int getFence() {
+            int h;
+            if ((h = hi) < 0) {
+                h = hi = size;
+                est = cardinality();
+            }
+            return h;
+        }
+
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            int h = getFence();
+            for (; lo < h; lo++, pos = 0) {
+                int v = (pos < CHUNK_SIZE) ? containers[lo].next(pos) : -1;
+                if (v >= 0) {
+                    pos = v + 1;
+                    est--;
+                    action.accept((keys[lo] << CHUNK_BITS) | v);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            int h = getFence(), i = lo, p = pos;
+            lo = h;
+            est = 0;
+            if (i < h && p > 0) {
+                Container c = containers[i];
+                int base = keys[i] << CHUNK_BITS;
+                for (int v = (p < CHUNK_SIZE) ? c.next(p) : -1; v >= 0;
+                     v = (v < CHUNK_MASK) ? c.next(v + 1) : -1)
+                    action.accept(base | v);
+                i++;
+            }
+            for (; i < h; i++)
+                containers[i].forEach(keys[i] << CHUNK_BITS, action);
+        }
+
+        public Spliterator.OfInt trySplit() {
+            int h = getFence(), l = lo, mid = (l + h) >>> 1;
+            if (h - l < 2)
+                return null;
+            int n = 0;
+            for (int i = l; i < mid; i++)
+                n += containers[i].card;
+            if (pos > 0)
+                n -= containers[l].rank(pos - 1);
+            ChunkSpliterator prefix = new ChunkSpliterator(l, mid, pos, n);
+            lo = mid;
+            pos = 0;
+            est -= n;
+            return prefix;
+        }
+
+        public long estimateSize() {
+            getFence();
+            return est;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.DISTINCT |
+                Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+
+    /* ---------------- Portable serialized form -------------- */
+
+    /*
+     * The portable form is little-endian:
+     *
+     *   int    cookie
+     *   int    number of containers, n
+     *   n * { char key; char type; int count }
+     *   n * int  offset of container payload from the start
+     *   payloads
+     *
+     * where count is the number of values of an array container, the
+     * number of runs of a run container, and one less than the
+     * cardinality of a bitmap container.  Array payloads are count
+     * chars, run payloads count pairs of (start, length - 1) chars and
+     * bitmap payloads 1024 longs aligned on 8 bytes.  The offsets allow
+     * a reader to locate any container without decoding the others.
+     */
+
+    private static final int HEADER_SIZE = 8;
+    private static final int DESCRIPTOR_SIZE = 12;
+
+    /**
+     * Returns the number of bytes in the portable serialized form of this
+     * set, as written by {@link #writeTo}.
+     *
+     * @return the serialized size in bytes
+     */
+    public int serializedSize() {
+        int pos = HEADER_SIZE + DESCRIPTOR_SIZE * size;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            if (c.type() == BITMAP)
+                pos = (pos + 7) & ~7;
+            pos += c.payloadSize();
+        }
+        return pos;
+    }
+
+    /**
+     * Writes the portable serialized form of this set to the given
+     * buffer, starting at its current position, and advances the
+     * position past it.  The form is little-endian regardless of the
+     * buffer's byte order, and does not depend on its position, so it
+     * may be stored at any position of a file.  Bitmap containers are
+     * aligned on 8 bytes relative to the start of the form.
+     *
+     * @param bb the buffer to write to
+     * @throws java.nio.BufferOverflowException if there are fewer than
+     *         {@link #serializedSize()} bytes remaining in the buffer
+     * @throws java.nio.ReadOnlyBufferException if the buffer is read-only
+     */
+    public void writeTo(ByteBuffer bb) {
+        int total = serializedSize();
+        if (bb.remaining() < total)
+            throw new java.nio.BufferOverflowException();
+        ByteBuffer b = bb.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int n = size;
+        b.putInt(SERIAL_COOKIE).putInt(n);
+        for (int i = 0; i < n; i++) {
+            Container c = containers[i];
+            b.putChar(keys[i]).putChar((char) c.type()).putInt(c.serialCount());
+        }
+        int pos = HEADER_SIZE + DESCRIPTOR_SIZE * n;
+        for (int i = 0; i < n; i++) {
+            Container c = containers[i];
+            if (c.type() == BITMAP)
+                pos = (pos + 7) & ~7;
+            b.putInt(pos);
+            pos += c.payloadSize();
+        }
+        for (int i = 0; i < n; i++) {
+            b.position(b.getInt(HEADER_SIZE + 8 * n + 4 * i));
+            containers[i].writePayload(b);
+        }
+        bb.position(bb.position() + total);
+    }
+
+    /**
+     * Returns a new byte array containing the portable serialized form of
+     * this set.
+     *
+     * @return a byte array as written by {@link #writeTo}
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[serializedSize()];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Returns a new compressed bit set read from the portable serialized
+     * form starting at the position of the given buffer, such as a
+     * {@link java.nio.MappedByteBuffer}.  Container payloads are read with
+     * bulk transfers.  The byte buffer is not modified by this method,
+     * and no reference to it is retained.
+     *
+     * @param bb a byte buffer containing a form written by {@link #writeTo}
+     * @return a {@code CompressedBitSet} with the bits of the serialized form
+     * @throws IllegalArgumentException if the buffer does not contain a
+     *         valid serialized form
+     */
+    public static CompressedBitSet valueOf(ByteBuffer bb) {
+        ByteBuffer b = bb.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (b.getInt() != SERIAL_COOKIE)
+                throw new IllegalArgumentException("Not a compressed bit set");
+            int n = b.getInt();
+            if (n < 0 || n > (1 << (31 - CHUNK_BITS)))
+                throw new IllegalArgumentException("Illegal size: " + n);
+            char[] ks = new char[Math.max(4, n)];
+            Container[] cs = new Container[ks.length];
+            int prevKey = -1;
+            for (int i = 0; i < n; i++) {
+                int d = HEADER_SIZE + 8 * i;
+                int key = b.getChar(d), type = b.getChar(d + 2);
+                int count = b.getInt(d + 4);
+                int off = b.getInt(HEADER_SIZE + 8 * n + 4 * i);
+                if (key <= prevKey || key >= (1 << (31 - CHUNK_BITS)) || off < 0)
+                    throw new IllegalArgumentException("Invalid container " + i);
+                prevKey = key;
+                ks[i] = (char) key;
+                cs[i] = readContainer(b.position(off), type, count);
+            }
+            return new CompressedBitSet(ks, cs, n);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated compressed bit set", e);
+        }
+    }
+
+    /**
+     * Returns a new compressed bit set read from the portable serialized
+     * form in the given byte array.
+     *
+     * @param bytes a byte array containing a form written by {@link #writeTo}
+     * @return a {@code CompressedBitSet} with the bits of the serialized form
+     * @throws IllegalArgumentException if the array does not contain a
+     *         valid serialized form
+     */
+    public static CompressedBitSet valueOf(byte[] bytes) {
+        return valueOf(ByteBuffer.wrap(bytes));
+    }
+
+    private static Container readContainer(ByteBuffer b, int type, int count) {
+        switch (type) {
+        case ARRAY: {
+            if (count < 1 || count > ARRAY_MAX)
+                break;
+            char[] a = new char[count];
+            b.asCharBuffer().get(a);
+            for (int i = 1; i < count; i++) {
+                if (a[i - 1] >= a[i])
+                    throw new IllegalArgumentException("Unsorted values");
+            }
+            return new ArrayContainer(a, count);
+        }
+        case BITMAP: {
+            long[] w = new long[CHUNK_WORDS];
+            b.asLongBuffer().get(w);
+            int card = 0;
+            for (long x : w)
+                card += Long.bitCount(x);
+            if (card != count + 1 || card <= ARRAY_MAX)
+                break;
+            return new BitmapContainer(w, card);
+        }
+        case RUNS: {
+            if (count < 1 || count > CHUNK_SIZE / 2)
+                break;
+            char[] r = new char[count << 1];
+            b.asCharBuffer().get(r);
+            int card = 0, next = 0;
+            for (int i = 0; i < count; i++) {
+                int s = r[i << 1], e = s + r[(i << 1) + 1];
+                if (s < next || e > CHUNK_MASK)
+                    throw new IllegalArgumentException("Invalid runs");
+                card += e - s + 1;
+                next = e + 2;
+            }
+            return new RunContainer(r, count, card);
+        }
+        }
+        throw new IllegalArgumentException("Invalid container");
+    }
+
+    /* ---------------- Object methods -------------- */
+
+    /**
+     * Returns the hash code value for this set.  The hash code is the
+     * same as that of a {@link BitSet} with the same bits set.
+     *
+     * @return the hash code value for this set
+     */
+    public int hashCode() {
+        long h = 1234;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            long base = (long) keys[i] * CHUNK_WORDS + 1;
+            if (c instanceof ArrayContainer) {
+                char[] a = ((ArrayContainer) c).values;
+                for (int j = 0, n = c.card; j < n; ) {
+                    int u = a[j] >>> 6;
+                    long word = 0;
+                    do {
+                        word |= 1L << a[j];
+                    } while (++j < n && (a[j] >>> 6) == u);
+                    h ^= word * (base + u);
+                }
+            } else {
+                long[] w = c.bits();
+                for (int u = 0; u < CHUNK_WORDS; u++) {
+                    if (w[u] != 0)
+                        h ^= w[u] * (base + u);
+                }
+            }
+        }
+        return (int)((h >> 32) ^ h);
+    }
+
+    /**
+     * Compares this object against the specified object.  The result is
+     * {@code true} if and only if the argument is not {@code null} and is
+     * a {@code CompressedBitSet} object that has exactly the same set of
+     * bits set to {@code true} as this set, whatever the form of their
+     * containers.
+     *
+     * @param  obj the object to compare with
+     * @return {@code true} if the objects are the same;
+     *         {@code false} otherwise
+     */
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CompressedBitSet))
+            return false;
+        if (this == obj)
+            return true;
+
+        CompressedBitSet set = (CompressedBitSet) obj;
+        if (size != set.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != set.keys[i] ||
+                !sameBits(containers[i], set.containers[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cloning this {@code CompressedBitSet} produces a new
+     * {@code CompressedBitSet} that is equal to it.
+     *
+     * @return a clone of this set
+     */
+    public Object clone() {
+        try {
+            CompressedBitSet result = (CompressedBitSet) super.clone();
+            result.keys = keys.clone();
+            result.containers = new Container[keys.length];
+            for (int i = 0; i < size; i++)
+                result.containers[i] = containers[i].copy();
+            return result;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Returns a string representation of this set, in the same format as
+     * {@link BitSet#toString()}.
+     *
+     * @return a string representation of this set
+     */
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        for (int i = 0; i < size; i++)
+            containers[i].forEach(keys[i] << CHUNK_BITS,
+                                  v -> sj.add(Integer.toString(v)));
+        return sj.toString();
+    }
+
+    /**
+     * Save the state of the {@code CompressedBitSet} instance to a stream
+     * (i.e., serialize it).
+     *
+     * @serialData The length of the portable serialized form (int),
+     *             followed by its bytes, as returned by
+     *             {@link #toByteArray()}.
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        byte[] bytes = toByteArray();
+        s.writeInt(bytes.length);
+        s.write(bytes);
+    }
+
+    /**
+     * Reconstitute the {@code CompressedBitSet} instance from a stream
+     * (i.e., deserialize it).
+     */
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int len = s.readInt();
+        if (len < HEADER_SIZE)
+            throw new InvalidObjectException("Illegal length: " + len);
+        byte[] bytes = new byte[len];
+        s.readFully(bytes);
+        try {
+            CompressedBitSet set = valueOf(bytes);
+            keys = set.keys;
+            containers = set.containers;
+            size = set.size;
+        } catch (IllegalArgumentException e) {
+            InvalidObjectException ioe = new InvalidObjectException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+}
@@ -0,0 +1,751 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A set of {@code int} values backed by an open-addressing hash table.
+ * Unlike a {@code HashSet<Integer>}, elements are stored unboxed in a
+ * single flat {@code int} array, so the set allocates no per-element
+ * objects and membership tests touch at most a few adjacent array slots.
+ *
+ * <p>Collisions are resolved by linear probing, and removals compact the
+ * probe sequence in place (backward-shift deletion), so the table never
+ * accumulates deleted markers.  All {@code int} values, including zero,
+ * may be added.
+ *
+ * <p>This class offers constant time performance for the basic operations
+ * ({@code add}, {@code remove}, {@code contains} and {@code size}),
+ * assuming the elements are reasonably distributed after hashing.
+ * Iterating over this set requires time proportional to its capacity, so
+ * the load factor should not be set too low if iteration performance is
+ * important.  The iteration order is unspecified and may change when the
+ * set is resized.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a set concurrently, and at least one of the
+ * threads modifies the set, it <i>must</i> be synchronized externally.
+ *
+ * <p>The iterators returned by {@link #iterator} and the spliterators
+ * returned by {@link #spliterator} are <i>fail-fast</i> on a best-effort
+ * basis: if the set is structurally modified after they are created, in
+ * any way except through the iterator's own {@code remove} method, they
+ * throw {@link ConcurrentModificationException}.
+ *
+ * @see HashSet
+ * @see IntObjectMap
+ * @since 12
+ */
+public class IntHashSet implements Cloneable {
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity of the table, a power of two.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.  Open
+     * addressing degrades faster than chaining as the table fills, so
+     * this is lower than {@link HashMap}'s default.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * The value marking an empty slot.  The element equal to it is kept
+     * out of the table, in {@link #hasFreeKey}.
+     */
+    static final int FREE = 0;
+
+    /**
+     * The table, length always a power of two.
+     */
+    transient int[] keys;
+
+    /**
+     * Whether the set contains {@link #FREE}.
+     */
+    transient boolean hasFreeKey;
+
+    /**
+     * The number of elements, including the free key if present.
+     */
+    transient int size;
+
+    /**
+     * The number of times this set has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * The maximum number of table slots in use (excluding the free key)
+     * before the table is resized.
+     */
+    int threshold;
+
+    /**
+     * The load factor of the table.
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty set with the default initial capacity (16) and
+     * the default load factor (0.5).
+     */
+    public IntHashSet() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty set able to hold the specified number of
+     * elements without resizing, with the default load factor (0.5).
+     *
+     * @param expectedSize the number of elements expected to be added
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public IntHashSet(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty set able to hold the specified number of
+     * elements without resizing, with the specified load factor.
+     *
+     * @param expectedSize the number of elements expected to be added
+     * @param loadFactor the fraction of the table that may be occupied
+     *        before it is resized, strictly between zero and one
+     * @throws IllegalArgumentException if the expected size is negative
+     *         or the load factor is not strictly between zero and one
+     */
+    public IntHashSet(int expectedSize, float loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal expected size: " +
+                                               expectedSize);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(expectedSize, loadFactor));
+    }
+
+    /**
+     * Constructs a set containing the distinct values of the specified
+     * array.
+     *
+     * @param values the values to add
+     * @throws NullPointerException if the array is null
+     */
+    public IntHashSet(int[] values) {
+        this(values.length, DEFAULT_LOAD_FACTOR);
+        for (int v : values)
+            add(v);
+    }
+
+    /* ---------------- Static utilities -------------- */
+
+    /**
+     * Spreads the bits of a key.  Multiplying by the golden ratio moves
+     * entropy into the high bits, which are then folded down so that
+     * sequential keys do not form long probe runs under a low-bits mask.
+     */
+    static int mix(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns a power of two table size holding {@code expected} entries
+     * at the given load factor.
+     */
+    static int tableSizeFor(int expected, float loadFactor) {
+        long n = Math.max(2L, (long) Math.ceil(expected / (double) loadFactor));
+        if (n >= MAXIMUM_CAPACITY)
+            return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit((int) n - 1) << 1;
+    }
+
+    /**
+     * Returns the resize threshold for a table of the given capacity,
+     * always leaving at least one free slot to terminate probing.
+     */
+    static int thresholdFor(int capacity, float loadFactor) {
+        return Math.min(capacity - 1, Math.max(1, (int) (capacity * loadFactor)));
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return the number of elements in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this set contains no elements.
+     *
+     * @return {@code true} if this set contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this set contains the specified value.
+     *
+     * @param value the value whose presence is to be tested
+     * @return {@code true} if this set contains the specified value
+     */
+    public boolean contains(int value) {
+        if (value == FREE)
+            return hasFreeKey;
+        int[] tab = keys;
+        int mask = tab.length - 1;
+        for (int i = mix(value) & mask;; i = (i + 1) & mask) {
+            int k = tab[i];
+            if (k == value)
+                return true;
+            if (k == FREE)
+                return false;
+        }
+    }
+
+    /**
+     * Adds the specified value to this set if it is not already present.
+     *
+     * @param value the value to add
+     * @return {@code true} if this set did not already contain the value
+     * @throws IllegalStateException if the set has reached its maximum
+     *         capacity
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (hasFreeKey)
+                return false;
+            hasFreeKey = true;
+            ++modCount;
+            ++size;
+            return true;
+        }
+        int[] tab = keys;
+        int mask = tab.length - 1;
+        int i = mix(value) & mask;
+        for (int k; (k = tab[i]) != FREE; i = (i + 1) & mask) {
+            if (k == value)
+                return false;
+        }
+        if (size - (hasFreeKey ? 1 : 0) >= threshold) {
+            resize();
+            tab = keys;
+            mask = tab.length - 1;
+            i = mix(value) & mask;
+            while (tab[i] != FREE)
+                i = (i + 1) & mask;
+        }
+        tab[i] = value;
+        ++size;
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * Adds all of the specified values to this set.
+     *
+     * @param values the values to add
+     * @return {@code true} if this set changed as a result of the call
+     * @throws NullPointerException if the array is null
+     */
+    public boolean addAll(int... values) {
+        ensureCapacity(size + values.length);
+        boolean modified = false;
+        for (int v : values)
+            modified |= add(v);
+        return modified;
+    }
+
+    /**
+     * Removes the specified value from this set if it is present.
+     *
+     * @param value the value to remove
+     * @return {@code true} if this set contained the value
+     */
+    public boolean remove(int value) {
+        if (value == FREE) {
+            if (!hasFreeKey)
+                return false;
+            hasFreeKey = false;
+            ++modCount;
+            --size;
+            return true;
+        }
+        int[] tab = keys;
+        int mask = tab.length - 1;
+        for (int i = mix(value) & mask;; i = (i + 1) & mask) {
+            int k = tab[i];
+            if (k == FREE)
+                return false;
+            if (k == value) {
+                removeSlot(i);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes all of the elements of this set that satisfy the given
+     * predicate.
+     *
+     * @param filter a predicate which returns {@code true} for elements
+     *        to be removed
+     * @return {@code true} if any elements were removed
+     * @throws NullPointerException if the specified filter is null
+     */
+    public boolean removeIf(IntPredicate filter) {
+        Objects.requireNonNull(filter);
+        boolean removed = false;
+        for (PrimitiveIterator.OfInt it = iterator(); it.hasNext(); ) {
+            if (filter.test(it.nextInt())) {
+                it.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all of the elements from this set.  The capacity is kept.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            hasFreeKey = false;
+            size = 0;
+            ++modCount;
+        }
+    }
+
+    /**
+     * Grows the table if needed so that it can hold at least the given
+     * number of elements without further resizing.
+     *
+     * @param expectedSize the desired minimum number of elements
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize > threshold) {
+            int n = tableSizeFor(expectedSize, loadFactor);
+            if (n > keys.length)
+                rehash(n);
+        }
+    }
+
+    /**
+     * Performs the given action for each element of this set.
+     *
+     * @param action the action to be performed for each element
+     * @throws NullPointerException if the specified action is null
+     * @throws ConcurrentModificationException if the set is modified by
+     *         the action
+     */
+    public void forEach(IntConsumer action) {
+        Objects.requireNonNull(action);
+        int mc = modCount;
+        if (hasFreeKey)
+            action.accept(FREE);
+        for (int k : keys) {
+            if (k != FREE)
+                action.accept(k);
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Returns an array containing all of the elements of this set, in
+     * no particular order.
+     *
+     * @return an array containing all of the elements of this set
+     */
+    public int[] toArray() {
+        int[] a = new int[size];
+        int n = 0;
+        if (hasFreeKey)
+            a[n++] = FREE;
+        for (int k : keys) {
+            if (k != FREE)
+                a[n++] = k;
+        }
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the elements of this set.  The iterator
+     * supports {@code remove}.
+     *
+     * @return an iterator over the elements of this set
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfInt} over the elements of this set.
+     *
+     * <p>The spliterator reports {@link Spliterator#SIZED},
+     * {@link Spliterator#DISTINCT} and {@link Spliterator#NONNULL}, and
+     * splits by halving the range of table slots it covers.
+     *
+     * @return a spliterator over the elements of this set
+     */
+    public Spliterator.OfInt spliterator() {
+        return new KeySpliterator(this, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a sequential {@code IntStream} with this set as its source.
+     *
+     * @return a sequential {@code IntStream} over the elements of this set
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel {@code IntStream} with this set as its
+     * source.
+     *
+     * @return a possibly parallel {@code IntStream} over the elements of
+     *         this set
+     */
+    public IntStream parallelStream() {
+        return StreamSupport.intStream(spliterator(), true);
+    }
+
+    /**
+     * Returns a shallow copy of this set.
+     *
+     * @return a copy of this set
+     */
+    @Override
+    public IntHashSet clone() {
+        try {
+            IntHashSet s = (IntHashSet) super.clone();
+            s.keys = keys.clone();
+            s.modCount = 0;
+            return s;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Compares the specified object with this set for equality.  Returns
+     * {@code true} if the given object is also an {@code IntHashSet}
+     * containing the same values.
+     *
+     * @param o object to be compared for equality with this set
+     * @return {@code true} if the specified object is equal to this set
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntHashSet))
+            return false;
+        IntHashSet s = (IntHashSet) o;
+        if (s.size != size || s.hasFreeKey != hasFreeKey)
+            return false;
+        for (int k : keys) {
+            if (k != FREE && !s.contains(k))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this set, defined as the sum of
+     * its elements.  This is the same value as {@link Set#hashCode} of a
+     * {@code Set<Integer>} holding the same elements.
+     *
+     * @return the hash code value for this set
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int k : keys)
+            h += k;
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this set, in the same format as
+     * {@link AbstractCollection#toString}.
+     *
+     * @return a string representation of this set
+     */
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "[", "]");
+        forEach(k -> sj.add(Integer.toString(k)));
+        return sj.toString();
+    }
+
+    /* ---------------- Internals -------------- */
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        threshold = thresholdFor(capacity, loadFactor);
+    }
+
+    /**
+     * Doubles the table size.
+     */
+    final void resize() {
+        int n = keys.length;
+        if (n >= MAXIMUM_CAPACITY)
+            throw new IllegalStateException("Set is full");
+        rehash(n << 1);
+    }
+
+    /**
+     * Moves all elements into a table of the given capacity.
+     */
+    final void rehash(int newCapacity) {
+        int[] oldTab = keys;
+        allocate(newCapacity);
+        int[] tab = keys;
+        int mask = tab.length - 1;
+        for (int k : oldTab) {
+            if (k != FREE) {
+                int i = mix(k) & mask;
+                while (tab[i] != FREE)
+                    i = (i + 1) & mask;
+                tab[i] = k;
+            }
+        }
+    }
+
+    /**
+     * Empties the given slot and shifts later members of its probe run
+     * back so that every remaining key stays reachable from its home
+     * slot.
+     */
+    final void removeSlot(int gap) {
+        int[] tab = keys;
+        int mask = tab.length - 1;
+        for (int i = (gap + 1) & mask;; i = (i + 1) & mask) {
+            int k = tab[i];
+            if (k == FREE)
+                break;
+            int home = mix(k) & mask;
+            // move k into the gap unless its home lies cyclically in (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                tab[gap] = k;
+                gap = i;
+            }
+        }
+        tab[gap] = FREE;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Iterator visiting table slots downwards, starting just below a free
+     * slot, followed by the free key.  Since every probe run removed from
+     * by {@code remove} ends at a slot already visited, backward shifts
+     * only ever move keys within the visited region.
+     */
+    final class Itr implements PrimitiveIterator.OfInt {
+        int index;          // next slot to examine
+        int remaining;      // slots left to examine
+        int lastSlot = -1;  // slot of last returned, or -2 for free key
+        boolean freePending = hasFreeKey;
+        int expectedModCount = modCount;
+
+        Itr() {
+            int[] tab = keys;
+            int mask = tab.length - 1;
+            int start = 0;
+            while (tab[start] != FREE)
+                ++start;
+            index = (start - 1) & mask;
+            remaining = mask;
+            advance();
+        }
+
+        private void advance() {
+            int[] tab = keys;
+            int mask = tab.length - 1;
+            while (remaining > 0 && tab[index] == FREE) {
+                index = (index - 1) & mask;
+                --remaining;
+            }
+        }
+
+        public boolean hasNext() {
+            return remaining > 0 || freePending;
+        }
+
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining > 0) {
+                int i = index;
+                lastSlot = i;
+                index = (i - 1) & (keys.length - 1);
+                --remaining;
+                int k = keys[i];
+                advance();
+                return k;
+            }
+            if (freePending) {
+                freePending = false;
+                lastSlot = -2;
+                return FREE;
+            }
+            throw new NoSuchElementException();
+        }
+
+        public void remove() {
+            if (lastSlot == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastSlot == -2) {
+                hasFreeKey = false;
+                --size;
+                ++modCount;
+            } else {
+                removeSlot(lastSlot);
+            }
+            lastSlot = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Spliterator over a range of table slots.  The slot index equal to
+     * the table length stands for the free key.
+     */
+    static final class KeySpliterator implements Spliterator.OfInt {
+        final IntHashSet set;
+        int index;              // current index, modified on advance/split
+        int fence;              // one past last index, or -1 until used
+        int est;                // size estimate
+        int expectedModCount;   // for comodification checks
+
+        KeySpliterator(IntHashSet set, int origin, int fence, int est,
+                       int expectedModCount) {
+            this.set = set;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() { // initialize fence and size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                IntHashSet s = set;
+                est = s.size;
+                expectedModCount = s.modCount;
+                hi = fence = s.keys.length + 1;
+            }
+            return hi;
+        }
+
+        public KeySpliterator trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new KeySpliterator(set, lo, index = mid, est >>>= 1,
+                                   expectedModCount);
+        }
+
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int[] tab = set.keys;
+            while (index < hi) {
+                int i = index++;
+                if (i == tab.length) {
+                    if (set.hasFreeKey) {
+                        action.accept(FREE);
+                        checkForComodification();
+                        return true;
+                    }
+                } else {
+                    int k = tab[i];
+                    if (k != FREE) {
+                        action.accept(k);
+                        checkForComodification();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int[] tab = set.keys;
+            int i = index;
+            index = hi;
+            for (int end = Math.min(hi, tab.length); i < end; ++i) {
+                int k = tab[i];
+                if (k != FREE)
+                    action.accept(k);
+            }
+            if (i < hi && set.hasFreeKey)
+                action.accept(FREE);
+            checkForComodification();
+        }
+
+        private void checkForComodification() {
+            if (set.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            getFence(); // force init
+            return (long) est;
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == set.size ? Spliterator.SIZED : 0) |
+                Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+}
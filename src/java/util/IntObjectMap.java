@@ -0,0 +1,960 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A map from {@code int} keys to object values backed by an
+ * open-addressing hash table.  Unlike a {@code HashMap<Integer,V>}, keys
+ * are stored unboxed and the map allocates no per-entry node objects:
+ * keys and values live in two parallel flat arrays.
+ *
+ * <p>Collisions are resolved by linear probing, and removals compact the
+ * probe sequence in place (backward-shift deletion).  All {@code int}
+ * keys, including zero, are permitted; {@code null} values are permitted,
+ * so as with {@link HashMap} a {@code null} return from {@link #get} does
+ * not by itself indicate that the key is absent.
+ *
+ * <p>The iteration order is unspecified and may change when the map is
+ * resized.  Iteration requires time proportional to the capacity of the
+ * map.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <i>must</i> be synchronized
+ * externally.  The iterators and spliterators returned by this class are
+ * <i>fail-fast</i> on a best-effort basis.
+ *
+ * @param <V> the type of mapped values
+ *
+ * @see HashMap
+ * @see IntHashSet
+ * @see LongLongMap
+ * @since 12
+ */
+public class IntObjectMap<V> implements Cloneable {
+
+    /**
+     * An operation accepting an {@code int} key and its mapped value.
+     *
+     * @param <V> the type of mapped values
+     * @since 12
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * Performs this operation on the given entry.
+         *
+         * @param key the key
+         * @param value the value mapped to the key
+         */
+        void accept(int key, V value);
+    }
+
+    static final int DEFAULT_INITIAL_CAPACITY = IntHashSet.DEFAULT_INITIAL_CAPACITY;
+    static final int MAXIMUM_CAPACITY = IntHashSet.MAXIMUM_CAPACITY;
+    static final float DEFAULT_LOAD_FACTOR = IntHashSet.DEFAULT_LOAD_FACTOR;
+
+    /**
+     * The key marking an empty slot.  Its mapping, if any, is kept in
+     * {@link #freeValue}.
+     */
+    static final int FREE = 0;
+
+    /**
+     * The key table, length always a power of two.
+     */
+    transient int[] keys;
+
+    /**
+     * The value table, parallel to {@link #keys}.
+     */
+    transient Object[] vals;
+
+    /**
+     * Whether the map contains a mapping for {@link #FREE}.
+     */
+    transient boolean hasFreeKey;
+
+    /**
+     * The value mapped to {@link #FREE}, if {@link #hasFreeKey}.
+     */
+    transient Object freeValue;
+
+    /**
+     * The number of mappings, including the free key if present.
+     */
+    transient int size;
+
+    /**
+     * The number of times this map has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * The maximum number of table slots in use (excluding the free key)
+     * before the table is resized.
+     */
+    int threshold;
+
+    /**
+     * The load factor of the table.
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty map with the default initial capacity (16) and
+     * the default load factor (0.5).
+     */
+    public IntObjectMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, with the default load factor (0.5).
+     *
+     * @param expectedSize the number of mappings expected to be added
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public IntObjectMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, with the specified load factor.
+     *
+     * @param expectedSize the number of mappings expected to be added
+     * @param loadFactor the fraction of the table that may be occupied
+     *        before it is resized, strictly between zero and one
+     * @throws IllegalArgumentException if the expected size is negative
+     *         or the load factor is not strictly between zero and one
+     */
+    public IntObjectMap(int expectedSize, float loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal expected size: " +
+                                               expectedSize);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(IntHashSet.tableSizeFor(expectedSize, loadFactor));
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key the key whose presence is to be tested
+     * @return {@code true} if this map contains a mapping for the key
+     */
+    public boolean containsKey(int key) {
+        return key == FREE ? hasFreeKey : slotOf(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * capacity of the map.
+     *
+     * @param value value whose presence is to be tested
+     * @return {@code true} if this map maps one or more keys to the value
+     */
+    public boolean containsValue(Object value) {
+        if (hasFreeKey && Objects.equals(value, freeValue))
+            return true;
+        int[] ks = keys;
+        Object[] vs = vals;
+        for (int i = 0; i < ks.length; ++i) {
+            if (ks[i] != FREE && Objects.equals(value, vs[i]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value mapped to the key, or {@code null} if none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == FREE)
+            return (V) freeValue;
+        int i = slotOf(key);
+        return i < 0 ? null : (V) vals[i];
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the default mapping of the key
+     * @return the value mapped to the key, or {@code defaultValue} if none
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(int key, V defaultValue) {
+        if (key == FREE)
+            return hasFreeKey ? (V) freeValue : defaultValue;
+        int i = slotOf(key);
+        return i < 0 ? defaultValue : (V) vals[i];
+    }
+
+    /**
+     * Associates the specified value with the specified key, replacing
+     * any previous mapping.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws IllegalStateException if the map has reached its maximum
+     *         capacity
+     */
+    public V put(int key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * If the specified key is not already associated with a value (or is
+     * mapped to {@code null}) associates it with the given value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null}
+     *         if there was no mapping for the key
+     * @throws IllegalStateException if the map has reached its maximum
+     *         capacity
+     */
+    public V putIfAbsent(int key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                return null;
+            V old = (V) freeValue;
+            removeFreeKey();
+            return old;
+        }
+        int i = slotOf(key);
+        if (i < 0)
+            return null;
+        V old = (V) vals[i];
+        removeSlot(i);
+        return old;
+    }
+
+    /**
+     * Removes the entry for the specified key only if it is currently
+     * mapped to the specified value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return {@code true} if the value was removed
+     */
+    public boolean remove(int key, Object value) {
+        if (key == FREE) {
+            if (!hasFreeKey || !Objects.equals(value, freeValue))
+                return false;
+            removeFreeKey();
+            return true;
+        }
+        int i = slotOf(key);
+        if (i < 0 || !Objects.equals(value, vals[i]))
+            return false;
+        removeSlot(i);
+        return true;
+    }
+
+    /**
+     * Replaces the entry for the specified key only if it is currently
+     * mapped to some value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null}
+     *         if there was no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V replace(int key, V value) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                return null;
+            V old = (V) freeValue;
+            freeValue = value;
+            return old;
+        }
+        int i = slotOf(key);
+        if (i < 0)
+            return null;
+        V old = (V) vals[i];
+        vals[i] = value;
+        return old;
+    }
+
+    /**
+     * If the specified key is not already associated with a value (or is
+     * mapped to {@code null}), attempts to compute its value using the
+     * given mapping function and enters it into this map unless
+     * {@code null}.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the mapping function is null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         mapping function modified this map
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key,
+                             IntFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V v = get(key);
+        if (v != null)
+            return v;
+        int mc = modCount;
+        v = mappingFunction.apply(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (v != null)
+            putVal(key, v, false);
+        return v;
+    }
+
+    /**
+     * If the specified key is not already associated with a value or is
+     * associated with null, associates it with the given non-null value.
+     * Otherwise, replaces the associated value with the results of the
+     * given remapping function, or removes if the result is {@code null}.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the non-null value to be merged with the existing value
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key, or null if
+     *         no value is associated with the key
+     * @throws NullPointerException if the value or remapping function is
+     *         null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         remapping function modified this map
+     */
+    @SuppressWarnings("unchecked")
+    public V merge(int key, V value,
+                   BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        V old = get(key);
+        if (old == null) {
+            putVal(key, value, false);
+            return value;
+        }
+        int mc = modCount;
+        V v = remappingFunction.apply(old, value);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (v == null)
+            remove(key);
+        else
+            putVal(key, v, false);
+        return v;
+    }
+
+    /**
+     * Removes all of the mappings from this map.  The capacity is kept.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(vals, null);
+            hasFreeKey = false;
+            freeValue = null;
+            size = 0;
+            ++modCount;
+        }
+    }
+
+    /**
+     * Grows the table if needed so that it can hold at least the given
+     * number of mappings without further resizing.
+     *
+     * @param expectedSize the desired minimum number of mappings
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize > threshold) {
+            int n = IntHashSet.tableSizeFor(expectedSize, loadFactor);
+            if (n > keys.length)
+                rehash(n);
+        }
+    }
+
+    /**
+     * Performs the given action for each entry in this map.
+     *
+     * @param action the action to be performed for each entry
+     * @throws NullPointerException if the specified action is null
+     * @throws ConcurrentModificationException if the map is structurally
+     *         modified by the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        int mc = modCount;
+        if (hasFreeKey)
+            action.accept(FREE, (V) freeValue);
+        int[] ks = keys;
+        Object[] vs = vals;
+        for (int i = 0; i < ks.length; ++i) {
+            int k = ks[i];
+            if (k != FREE)
+                action.accept(k, (V) vs[i]);
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Returns an iterator over the keys of this map.  The iterator
+     * supports {@code remove}, which removes the current mapping.
+     *
+     * @return an iterator over the keys of this map
+     */
+    public PrimitiveIterator.OfInt keyIterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfInt} over the keys of this map.  The
+     * spliterator reports {@link Spliterator#SIZED},
+     * {@link Spliterator#DISTINCT} and {@link Spliterator#NONNULL}.
+     *
+     * @return a spliterator over the keys of this map
+     */
+    public Spliterator.OfInt keySpliterator() {
+        return new KeySpliterator<>(this, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the values of this map.  The
+     * spliterator reports {@link Spliterator#SIZED}.
+     *
+     * @return a spliterator over the values of this map
+     */
+    public Spliterator<V> valueSpliterator() {
+        return new ValueSpliterator<>(this, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a sequential {@code IntStream} over the keys of this map.
+     *
+     * @return a sequential {@code IntStream} over the keys of this map
+     */
+    public IntStream keyStream() {
+        return StreamSupport.intStream(keySpliterator(), false);
+    }
+
+    /**
+     * Returns a sequential {@code Stream} over the values of this map.
+     *
+     * @return a sequential {@code Stream} over the values of this map
+     */
+    public Stream<V> valueStream() {
+        return StreamSupport.stream(valueSpliterator(), false);
+    }
+
+    /**
+     * Returns a shallow copy of this map: the keys and values themselves
+     * are not cloned.
+     *
+     * @return a copy of this map
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public IntObjectMap<V> clone() {
+        try {
+            IntObjectMap<V> m = (IntObjectMap<V>) super.clone();
+            m.keys = keys.clone();
+            m.vals = vals.clone();
+            m.modCount = 0;
+            return m;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Compares the specified object with this map for equality.  Returns
+     * {@code true} if the given object is also an {@code IntObjectMap}
+     * with the same mappings, values being compared with
+     * {@link Object#equals}.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntObjectMap))
+            return false;
+        IntObjectMap<?> m = (IntObjectMap<?>) o;
+        if (m.size != size || m.hasFreeKey != hasFreeKey)
+            return false;
+        if (hasFreeKey && !Objects.equals(freeValue, m.freeValue))
+            return false;
+        int[] ks = keys;
+        Object[] vs = vals;
+        for (int i = 0; i < ks.length; ++i) {
+            int k = ks[i];
+            if (k != FREE) {
+                int j = m.slotOf(k);
+                if (j < 0 || !Objects.equals(vs[i], m.vals[j]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map.  This is the same value
+     * as {@link Map#hashCode} of a {@code Map<Integer,V>} holding the
+     * same mappings.
+     *
+     * @return the hash code value for this map
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        if (hasFreeKey)
+            h += FREE ^ Objects.hashCode(freeValue);
+        int[] ks = keys;
+        Object[] vs = vals;
+        for (int i = 0; i < ks.length; ++i) {
+            int k = ks[i];
+            if (k != FREE)
+                h += k ^ Objects.hashCode(vs[i]);
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map, in the same format as
+     * {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        forEach((k, v) -> sj.add(k + "=" + (v == this ? "(this Map)" : v)));
+        return sj.toString();
+    }
+
+    /* ---------------- Internals -------------- */
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        vals = new Object[capacity];
+        threshold = IntHashSet.thresholdFor(capacity, loadFactor);
+    }
+
+    /**
+     * Returns the slot holding the given non-free key, or -1 if absent.
+     */
+    final int slotOf(int key) {
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = IntHashSet.mix(key) & mask;; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == key)
+                return i;
+            if (k == FREE)
+                return -1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    final V putVal(int key, V value, boolean onlyIfAbsent) {
+        if (key == FREE) {
+            V old = (V) freeValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+                ++modCount;
+            }
+            if (!onlyIfAbsent || old == null)
+                freeValue = value;
+            return old;
+        }
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        int i = IntHashSet.mix(key) & mask;
+        for (int k; (k = ks[i]) != FREE; i = (i + 1) & mask) {
+            if (k == key) {
+                V old = (V) vals[i];
+                if (!onlyIfAbsent || old == null)
+                    vals[i] = value;
+                return old;
+            }
+        }
+        if (size - (hasFreeKey ? 1 : 0) >= threshold) {
+            resize();
+            ks = keys;
+            mask = ks.length - 1;
+            i = IntHashSet.mix(key) & mask;
+            while (ks[i] != FREE)
+                i = (i + 1) & mask;
+        }
+        ks[i] = key;
+        vals[i] = value;
+        ++size;
+        ++modCount;
+        return null;
+    }
+
+    final void resize() {
+        int n = keys.length;
+        if (n >= MAXIMUM_CAPACITY)
+            throw new IllegalStateException("Map is full");
+        rehash(n << 1);
+    }
+
+    final void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        Object[] oldVals = vals;
+        allocate(newCapacity);
+        int[] ks = keys;
+        Object[] vs = vals;
+        int mask = ks.length - 1;
+        for (int j = 0; j < oldKeys.length; ++j) {
+            int k = oldKeys[j];
+            if (k != FREE) {
+                int i = IntHashSet.mix(k) & mask;
+                while (ks[i] != FREE)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldVals[j];
+            }
+        }
+    }
+
+    final void removeFreeKey() {
+        hasFreeKey = false;
+        freeValue = null;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Empties the given slot, shifting later members of its probe run
+     * back as in {@link IntHashSet#removeSlot}.
+     */
+    final void removeSlot(int gap) {
+        int[] ks = keys;
+        Object[] vs = vals;
+        int mask = ks.length - 1;
+        for (int i = (gap + 1) & mask;; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == FREE)
+                break;
+            int home = IntHashSet.mix(k) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                ks[gap] = k;
+                vs[gap] = vs[i];
+                gap = i;
+            }
+        }
+        ks[gap] = FREE;
+        vs[gap] = null;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Key iterator visiting slots downwards from just below a free slot;
+     * see {@link IntHashSet.Itr}.
+     */
+    final class KeyIterator implements PrimitiveIterator.OfInt {
+        int index;          // next slot to examine
+        int remaining;      // slots left to examine
+        int lastSlot = -1;  // slot of last returned, or -2 for free key
+        boolean freePending = hasFreeKey;
+        int expectedModCount = modCount;
+
+        KeyIterator() {
+            int[] ks = keys;
+            int start = 0;
+            while (ks[start] != FREE)
+                ++start;
+            index = (start - 1) & (ks.length - 1);
+            remaining = ks.length - 1;
+            advance();
+        }
+
+        private void advance() {
+            int[] ks = keys;
+            int mask = ks.length - 1;
+            while (remaining > 0 && ks[index] == FREE) {
+                index = (index - 1) & mask;
+                --remaining;
+            }
+        }
+
+        public boolean hasNext() {
+            return remaining > 0 || freePending;
+        }
+
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining > 0) {
+                int i = index;
+                lastSlot = i;
+                index = (i - 1) & (keys.length - 1);
+                --remaining;
+                int k = keys[i];
+                advance();
+                return k;
+            }
+            if (freePending) {
+                freePending = false;
+                lastSlot = -2;
+                return FREE;
+            }
+            throw new NoSuchElementException();
+        }
+
+        public void remove() {
+            if (lastSlot == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastSlot == -2)
+                removeFreeKey();
+            else
+                removeSlot(lastSlot);
+            lastSlot = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Base of spliterators over a range of slots.  The slot index equal
+     * to the table length stands for the free key.
+     */
+    abstract static class MapSpliterator<V> {
+        final IntObjectMap<V> map;
+        int index;              // current index, modified on advance/split
+        int fence;              // one past last index, or -1 until used
+        int est;                // size estimate
+        int expectedModCount;   // for comodification checks
+
+        MapSpliterator(IntObjectMap<V> map, int origin, int fence, int est,
+                       int expectedModCount) {
+            this.map = map;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getFence() { // initialize fence and size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                IntObjectMap<V> m = map;
+                est = m.size;
+                expectedModCount = m.modCount;
+                hi = fence = m.keys.length + 1;
+            }
+            return hi;
+        }
+
+        final void checkForComodification() {
+            if (map.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public final long estimateSize() {
+            getFence(); // force init
+            return (long) est;
+        }
+    }
+
+    static final class KeySpliterator<V>
+        extends MapSpliterator<V> implements Spliterator.OfInt {
+        KeySpliterator(IntObjectMap<V> map, int origin, int fence, int est,
+                       int expectedModCount) {
+            super(map, origin, fence, est, expectedModCount);
+        }
+
+        public KeySpliterator<V> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new KeySpliterator<>(map, lo, index = mid, est >>>= 1,
+                                     expectedModCount);
+        }
+
+        public boolean tryAdvance(IntConsumer action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int[] ks = map.keys;
+            while (index < hi) {
+                int i = index++;
+                if (i == ks.length) {
+                    if (map.hasFreeKey) {
+                        action.accept(FREE);
+                        checkForComodification();
+                        return true;
+                    }
+                } else if (ks[i] != FREE) {
+                    action.accept(ks[i]);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void forEachRemaining(IntConsumer action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int[] ks = map.keys;
+            int i = index;
+            index = hi;
+            for (int end = Math.min(hi, ks.length); i < end; ++i) {
+                int k = ks[i];
+                if (k != FREE)
+                    action.accept(k);
+            }
+            if (i < hi && map.hasFreeKey)
+                action.accept(FREE);
+            checkForComodification();
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0) |
+                Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+
+    static final class ValueSpliterator<V>
+        extends MapSpliterator<V> implements Spliterator<V> {
+        ValueSpliterator(IntObjectMap<V> map, int origin, int fence, int est,
+                         int expectedModCount) {
+            super(map, origin, fence, est, expectedModCount);
+        }
+
+        public ValueSpliterator<V> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new ValueSpliterator<>(map, lo, index = mid, est >>>= 1,
+                                       expectedModCount);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int[] ks = map.keys;
+            while (index < hi) {
+                int i = index++;
+                if (i == ks.length) {
+                    if (map.hasFreeKey) {
+                        action.accept((V) map.freeValue);
+                        checkForComodification();
+                        return true;
+                    }
+                } else if (ks[i] != FREE) {
+                    action.accept((V) map.vals[i]);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int[] ks = map.keys;
+            Object[] vs = map.vals;
+            int i = index;
+            index = hi;
+            for (int end = Math.min(hi, ks.length); i < end; ++i) {
+                if (ks[i] != FREE)
+                    action.accept((V) vs[i]);
+            }
+            if (i < hi && map.hasFreeKey)
+                action.accept((V) map.freeValue);
+            checkForComodification();
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0);
+        }
+    }
+}
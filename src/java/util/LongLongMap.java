@@ -0,0 +1,873 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A map from {@code long} keys to {@code long} values backed by an
+ * open-addressing hash table.  Keys and values are stored unboxed and
+ * interleaved in a single flat {@code long} array, so a lookup usually
+ * touches one cache line and the map allocates no per-entry objects.
+ *
+ * <p>Collisions are resolved by linear probing, and removals compact the
+ * probe sequence in place (backward-shift deletion).  All {@code long}
+ * keys, including zero, are permitted.
+ *
+ * <p>Since values are primitive, methods that would return {@code null}
+ * for an absent key in {@link Map} return {@code 0} instead;
+ * {@link #containsKey} distinguishes an absent key from one mapped to
+ * zero.  This makes the map directly usable as a counter table through
+ * {@link #addTo}.
+ *
+ * <p>The iteration order is unspecified and may change when the map is
+ * resized.  Iteration requires time proportional to the capacity of the
+ * map.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <i>must</i> be synchronized
+ * externally.  The iterators and spliterators returned by this class are
+ * <i>fail-fast</i> on a best-effort basis.
+ *
+ * @see HashMap
+ * @see IntObjectMap
+ * @since 12
+ */
+public class LongLongMap implements Cloneable {
+
+    /**
+     * An operation accepting a {@code long} key and its mapped value.
+     *
+     * @since 12
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * Performs this operation on the given entry.
+         *
+         * @param key the key
+         * @param value the value mapped to the key
+         */
+        void accept(long key, long value);
+    }
+
+    static final int DEFAULT_INITIAL_CAPACITY = IntHashSet.DEFAULT_INITIAL_CAPACITY;
+    static final int MAXIMUM_CAPACITY = IntHashSet.MAXIMUM_CAPACITY >>> 1;
+    static final float DEFAULT_LOAD_FACTOR = IntHashSet.DEFAULT_LOAD_FACTOR;
+
+    /**
+     * The key marking an empty slot.  Its mapping, if any, is kept in
+     * {@link #freeValue}.
+     */
+    static final long FREE = 0L;
+
+    /**
+     * The table: the key of slot {@code i} is at index {@code 2*i} and
+     * its value at {@code 2*i+1}.  The number of slots is always a power
+     * of two.
+     */
+    transient long[] table;
+
+    /**
+     * Whether the map contains a mapping for {@link #FREE}.
+     */
+    transient boolean hasFreeKey;
+
+    /**
+     * The value mapped to {@link #FREE}, if {@link #hasFreeKey}.
+     */
+    transient long freeValue;
+
+    /**
+     * The number of mappings, including the free key if present.
+     */
+    transient int size;
+
+    /**
+     * The number of times this map has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * The maximum number of table slots in use (excluding the free key)
+     * before the table is resized.
+     */
+    int threshold;
+
+    /**
+     * The load factor of the table.
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty map with the default initial capacity (16) and
+     * the default load factor (0.5).
+     */
+    public LongLongMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, with the default load factor (0.5).
+     *
+     * @param expectedSize the number of mappings expected to be added
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public LongLongMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, with the specified load factor.
+     *
+     * @param expectedSize the number of mappings expected to be added
+     * @param loadFactor the fraction of the table that may be occupied
+     *        before it is resized, strictly between zero and one
+     * @throws IllegalArgumentException if the expected size is negative
+     *         or the load factor is not strictly between zero and one
+     */
+    public LongLongMap(int expectedSize, float loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal expected size: " +
+                                               expectedSize);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(expectedSize, loadFactor));
+    }
+
+    /* ---------------- Static utilities -------------- */
+
+    /**
+     * Spreads the bits of a key into an int; see {@link IntHashSet#mix}.
+     */
+    static int mix(long x) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32) ^ (h >>> 16));
+    }
+
+    static int tableSizeFor(int expected, float loadFactor) {
+        return Math.min(MAXIMUM_CAPACITY,
+                        IntHashSet.tableSizeFor(expected, loadFactor));
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key the key whose presence is to be tested
+     * @return {@code true} if this map contains a mapping for the key
+     */
+    public boolean containsKey(long key) {
+        return key == FREE ? hasFreeKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * capacity of the map.
+     *
+     * @param value value whose presence is to be tested
+     * @return {@code true} if this map maps one or more keys to the value
+     */
+    public boolean containsValue(long value) {
+        if (hasFreeKey && freeValue == value)
+            return true;
+        long[] tab = table;
+        for (int i = 0; i < tab.length; i += 2) {
+            if (tab[i] != FREE && tab[i + 1] == value)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code 0} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value mapped to the key, or {@code 0} if none
+     */
+    public long get(long key) {
+        return getOrDefault(key, 0L);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the default mapping of the key
+     * @return the value mapped to the key, or {@code defaultValue} if none
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == FREE)
+            return hasFreeKey ? freeValue : defaultValue;
+        int i = indexOf(key);
+        return i < 0 ? defaultValue : table[i + 1];
+    }
+
+    /**
+     * Associates the specified value with the specified key, replacing
+     * any previous mapping.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     * @throws IllegalStateException if the map has reached its maximum
+     *         capacity
+     */
+    public long put(long key, long value) {
+        if (key == FREE) {
+            long old = freeValue;
+            if (!hasFreeKey)
+                addFreeKey();
+            freeValue = value;
+            return old;
+        }
+        int i = insertionIndexOf(key);
+        long[] tab = table;
+        if (tab[i] == FREE) {
+            tab[i] = key;
+            tab[i + 1] = value;
+            return 0L;
+        }
+        long old = tab[i + 1];
+        tab[i + 1] = value;
+        return old;
+    }
+
+    /**
+     * Adds the given delta to the value mapped to the specified key,
+     * which is first mapped to zero if absent.
+     *
+     * @param key the key whose value is to be incremented
+     * @param delta the amount to add
+     * @return the new value associated with the key
+     * @throws IllegalStateException if the map has reached its maximum
+     *         capacity
+     */
+    public long addTo(long key, long delta) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                addFreeKey();
+            return freeValue += delta;
+        }
+        int i = insertionIndexOf(key);
+        long[] tab = table;
+        tab[i] = key; // no-op if present
+        return tab[i + 1] += delta;
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.  Otherwise, replaces the
+     * associated value with the result of the given remapping function.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the value to be merged with the existing value
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key
+     * @throws NullPointerException if the remapping function is null
+     * @throws IllegalStateException if the map has reached its maximum
+     *         capacity
+     */
+    public long merge(long key, long value,
+                      LongBinaryOperator remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                addFreeKey();
+                return freeValue = value;
+            }
+            return freeValue =
+                remappingFunction.applyAsLong(freeValue, value);
+        }
+        int i = insertionIndexOf(key);
+        long[] tab = table;
+        if (tab[i] == FREE) {
+            tab[i] = key;
+            return tab[i + 1] = value;
+        }
+        return tab[i + 1] = remappingFunction.applyAsLong(tab[i + 1], value);
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * computes its value using the given mapping function and enters it
+     * into this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key
+     * @throws NullPointerException if the mapping function is null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         mapping function modified this map
+     */
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        if (key == FREE ? hasFreeKey : indexOf(key) >= 0)
+            return get(key);
+        int mc = modCount;
+        long v = mappingFunction.applyAsLong(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        put(key, v);
+        return v;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long remove(long key) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                return 0L;
+            long old = freeValue;
+            removeFreeKey();
+            return old;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return 0L;
+        long old = table[i + 1];
+        removeAt(i);
+        return old;
+    }
+
+    /**
+     * Removes the entry for the specified key only if it is currently
+     * mapped to the specified value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return {@code true} if the value was removed
+     */
+    public boolean remove(long key, long value) {
+        if (key == FREE) {
+            if (!hasFreeKey || freeValue != value)
+                return false;
+            removeFreeKey();
+            return true;
+        }
+        int i = indexOf(key);
+        if (i < 0 || table[i + 1] != value)
+            return false;
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Removes all of the mappings from this map.  The capacity is kept.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(table, FREE);
+            hasFreeKey = false;
+            freeValue = 0L;
+            size = 0;
+            ++modCount;
+        }
+    }
+
+    /**
+     * Grows the table if needed so that it can hold at least the given
+     * number of mappings without further resizing.
+     *
+     * @param expectedSize the desired minimum number of mappings
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize > threshold) {
+            int n = tableSizeFor(expectedSize, loadFactor);
+            if (n > (table.length >>> 1))
+                rehash(n);
+        }
+    }
+
+    /**
+     * Performs the given action for each entry in this map.
+     *
+     * @param action the action to be performed for each entry
+     * @throws NullPointerException if the specified action is null
+     * @throws ConcurrentModificationException if the map is structurally
+     *         modified by the action
+     */
+    public void forEach(EntryConsumer action) {
+        Objects.requireNonNull(action);
+        int mc = modCount;
+        if (hasFreeKey)
+            action.accept(FREE, freeValue);
+        long[] tab = table;
+        for (int i = 0; i < tab.length; i += 2) {
+            long k = tab[i];
+            if (k != FREE)
+                action.accept(k, tab[i + 1]);
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Returns an iterator over the keys of this map.  The iterator
+     * supports {@code remove}, which removes the current mapping.
+     *
+     * @return an iterator over the keys of this map
+     */
+    public PrimitiveIterator.OfLong keyIterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfLong} over the keys of this map.  The
+     * spliterator reports {@link Spliterator#SIZED},
+     * {@link Spliterator#DISTINCT} and {@link Spliterator#NONNULL}.
+     *
+     * @return a spliterator over the keys of this map
+     */
+    public Spliterator.OfLong keySpliterator() {
+        return new EntrySpliterator(this, 0, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfLong} over the values of this map.
+     * The spliterator reports {@link Spliterator#SIZED} and
+     * {@link Spliterator#NONNULL}.
+     *
+     * @return a spliterator over the values of this map
+     */
+    public Spliterator.OfLong valueSpliterator() {
+        return new EntrySpliterator(this, 1, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a sequential {@code LongStream} over the keys of this map.
+     *
+     * @return a sequential {@code LongStream} over the keys of this map
+     */
+    public LongStream keyStream() {
+        return StreamSupport.longStream(keySpliterator(), false);
+    }
+
+    /**
+     * Returns a sequential {@code LongStream} over the values of this map.
+     *
+     * @return a sequential {@code LongStream} over the values of this map
+     */
+    public LongStream valueStream() {
+        return StreamSupport.longStream(valueSpliterator(), false);
+    }
+
+    /**
+     * Returns a copy of this map.
+     *
+     * @return a copy of this map
+     */
+    @Override
+    public LongLongMap clone() {
+        try {
+            LongLongMap m = (LongLongMap) super.clone();
+            m.table = table.clone();
+            m.modCount = 0;
+            return m;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Compares the specified object with this map for equality.  Returns
+     * {@code true} if the given object is also a {@code LongLongMap} with
+     * the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongLongMap))
+            return false;
+        LongLongMap m = (LongLongMap) o;
+        if (m.size != size || m.hasFreeKey != hasFreeKey)
+            return false;
+        if (hasFreeKey && freeValue != m.freeValue)
+            return false;
+        long[] tab = table;
+        for (int i = 0; i < tab.length; i += 2) {
+            long k = tab[i];
+            if (k != FREE) {
+                int j = m.indexOf(k);
+                if (j < 0 || tab[i + 1] != m.table[j + 1])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map.  This is the same value
+     * as {@link Map#hashCode} of a {@code Map<Long,Long>} holding the
+     * same mappings.
+     *
+     * @return the hash code value for this map
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        if (hasFreeKey)
+            h += Long.hashCode(FREE) ^ Long.hashCode(freeValue);
+        long[] tab = table;
+        for (int i = 0; i < tab.length; i += 2) {
+            long k = tab[i];
+            if (k != FREE)
+                h += Long.hashCode(k) ^ Long.hashCode(tab[i + 1]);
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map, in the same format as
+     * {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        forEach((k, v) -> sj.add(k + "=" + v));
+        return sj.toString();
+    }
+
+    /* ---------------- Internals -------------- */
+
+    private void allocate(int capacity) {
+        table = new long[capacity << 1];
+        threshold = IntHashSet.thresholdFor(capacity, loadFactor);
+    }
+
+    /**
+     * Returns the table index of the given non-free key, or -1 if absent.
+     */
+    final int indexOf(long key) {
+        long[] tab = table;
+        int mask = tab.length - 2;
+        for (int i = (mix(key) << 1) & mask;; i = (i + 2) & mask) {
+            long k = tab[i];
+            if (k == key)
+                return i;
+            if (k == FREE)
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the table index of the given non-free key, or of the free
+     * slot it should be inserted at.  In the latter case the table has
+     * been grown if needed, the size and modCount are updated, and the
+     * caller is expected to store the key.
+     */
+    final int insertionIndexOf(long key) {
+        long[] tab = table;
+        int mask = tab.length - 2;
+        int i = (mix(key) << 1) & mask;
+        for (long k; (k = tab[i]) != FREE; i = (i + 2) & mask) {
+            if (k == key)
+                return i;
+        }
+        if (size - (hasFreeKey ? 1 : 0) >= threshold) {
+            resize();
+            tab = table;
+            mask = tab.length - 2;
+            i = (mix(key) << 1) & mask;
+            while (tab[i] != FREE)
+                i = (i + 2) & mask;
+        }
+        ++size;
+        ++modCount;
+        return i;
+    }
+
+    final void resize() {
+        int n = table.length >>> 1;
+        if (n >= MAXIMUM_CAPACITY)
+            throw new IllegalStateException("Map is full");
+        rehash(n << 1);
+    }
+
+    final void rehash(int newCapacity) {
+        long[] oldTab = table;
+        allocate(newCapacity);
+        long[] tab = table;
+        int mask = tab.length - 2;
+        for (int j = 0; j < oldTab.length; j += 2) {
+            long k = oldTab[j];
+            if (k != FREE) {
+                int i = (mix(k) << 1) & mask;
+                while (tab[i] != FREE)
+                    i = (i + 2) & mask;
+                tab[i] = k;
+                tab[i + 1] = oldTab[j + 1];
+            }
+        }
+    }
+
+    private void addFreeKey() {
+        hasFreeKey = true;
+        freeValue = 0L;
+        ++size;
+        ++modCount;
+    }
+
+    final void removeFreeKey() {
+        hasFreeKey = false;
+        freeValue = 0L;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Empties the slot at the given table index, shifting later members
+     * of its probe run back as in {@link IntHashSet#removeSlot}.
+     */
+    final void removeAt(int gap) {
+        long[] tab = table;
+        int mask = tab.length - 2;
+        for (int i = (gap + 2) & mask;; i = (i + 2) & mask) {
+            long k = tab[i];
+            if (k == FREE)
+                break;
+            int home = (mix(k) << 1) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                tab[gap] = k;
+                tab[gap + 1] = tab[i + 1];
+                gap = i;
+            }
+        }
+        tab[gap] = FREE;
+        tab[gap + 1] = 0L;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Key iterator visiting slots downwards from just below a free slot;
+     * see {@link IntHashSet.Itr}.
+     */
+    final class KeyIterator implements PrimitiveIterator.OfLong {
+        int index;          // table index of next slot to examine
+        int remaining;      // slots left to examine
+        int lastIndex = -1; // index of last returned, or -2 for free key
+        boolean freePending = hasFreeKey;
+        int expectedModCount = modCount;
+
+        KeyIterator() {
+            long[] tab = table;
+            int start = 0;
+            while (tab[start] != FREE)
+                start += 2;
+            index = (start - 2) & (tab.length - 2);
+            remaining = (tab.length >>> 1) - 1;
+            advance();
+        }
+
+        private void advance() {
+            long[] tab = table;
+            int mask = tab.length - 2;
+            while (remaining > 0 && tab[index] == FREE) {
+                index = (index - 2) & mask;
+                --remaining;
+            }
+        }
+
+        public boolean hasNext() {
+            return remaining > 0 || freePending;
+        }
+
+        public long nextLong() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining > 0) {
+                int i = index;
+                lastIndex = i;
+                index = (i - 2) & (table.length - 2);
+                --remaining;
+                long k = table[i];
+                advance();
+                return k;
+            }
+            if (freePending) {
+                freePending = false;
+                lastIndex = -2;
+                return FREE;
+            }
+            throw new NoSuchElementException();
+        }
+
+        public void remove() {
+            if (lastIndex == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastIndex == -2)
+                removeFreeKey();
+            else
+                removeAt(lastIndex);
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Spliterator over a range of slots, reporting either keys or values.
+     * The slot index equal to the number of slots stands for the free key.
+     */
+    static final class EntrySpliterator implements Spliterator.OfLong {
+        final LongLongMap map;
+        final int offset;       // 0 for keys, 1 for values
+        int index;              // current slot, modified on advance/split
+        int fence;              // one past last slot, or -1 until used
+        int est;                // size estimate
+        int expectedModCount;   // for comodification checks
+
+        EntrySpliterator(LongLongMap map, int offset, int origin, int fence,
+                         int est, int expectedModCount) {
+            this.map = map;
+            this.offset = offset;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() { // initialize fence and size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                LongLongMap m = map;
+                est = m.size;
+                expectedModCount = m.modCount;
+                hi = fence = (m.table.length >>> 1) + 1;
+            }
+            return hi;
+        }
+
+        public EntrySpliterator trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new EntrySpliterator(map, offset, lo, index = mid,
+                                     est >>>= 1, expectedModCount);
+        }
+
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            long[] tab = map.table;
+            int n = tab.length >>> 1;
+            while (index < hi) {
+                int i = index++;
+                if (i == n) {
+                    if (map.hasFreeKey) {
+                        action.accept(offset == 0 ? FREE : map.freeValue);
+                        checkForComodification();
+                        return true;
+                    }
+                } else if (tab[i << 1] != FREE) {
+                    action.accept(tab[(i << 1) + offset]);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            long[] tab = map.table;
+            int n = tab.length >>> 1;
+            int i = index;
+            index = hi;
+            for (int end = Math.min(hi, n); i < end; ++i) {
+                int j = i << 1;
+                if (tab[j] != FREE)
+                    action.accept(tab[j + offset]);
+            }
+            if (i < hi && map.hasFreeKey)
+                action.accept(offset == 0 ? FREE : map.freeValue);
+            checkForComodification();
+        }
+
+        private void checkForComodification() {
+            if (map.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            getFence(); // force init
+            return (long) est;
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0) |
+                (offset == 0 ? Spliterator.DISTINCT : 0) |
+                Spliterator.NONNULL;
+        }
+    }
+}
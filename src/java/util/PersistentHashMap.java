@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable, persistent {@link Map} based on a hash array mapped
+ * trie.  A {@code PersistentHashMap} is never modified; instead,
+ * {@link #plus(Object, Object)} and {@link #minus(Object)} return a
+ * new map that shares all but a logarithmic number of its nodes with
+ * the original.  The {@code Map} mutator methods ({@code put},
+ * {@code remove} and so on) throw {@code UnsupportedOperationException}.
+ *
+ * <p>Keys are arranged by successive 5-bit fragments of their hash
+ * codes in a trie of branching factor 32, each node holding a bitmap
+ * of which fragments it stores inline and which lead to child nodes.
+ * Lookups, insertions and removals therefore take
+ * <i>O(log<sub>32</sub> n)</i> time, assuming well distributed hash
+ * codes.  Keys whose hash codes are equal are kept in collision nodes
+ * searched linearly.  The trie is kept in a canonical compact form, so
+ * removals never leave behind chains of single-entry nodes.
+ *
+ * <p>Neither keys nor values may be {@code null}.  The iteration order
+ * is unspecified.  Instances are safe for use by multiple concurrent
+ * threads.  To share an evolving map between threads, publish it
+ * through a volatile or atomic reference, as {@link
+ * java.util.concurrent.SnapshotMap} does.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @since 12
+ */
+public final class PersistentHashMap<K,V> extends AbstractMap<K,V> {
+
+    private static final int BITS = 5;
+    private static final int FRAGMENT_MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?,?> EMPTY =
+        new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final TrieNode root;
+    private final int size;
+
+    /** Lazily created entry set view. */
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    private PersistentHashMap(TrieNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty map.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return an empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentHashMap<K,V> empty() {
+        return (PersistentHashMap<K,V>) EMPTY;
+    }
+
+    /**
+     * Returns a map containing the mappings of the given map.  If the
+     * map is itself a {@code PersistentHashMap}, it is returned.
+     *
+     * @param map the map
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return a map containing the mappings of the given map
+     * @throws NullPointerException if the map, or any of its keys or
+     *         values, is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentHashMap<K,V>
+        copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentHashMap)
+            return (PersistentHashMap<K,V>) map;
+        return PersistentHashMap.<K,V>empty().plusAll(map);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V) root.find(key, hash(key), 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return root.find(key, hash(key), 0) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        Object v = root.find(key, hash(key), 0);
+        return (v != null) ? (V) v : defaultValue;
+    }
+
+    /**
+     * Returns a map in which the given key is mapped to the given
+     * value, and all other mappings are those of this map.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the new map, or this map if the key is already mapped to
+     *         {@code value}
+     * @throws NullPointerException if the key or value is null
+     */
+    public PersistentHashMap<K,V> plus(K key, V value) {
+        Objects.requireNonNull(value);
+        int[] delta = new int[1];
+        TrieNode r = root.put(key, value, hash(key), 0, delta);
+        return (r == root) ? this : new PersistentHashMap<>(r, size + delta[0]);
+    }
+
+    /**
+     * Returns a map with the mappings of this map and of the given map;
+     * where both map the same key, the given map's value is used.
+     *
+     * @param map the mappings to add
+     * @return the new map
+     * @throws NullPointerException if the map, or any of its keys or
+     *         values, is null
+     */
+    public PersistentHashMap<K,V> plusAll(Map<? extends K, ? extends V> map) {
+        int[] delta = new int[1];
+        TrieNode r = root;
+        for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+            K k = e.getKey();
+            r = r.put(k, Objects.requireNonNull(e.getValue()), hash(k), 0,
+                      delta);
+        }
+        return (r == root) ? this : new PersistentHashMap<>(r, size + delta[0]);
+    }
+
+    /**
+     * Returns a map without any mapping for the given key.
+     *
+     * @param key the key
+     * @return the new map, or this map if it has no mapping for the key
+     * @throws NullPointerException if the key is null
+     */
+    public PersistentHashMap<K,V> minus(Object key) {
+        int h = hash(key);
+        int[] delta = new int[1];
+        TrieNode r = root.remove(key, h, 0, delta);
+        if (r == root)
+            return this;
+        if (r.isSingleton()) {
+            // re-home a single entry promoted from a deeper level
+            Object k = r.singleKey();
+            r = BitmapNode.EMPTY.put(k, r.singleValue(), hash(k), 0, delta);
+            delta[0]--;
+        }
+        return new PersistentHashMap<>(r, size + delta[0]);
+    }
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        root.forEach((BiConsumer<Object,Object>) action);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int fragment(int hash, int shift) {
+        return (hash >>> shift) & FRAGMENT_MASK;
+    }
+
+    /**
+     * Returns a node holding the two given entries, whose keys differ,
+     * starting at the given shift.
+     */
+    private static TrieNode pair(Object k1, Object v1, int h1,
+                                 Object k2, Object v2, int h2, int shift) {
+        if (shift >= Integer.SIZE)
+            return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+        int f1 = fragment(h1, shift), f2 = fragment(h2, shift);
+        if (f1 != f2) {
+            Object[] content = (f1 < f2)
+                ? new Object[] { k1, v1, k2, v2 }
+                : new Object[] { k2, v2, k1, v1 };
+            return new BitmapNode((1 << f1) | (1 << f2), 0, content);
+        }
+        TrieNode sub = pair(k1, v1, h1, k2, v2, h2, shift + BITS);
+        return new BitmapNode(0, 1 << f1, new Object[] { sub });
+    }
+
+    /**
+     * A trie node.  Updates return this node if nothing changed, and
+     * add to delta[0] the change in the number of entries.
+     */
+    private abstract static class TrieNode {
+        abstract Object find(Object key, int hash, int shift);
+        abstract TrieNode put(Object key, Object value, int hash, int shift,
+                              int[] delta);
+        abstract TrieNode remove(Object key, int hash, int shift,
+                                 int[] delta);
+        /** Whether this node holds exactly one entry and no children. */
+        abstract boolean isSingleton();
+        abstract Object singleKey();
+        abstract Object singleValue();
+        abstract int payloadArity();
+        abstract Object keyAt(int i);
+        abstract Object valueAt(int i);
+        abstract int nodeArity();
+        abstract TrieNode nodeAt(int i);
+        abstract void forEach(BiConsumer<Object,Object> action);
+    }
+
+    /**
+     * A node holding inline entries, as key/value pairs at the start of
+     * content in fragment order, and child nodes, at the end of content
+     * in reverse fragment order.
+     */
+    private static final class BitmapNode extends TrieNode {
+        static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+        final int dataMap;
+        final int nodeMap;
+        final Object[] content;
+
+        BitmapNode(int dataMap, int nodeMap, Object[] content) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        int dataIndex(int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        int nodeIndex(int bit) {
+            return content.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        Object find(Object key, int hash, int shift) {
+            int bit = 1 << fragment(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = dataIndex(bit) << 1;
+                return key.equals(content[i]) ? content[i + 1] : null;
+            }
+            if ((nodeMap & bit) != 0)
+                return ((TrieNode) content[nodeIndex(bit)])
+                    .find(key, hash, shift + BITS);
+            return null;
+        }
+
+        TrieNode put(Object key, Object value, int hash, int shift,
+                     int[] delta) {
+            int bit = 1 << fragment(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = dataIndex(bit) << 1;
+                Object k = content[i];
+                if (key.equals(k)) {
+                    if (content[i + 1] == value)
+                        return this;
+                    Object[] c = content.clone();
+                    c[i + 1] = value;
+                    return new BitmapNode(dataMap, nodeMap, c);
+                }
+                TrieNode sub = pair(k, content[i + 1], hash(k),
+                                    key, value, hash, shift + BITS);
+                delta[0]++;
+                return inlineToNode(bit, i, sub);
+            }
+            if ((nodeMap & bit) != 0) {
+                int i = nodeIndex(bit);
+                TrieNode sub = (TrieNode) content[i];
+                TrieNode ns = sub.put(key, value, hash, shift + BITS, delta);
+                if (ns == sub)
+                    return this;
+                Object[] c = content.clone();
+                c[i] = ns;
+                return new BitmapNode(dataMap, nodeMap, c);
+            }
+            delta[0]++;
+            int i = dataIndex(bit) << 1;
+            Object[] c = new Object[content.length + 2];
+            System.arraycopy(content, 0, c, 0, i);
+            c[i] = key;
+            c[i + 1] = value;
+            System.arraycopy(content, i, c, i + 2, content.length - i);
+            return new BitmapNode(dataMap | bit, nodeMap, c);
+        }
+
+        TrieNode remove(Object key, int hash, int shift, int[] delta) {
+            int bit = 1 << fragment(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = dataIndex(bit) << 1;
+                if (!key.equals(content[i]))
+                    return this;
+                delta[0]--;
+                Object[] c = new Object[content.length - 2];
+                System.arraycopy(content, 0, c, 0, i);
+                System.arraycopy(content, i + 2, c, i, content.length - i - 2);
+                return new BitmapNode(dataMap ^ bit, nodeMap, c);
+            }
+            if ((nodeMap & bit) != 0) {
+                int i = nodeIndex(bit);
+                TrieNode sub = (TrieNode) content[i];
+                TrieNode ns = sub.remove(key, hash, shift + BITS, delta);
+                if (ns == sub)
+                    return this;
+                if (!ns.isSingleton()) {
+                    Object[] c = content.clone();
+                    c[i] = ns;
+                    return new BitmapNode(dataMap, nodeMap, c);
+                }
+                if (dataMap == 0 && Integer.bitCount(nodeMap) == 1)
+                    return ns;          // let the parent inline it
+                return nodeToInline(bit, i, ns.singleKey(), ns.singleValue());
+            }
+            return this;
+        }
+
+        /** Replaces the inline entry at i (bit) by a child node. */
+        private BitmapNode inlineToNode(int bit, int i, TrieNode sub) {
+            int len = content.length;
+            int j = len - 2 - Integer.bitCount(nodeMap & (bit - 1));
+            Object[] c = new Object[len - 1];
+            System.arraycopy(content, 0, c, 0, i);
+            System.arraycopy(content, i + 2, c, i, j - i);
+            c[j] = sub;
+            System.arraycopy(content, j + 2, c, j + 1, len - j - 2);
+            return new BitmapNode(dataMap ^ bit, nodeMap | bit, c);
+        }
+
+        /** Replaces the child node at i (bit) by an inline entry. */
+        private BitmapNode nodeToInline(int bit, int i, Object k, Object v) {
+            int len = content.length;
+            int d = Integer.bitCount(dataMap & (bit - 1)) << 1;
+            Object[] c = new Object[len + 1];
+            System.arraycopy(content, 0, c, 0, d);
+            c[d] = k;
+            c[d + 1] = v;
+            System.arraycopy(content, d, c, d + 2, i - d);
+            System.arraycopy(content, i + 1, c, i + 2, len - i - 1);
+            return new BitmapNode(dataMap | bit, nodeMap ^ bit, c);
+        }
+
+        boolean isSingleton() {
+            return nodeMap == 0 && Integer.bitCount(dataMap) == 1;
+        }
+
+        Object singleKey()   { return content[0]; }
+        Object singleValue() { return content[1]; }
+
+        int payloadArity() {
+            return Integer.bitCount(dataMap);
+        }
+
+        Object keyAt(int i)   { return content[i << 1]; }
+        Object valueAt(int i) { return content[(i << 1) + 1]; }
+
+        int nodeArity() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        TrieNode nodeAt(int i) {
+            return (TrieNode) content[content.length - 1 - i];
+        }
+
+        void forEach(BiConsumer<Object,Object> action) {
+            int n = payloadArity() << 1;
+            for (int i = 0; i < n; i += 2)
+                action.accept(content[i], content[i + 1]);
+            for (int i = n; i < content.length; i++)
+                ((TrieNode) content[i]).forEach(action);
+        }
+    }
+
+    /** A node holding entries whose keys have identical hash codes. */
+    private static final class CollisionNode extends TrieNode {
+        final int hash;
+        final Object[] kvs;
+
+        CollisionNode(int hash, Object[] kvs) {
+            this.hash = hash;
+            this.kvs = kvs;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < kvs.length; i += 2) {
+                if (key.equals(kvs[i]))
+                    return i;
+            }
+            return -1;
+        }
+
+        Object find(Object key, int hash, int shift) {
+            if (hash != this.hash)
+                return null;
+            int i = indexOf(key);
+            return (i < 0) ? null : kvs[i + 1];
+        }
+
+        TrieNode put(Object key, Object value, int hash, int shift,
+                     int[] delta) {
+            // all keys reaching here share this node's full hash
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (kvs[i + 1] == value)
+                    return this;
+                Object[] c = kvs.clone();
+                c[i + 1] = value;
+                return new CollisionNode(hash, c);
+            }
+            delta[0]++;
+            Object[] c = Arrays.copyOf(kvs, kvs.length + 2);
+            c[kvs.length] = key;
+            c[kvs.length + 1] = value;
+            return new CollisionNode(hash, c);
+        }
+
+        TrieNode remove(Object key, int hash, int shift, int[] delta) {
+            int i = (hash == this.hash) ? indexOf(key) : -1;
+            if (i < 0)
+                return this;
+            delta[0]--;
+            Object[] c = new Object[kvs.length - 2];
+            System.arraycopy(kvs, 0, c, 0, i);
+            System.arraycopy(kvs, i + 2, c, i, kvs.length - i - 2);
+            return new CollisionNode(hash, c);
+        }
+
+        boolean isSingleton() {
+            return kvs.length == 2;
+        }
+
+        Object singleKey()   { return kvs[0]; }
+        Object singleValue() { return kvs[1]; }
+
+        int payloadArity() {
+            return kvs.length >>> 1;
+        }
+
+        Object keyAt(int i)   { return kvs[i << 1]; }
+        Object valueAt(int i) { return kvs[(i << 1) + 1]; }
+
+        int nodeArity() {
+            return 0;
+        }
+
+        TrieNode nodeAt(int i) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        void forEach(BiConsumer<Object,Object> action) {
+            for (int i = 0; i < kvs.length; i += 2)
+                action.accept(kvs[i], kvs[i + 1]);
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public int size() {
+            return size;
+        }
+
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<>(root);
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object k = e.getKey(), v = e.getValue();
+            if (k == null || v == null)
+                return false;
+            Object x = root.find(k, hash(k), 0);
+            return x != null && x.equals(v);
+        }
+
+        public Spliterator<Map.Entry<K,V>> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.DISTINCT |
+                                            Spliterator.NONNULL |
+                                            Spliterator.IMMUTABLE);
+        }
+    }
+
+    /**
+     * Depth-first iterator: the entries of each node are returned
+     * before those of its children.
+     */
+    static final class EntryIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+        // at most 7 levels of bitmap nodes above a collision node
+        private final TrieNode[] nodes = new TrieNode[8];
+        private final int[] nextChild = new int[8];
+        private int depth;
+        private TrieNode current;       // node whose payload is being read
+        private int payloadIndex;
+        private int payloadLength;
+
+        EntryIterator(TrieNode root) {
+            nodes[0] = root;
+            current = root;
+            payloadLength = root.payloadArity();
+        }
+
+        public boolean hasNext() {
+            while (payloadIndex >= payloadLength) {
+                // find the next node with entries, depth first
+                TrieNode n;
+                for (;;) {
+                    if (depth < 0)
+                        return false;
+                    TrieNode top = nodes[depth];
+                    int c = nextChild[depth];
+                    if (c < top.nodeArity()) {
+                        nextChild[depth] = c + 1;
+                        n = top.nodeAt(c);
+                        nodes[++depth] = n;
+                        nextChild[depth] = 0;
+                        break;
+                    }
+                    nodes[depth--] = null;
+                }
+                current = n;
+                payloadIndex = 0;
+                payloadLength = n.payloadArity();
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int i = payloadIndex++;
+            return new KeyValueHolder<>((K) current.keyAt(i),
+                                        (V) current.valueAt(i));
+        }
+    }
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+import java.util.function.Consumer;
+
+/**
+ * An immutable, persistent {@link List}.  A {@code PersistentVector} is
+ * never modified; instead, methods such as {@link #plus(Object)},
+ * {@link #with(int, Object)} and {@link #minus(int)} return a new
+ * vector that shares all but a logarithmic number of its nodes with
+ * the original.  The {@code List} mutator methods ({@code add},
+ * {@code set}, {@code remove} and so on) throw
+ * {@code UnsupportedOperationException}.
+ *
+ * <p>Elements are kept in a relaxed radix-balanced tree of branching
+ * factor 32: every node other than the root holds between 16 and 32
+ * children (or elements, for leaves), and each branch records the
+ * cumulative sizes of its children.  Positional access, replacement,
+ * insertion and removal at any index therefore take
+ * <i>O(log<sub>32</sub> n)</i> time and allocate <i>O(log<sub>32</sub>
+ * n)</i> arrays of at most 32 slots, in contrast with the
+ * <i>O(n)</i> copy made by {@link
+ * java.util.concurrent.CopyOnWriteArrayList} on every mutation.
+ * Iteration walks the leaves directly.
+ *
+ * <p>Null elements are permitted.  Instances are safe for use by
+ * multiple concurrent threads.  To share an evolving vector between
+ * threads, publish it through a volatile or atomic reference, as
+ * {@link java.util.concurrent.SnapshotList} does.
+ *
+ * @param <E> the type of elements in this list
+ * @since 12
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+        implements RandomAccess {
+
+    /*
+     * Leaves are exact-length Object[] arrays of elements; branches are
+     * Branch instances.  Which one a node is follows from its height,
+     * leaves being at height 0.  Updates copy the path from the root to
+     * the affected leaf.  Insertion splits a node that would exceed
+     * WIDTH slots into two halves, propagating upwards as in a B-tree.
+     * Removal leaving a node with fewer than MIN slots merges it with
+     * an adjacent sibling, or redistributes slots between the two if
+     * they would not fit in one node.
+     *
+     * Because every child of a node at height h holds at most
+     * WIDTH^h elements, the child holding index i is never before
+     * i >>> (SHIFT * h): lookups start at that radix guess and scan
+     * the cumulative sizes forward, which for densely packed trees
+     * (such as those built by appending) finds the child immediately.
+     */
+
+    private static final int SHIFT = 5;
+    private static final int WIDTH = 1 << SHIFT;
+    private static final int MIN = WIDTH >>> 1;
+
+    private static final Object[] EMPTY_LEAF = {};
+
+    private static final PersistentVector<?> EMPTY =
+        new PersistentVector<>(EMPTY_LEAF, 0, 0);
+
+    /** The root node: an Object[] if height is 0, else a Branch. */
+    private final Object root;
+
+    /** The height of the tree; leaves are at height 0. */
+    private final int height;
+
+    /** The number of elements. */
+    private final int size;
+
+    private PersistentVector(Object root, int height, int size) {
+        this.root = root;
+        this.height = height;
+        this.size = size;
+    }
+
+    /**
+     * An interior node.  sizes[j] is the total number of elements held
+     * by kids[0..j].
+     */
+    private static final class Branch {
+        final Object[] kids;
+        final int[] sizes;
+
+        Branch(Object[] kids, int[] sizes) {
+            this.kids = kids;
+            this.sizes = sizes;
+        }
+    }
+
+    /**
+     * Returns an empty vector.
+     *
+     * @param <E> the type of elements
+     * @return an empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector containing the given elements, in order.
+     *
+     * @param elements the elements
+     * @param <E> the type of elements
+     * @return a vector containing the given elements
+     * @throws NullPointerException if the array is null
+     */
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(E... elements) {
+        return build(Arrays.copyOf(elements, elements.length, Object[].class));
+    }
+
+    /**
+     * Returns a vector containing the elements of the given collection,
+     * in the order they are returned by its iterator.  If the collection
+     * is itself a {@code PersistentVector}, it is returned.
+     *
+     * @param c the collection
+     * @param <E> the type of elements
+     * @return a vector containing the elements of the collection
+     * @throws NullPointerException if the collection is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> c) {
+        if (c instanceof PersistentVector)
+            return (PersistentVector<E>) c;
+        Object[] a = c.toArray();
+        if (a.getClass() != Object[].class)
+            a = Arrays.copyOf(a, a.length, Object[].class);
+        return build(a);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        Object node = root;
+        for (int h = height; h > 0; h--) {
+            Branch b = (Branch) node;
+            int j = childIndex(b, h, index);
+            if (j > 0)
+                index -= b.sizes[j - 1];
+            node = b.kids[j];
+        }
+        return (E) ((Object[]) node)[index];
+    }
+
+    /**
+     * Returns a vector with the given element appended.
+     *
+     * @param e the element to append
+     * @return the new vector
+     */
+    public PersistentVector<E> plus(E e) {
+        return plus(size, e);
+    }
+
+    /**
+     * Returns a vector with the given element inserted at the given
+     * index.  Elements at and after that index are shifted up by one.
+     *
+     * @param index the index at which to insert
+     * @param e the element to insert
+     * @return the new vector
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index > size()})
+     */
+    public PersistentVector<E> plus(int index, E e) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+        Object[] r = insert(root, height, index, e);
+        if (r[1] == null)
+            return new PersistentVector<>(r[0], height, size + 1);
+        Object[] kids = { r[0], r[1] };
+        return new PersistentVector<>(branch(kids, height + 1),
+                                      height + 1, size + 1);
+    }
+
+    /**
+     * Returns a vector with the elements of the given collection
+     * appended, in the order they are returned by its iterator.
+     *
+     * @param c the collection of elements to append
+     * @return the new vector
+     * @throws NullPointerException if the collection is null
+     */
+    public PersistentVector<E> plusAll(Collection<? extends E> c) {
+        if (size == 0)
+            return copyOf(c);
+        Object[] a = c.toArray();
+        if (a.length == 0)
+            return this;
+        if (a.length > size) {
+            // cheaper to rebuild than to insert one by one
+            Object[] all = toArray(new Object[size + a.length]);
+            System.arraycopy(a, 0, all, size, a.length);
+            return build(all);
+        }
+        PersistentVector<E> v = this;
+        for (Object e : a) {
+            @SuppressWarnings("unchecked") E x = (E) e;
+            v = v.plus(x);
+        }
+        return v;
+    }
+
+    /**
+     * Returns a vector with the element at the given index replaced by
+     * the given element.
+     *
+     * @param index the index of the element to replace
+     * @param e the new element
+     * @return the new vector, or this vector if the element at the
+     *         index is already {@code e}
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index >= size()})
+     */
+    public PersistentVector<E> with(int index, E e) {
+        if (get(index) == e)
+            return this;
+        return new PersistentVector<>(replace(root, height, index, e),
+                                      height, size);
+    }
+
+    /**
+     * Returns a vector without the element at the given index.
+     * Elements after that index are shifted down by one.
+     *
+     * @param index the index of the element to remove
+     * @return the new vector
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index >= size()})
+     */
+    public PersistentVector<E> minus(int index) {
+        Objects.checkIndex(index, size);
+        if (size == 1)
+            return empty();
+        Object node = delete(root, height, index);
+        int h = height;
+        while (h > 0 && ((Branch) node).kids.length == 1) {
+            node = ((Branch) node).kids[0];
+            h--;
+        }
+        return new PersistentVector<>(node, h, size - 1);
+    }
+
+    /**
+     * Returns a vector without the first occurrence of the given
+     * element, if present.
+     *
+     * @param o the element to remove
+     * @return the new vector, or this vector if it does not contain
+     *         the element
+     */
+    public PersistentVector<E> minus(Object o) {
+        int i = indexOf(o);
+        return (i < 0) ? this : minus(i);
+    }
+
+    public int indexOf(Object o) {
+        int i = 0;
+        for (Itr it = new Itr(0); it.hasNext(); i++) {
+            if (Objects.equals(o, it.next()))
+                return i;
+        }
+        return -1;
+    }
+
+    public Iterator<E> iterator() {
+        return new Itr(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        forEach(root, height, (Consumer<Object>) action);
+    }
+
+    private static void forEach(Object node, int h, Consumer<Object> action) {
+        if (h == 0) {
+            for (Object e : (Object[]) node)
+                action.accept(e);
+        } else {
+            for (Object kid : ((Branch) node).kids)
+                forEach(kid, h - 1, action);
+        }
+    }
+
+    public Object[] toArray() {
+        return toArray(new Object[size]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                a.getClass().getComponentType(), size);
+        copyInto(root, height, a, 0);
+        if (a.length > size)
+            a[size] = null;
+        return a;
+    }
+
+    private static int copyInto(Object node, int h, Object[] a, int off) {
+        if (h == 0) {
+            Object[] leaf = (Object[]) node;
+            System.arraycopy(leaf, 0, a, off, leaf.length);
+            return off + leaf.length;
+        }
+        for (Object kid : ((Branch) node).kids)
+            off = copyInto(kid, h - 1, a, off);
+        return off;
+    }
+
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(this, Spliterator.ORDERED |
+                                        Spliterator.IMMUTABLE);
+    }
+
+    // Tree mechanics
+
+    /** Returns the index of the child of b (at height h) holding index i. */
+    private static int childIndex(Branch b, int h, int i) {
+        int s = SHIFT * h;
+        int last = b.kids.length - 1;
+        int j = (s < Integer.SIZE) ? Math.min(i >>> s, last) : 0;
+        int[] sizes = b.sizes;
+        while (j < last && sizes[j] <= i)
+            j++;
+        return j;
+    }
+
+    /** Returns the number of elements held by a node at height h. */
+    private static int count(Object node, int h) {
+        if (h == 0)
+            return ((Object[]) node).length;
+        int[] sizes = ((Branch) node).sizes;
+        return sizes[sizes.length - 1];
+    }
+
+    /** Returns the slots (elements or kids) of a node at height h. */
+    private static Object[] slots(Object node, int h) {
+        return (h == 0) ? (Object[]) node : ((Branch) node).kids;
+    }
+
+    /** Returns a node at height h with the given slots. */
+    private static Object node(Object[] slots, int h) {
+        return (h == 0) ? slots : branch(slots, h);
+    }
+
+    /** Returns a branch at height h with the given kids. */
+    private static Branch branch(Object[] kids, int h) {
+        int[] sizes = new int[kids.length];
+        int n = 0;
+        for (int k = 0; k < kids.length; k++)
+            sizes[k] = n += count(kids[k], h - 1);
+        return new Branch(kids, sizes);
+    }
+
+    private static Object replace(Object node, int h, int i, Object e) {
+        if (h == 0) {
+            Object[] leaf = ((Object[]) node).clone();
+            leaf[i] = e;
+            return leaf;
+        }
+        Branch b = (Branch) node;
+        int j = childIndex(b, h, i);
+        int off = (j > 0) ? b.sizes[j - 1] : 0;
+        Object[] kids = b.kids.clone();
+        kids[j] = replace(kids[j], h - 1, i - off, e);
+        return new Branch(kids, b.sizes);
+    }
+
+    /**
+     * Inserts e at index i under node, at height h.  Returns a pair of
+     * nodes: the replacement node and null, or the two halves of the
+     * replacement if it had to be split.
+     */
+    private static Object[] insert(Object node, int h, int i, Object e) {
+        Object[] slots = slots(node, h);
+        int n = slots.length;
+        Object[] grown;
+        if (h == 0) {
+            grown = new Object[n + 1];
+            System.arraycopy(slots, 0, grown, 0, i);
+            grown[i] = e;
+            System.arraycopy(slots, i, grown, i + 1, n - i);
+        } else {
+            Branch b = (Branch) node;
+            int j = childIndex(b, h, i);
+            int off = (j > 0) ? b.sizes[j - 1] : 0;
+            Object[] r = insert(slots[j], h - 1, i - off, e);
+            if (r[1] == null) {
+                Object[] kids = slots.clone();
+                kids[j] = r[0];
+                int[] sizes = b.sizes.clone();
+                for (int k = j; k < n; k++)
+                    sizes[k]++;
+                return new Object[] { new Branch(kids, sizes), null };
+            }
+            grown = new Object[n + 1];
+            System.arraycopy(slots, 0, grown, 0, j);
+            grown[j] = r[0];
+            grown[j + 1] = r[1];
+            System.arraycopy(slots, j + 1, grown, j + 2, n - j - 1);
+        }
+        if (grown.length <= WIDTH)
+            return new Object[] { node(grown, h), null };
+        int half = grown.length >>> 1;
+        return new Object[] {
+            node(Arrays.copyOfRange(grown, 0, half), h),
+            node(Arrays.copyOfRange(grown, half, grown.length), h)
+        };
+    }
+
+    /**
+     * Removes the element at index i under node, at height h, and
+     * returns the replacement node, which may hold fewer than MIN
+     * slots; the caller restores the invariant.
+     */
+    private static Object delete(Object node, int h, int i) {
+        Object[] slots = slots(node, h);
+        int n = slots.length;
+        if (h == 0) {
+            Object[] leaf = new Object[n - 1];
+            System.arraycopy(slots, 0, leaf, 0, i);
+            System.arraycopy(slots, i + 1, leaf, i, n - i - 1);
+            return leaf;
+        }
+        Branch b = (Branch) node;
+        int j = childIndex(b, h, i);
+        int off = (j > 0) ? b.sizes[j - 1] : 0;
+        Object kid = delete(slots[j], h - 1, i - off);
+        int w = slots(kid, h - 1).length;
+        if (w >= MIN) {
+            Object[] kids = slots.clone();
+            kids[j] = kid;
+            int[] sizes = b.sizes.clone();
+            for (int k = j; k < n; k++)
+                sizes[k]--;
+            return new Branch(kids, sizes);
+        }
+        // underflow: merge with, or borrow from, an adjacent sibling
+        int l = (j > 0) ? j - 1 : j;
+        Object[] left = (l == j) ? slots(kid, h - 1) : slots(slots[l], h - 1);
+        Object[] right = (l == j) ? slots(slots[j + 1], h - 1)
+                                  : slots(kid, h - 1);
+        int total = left.length + right.length;
+        Object[] joined = new Object[total];
+        System.arraycopy(left, 0, joined, 0, left.length);
+        System.arraycopy(right, 0, joined, left.length, right.length);
+        Object[] kids;
+        if (total <= WIDTH) {
+            kids = new Object[n - 1];
+            System.arraycopy(slots, 0, kids, 0, l);
+            kids[l] = node(joined, h - 1);
+            System.arraycopy(slots, l + 2, kids, l + 1, n - l - 2);
+        } else {
+            int half = total >>> 1;
+            kids = slots.clone();
+            kids[l] = node(Arrays.copyOfRange(joined, 0, half), h - 1);
+            kids[l + 1] = node(Arrays.copyOfRange(joined, half, total), h - 1);
+        }
+        return branch(kids, h);
+    }
+
+    /** Builds a balanced vector holding the elements of the given array. */
+    private static <E> PersistentVector<E> build(Object[] a) {
+        int n = a.length;
+        if (n == 0)
+            return empty();
+        Object[] level = partition(a);     // the leaves
+        int h = 0;
+        while (level.length > 1) {
+            Object[] groups = partition(level);
+            h++;
+            for (int k = 0; k < groups.length; k++)
+                groups[k] = branch((Object[]) groups[k], h);
+            level = groups;
+        }
+        return new PersistentVector<>(level[0], h, n);
+    }
+
+    /**
+     * Splits the given slots into as few runs of at most WIDTH slots as
+     * possible, with lengths differing by at most one (and so at least
+     * MIN, unless there is a single run).
+     */
+    private static Object[] partition(Object[] slots) {
+        int n = slots.length;
+        int k = (n + WIDTH - 1) / WIDTH;
+        if (k == 1)
+            return new Object[] { slots };
+        Object[] runs = new Object[k];
+        int base = n / k, extra = n % k;
+        for (int r = 0, from = 0; r < k; r++) {
+            int len = base + (r < extra ? 1 : 0);
+            runs[r] = Arrays.copyOfRange(slots, from, from + len);
+            from += len;
+        }
+        return runs;
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: " + index + ", Size: " + size;
+    }
+
+    /** Iterator walking the leaves, re-descending once per leaf. */
+    private final class Itr implements Iterator<E> {
+        private Object[] leaf = EMPTY_LEAF;
+        private int leafStart;          // index of leaf[0]
+        private int cursor;
+
+        Itr(int index) {
+            cursor = index;
+            leafStart = index;
+        }
+
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            int i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            int k = i - leafStart;
+            if (k >= leaf.length) {
+                descend(i);
+                k = i - leafStart;
+            }
+            cursor = i + 1;
+            return (E) leaf[k];
+        }
+
+        private void descend(int i) {
+            Object node = root;
+            int base = 0;
+            for (int h = height; h > 0; h--) {
+                Branch b = (Branch) node;
+                int j = childIndex(b, h, i - base);
+                if (j > 0)
+                    base += b.sizes[j - 1];
+                node = b.kids[j];
+            }
+            leaf = (Object[]) node;
+            leafStart = base;
+        }
+    }
+}
@@ -37,6 +37,10 @@ package java.util.concurrent;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
@@ -1677,6 +1681,191 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         }
     }
 
+    /* ------------- Counted bulk constructions -------------- */
+
+    /**
+     * State shared by the completions of allAsList, allAsListFailFast
+     * and firstSuccessful.  Instead of the tree of BiRelays and
+     * intermediate futures built by andTree, each source gets a
+     * single Gathered completion referring to this object, which
+     * stores its value in an array and counts down the outcomes still
+     * needed.  The dependent is completed by whichever thread
+     * delivers the last needed outcome, so there are no chains of
+     * relays to allocate or traverse.
+     */
+    static final class Gather<T> {
+        // Modes
+        static final int ALL       = 0; // await all, then report any failure
+        static final int FAIL_FAST = 1; // fail on first failure, cancel others
+        static final int FIRST     = 2; // collect first successes in arrival order
+
+        final CompletableFuture<List<T>> dep;
+        final CompletableFuture<?>[] srcs;
+        final Object[] values;   // by source index, or by arrival if FIRST
+        final int mode;
+        final int needed;        // successes needed to complete normally
+        volatile int count;      // outcomes (values if FIRST) still needed
+        volatile int claimed;    // next free values slot if FIRST
+        volatile int failures;   // number of failures if FIRST
+        volatile Object failure; // first exceptional outcome if ALL
+
+        Gather(CompletableFuture<?>[] srcs, int mode, int needed) {
+            this.dep = new CompletableFuture<List<T>>();
+            this.srcs = srcs;
+            this.mode = mode;
+            this.needed = needed;
+            this.values = new Object[needed];
+            this.count = needed;
+            if (needed == 0)
+                dep.result = list();
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<T> list() {
+            return Collections.unmodifiableList((List<T>)Arrays.asList(values));
+        }
+
+        /**
+         * Records the outcome r of source i, returning the dependent
+         * if this call completed it, else null.
+         */
+        final CompletableFuture<List<T>> accept(int i, Object r) {
+            CompletableFuture<List<T>> d = dep;
+            Throwable x = null; Object v = r;
+            if (r instanceof AltResult) {
+                x = ((AltResult)r).ex;
+                v = null;
+            }
+            if (d.result != null)
+                return null;
+            if (mode == FIRST) {
+                if (x != null) {
+                    if ((int)FAILURES.getAndAdd(this, 1) == srcs.length - needed
+                        && d.completeThrowable(x, r))
+                        return d;
+                }
+                else {
+                    int k = (int)CLAIMED.getAndAdd(this, 1);
+                    if (k < needed) {
+                        values[k] = v;
+                        if ((int)COUNT.getAndAdd(this, -1) == 1
+                            && d.completeValue(list()))
+                            return d;
+                    }
+                }
+            }
+            else if (x != null && mode == FAIL_FAST) {
+                if (d.completeThrowable(x, r))
+                    return d;
+            }
+            else {
+                if (x != null)
+                    FAILURE.compareAndSet(this, null, r);
+                else
+                    values[i] = v;
+                if ((int)COUNT.getAndAdd(this, -1) == 1) {
+                    Object z = failure;
+                    if ((z == null)
+                        ? d.completeValue(list())
+                        : d.completeThrowable(((AltResult)z).ex, z))
+                        return d;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Called once the dependent is complete: cancels the sources
+         * still incomplete if FAIL_FAST, or else unlinks the now dead
+         * completions from their stacks.
+         */
+        final void release() {
+            for (CompletableFuture<?> a : srcs) {
+                if (a.result == null) {
+                    if (mode == FAIL_FAST)
+                        a.cancel(false);
+                    else
+                        a.cleanStack();
+                }
+            }
+        }
+
+        // VarHandle mechanics
+        private static final VarHandle COUNT;
+        private static final VarHandle CLAIMED;
+        private static final VarHandle FAILURES;
+        private static final VarHandle FAILURE;
+        static {
+            try {
+                MethodHandles.Lookup l = MethodHandles.lookup();
+                COUNT = l.findVarHandle(Gather.class, "count", int.class);
+                CLAIMED = l.findVarHandle(Gather.class, "claimed", int.class);
+                FAILURES = l.findVarHandle(Gather.class, "failures", int.class);
+                FAILURE = l.findVarHandle(Gather.class, "failure", Object.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    /** Completion for an input future of a counted bulk construction. */
+    @SuppressWarnings("serial")
+    static final class Gathered<T> extends Completion {
+        Gather<T> gather; CompletableFuture<?> src;
+        final int index;
+        Gathered(Gather<T> gather, CompletableFuture<?> src, int index) {
+            this.gather = gather; this.src = src; this.index = index;
+        }
+        final CompletableFuture<List<T>> tryFire(int mode) {
+            // assert mode != ASYNC;
+            Gather<T> g; CompletableFuture<?> a; Object r;
+            CompletableFuture<List<T>> d;
+            if ((g = gather) == null
+                || (a = src) == null || (r = a.result) == null
+                || !compareAndSetForkJoinTaskTag((short)0, (short)1))
+                return null;
+            gather = null; src = null;
+            if ((d = g.accept(index, r)) != null) {
+                g.release();
+                if (mode < 0)
+                    return d;
+                else
+                    d.postComplete();
+            }
+            return null;
+        }
+        final boolean isLive() {
+            Gather<T> g;
+            return (g = gather) != null && g.dep.result == null;
+        }
+    }
+
+    /** Constructs a counted bulk completion in the given mode. */
+    static <T> CompletableFuture<List<T>> gather(
+        Collection<? extends CompletableFuture<? extends T>> cfs,
+        int mode, int n) {
+        CompletableFuture<?>[] as = cfs.toArray(new CompletableFuture<?>[0]);
+        for (CompletableFuture<?> a : as)
+            if (a == null)
+                throw new NullPointerException();
+        if (mode != Gather.FIRST)
+            n = as.length;
+        else if (n < 0 || n > as.length)
+            throw new IllegalArgumentException();
+        Gather<T> g = new Gather<T>(as, mode, n);
+        CompletableFuture<List<T>> d = g.dep;
+        for (int i = 0; i < as.length && d.result == null; i++) {
+            CompletableFuture<?> a = as[i]; Object r;
+            if ((r = a.result) != null)
+                g.accept(i, r);
+            else
+                a.unipush(new Gathered<T>(g, a, i));
+        }
+        if (d.result != null && n > 0)
+            g.release();
+        return d;
+    }
+
     /* ------------- Zero-input Async forms -------------- */
 
     @SuppressWarnings("serial")
@@ -2377,6 +2566,96 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return d;
     }
 
+    /**
+     * Returns a new CompletableFuture that is completed when all of
+     * the given CompletableFutures complete, with an unmodifiable
+     * list of their results, in the iteration order of the given
+     * collection.  If any of the given CompletableFutures complete
+     * exceptionally, then the returned CompletableFuture also does
+     * so, once all have completed, with a CompletionException holding
+     * one of these exceptions as its cause.  If no CompletableFutures
+     * are provided, returns a CompletableFuture completed with an
+     * empty list.
+     *
+     * <p>Unlike {@link #allOf}, which relays completions through a
+     * tree of intermediate futures, this method registers a single
+     * dependent action with each given CompletableFuture, all sharing
+     * one counter, so it scales to very large numbers of futures,
+     * and collects their results without a second pass of {@code
+     * join} calls.
+     *
+     * @param cfs the CompletableFutures
+     * @param <T> the type of the results
+     * @return a new CompletableFuture that is completed with the
+     * results of all of the given CompletableFutures when all
+     * complete
+     * @throws NullPointerException if the collection or any of its
+     * elements are {@code null}
+     * @since 12
+     */
+    public static <T> CompletableFuture<List<T>> allAsList(
+        Collection<? extends CompletableFuture<? extends T>> cfs) {
+        return gather(cfs, Gather.ALL, 0);
+    }
+
+    /**
+     * Returns a new CompletableFuture that is completed when all of
+     * the given CompletableFutures complete normally, with an
+     * unmodifiable list of their results, in the iteration order of
+     * the given collection, or as soon as any of them completes
+     * exceptionally.  In the latter case the returned
+     * CompletableFuture completes with a CompletionException holding
+     * this exception as its cause, and all of the given
+     * CompletableFutures that have not yet completed are {@linkplain
+     * #cancel cancelled}.  If no CompletableFutures are provided,
+     * returns a CompletableFuture completed with an empty list.
+     *
+     * @param cfs the CompletableFutures
+     * @param <T> the type of the results
+     * @return a new CompletableFuture that is completed with the
+     * results of all of the given CompletableFutures, or the first
+     * exception encountered
+     * @throws NullPointerException if the collection or any of its
+     * elements are {@code null}
+     * @see #allAsList
+     * @since 12
+     */
+    public static <T> CompletableFuture<List<T>> allAsListFailFast(
+        Collection<? extends CompletableFuture<? extends T>> cfs) {
+        return gather(cfs, Gather.FAIL_FAST, 0);
+    }
+
+    /**
+     * Returns a new CompletableFuture that is completed as soon as
+     * {@code n} of the given CompletableFutures complete normally,
+     * with an unmodifiable list of these {@code n} results, in the
+     * order in which they were delivered.  If so many of the given
+     * CompletableFutures complete exceptionally that fewer than
+     * {@code n} could complete normally, the returned
+     * CompletableFuture instead completes with a CompletionException
+     * holding the exception of the last of these as its cause.  The
+     * remaining CompletableFutures are not affected, and may be
+     * cancelled by the caller if their results are no longer needed.
+     * If {@code n} is zero, returns a CompletableFuture completed
+     * with an empty list.
+     *
+     * @param n the number of results needed
+     * @param cfs the CompletableFutures
+     * @param <T> the type of the results
+     * @return a new CompletableFuture that is completed with the
+     * first {@code n} results of the given CompletableFutures
+     * @throws NullPointerException if the collection or any of its
+     * elements are {@code null}
+     * @throws IllegalArgumentException if {@code n} is negative or
+     * greater than the number of CompletableFutures provided
+     * @see #anyOf
+     * @since 12
+     */
+    public static <T> CompletableFuture<List<T>> firstSuccessful(
+        int n, Collection<? extends CompletableFuture<? extends T>> cfs) {
+        return gather(cfs, Gather.FIRST, n);
+    }
+
     /* ------------- Control and status methods -------------- */
 
     /**
@@ -0,0 +1,970 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A bounded lock-free {@linkplain BlockingQueue blocking queue} backed
+ * by a ring buffer.  This queue orders elements FIFO
+ * (first-in-first-out).  The <em>head</em> of the queue is that element
+ * that has been on the queue the longest time.  The <em>tail</em> of
+ * the queue is that element that has been on the queue the shortest
+ * time.
+ *
+ * <p>Unlike {@link ArrayBlockingQueue}, which guards both ends with a
+ * single lock, producers and consumers of this queue claim slots with
+ * atomic updates of separate, padded head and tail counters, and each
+ * slot carries a sequence number telling whether it is free for the
+ * current lap or holds an element published by a producer.  Producers
+ * therefore never contend with consumers except on the slot being
+ * handed off.  Threads block only when the queue is full (for
+ * {@code put}) or empty (for {@code take}); the lock and conditions
+ * used for blocking are never touched while no thread is waiting.
+ *
+ * <p>The capacity is fixed at construction time and is rounded up to
+ * the nearest power of two, and to at least two.  When the numbers of
+ * producer and consumer threads are known, {@link
+ * #newSingleConsumerQueue} and {@link
+ * #newSingleProducerSingleConsumerQueue} create queues that replace the
+ * atomic update of the single-threaded end(s) with an ordered store.
+ * Using such a queue from more than one producer or consumer thread
+ * at a time, as applicable, results in lost or duplicated elements.
+ *
+ * <p>Bulk operations {@link #offer(Object[], int, int)}, {@link
+ * #drain} and {@link #drainTo(Collection, int)} claim runs of
+ * consecutive slots with a single atomic update.
+ *
+ * <p>As with other lock-free queues, {@link #size} is only an estimate
+ * while the queue is being modified, and a consumer may observe the
+ * queue as empty while a producer that has claimed a slot has not yet
+ * published its element.  Iterators and spliterators traverse a
+ * snapshot of the elements.  Interior elements removed by {@link
+ * #remove(Object)} or an iterator are only marked as removed: their
+ * slots are skipped and freed when they reach the head of the queue,
+ * and until then still count toward {@link #size} and the capacity.
+ * For queues with a single consumer, these methods, like other
+ * removals, may only be used by the consumer thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/java.base/java/util/package-summary.html#CollectionsFramework">
+ * Java Collections Framework</a>.
+ *
+ * @since 12
+ * @param <E> the type of elements held in this queue
+ */
+public class ConcurrentArrayBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /*
+     * The algorithm is the bounded MPMC queue of Dmitry Vyukov.  Slot
+     * i holds a sequence number seq.  For the position p (a
+     * monotonically increasing long) mapping to that slot, seq == p
+     * means the slot is free for a producer at p, and seq == p + 1
+     * means it holds the element published at p.  A consumer taking
+     * the element at p sets seq to p + capacity, freeing the slot for
+     * the next lap.  Producers claim positions by advancing tail,
+     * consumers by advancing head; a negative difference between seq
+     * and the expected value means full (or empty), a positive one
+     * means another thread got there first and the counter must be
+     * reread.  When one end is known to be used by a single thread,
+     * its counter is advanced with a release store instead of a CAS.
+     *
+     * Interior removal CASes the element in its slot to REMOVED.
+     * Consumers that claim a slot holding REMOVED free it and move on
+     * to the next, and removers skip removed slots at the head
+     * themselves, so that a queue holding only removed elements is
+     * seen as empty.  To race safely with removers, consumers of a
+     * multi-consumer queue take the element with getAndSet; a single
+     * consumer is also the only remover, and uses plain accesses.
+     *
+     * Blocking uses a plain lock and two conditions, entered only on
+     * the slow path.  A thread about to wait increments takers (or
+     * putters) under the lock, issues a full fence, and retries before
+     * awaiting; a thread that publishes (or frees) a slot does so with
+     * volatile (or fenced) stores and then reads the waiter count.
+     * This Dekker-style pairing guarantees that either the waiter sees
+     * the change or the other thread sees the waiter and signals it,
+     * so no wakeup is lost while the fast paths stay lock-free.
+     */
+
+    /** Maximum capacity, so that positions can be masked into ints. */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /** Marks a slot whose element has been removed from the interior. */
+    private static final Object REMOVED = new Object();
+
+    /** The queued items, indexed by position & mask. */
+    private final Object[] items;
+
+    /** Per-slot sequence numbers, see above. */
+    private final long[] sequences;
+
+    /** items.length - 1 */
+    private final int mask;
+
+    /** Whether more than one thread may insert concurrently. */
+    private final boolean multiProducer;
+
+    /** Whether more than one thread may remove concurrently. */
+    private final boolean multiConsumer;
+
+    /** Next position to put. */
+    @jdk.internal.vm.annotation.Contended("p")
+    private volatile long tail;
+
+    /** Next position to take. */
+    @jdk.internal.vm.annotation.Contended("c")
+    private volatile long head;
+
+    /** Number of threads waiting (or about to wait) in take or poll. */
+    @jdk.internal.vm.annotation.Contended("w")
+    private volatile int takers;
+
+    /** Number of threads waiting (or about to wait) in put or offer. */
+    @jdk.internal.vm.annotation.Contended("w")
+    private volatile int putters;
+
+    /** Lock used only by blocked threads and those signalling them. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Condition for waiting puts */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Creates a {@code ConcurrentArrayBlockingQueue} with the given
+     * capacity, rounded up to a power of two, for use by any number of
+     * producer and consumer threads.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity} is less than 1
+     *         or greater than 2<sup>30</sup>
+     */
+    public ConcurrentArrayBlockingQueue(int capacity) {
+        this(capacity, true, true);
+    }
+
+    /**
+     * Creates a {@code ConcurrentArrayBlockingQueue} with the given
+     * capacity, initially containing the elements of the given
+     * collection, added in traversal order of the collection's
+     * iterator.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @param c the collection of elements to initially contain
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         {@code c.size()}, less than 1, or greater than 2<sup>30</sup>
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public ConcurrentArrayBlockingQueue(int capacity,
+                                        Collection<? extends E> c) {
+        this(capacity, true, true);
+        for (E e : c) {
+            if (!offer(e))
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private ConcurrentArrayBlockingQueue(int capacity,
+                                         boolean multiProducer,
+                                         boolean multiConsumer) {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY)
+            throw new IllegalArgumentException();
+        // a single slot could not tell "published at p" from "free for
+        // p + 1", so the ring has at least two
+        int n = (capacity <= 2) ? 2
+            : Integer.highestOneBit(capacity - 1) << 1;
+        this.items = new Object[n];
+        this.sequences = new long[n];
+        for (int i = 0; i < n; i++)
+            sequences[i] = i;
+        this.mask = n - 1;
+        this.multiProducer = multiProducer;
+        this.multiConsumer = multiConsumer;
+    }
+
+    /**
+     * Creates a queue with the given capacity, rounded up to a power of
+     * two, that may be used by any number of producer threads but by at
+     * most one consumer thread at a time.
+     *
+     * @param capacity the minimum capacity of the queue
+     * @param <E> the type of elements held in the queue
+     * @return the new queue
+     * @throws IllegalArgumentException if {@code capacity} is less than 1
+     *         or greater than 2<sup>30</sup>
+     */
+    public static <E> ConcurrentArrayBlockingQueue<E>
+        newSingleConsumerQueue(int capacity) {
+        return new ConcurrentArrayBlockingQueue<>(capacity, true, false);
+    }
+
+    /**
+     * Creates a queue with the given capacity, rounded up to a power of
+     * two, that may be used by at most one producer thread and one
+     * consumer thread at a time.
+     *
+     * @param capacity the minimum capacity of the queue
+     * @param <E> the type of elements held in the queue
+     * @return the new queue
+     * @throws IllegalArgumentException if {@code capacity} is less than 1
+     *         or greater than 2<sup>30</sup>
+     */
+    public static <E> ConcurrentArrayBlockingQueue<E>
+        newSingleProducerSingleConsumerQueue(int capacity) {
+        return new ConcurrentArrayBlockingQueue<>(capacity, false, false);
+    }
+
+    // Slot claiming
+
+    private boolean advanceTail(long t, long nt) {
+        if (multiProducer)
+            return TAIL.compareAndSet(this, t, nt);
+        TAIL.setRelease(this, nt);
+        return true;
+    }
+
+    private boolean advanceHead(long h, long nh) {
+        if (multiConsumer)
+            return HEAD.compareAndSet(this, h, nh);
+        HEAD.setRelease(this, nh);
+        return true;
+    }
+
+    /**
+     * Claims up to {@code max} free slots starting at the tail.
+     * Returns the first claimed position, or -1 if the queue is full;
+     * the number of slots claimed is left in claimed[0].
+     */
+    private long claimTail(int max, int[] claimed) {
+        final long[] seqs = sequences;
+        final int m = mask;
+        for (long t = tail;;) {
+            long d = (long) SEQ.getAcquire(seqs, (int) t & m) - t;
+            if (d == 0) {
+                int k = 1;
+                while (k < max &&
+                       (long) SEQ.getAcquire(seqs, (int) (t + k) & m) == t + k)
+                    k++;
+                if (advanceTail(t, t + k)) {
+                    claimed[0] = k;
+                    return t;
+                }
+            }
+            else if (d < 0)
+                return -1L;
+            t = tail;
+        }
+    }
+
+    /**
+     * Claims up to {@code max} published slots starting at the head.
+     * Returns the first claimed position, or -1 if the queue is empty;
+     * the number of slots claimed is left in claimed[0].
+     */
+    private long claimHead(int max, int[] claimed) {
+        final long[] seqs = sequences;
+        final int m = mask;
+        for (long h = head;;) {
+            long d = (long) SEQ.getAcquire(seqs, (int) h & m) - (h + 1);
+            if (d == 0) {
+                int k = 1;
+                while (k < max &&
+                       (long) SEQ.getAcquire(seqs, (int) (h + k) & m)
+                       == h + k + 1)
+                    k++;
+                if (advanceHead(h, h + k)) {
+                    claimed[0] = k;
+                    return h;
+                }
+            }
+            else if (d < 0)
+                return -1L;
+            h = head;
+        }
+    }
+
+    // Signalling
+
+    private void signalNotEmpty(int n) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (n == 1)
+                notEmpty.signal();
+            else
+                notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalNotFull(int n) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (n == 1)
+                notFull.signal();
+            else
+                notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Insertion
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's capacity,
+     * returning {@code true} upon success and throwing an
+     * {@code IllegalStateException} if this queue is full.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws IllegalStateException if this queue is full
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return super.add(e);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's capacity,
+     * returning {@code true} upon success and {@code false} if this queue
+     * is full.  This method is generally preferable to method {@link #add},
+     * which can fail to insert an element only by throwing an exception.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        final long[] seqs = sequences;
+        final int m = mask;
+        for (long t = tail;;) {
+            int i = (int) t & m;
+            long d = (long) SEQ.getAcquire(seqs, i) - t;
+            if (d == 0) {
+                if (advanceTail(t, t + 1)) {
+                    items[i] = e;
+                    SEQ.setVolatile(seqs, i, t + 1);
+                    break;
+                }
+            }
+            else if (d < 0)
+                return false;
+            t = tail;
+        }
+        if (takers != 0)
+            signalNotEmpty(1);
+        return true;
+    }
+
+    /**
+     * Inserts as many of the elements of the given array range as
+     * possible without waiting, in order, at the tail of this queue.
+     * Runs of elements are inserted with a single atomic update of the
+     * tail.
+     *
+     * @param a the array holding the elements to insert
+     * @param off the index of the first element to insert
+     * @param len the number of elements to insert
+     * @return the number of elements inserted, which is less than
+     *         {@code len} only if the queue became full
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws NullPointerException if the array or any element in the
+     *         given range is null; in that case no element is inserted
+     */
+    public int offer(E[] a, int off, int len) {
+        Objects.checkFromIndexSize(off, len, a.length);
+        for (int j = off, end = off + len; j < end; j++)
+            Objects.requireNonNull(a[j]);
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        final int m = mask;
+        final int[] claimed = new int[1];
+        int n = 0;
+        while (n < len) {
+            long t = claimTail(len - n, claimed);
+            if (t < 0L)
+                break;
+            for (int k = claimed[0], j = 0; j < k; j++) {
+                int i = (int) (t + j) & m;
+                items[i] = a[off + n + j];
+                SEQ.setRelease(seqs, i, t + j + 1);
+            }
+            n += claimed[0];
+        }
+        if (n > 0) {
+            VarHandle.fullFence();
+            if (takers != 0)
+                signalNotEmpty(n);
+        }
+        return n;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (offer(e))
+            return;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            putters++;
+            try {
+                VarHandle.fullFence();
+                while (!offer(e))
+                    notFull.await();
+            } finally {
+                putters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (offer(e))
+            return true;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            putters++;
+            try {
+                VarHandle.fullFence();
+                while (!offer(e)) {
+                    if (nanos <= 0L)
+                        return false;
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                putters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removal
+
+    public E poll() {
+        final long[] seqs = sequences;
+        final int m = mask;
+        Object x;
+        int freed = 0;
+        for (long h = head;;) {
+            int i = (int) h & m;
+            long d = (long) SEQ.getAcquire(seqs, i) - (h + 1);
+            if (d == 0) {
+                if (advanceHead(h, h + 1)) {
+                    x = takeItem(i);
+                    SEQ.setVolatile(seqs, i, h + m + 1);
+                    freed++;
+                    if (x != REMOVED)
+                        break;
+                }
+            }
+            else if (d < 0) {
+                x = null;
+                break;
+            }
+            h = head;
+        }
+        if (freed != 0 && putters != 0)
+            signalNotFull(freed);
+        @SuppressWarnings("unchecked") E e = (E) x;
+        return e;
+    }
+
+    /**
+     * Takes the element from claimed slot i, leaving it null.
+     */
+    private Object takeItem(int i) {
+        if (multiConsumer)
+            return ITEMS.getAndSet(items, i, null);
+        Object x = items[i];
+        items[i] = null;
+        return x;
+    }
+
+    public E take() throws InterruptedException {
+        E e;
+        if ((e = poll()) != null)
+            return e;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            takers++;
+            try {
+                VarHandle.fullFence();
+                while ((e = poll()) == null)
+                    notEmpty.await();
+                return e;
+            } finally {
+                takers--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e;
+        if ((e = poll()) != null)
+            return e;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            takers++;
+            try {
+                VarHandle.fullFence();
+                while ((e = poll()) == null) {
+                    if (nanos <= 0L)
+                        return null;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                return e;
+            } finally {
+                takers--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to {@code maxElements} available elements from this
+     * queue, in order, passing each to the given action.  Runs of
+     * elements are claimed with a single atomic update of the head.
+     * Each slot is freed before its element is passed to the action.
+     *
+     * <p>If the action throws an exception, the exception is relayed to
+     * the caller, and the remaining elements of the run being processed
+     * are discarded.  The action should not itself operate on this
+     * queue, and should be quick: while it runs, producers cannot reuse
+     * the slots of the current run.
+     *
+     * @param action the action to perform on each removed element
+     * @param maxElements the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the specified action is null
+     */
+    public int drain(Consumer<? super E> action, int maxElements) {
+        Objects.requireNonNull(action);
+        final long[] seqs = sequences;
+        final int m = mask;
+        final int[] claimed = new int[1];
+        int n = 0, freed = 0;
+        try {
+            while (n < maxElements) {
+                long h = claimHead(maxElements - n, claimed);
+                if (h < 0L)
+                    break;
+                int k = claimed[0], j = 0;
+                try {
+                    for (; j < k; j++) {
+                        int i = (int) (h + j) & m;
+                        Object x = takeItem(i);
+                        SEQ.setRelease(seqs, i, h + j + m + 1);
+                        freed++;
+                        if (x != REMOVED) {
+                            n++;
+                            @SuppressWarnings("unchecked") E e = (E) x;
+                            action.accept(e);
+                        }
+                    }
+                } finally {
+                    // free the rest of the run if the action threw
+                    while (++j < k) {
+                        int i = (int) (h + j) & m;
+                        takeItem(i);
+                        SEQ.setRelease(seqs, i, h + j + m + 1);
+                        freed++;
+                    }
+                }
+            }
+        } finally {
+            if (freed > 0) {
+                VarHandle.fullFence();
+                if (putters != 0)
+                    signalNotFull(freed);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        return drain(c::add, maxElements);
+    }
+
+    /**
+     * Atomically removes all of the elements that are available in
+     * this queue.
+     */
+    public void clear() {
+        drain(e -> { }, Integer.MAX_VALUE);
+    }
+
+    // Inspection
+
+    public E peek() {
+        final long[] seqs = sequences;
+        final int m = mask;
+        for (long p = head;;) {
+            int i = (int) p & m;
+            long s = (long) SEQ.getAcquire(seqs, i);
+            if (s == p + 1) {
+                Object x = ITEMS.getAcquire(items, i);
+                // recheck that the slot was not taken meanwhile
+                if ((long) SEQ.getAcquire(seqs, i) == s) {
+                    if (x == REMOVED) {
+                        p++;
+                        continue;
+                    }
+                    if (x != null) {
+                        @SuppressWarnings("unchecked") E e = (E) x;
+                        return e;
+                    }
+                }
+            }
+            else if (s - (p + 1) < 0)
+                return null;
+            p = head;
+        }
+    }
+
+    /**
+     * Returns the number of elements in this queue.  The value is only
+     * an estimate if the queue is being concurrently modified.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (long h = head;;) {
+            long t = tail;
+            long h2 = head;
+            if (h == h2)
+                return (int) Math.max(0L, Math.min(t - h, mask + 1L));
+            h = h2;
+        }
+    }
+
+    public boolean isEmpty() {
+        // removed elements may remain between head and tail
+        return head == tail || peek() == null;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints) accept
+     * without blocking.  The value is only an estimate if the queue is
+     * being concurrently modified.
+     */
+    public int remainingCapacity() {
+        return mask + 1 - size();
+    }
+
+    /**
+     * Returns the capacity of this queue, which is the capacity
+     * requested at construction rounded up to a power of two, and to
+     * at least two.
+     *
+     * @return the capacity of this queue
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns an array containing the elements in this queue, in
+     * proper sequence, as of some point during the call.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    /**
+     * Returns an array containing the elements in this queue, in
+     * proper sequence, as of some point during the call; the runtime
+     * type of the returned array is that of the specified array.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in this queue,
+     * in proper sequence.  The iterator's {@code remove} method removes
+     * the last element returned from this queue if it is still there.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns a {@link Spliterator} over a snapshot of the elements in
+     * this queue.
+     *
+     * <p>The {@code Spliterator} reports {@link Spliterator#ORDERED},
+     * {@link Spliterator#NONNULL} and {@link Spliterator#SIZED}.
+     *
+     * @return a {@code Spliterator} over the elements in this queue
+     */
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator
+            (snapshot(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    public boolean contains(Object o) {
+        return o != null && snapshot().contains(o);
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * queue, if it is present.  More formally, removes an element
+     * {@code e} such that {@code o.equals(e)}, if this queue contains
+     * one or more such elements.  Unless the element is at the head of
+     * the queue, its slot is only freed when it reaches the head.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue contained the specified element
+     */
+    public boolean remove(Object o) {
+        if (o != null) {
+            final long[] seqs = sequences;
+            final int m = mask;
+            for (long p = head, t = tail; p - t < 0; p++) {
+                int i = (int) p & m;
+                if ((long) SEQ.getAcquire(seqs, i) == p + 1) {
+                    Object x = ITEMS.getAcquire(items, i);
+                    if (x != null && x != REMOVED && o.equals(x) &&
+                        removeAt(p, x))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the given element, published at position p, with
+     * REMOVED, and frees any removed slots at the head.
+     *
+     * @return true if the element was removed
+     */
+    private boolean removeAt(long p, Object x) {
+        int i = (int) p & mask;
+        if ((long) SEQ.getAcquire(sequences, i) != p + 1 ||
+            !ITEMS.compareAndSet(items, i, x, REMOVED))
+            return false;
+        int freed = skipRemoved();
+        if (freed > 0) {
+            VarHandle.fullFence();
+            if (putters != 0)
+                signalNotFull(freed);
+        }
+        return true;
+    }
+
+    /**
+     * Advances head past slots holding REMOVED, freeing them.
+     *
+     * @return the number of slots freed
+     */
+    private int skipRemoved() {
+        final long[] seqs = sequences;
+        final int m = mask;
+        int freed = 0;
+        for (long h = head;;) {
+            int i = (int) h & m;
+            if ((long) SEQ.getAcquire(seqs, i) != h + 1 ||
+                ITEMS.getAcquire(items, i) != REMOVED)
+                return freed;
+            if (advanceHead(h, h + 1)) {
+                items[i] = null;
+                SEQ.setRelease(seqs, i, h + m + 1);
+                freed++;
+            }
+            h = head;
+        }
+    }
+
+    /**
+     * Collects the elements published between head and tail, skipping
+     * any whose slot is taken or removed while being read, and, if
+     * positions is nonnull, their positions.
+     */
+    private ArrayList<E> snapshot(long[][] positions) {
+        final long[] seqs = sequences;
+        final int m = mask;
+        long h = head, t = tail;
+        int cap = (int) Math.max(0L, Math.min(t - h, m + 1L));
+        ArrayList<E> list = new ArrayList<>(cap);
+        long[] ps = (positions == null) ? null : new long[cap];
+        for (long p = h; p - t < 0; p++) {
+            int i = (int) p & m;
+            if ((long) SEQ.getAcquire(seqs, i) == p + 1) {
+                Object x = ITEMS.getAcquire(items, i);
+                if (x != null && x != REMOVED &&
+                    (long) SEQ.getAcquire(seqs, i) == p + 1) {
+                    if (ps != null)
+                        ps[list.size()] = p;
+                    @SuppressWarnings("unchecked") E e = (E) x;
+                    list.add(e);
+                }
+            }
+        }
+        if (positions != null)
+            positions[0] = ps;
+        return list;
+    }
+
+    private ArrayList<E> snapshot() {
+        return snapshot(null);
+    }
+
+    /** Iterator over a snapshot, removing elements from their slots. */
+    private final class Itr implements Iterator<E> {
+        private final ArrayList<E> elements;
+        private final long[] positions;
+        private int cursor;
+        private int lastRet = -1;
+
+        Itr() {
+            long[][] ps = new long[1][];
+            elements = snapshot(ps);
+            positions = ps[0];
+        }
+
+        public boolean hasNext() {
+            return cursor < elements.size();
+        }
+
+        public E next() {
+            int i = cursor;
+            if (i >= elements.size())
+                throw new NoSuchElementException();
+            cursor = i + 1;
+            return elements.get(lastRet = i);
+        }
+
+        public void remove() {
+            int i = lastRet;
+            if (i < 0)
+                throw new IllegalStateException();
+            lastRet = -1;
+            removeAt(positions[i], elements.get(i));
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final VarHandle SEQ;
+    private static final VarHandle ITEMS;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            HEAD = l.findVarHandle(ConcurrentArrayBlockingQueue.class,
+                                   "head", long.class);
+            TAIL = l.findVarHandle(ConcurrentArrayBlockingQueue.class,
+                                   "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        SEQ = MethodHandles.arrayElementVarHandle(long[].class);
+        ITEMS = MethodHandles.arrayElementVarHandle(Object[].class);
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * An unbounded lock-free stack based on linked nodes, presented as a
+ * {@link Queue} ordering elements LIFO (last-in-first-out), in the
+ * manner of {@link java.util.Collections#asLifoQueue}.  The
+ * <em>head</em> of the queue is the element that has been on the
+ * stack the shortest time.  New elements are pushed at the head, and
+ * retrieval operations pop the head.  This suits work pools, in which
+ * elements are interchangeable and recently added ones are likely to
+ * be cache-warm.
+ *
+ * <p>Unlike a stack built on {@link ConcurrentLinkedDeque}, pushes and
+ * pops that fail to update the top of the stack because of contention
+ * do not simply retry.  They back off to an <em>elimination
+ * array</em>, where a push and a pop meeting at the same slot exchange
+ * the element directly, without touching the stack at all.  Under
+ * symmetric push and pop load, many operations thus complete in
+ * parallel, while without contention the stack costs one CAS per
+ * operation.
+ *
+ * <p>Iterators and spliterators are
+ * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>,
+ * and traverse elements from the top of the stack down.  Removal of
+ * interior elements, by {@link #remove(Object)} or by iterators, is
+ * logical: the node of the element stays linked until it reaches the
+ * top of the stack.
+ *
+ * <p>Beware that, unlike in most collections, the {@code size} method
+ * is <em>NOT</em> a constant-time operation, and may be inaccurate if
+ * the stack is modified during traversal.
+ *
+ * <p>This class does not permit the use of {@code null} elements.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code ConcurrentLinkedStack}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code ConcurrentLinkedStack} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/java.base/java/util/package-summary.html#CollectionsFramework">
+ * Java Collections Framework</a>.
+ *
+ * @since 12
+ * @param <E> the type of elements held in this stack
+ */
+public class ConcurrentLinkedStack<E> extends AbstractQueue<E>
+        implements Queue<E> {
+
+    /*
+     * The stack is a Treiber stack: push CASes top from t to a new
+     * node whose next is t, and pop CASes top from t to t.next.  A
+     * popped node's item is then claimed by CASing it to null, since
+     * remove(Object) may have nulled it first, in which case the pop
+     * retries.  Nodes with null items are skipped by traversals and
+     * discarded when popped.
+     *
+     * Elimination (Hendler, Shavit and Yerushalmi, "A Scalable
+     * Lock-free Stack Algorithm") pairs pushes and pops that collide
+     * on top.  After a failed CAS, a push tries to install its node in
+     * a random arena slot, spins a while, and then tries to withdraw
+     * it; if the node has gone, a pop took it and the push is done.
+     * A pop after a failed CAS looks at a random slot and CASes any
+     * node there out, taking its item.  Both operations are
+     * linearized at the moment of the exchange, at which the pair is
+     * concurrent, so the stack remains linearizable.  Since only
+     * operations that have just lost a race visit the arena, it costs
+     * nothing without contention; the arena size scales with the
+     * number of processors, and slots are spaced apart to avoid false
+     * sharing.
+     */
+
+    static final class Node<E> {
+        volatile E item;
+        Node<E> next;           // set before publication
+
+        Node(E item) {
+            this.item = item;
+        }
+    }
+
+    /** Number of CPUS, to size the arena */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** Number of arena slots, a power of two */
+    static final int ARENA_SIZE =
+        Math.max(1, Integer.highestOneBit(Math.max(1, NCPU >>> 1)));
+
+    /** Spacing, in array elements, between arena slots */
+    static final int SPACING = 16;
+
+    /** The number of times a push waits for a pop at an arena slot */
+    static final int ELIMINATION_SPINS = (NCPU < 2) ? 0 : 1 << 6;
+
+    /** The top of the stack, or null if empty */
+    @jdk.internal.vm.annotation.Contended("t")
+    private volatile Node<E> top;
+
+    /** The elimination arena, used at index slot * SPACING */
+    private final Object[] arena = new Object[ARENA_SIZE * SPACING];
+
+    /**
+     * Creates a {@code ConcurrentLinkedStack} that is initially empty.
+     */
+    public ConcurrentLinkedStack() {
+    }
+
+    /**
+     * Creates a {@code ConcurrentLinkedStack} initially containing the
+     * elements of the given collection, pushed in traversal order of
+     * the collection's iterator, so that the last becomes the head.
+     *
+     * @param c the collection of elements to initially contain
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public ConcurrentLinkedStack(Collection<? extends E> c) {
+        Node<E> t = null;
+        for (E e : c) {
+            Node<E> node = new Node<E>(Objects.requireNonNull(e));
+            node.next = t;
+            t = node;
+        }
+        top = t;
+    }
+
+    private static int randomSlot() {
+        return (ThreadLocalRandom.current().nextInt() & (ARENA_SIZE - 1))
+            * SPACING;
+    }
+
+    /**
+     * Offers the given node, not yet on the stack, to a pop at a
+     * random arena slot.
+     *
+     * @return true if a pop took it
+     */
+    private boolean eliminatePush(Node<E> node) {
+        final Object[] arena = this.arena;
+        int i = randomSlot();
+        if (!SLOT.compareAndSet(arena, i, null, node))
+            return false;
+        for (int spins = ELIMINATION_SPINS; spins > 0; --spins) {
+            if (SLOT.getVolatile(arena, i) != node)
+                return true;
+            Thread.onSpinWait();
+        }
+        return !SLOT.compareAndSet(arena, i, node, null);
+    }
+
+    /**
+     * Tries to take a node offered by a push at a random arena slot.
+     *
+     * @return the item of the node taken, or null if none
+     */
+    @SuppressWarnings("unchecked")
+    private E eliminatePop() {
+        final Object[] arena = this.arena;
+        int i = randomSlot();
+        Object x = SLOT.getVolatile(arena, i);
+        if (x != null && SLOT.compareAndSet(arena, i, x, null))
+            return ((Node<E>)x).item;
+        return null;
+    }
+
+    /**
+     * Pushes an element onto this stack.
+     *
+     * @param e the element to push
+     * @throws NullPointerException if the specified element is null
+     */
+    public void push(E e) {
+        final Node<E> node = new Node<E>(Objects.requireNonNull(e));
+        for (;;) {
+            Node<E> t = top;
+            node.next = t;
+            if (TOP.compareAndSet(this, t, node) || eliminatePush(node))
+                return;
+        }
+    }
+
+    /**
+     * Pops an element from this stack.
+     *
+     * @return the element at the top of this stack
+     * @throws NoSuchElementException if this stack is empty
+     */
+    public E pop() {
+        E e = poll();
+        if (e == null)
+            throw new NoSuchElementException();
+        return e;
+    }
+
+    /**
+     * Pushes the specified element onto this stack.
+     * As the stack is unbounded, this method will never return
+     * {@code false}.
+     *
+     * @param e the element to push
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        push(e);
+        return true;
+    }
+
+    /**
+     * Pushes the specified element onto this stack.
+     * As the stack is unbounded, this method will never throw
+     * {@link IllegalStateException} or return {@code false}.
+     *
+     * @param e the element to push
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        push(e);
+        return true;
+    }
+
+    public E poll() {
+        for (;;) {
+            Node<E> t = top;
+            if (t == null)
+                return null;
+            if (TOP.compareAndSet(this, t, t.next)) {
+                E item = t.item;
+                if (item != null && ITEM.compareAndSet(t, item, null))
+                    return item;
+                // removed by remove(Object); discard
+            }
+            else {
+                E item = eliminatePop();
+                if (item != null)
+                    return item;
+            }
+        }
+    }
+
+    public E peek() {
+        for (Node<E> p = top; p != null; p = p.next) {
+            E item = p.item;
+            if (item != null)
+                return item;
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if this stack contains no elements.
+     *
+     * @return {@code true} if this stack contains no elements
+     */
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Returns the number of elements in this stack.  If this stack
+     * contains more than {@code Integer.MAX_VALUE} elements, returns
+     * {@code Integer.MAX_VALUE}.
+     *
+     * <p>Beware that, unlike in most collections, this method is
+     * <em>NOT</em> a constant-time operation. Because of the
+     * asynchronous nature of these stacks, determining the current
+     * number of elements requires an O(n) traversal.
+     * Additionally, if elements are added or removed during execution
+     * of this method, the returned result may be inaccurate.  Thus,
+     * this method is typically not very useful in concurrent
+     * applications.
+     *
+     * @return the number of elements in this stack
+     */
+    public int size() {
+        int count = 0;
+        for (Node<E> p = top; p != null; p = p.next)
+            if (p.item != null)
+                if (++count == Integer.MAX_VALUE)
+                    break;
+        return count;
+    }
+
+    /**
+     * Returns {@code true} if this stack contains the specified element.
+     * More formally, returns {@code true} if and only if this stack
+     * contains at least one element {@code e} such that
+     * {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this stack
+     * @return {@code true} if this stack contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o != null) {
+            for (Node<E> p = top; p != null; p = p.next) {
+                E item = p.item;
+                if (item != null && o.equals(item))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * stack, if it is present, nearest the top.  More formally,
+     * removes an element {@code e} such that {@code o.equals(e)}, if
+     * this stack contains one or more such elements.
+     *
+     * @param o element to be removed from this stack, if present
+     * @return {@code true} if this stack contained the specified element
+     */
+    public boolean remove(Object o) {
+        if (o != null) {
+            for (Node<E> p = top; p != null; p = p.next) {
+                E item = p.item;
+                if (item != null && o.equals(item) &&
+                    ITEM.compareAndSet(p, item, null))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an iterator over the elements in this stack, from the
+     * top down.
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * @return an iterator over the elements in this stack
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        /** Node holding nextItem, or null if none */
+        private Node<E> nextNode;
+        /** Item to return by next(), held in case it is removed */
+        private E nextItem;
+        /** Node of the last returned item, for remove */
+        private Node<E> lastRet;
+
+        Itr() {
+            advance(top);
+        }
+
+        private void advance(Node<E> p) {
+            for (; p != null; p = p.next) {
+                E item = p.item;
+                if (item != null) {
+                    nextNode = p;
+                    nextItem = item;
+                    return;
+                }
+            }
+            nextNode = null;
+            nextItem = null;
+        }
+
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        public E next() {
+            final Node<E> p = nextNode;
+            if (p == null)
+                throw new NoSuchElementException();
+            E item = nextItem;
+            lastRet = p;
+            advance(p.next);
+            return item;
+        }
+
+        public void remove() {
+            final Node<E> p = lastRet;
+            if (p == null)
+                throw new IllegalStateException();
+            E item = p.item;
+            if (item != null)
+                ITEM.compareAndSet(p, item, null);
+            lastRet = null;
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle TOP;
+    private static final VarHandle ITEM;
+    private static final VarHandle SLOT;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            TOP = l.findVarHandle(ConcurrentLinkedStack.class, "top",
+                                  Node.class);
+            ITEM = l.findVarHandle(Node.class, "item", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * An unbounded lock-free queue based on a linked list of array
+ * segments.  This queue orders elements FIFO (first-in-first-out).
+ * The <em>head</em> of the queue is that element that has been on the
+ * queue the longest time.  The <em>tail</em> of the queue is that
+ * element that has been on the queue the shortest time.
+ *
+ * <p>Unlike {@link ConcurrentLinkedQueue}, in which every insertion
+ * and removal CASes a shared head or tail node and retries on
+ * failure, threads using this queue claim array slots by atomically
+ * incrementing per-segment indices, which never fails, and contend
+ * only on the slot claimed.  Throughput therefore keeps scaling with
+ * many producers and consumers.  Segments are linked, one at a time,
+ * only when the last one fills up, and unlinked when exhausted.
+ *
+ * <p>Iterators and spliterators are
+ * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+ * A consumer may observe the queue as empty while a producer that has
+ * claimed a slot has not yet filled it; the producer then claims
+ * another slot.
+ *
+ * <p>Beware that, unlike in most collections, the {@code size} method
+ * is <em>NOT</em> a constant-time operation, and may be inaccurate if
+ * the queue is modified during traversal.
+ *
+ * <p>This class does not permit the use of {@code null} elements.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code ConcurrentSegmentQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code ConcurrentSegmentQueue} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/java.base/java/util/package-summary.html#CollectionsFramework">
+ * Java Collections Framework</a>.
+ *
+ * @since 12
+ * @param <E> the type of elements held in this queue
+ */
+public class ConcurrentSegmentQueue<E> extends AbstractQueue<E>
+        implements Queue<E> {
+
+    /*
+     * The algorithm is the FAAArrayQueue of Ramalhete and Correia, a
+     * simplification of LCRQ (Morrison and Afek) that needs no
+     * double-width CAS.  Each segment has an array of slots, and an
+     * enqueue index and a dequeue index advanced by getAndAdd.  A
+     * producer that claims slot i CASes it from null to its element;
+     * a consumer that claims slot i swaps in TAKEN, and returns what
+     * it swapped out if that was an element.  If the consumer got
+     * there first, the producer's CAS fails and it claims another
+     * slot, and the consumer, having found null, claims another too.
+     * A producer claiming past the end of the tail segment appends a
+     * new segment holding its element in slot 0, and a consumer
+     * claiming past the end of the head segment advances head.  A
+     * consumer reports empty when the dequeue index has caught up
+     * with the enqueue index in the last segment.
+     *
+     * Removal of interior elements (remove(Object) and iterators)
+     * swaps TAKEN into the slot with a CAS, so that it races safely
+     * with consumers.
+     *
+     * The indices of a segment are claimed by different sets of
+     * threads, and are padded apart, as are head and tail.
+     */
+
+    /** Number of slots in each segment */
+    static final int SEGMENT_SIZE = 1 << 10;
+
+    /** Marks a slot that has been consumed */
+    static final Object TAKEN = new Object();
+
+    static final class Segment {
+        final Object[] items = new Object[SEGMENT_SIZE];
+        @jdk.internal.vm.annotation.Contended("e")
+        volatile int enqIdx;
+        @jdk.internal.vm.annotation.Contended("d")
+        volatile int deqIdx;
+        volatile Segment next;
+
+        Segment() {
+        }
+
+        /** Creates a segment holding the given element in slot 0. */
+        Segment(Object first) {
+            items[0] = first;
+            enqIdx = 1;
+        }
+    }
+
+    /** Segment holding the head; consumers take from it */
+    @jdk.internal.vm.annotation.Contended("h")
+    private volatile Segment head;
+
+    /** Last or next to last segment; producers append to it */
+    @jdk.internal.vm.annotation.Contended("t")
+    private volatile Segment tail;
+
+    /**
+     * Creates a {@code ConcurrentSegmentQueue} that is initially empty.
+     */
+    public ConcurrentSegmentQueue() {
+        head = tail = new Segment();
+    }
+
+    /**
+     * Creates a {@code ConcurrentSegmentQueue} initially containing
+     * the elements of the given collection, added in traversal order
+     * of the collection's iterator.
+     *
+     * @param c the collection of elements to initially contain
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public ConcurrentSegmentQueue(Collection<? extends E> c) {
+        this();
+        for (E e : c)
+            offer(e);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never return
+     * {@code false}.
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        for (;;) {
+            Segment t = tail;
+            if (t.enqIdx < SEGMENT_SIZE) {
+                int i = (int)ENQ_IDX.getAndAdd(t, 1);
+                if (i < SEGMENT_SIZE) {
+                    if (ITEMS.compareAndSet(t.items, i, null, e))
+                        return true;
+                    continue;           // consumed before filled
+                }
+            }
+            if (t != tail)
+                continue;
+            Segment n = t.next;
+            if (n == null) {
+                Segment s = new Segment(e);
+                if (NEXT.compareAndSet(t, null, s)) {
+                    TAIL.compareAndSet(this, t, s);
+                    return true;
+                }
+            }
+            else
+                TAIL.compareAndSet(this, t, n);
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never throw
+     * {@link IllegalStateException} or return {@code false}.
+     *
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return offer(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        for (;;) {
+            Segment h = head;
+            int d = h.deqIdx;
+            if (d >= h.enqIdx && h.next == null)
+                return null;
+            if (d < SEGMENT_SIZE) {
+                int i = (int)DEQ_IDX.getAndAdd(h, 1);
+                if (i < SEGMENT_SIZE) {
+                    Object x = ITEMS.getAndSet(h.items, i, TAKEN);
+                    if (x != null && x != TAKEN)
+                        return (E)x;
+                    continue;
+                }
+            }
+            Segment n = h.next;
+            if (n == null)
+                return null;
+            HEAD.compareAndSet(this, h, n);
+        }
+    }
+
+    /**
+     * Moves the given cursor to the first element at or after slot i
+     * of segment s.
+     *
+     * @return false if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> boolean seek(Cursor<E> c, Segment s, int i) {
+        for (; s != null; s = s.next, i = 0) {
+            int n = Math.min(s.enqIdx, SEGMENT_SIZE);
+            for (i = Math.max(i, s.deqIdx); i < n; ++i) {
+                Object x = ITEMS.getVolatile(s.items, i);
+                if (x != null && x != TAKEN) {
+                    c.segment = s;
+                    c.index = i;
+                    c.item = (E)x;
+                    return true;
+                }
+            }
+        }
+        c.segment = null;
+        c.item = null;
+        return false;
+    }
+
+    /** A position in the queue, used by traversals */
+    static final class Cursor<E> {
+        Segment segment;
+        int index;
+        E item;
+    }
+
+    public E peek() {
+        Cursor<E> c = new Cursor<E>();
+        return seek(c, head, 0) ? c.item : null;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Returns the number of elements in this queue.  If this queue
+     * contains more than {@code Integer.MAX_VALUE} elements, returns
+     * {@code Integer.MAX_VALUE}.
+     *
+     * <p>Beware that, unlike in most collections, this method is
+     * <em>NOT</em> a constant-time operation. Because of the
+     * asynchronous nature of these queues, determining the current
+     * number of elements requires an O(n) traversal.
+     * Additionally, if elements are added or removed during execution
+     * of this method, the returned result may be inaccurate.  Thus,
+     * this method is typically not very useful in concurrent
+     * applications.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        int count = 0;
+        Cursor<E> c = new Cursor<E>();
+        for (boolean found = seek(c, head, 0); found;
+             found = seek(c, c.segment, c.index + 1))
+            if (++count == Integer.MAX_VALUE)
+                break;
+        return count;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue
+     * contains at least one element {@code e} such that
+     * {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o != null) {
+            Cursor<E> c = new Cursor<E>();
+            for (boolean found = seek(c, head, 0); found;
+                 found = seek(c, c.segment, c.index + 1))
+                if (o.equals(c.item))
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * queue, if it is present.  More formally, removes an element
+     * {@code e} such that {@code o.equals(e)}, if this queue contains
+     * one or more such elements.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue contained the specified element
+     */
+    public boolean remove(Object o) {
+        if (o != null) {
+            Cursor<E> c = new Cursor<E>();
+            for (boolean found = seek(c, head, 0); found;
+                 found = seek(c, c.segment, c.index + 1))
+                if (o.equals(c.item) &&
+                    ITEMS.compareAndSet(c.segment.items, c.index,
+                                        c.item, TAKEN))
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The elements will be returned in order from first
+     * (head) to last (tail).
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        /** Position of the next item to return */
+        private final Cursor<E> next = new Cursor<E>();
+        /** Segment and index of the last returned item, for remove */
+        private Segment lastSegment;
+        private int lastIndex;
+        private E lastItem;
+
+        Itr() {
+            seek(next, head, 0);
+        }
+
+        public boolean hasNext() {
+            return next.segment != null;
+        }
+
+        public E next() {
+            final Cursor<E> c = next;
+            if (c.segment == null)
+                throw new NoSuchElementException();
+            lastSegment = c.segment;
+            lastIndex = c.index;
+            E item = lastItem = c.item;
+            seek(c, c.segment, c.index + 1);
+            return item;
+        }
+
+        public void remove() {
+            final Segment s = lastSegment;
+            if (s == null)
+                throw new IllegalStateException();
+            ITEMS.compareAndSet(s.items, lastIndex, lastItem, TAKEN);
+            lastSegment = null;
+            lastItem = null;
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final VarHandle NEXT;
+    private static final VarHandle ENQ_IDX;
+    private static final VarHandle DEQ_IDX;
+    private static final VarHandle ITEMS;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            HEAD = l.findVarHandle(ConcurrentSegmentQueue.class, "head",
+                                   Segment.class);
+            TAIL = l.findVarHandle(ConcurrentSegmentQueue.class, "tail",
+                                   Segment.class);
+            NEXT = l.findVarHandle(Segment.class, "next", Segment.class);
+            ENQ_IDX = l.findVarHandle(Segment.class, "enqIdx", int.class);
+            DEQ_IDX = l.findVarHandle(Segment.class, "deqIdx", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        ITEMS = MethodHandles.arrayElementVarHandle(Object[].class);
+    }
+}
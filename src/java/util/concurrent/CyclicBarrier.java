@@ -35,7 +35,10 @@
 
 package java.util.concurrent;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -124,6 +127,18 @@ import java.util.concurrent.locks.ReentrantLock;
  * {@link InterruptedException} if they too were interrupted at about
  * the same time).
  *
+ * <p>By default, each arrival at the barrier takes a lock, which
+ * limits throughput when many threads arrive at once.  A barrier
+ * constructed as <em>scalable</em> instead counts arrivals in a
+ * combining tree, sized from the number of parties and available
+ * processors, so that each arriving thread usually contends only with
+ * a few others.  Waiting threads spin briefly before blocking, which
+ * suits barriers whose phases are short.  Scalable barriers have the
+ * same breakage model, but the arrival index returned by {@code
+ * await} only distinguishes the last thread to arrive (index zero);
+ * other threads receive distinct positive indices that do not reflect
+ * their order of arrival.
+ *
  * <p>Memory consistency effects: Actions in a thread prior to calling
  * {@code await()}
  * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
@@ -171,6 +186,12 @@ public class CyclicBarrier {
      */
     private int count;
 
+    /**
+     * Arrival counts of a scalable barrier, or null if this barrier
+     * uses the lock and count.
+     */
+    private final CombiningTree tree;
+
     /**
      * Updates state on barrier trip and wakes up everyone.
      * Called only while holding lock.
@@ -263,6 +284,94 @@ public class CyclicBarrier {
         }
     }
 
+    /**
+     * Main barrier code for scalable barriers, covering the same
+     * policies as dowait.
+     */
+    private int treeWait(boolean timed, long nanos)
+        throws InterruptedException, BrokenBarrierException,
+               TimeoutException {
+        final CombiningTree t = tree;
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        TreeGeneration g;
+        int index;
+        for (;;) {
+            while ((g = t.generation).state == TRIPPED)
+                Thread.onSpinWait();        // successor not yet installed
+            if (g.state == BROKEN)
+                throw new BrokenBarrierException();
+            if (Thread.interrupted()) {
+                t.breakBarrier(g);
+                throw new InterruptedException();
+            }
+            if ((index = t.arrive(g)) != RETRY)
+                break;
+            // All counts taken, by more parties than the barrier has;
+            // wait for this generation to end and arrive at the next.
+            while (t.generation == g && g.state != BROKEN)
+                Thread.yield();
+        }
+
+        if (index < 0) {  // tripped
+            // Once completing, waiters can no longer break g, just as
+            // they cannot break a lock-based barrier running its action
+            if (!t.complete(g))
+                throw new BrokenBarrierException();
+            boolean ranAction = false;
+            try {
+                final Runnable command = barrierCommand;
+                if (command != null)
+                    command.run();
+                ranAction = true;
+            } finally {
+                if (!ranAction)
+                    t.abort(g);
+            }
+            t.trip(g, ~index);
+            return 0;
+        }
+
+        // spin, then block, until tripped, broken, interrupted, or timed out
+        int spins = (parties <= NCPU) ? SPINS : 0;
+        WaitNode node = null;
+        boolean queued = false, interrupted = false;
+        int state;
+        while ((state = g.state) == WAITING || state == COMPLETING) {
+            if (Thread.interrupted()) {
+                if (t.breakBarrier(g))
+                    throw new InterruptedException();
+                // Completing, tripped or broken meanwhile, so this
+                // interrupt is deemed to "belong" to subsequent
+                // execution.
+                interrupted = true;
+            }
+            else if (timed && (nanos = deadline - System.nanoTime()) <= 0L) {
+                if (t.breakBarrier(g))
+                    throw new TimeoutException();
+                timed = false;              // completing; await the action
+            }
+            else if (spins > 0) {
+                --spins;
+                Thread.onSpinWait();
+            }
+            else if (node == null)
+                node = new WaitNode();
+            else if (!queued)
+                queued = WAITERS.compareAndSet(g, node.next = g.waiters, node);
+            else if (timed)
+                LockSupport.parkNanos(this, nanos);
+            else
+                LockSupport.park(this);
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (state == BROKEN)
+            throw new BrokenBarrierException();
+        // The last to arrive at leaf 0 would have index 0, which the
+        // tripping thread takes instead; swap with it.
+        return (index == 0) ? t.offset[g.tripLeaf] : index;
+    }
+
     /**
      * Creates a new {@code CyclicBarrier} that will trip when the
      * given number of parties (threads) are waiting upon it, and which
@@ -276,10 +385,34 @@ public class CyclicBarrier {
      * @throws IllegalArgumentException if {@code parties} is less than 1
      */
     public CyclicBarrier(int parties, Runnable barrierAction) {
+        this(parties, barrierAction, false);
+    }
+
+    /**
+     * Creates a new {@code CyclicBarrier} that will trip when the
+     * given number of parties (threads) are waiting upon it, and which
+     * will execute the given barrier action when the barrier is tripped,
+     * performed by the last thread entering the barrier.  If {@code
+     * scalable}, arrivals are counted in a combining tree rather than
+     * under a lock.
+     *
+     * @param parties the number of threads that must invoke {@link #await}
+     *        before the barrier is tripped
+     * @param barrierAction the command to execute when the barrier is
+     *        tripped, or {@code null} if there is no action
+     * @param scalable {@code true} if arrivals should be counted in a
+     *        combining tree, which scales better with many parties
+     *        arriving at once
+     * @throws IllegalArgumentException if {@code parties} is less than 1
+     * @since 12
+     */
+    public CyclicBarrier(int parties, Runnable barrierAction,
+                         boolean scalable) {
         if (parties <= 0) throw new IllegalArgumentException();
         this.parties = parties;
         this.count = parties;
         this.barrierCommand = barrierAction;
+        this.tree = scalable ? new CombiningTree(parties) : null;
     }
 
     /**
@@ -360,7 +493,7 @@ public class CyclicBarrier {
      */
     public int await() throws InterruptedException, BrokenBarrierException {
         try {
-            return dowait(false, 0L);
+            return (tree != null) ? treeWait(false, 0L) : dowait(false, 0L);
         } catch (TimeoutException toe) {
             throw new Error(toe); // cannot happen
         }
@@ -433,7 +566,8 @@ public class CyclicBarrier {
         throws InterruptedException,
                BrokenBarrierException,
                TimeoutException {
-        return dowait(true, unit.toNanos(timeout));
+        long nanos = unit.toNanos(timeout);
+        return (tree != null) ? treeWait(true, nanos) : dowait(true, nanos);
     }
 
     /**
@@ -445,6 +579,8 @@ public class CyclicBarrier {
      *         failed due to an exception; {@code false} otherwise.
      */
     public boolean isBroken() {
+        if (tree != null)
+            return tree.generation.state == BROKEN;
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
@@ -464,6 +600,10 @@ public class CyclicBarrier {
      * instead create a new barrier for subsequent use.
      */
     public void reset() {
+        if (tree != null) {
+            tree.reset();
+            return;
+        }
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
@@ -477,10 +617,14 @@ public class CyclicBarrier {
     /**
      * Returns the number of parties currently waiting at the barrier.
      * This method is primarily useful for debugging and assertions.
+     * For a scalable barrier, the result is an estimate, since
+     * arrivals may occur while it is computed.
      *
      * @return the number of parties currently blocked in {@link #await}
      */
     public int getNumberWaiting() {
+        if (tree != null)
+            return tree.numberWaiting();
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
@@ -489,4 +633,271 @@ public class CyclicBarrier {
             lock.unlock();
         }
     }
+    /** Generation states of scalable barriers */
+    static final int WAITING    = 0;
+    static final int COMPLETING = 1;
+    static final int TRIPPED    = 2;
+    static final int BROKEN     = 3;
+
+    /** Returned by CombiningTree.arrive if no arrival is left to take */
+    static final int RETRY = Integer.MIN_VALUE;
+
+    /** Number of CPUS, to place bounds on some sizings */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of parties or child nodes counted by each
+     * node of a combining tree.  Small nodes keep contention on each
+     * count low; the depth of the tree grows only logarithmically.
+     */
+    static final int FAN_IN = 4;
+
+    /**
+     * The number of times a thread waiting at a scalable barrier spins
+     * before blocking, if there are no more parties than processors.
+     * Blocking and waking large numbers of threads is slow compared to
+     * short phases, so waiters first spin for a few microseconds.
+     */
+    static final int SPINS = (NCPU < 2) ? 0 : 1 << 11;
+
+    /**
+     * Spacing, in array elements, between the counts of a combining
+     * tree, so that each count has a cache line of its own.
+     */
+    static final int SPACING = 16;
+
+    /**
+     * A generation of a scalable barrier.  Its state moves from
+     * WAITING either to BROKEN, or, when the root is completed, to
+     * COMPLETING while the barrier action runs, and then to TRIPPED,
+     * or to BROKEN if the action fails.  Only the tripping thread
+     * moves it out of COMPLETING.  The tripping thread or reset then
+     * installs a successor with the next sequence number.
+     */
+    static final class TreeGeneration {
+        final int seq;
+        volatile int state;
+        /** The leaf at which the tripping thread arrived */
+        int tripLeaf;
+        /** Treiber stack of blocked threads */
+        volatile WaitNode waiters;
+
+        TreeGeneration(int seq) {
+            this.seq = seq;
+        }
+
+        void releaseWaiters() {
+            for (WaitNode w = (WaitNode)WAITERS.getAndSet(this, null);
+                 w != null; w = w.next)
+                LockSupport.unpark(w.thread);
+        }
+    }
+
+    /** Wait nodes for the stack of blocked threads */
+    static final class WaitNode {
+        final Thread thread = Thread.currentThread();
+        WaitNode next;
+    }
+
+    /**
+     * Arrival counts of a scalable barrier, arranged as a combining
+     * tree.  Each node counts down the arrivals it still expects in
+     * the current generation: parties for leaves, children for the
+     * others.  A thread arrives at some leaf with arrivals left,
+     * starting at one chosen by its probe so that threads spread
+     * over the leaves, and the thread taking the count of a node to
+     * zero arrives at its parent in turn.  The thread completing the
+     * root trips the barrier.
+     *
+     * Each count is tagged in its upper half with the sequence number
+     * of the generation it belongs to, so counts left over from an
+     * earlier generation read as full and need no reset.  A thread
+     * seeing a newer tag is late, and its generation is over.
+     */
+    static final class CombiningTree {
+        /** Nodes are numbered leaves first, level by level, root last */
+        final int leaves;
+        final int[] capacity;
+        final int[] parent;       // -1 for the root
+        final int[] offset;       // per leaf, base of its arrival indices
+        final long[] counts;      // per node, at index node * SPACING
+        volatile TreeGeneration generation;
+
+        CombiningTree(int parties) {
+            // With few processors there is little contention to spread
+            int fanIn = (NCPU <= FAN_IN) ? parties : FAN_IN;
+            int leaves = (parties - 1) / fanIn + 1, nodes = 0;
+            for (int n = leaves; ; n = (n - 1) / fanIn + 1) {
+                nodes += n;
+                if (n == 1)
+                    break;
+            }
+            int[] capacity = new int[nodes], parent = new int[nodes];
+            int[] offset = new int[leaves];
+            for (int j = 0, off = 0; j < leaves; ++j) {
+                int c = parties / leaves + ((j < parties % leaves) ? 1 : 0);
+                capacity[j] = c;
+                offset[j] = off;
+                off += c;
+            }
+            for (int base = 0, n = leaves; n > 1; ) {
+                int up = base + n;
+                for (int i = 0; i < n; ++i)
+                    ++capacity[parent[base + i] = up + i / fanIn];
+                base = up;
+                n = (n - 1) / fanIn + 1;
+            }
+            parent[nodes - 1] = -1;
+            this.leaves = leaves;
+            this.capacity = capacity;
+            this.parent = parent;
+            this.offset = offset;
+            this.counts = new long[nodes * SPACING];
+            this.generation = new TreeGeneration(1); // counts start at tag 0
+        }
+
+        /**
+         * Counts down the given node for generation g.
+         *
+         * @return the remaining count, or -1 if the node had no
+         * arrivals left or belongs to a newer generation
+         */
+        private int countDown(TreeGeneration g, int node) {
+            final long[] counts = this.counts;
+            final int i = node * SPACING, seq = g.seq;
+            for (;;) {
+                long c = (long)COUNTS.getVolatile(counts, i);
+                int tag = (int)(c >>> 32), remaining;
+                if (tag == seq)
+                    remaining = (int)c;
+                else if (tag - seq > 0)
+                    return -1;
+                else
+                    remaining = capacity[node];
+                if (remaining == 0)
+                    return -1;
+                if (COUNTS.compareAndSet(counts, i, c,
+                                         ((long)seq << 32) | (remaining - 1)))
+                    return remaining - 1;
+            }
+        }
+
+        /**
+         * Records an arrival for generation g.
+         *
+         * @return the arrival index, or if this arrival completed the
+         * root, the complement of the leaf arrived at, or RETRY if
+         * there was no arrival left to take
+         */
+        int arrive(TreeGeneration g) {
+            int probe = ThreadLocalRandom.getProbe();
+            if (probe == 0) {
+                ThreadLocalRandom.localInit();
+                probe = ThreadLocalRandom.getProbe();
+            }
+            final int leaves = this.leaves;
+            int leaf = (probe & 0x7fffffff) % leaves, r;
+            for (int k = 0; (r = countDown(g, leaf)) < 0; ) {
+                if (++k >= leaves)
+                    return RETRY;
+                if (++leaf == leaves)
+                    leaf = 0;
+            }
+            int index = offset[leaf] + r;
+            for (int node = leaf; r == 0; ) {
+                if ((node = parent[node]) < 0)
+                    return ~leaf;
+                if ((r = countDown(g, node)) < 0)
+                    break;              // late; generation is broken
+            }
+            return index;
+        }
+
+        /**
+         * Marks generation g, whose root has been completed, as
+         * completing, so that it can no longer be broken by waiters.
+         *
+         * @return false if g was broken first
+         */
+        boolean complete(TreeGeneration g) {
+            return STATE.compareAndSet(g, WAITING, COMPLETING);
+        }
+
+        /**
+         * Breaks completing generation g after its action failed, and
+         * wakes up everyone.
+         */
+        void abort(TreeGeneration g) {
+            if (STATE.compareAndSet(g, COMPLETING, BROKEN))
+                g.releaseWaiters();
+        }
+
+        /**
+         * Trips completing generation g and installs its successor,
+         * unless reset already replaced it.
+         */
+        void trip(TreeGeneration g, int leaf) {
+            g.tripLeaf = leaf;
+            g.state = TRIPPED;
+            GENERATION.compareAndSet(this, g, new TreeGeneration(g.seq + 1));
+            g.releaseWaiters();
+        }
+
+        /**
+         * Breaks generation g if still waiting, and wakes up everyone.
+         *
+         * @return true if this call broke g
+         */
+        boolean breakBarrier(TreeGeneration g) {
+            if (!STATE.compareAndSet(g, WAITING, BROKEN))
+                return false;
+            g.releaseWaiters();
+            return true;
+        }
+
+        void reset() {
+            for (TreeGeneration g;;) {
+                breakBarrier(g = generation);
+                if (GENERATION.compareAndSet(this, g,
+                                             new TreeGeneration(g.seq + 1)))
+                    return;
+            }
+        }
+
+        int numberWaiting() {
+            TreeGeneration g = generation;
+            if (g.state != WAITING)
+                return 0;
+            int n = 0;
+            for (int j = 0; j < leaves; ++j) {
+                long c = (long)COUNTS.getVolatile(counts, j * SPACING);
+                if ((int)(c >>> 32) == g.seq)
+                    n += capacity[j] - (int)c;
+            }
+            return n;
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle COUNTS;
+    private static final VarHandle GENERATION;
+    private static final VarHandle STATE;
+    private static final VarHandle WAITERS;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+            GENERATION = l.findVarHandle(CombiningTree.class, "generation",
+                                         TreeGeneration.class);
+            STATE = l.findVarHandle(TreeGeneration.class, "state", int.class);
+            WAITERS = l.findVarHandle(TreeGeneration.class, "waiters",
+                                      WaitNode.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
+        // Reduce the risk of rare disastrous classloading in first call to
+        // LockSupport.park: https://bugs.openjdk.java.net/browse/JDK-8074773
+        Class<?> ensureLoaded = LockSupport.class;
+    }
 }
@@ -149,6 +149,9 @@ import java.util.concurrent.locks.LockSupport;
  * <li>{@code java.util.concurrent.ForkJoinPool.common.maximumSpares}
  * - the maximum number of allowed extra threads to maintain target
  * parallelism (default 256).
+ * <li>{@code java.util.concurrent.ForkJoinPool.common.statistics}
+ * - {@code true} to {@linkplain #enableStatistics enable statistics}
+ * from the start (default {@code false}).
  * </ul>
  * If no thread factory is supplied via a system property, then the
  * common pool uses a factory that uses the system class loader as the
@@ -769,6 +772,13 @@ public class ForkJoinPool extends AbstractExecutorService {
      */
     static final int TOP_BOUND_SHIFT = 10;
 
+    /**
+     * Mask of the per-worker task count selecting the tasks whose
+     * execution time is sampled when statistics are enabled: one in
+     * 64, so that the cost of reading the clock is amortized.
+     */
+    static final int TIME_SAMPLE_MASK = (1 << 6) - 1;
+
     /**
      * Queues supporting work-stealing as well as external task
      * submission. See above for descriptions and algorithms.
@@ -782,6 +792,8 @@ public class ForkJoinPool extends AbstractExecutorService {
         volatile int phase;        // versioned, negative: queued, 1: locked
         int stackPred;             // pool stack (ctl) predecessor link
         int nsteals;               // number of steals
+        WorkerStats stats;         // owner-written statistics, or null;
+                                   // installed with release
         ForkJoinTask<?>[] array;   // the queued tasks; power of 2 size
         final ForkJoinPool pool;   // the containing pool (may be null)
         final ForkJoinWorkerThread owner; // owning thread or null if shared
@@ -1015,9 +1027,13 @@ public class ForkJoinPool extends AbstractExecutorService {
          */
         final void topLevelExec(ForkJoinTask<?> t, WorkQueue q, int n) {
             if (t != null && q != null) { // hoist checks
+                WorkerStats st = stats;
                 int nstolen = 1;
                 for (;;) {
-                    t.doExec();
+                    if (st == null)
+                        t.doExec();
+                    else
+                        st.exec(t, queueSize());
                     if (n-- < 0)
                         break;
                     else if ((t = nextLocalTask()) == null) {
@@ -1163,18 +1179,142 @@ public class ForkJoinPool extends AbstractExecutorService {
         static final VarHandle PHASE;
         static final VarHandle BASE;
         static final VarHandle TOP;
+        static final VarHandle STATS;
         static {
             try {
                 MethodHandles.Lookup l = MethodHandles.lookup();
                 PHASE = l.findVarHandle(WorkQueue.class, "phase", int.class);
                 BASE = l.findVarHandle(WorkQueue.class, "base", int.class);
                 TOP = l.findVarHandle(WorkQueue.class, "top", int.class);
+                STATS = l.findVarHandle(WorkQueue.class, "stats",
+                                        WorkerStats.class);
             } catch (ReflectiveOperationException e) {
                 throw new ExceptionInInitializerError(e);
             }
         }
     }
 
+    /**
+     * Per-worker statistics, installed in a WorkQueue by its owner
+     * once statistics are enabled (with a release store, read with
+     * acquire by getStatistics).  Counters are written only by the
+     * owner, in opaque mode, and read racily by getStatistics, also
+     * in opaque mode, so each is read whole, and since each only ever
+     * increases, and successive reads are ordered by the pool lock, a
+     * reader sees a value at least as recent as the one it last saw.
+     * The task count is written last, in release mode, and read first,
+     * with acquire, so that the histograms reflect at least the tasks
+     * counted.  Retired workers' statistics are added to the pool's,
+     * under the pool lock.
+     *
+     * Histograms have logarithmic buckets: element 0 counts zero
+     * values, and element i > 0 counts values v with 2^(i-1) <= v <
+     * 2^i, computed as the bit length of v.
+     */
+    static final class WorkerStats {
+        long tasks;                // top-level tasks executed
+        long stealAttempts;        // CASes to take a task from a queue
+        long steals;               // successful stealAttempts
+        long scans;                // scans for tasks
+        long parks;                // times blocked idle
+        long compensations;        // spares released or created on block
+        long timedTasks;           // number of tasks sampled in taskTimes
+        final long[] queueDepths = new long[Integer.SIZE];
+        final long[] taskTimes = new long[Long.SIZE];
+
+        /**
+         * Executes a task, recording it and the number of tasks
+         * remaining in the owner's queue, and timing one in every
+         * TIME_SAMPLE_MASK + 1 tasks.
+         */
+        final void exec(ForkJoinTask<?> t, int queued) {
+            increment(queueDepths,
+                      Integer.SIZE - Integer.numberOfLeadingZeros(queued));
+            long n = tasks + 1L;
+            if ((n & TIME_SAMPLE_MASK) != 0)
+                t.doExec();
+            else {
+                long start = System.nanoTime();
+                t.doExec();
+                long d = System.nanoTime() - start;
+                increment(taskTimes,
+                          Long.SIZE - Long.numberOfLeadingZeros(Math.max(d, 0L)));
+                TIMED_TASKS.setOpaque(this, timedTasks + 1L);
+            }
+            TASKS.setRelease(this, n);
+        }
+
+        private static void increment(long[] a, int i) {
+            COUNTS.setOpaque(a, i, a[i] + 1L);
+        }
+
+        // Owner-only increments of the other counters
+
+        final void scanned() {
+            SCANS.setOpaque(this, scans + 1L);
+        }
+
+        final void attemptedSteal(boolean taken) {
+            STEAL_ATTEMPTS.setOpaque(this, stealAttempts + 1L);
+            if (taken)
+                STEALS.setOpaque(this, steals + 1L);
+        }
+
+        final void parked() {
+            PARKS.setOpaque(this, parks + 1L);
+        }
+
+        final void compensated() {
+            COMPENSATIONS.setOpaque(this, compensations + 1L);
+        }
+
+        /**
+         * Adds the counts of the given worker's statistics, which may
+         * be concurrently updated by their owner.
+         */
+        final void add(WorkerStats s) {
+            tasks += (long)TASKS.getAcquire(s);
+            stealAttempts += (long)STEAL_ATTEMPTS.getOpaque(s);
+            steals += (long)STEALS.getOpaque(s);
+            scans += (long)SCANS.getOpaque(s);
+            parks += (long)PARKS.getOpaque(s);
+            compensations += (long)COMPENSATIONS.getOpaque(s);
+            timedTasks += (long)TIMED_TASKS.getOpaque(s);
+            for (int i = 0; i < queueDepths.length; ++i)
+                queueDepths[i] += (long)COUNTS.getOpaque(s.queueDepths, i);
+            for (int i = 0; i < taskTimes.length; ++i)
+                taskTimes[i] += (long)COUNTS.getOpaque(s.taskTimes, i);
+        }
+
+        // VarHandle mechanics
+        private static final VarHandle TASKS;
+        private static final VarHandle STEAL_ATTEMPTS;
+        private static final VarHandle STEALS;
+        private static final VarHandle SCANS;
+        private static final VarHandle PARKS;
+        private static final VarHandle COMPENSATIONS;
+        private static final VarHandle TIMED_TASKS;
+        private static final VarHandle COUNTS;
+        static {
+            try {
+                MethodHandles.Lookup l = MethodHandles.lookup();
+                TASKS = l.findVarHandle(WorkerStats.class, "tasks", long.class);
+                STEAL_ATTEMPTS = l.findVarHandle(WorkerStats.class,
+                                                 "stealAttempts", long.class);
+                STEALS = l.findVarHandle(WorkerStats.class, "steals", long.class);
+                SCANS = l.findVarHandle(WorkerStats.class, "scans", long.class);
+                PARKS = l.findVarHandle(WorkerStats.class, "parks", long.class);
+                COMPENSATIONS = l.findVarHandle(WorkerStats.class,
+                                                "compensations", long.class);
+                TIMED_TASKS = l.findVarHandle(WorkerStats.class,
+                                              "timedTasks", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+            COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+        }
+    }
+
     // static fields (initialized in static initializer below)
 
     /**
@@ -1307,6 +1447,8 @@ public class ForkJoinPool extends AbstractExecutorService {
     final ForkJoinWorkerThreadFactory factory;
     final UncaughtExceptionHandler ueh;  // per-worker UEH
     final Predicate<? super ForkJoinPool> saturate;
+    volatile boolean collectStats;       // true once statistics enabled
+    WorkerStats retiredStats;            // of deregistered workers; locked
 
     @jdk.internal.vm.annotation.Contended("fjpctl") // segregate
     volatile long ctl;                   // main pool control
@@ -1439,6 +1581,13 @@ public class ForkJoinPool extends AbstractExecutorService {
                         ws[i = wid & (n - 1)] == w)
                         ws[i] = null;
                     stealCount += ns;
+                    WorkerStats st;
+                    if ((st = (WorkerStats)WorkQueue.STATS.getAcquire(w))
+                        != null) {
+                        if (retiredStats == null)
+                            retiredStats = new WorkerStats();
+                        retiredStats.add(st);
+                    }
                 }
             }
             phase = w.phase;
@@ -1532,6 +1681,9 @@ public class ForkJoinPool extends AbstractExecutorService {
                         v.phase = np;
                         if (vt != null && v.source < 0)
                             LockSupport.unpark(vt);
+                        WorkerStats st;
+                        if ((st = w.stats) != null)
+                            st.compensated();
                         return (wp < 0) ? -1 : 1;
                     }
                 }
@@ -1579,7 +1731,12 @@ public class ForkJoinPool extends AbstractExecutorService {
         }
 
         long nc = ((c + TC_UNIT) & TC_MASK) | (c & ~TC_MASK); // expand pool
-        return CTL.compareAndSet(this, c, nc) && createWorker() ? 1 : 0;
+        if (!CTL.compareAndSet(this, c, nc) || !createWorker())
+            return 0;
+        WorkerStats st;
+        if (w != null && (st = w.stats) != null)
+            st.compensated();
+        return 1;
     }
 
     /**
@@ -1591,6 +1748,8 @@ public class ForkJoinPool extends AbstractExecutorService {
         w.array = new ForkJoinTask<?>[INITIAL_QUEUE_CAPACITY]; // initialize
         for (;;) {
             int phase;
+            if (w.stats == null && collectStats)  // install on first use
+                WorkQueue.STATS.setRelease(w, new WorkerStats());
             if (scan(w, r)) {                     // scan until apparently empty
                 r ^= r << 13; r ^= r >>> 17; r ^= r << 5; // move (xorshift)
             }
@@ -1616,6 +1775,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                 else if (rc <= 0 && pred != 0 && phase == (int)c) {
                     long nc = (UC_MASK & (c - TC_UNIT)) | (SP_MASK & pred);
                     long d = keepAlive + System.currentTimeMillis();
+                    if (w.stats != null)
+                        w.stats.parked();
                     LockSupport.parkUntil(this, d);
                     if (ctl == c &&               // drop on timeout if all idle
                         d - System.currentTimeMillis() <= TIMEOUT_SLOP &&
@@ -1624,8 +1785,11 @@ public class ForkJoinPool extends AbstractExecutorService {
                         break;
                     }
                 }
-                else if (w.phase < 0)
+                else if (w.phase < 0) {
+                    if (w.stats != null)
+                        w.stats.parked();
                     LockSupport.park(this);       // OK if spuriously woken
+                }
                 w.source = 0;                     // disable signal
             }
         }
@@ -1640,6 +1804,9 @@ public class ForkJoinPool extends AbstractExecutorService {
     private boolean scan(WorkQueue w, int r) {
         WorkQueue[] ws; int n;
         if ((ws = workQueues) != null && (n = ws.length) > 0 && w != null) {
+            WorkerStats st;
+            if ((st = w.stats) != null)
+                st.scanned();
             for (int m = n - 1, j = r & m;;) {
                 WorkQueue q; int b;
                 if ((q = ws[j]) != null && q.top != (b = q.base)) {
@@ -1647,8 +1814,11 @@ public class ForkJoinPool extends AbstractExecutorService {
                     ForkJoinTask<?>[] a; int cap, k; ForkJoinTask<?> t;
                     if ((a = q.array) != null && (cap = a.length) > 0) {
                         t = (ForkJoinTask<?>)QA.getAcquire(a, k = (cap - 1) & b);
-                        if (q.base == b++ && t != null &&
-                            QA.compareAndSet(a, k, t, null)) {
+                        boolean taken = (q.base == b++ && t != null &&
+                                         QA.compareAndSet(a, k, t, null));
+                        if (st != null && t != null)
+                            st.attemptedSteal(taken);
+                        if (taken) {
                             q.base = b;
                             w.source = qid;
                             if (q.top - b > 0)
@@ -2337,11 +2507,14 @@ public class ForkJoinPool extends AbstractExecutorService {
         int parallelism = -1;
         ForkJoinWorkerThreadFactory fac = null;
         UncaughtExceptionHandler handler = null;
+        boolean stats = false;
         try {  // ignore exceptions in accessing/parsing properties
             String pp = System.getProperty
                 ("java.util.concurrent.ForkJoinPool.common.parallelism");
             if (pp != null)
                 parallelism = Integer.parseInt(pp);
+            stats = Boolean.parseBoolean(System.getProperty
+                ("java.util.concurrent.ForkJoinPool.common.statistics"));
             fac = (ForkJoinWorkerThreadFactory) newInstanceFromSystemProperty(
                 "java.util.concurrent.ForkJoinPool.common.threadFactory");
             handler = (UncaughtExceptionHandler) newInstanceFromSystemProperty(
@@ -2376,6 +2549,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         this.keepAlive = DEFAULT_KEEPALIVE;
         this.bounds = b;
         this.mode = parallelism;
+        this.collectStats = stats;
         this.ctl = c;
     }
 
@@ -2680,6 +2854,224 @@ public class ForkJoinPool extends AbstractExecutorService {
         return count;
     }
 
+    /**
+     * Enables the collection of per-worker statistics, available from
+     * {@link #getStatistics}.  Each worker starts recording the next
+     * time it looks for work; events before then are not counted.
+     * Recording uses plain writes to fields owned by each worker, and
+     * reads the clock for only one in 64 tasks, so it is cheap enough
+     * to leave enabled.  Once enabled, collection cannot be disabled.
+     *
+     * @since 12
+     */
+    public void enableStatistics() {
+        collectStats = true;
+    }
+
+    /**
+     * Returns {@code true} if statistics are being collected.
+     *
+     * @return {@code true} if statistics are being collected
+     * @since 12
+     */
+    public boolean isStatisticsEnabled() {
+        return collectStats;
+    }
+
+    /**
+     * Returns a snapshot of the statistics collected by the workers of
+     * this pool since {@link #enableStatistics} was invoked.  Each
+     * worker's values are read once, without stopping it, so values of
+     * different counters of a busy worker may not all correspond to
+     * the same instant, but each is exact as of the time it was read,
+     * and never decreases between successive snapshots.  The pool
+     * totals are the sums of exactly the values reported for current
+     * workers, plus those of workers that have terminated.
+     *
+     * @return the statistics, which are all zero if not enabled
+     * @since 12
+     */
+    public Statistics getStatistics() {
+        ArrayList<Statistics> workers = new ArrayList<>();
+        WorkerStats total = new WorkerStats();
+        Object lock = workerNamePrefix;
+        if (lock != null) {
+            synchronized (lock) {
+                WorkQueue[] ws; WorkQueue w; WorkerStats st;
+                if ((ws = workQueues) != null) {
+                    for (int i = 1; i < ws.length; i += 2) {
+                        if ((w = ws[i]) != null &&
+                            (st = (WorkerStats)WorkQueue.STATS.getAcquire(w))
+                            != null) {
+                            Statistics s = new Statistics(w.getPoolIndex(), st,
+                                                          null);
+                            total.add(s.counts);
+                            workers.add(s);
+                        }
+                    }
+                }
+                if (retiredStats != null)
+                    total.add(retiredStats);
+            }
+        }
+        return new Statistics(-1, total, Collections.unmodifiableList(workers));
+    }
+
+    /**
+     * A snapshot of the statistics collected by a {@code ForkJoinPool}
+     * or one of its workers, obtained from {@link #getStatistics}.
+     * Histograms have logarithmic buckets: element 0 counts zero values,
+     * and element <i>i</i> &gt; 0 counts values <i>v</i> such that
+     * 2<sup><i>i</i>-1</sup> &le; <i>v</i> &lt; 2<sup><i>i</i></sup>.
+     *
+     * @since 12
+     */
+    public static final class Statistics {
+        private final int poolIndex;
+        private final WorkerStats counts;
+        private final List<Statistics> workers;
+
+        /**
+         * Copies the given statistics; the copy is private, so it
+         * is never written once constructed.
+         */
+        Statistics(int poolIndex, WorkerStats st, List<Statistics> workers) {
+            WorkerStats counts = new WorkerStats();
+            counts.add(st);
+            this.poolIndex = poolIndex;
+            this.counts = counts;
+            this.workers = (workers == null) ? Collections.emptyList() : workers;
+        }
+
+        /**
+         * Returns the index of the worker in its pool (as reported by
+         * {@link ForkJoinWorkerThread#getPoolIndex}), or -1 if these
+         * are the totals of the pool.
+         *
+         * @return the worker index, or -1 for pool totals
+         */
+        public int getPoolIndex() {
+            return poolIndex;
+        }
+
+        /**
+         * Returns the statistics of each worker that was running when
+         * the snapshot was taken, or an empty list if these are the
+         * statistics of a single worker.
+         *
+         * @return an unmodifiable list of worker statistics
+         */
+        public List<Statistics> getWorkerStatistics() {
+            return workers;
+        }
+
+        /**
+         * Returns the number of top-level tasks executed, excluding
+         * those run while joining other tasks.
+         *
+         * @return the number of tasks executed
+         */
+        public long getTaskCount() {
+            return counts.tasks;
+        }
+
+        /**
+         * Returns the number of attempts to take a task from a queue
+         * found to be non-empty, including the worker's own.
+         *
+         * @return the number of steal attempts
+         */
+        public long getStealAttemptCount() {
+            return counts.stealAttempts;
+        }
+
+        /**
+         * Returns the number of steal attempts that succeeded.
+         *
+         * @return the number of steals
+         */
+        public long getStealCount() {
+            return counts.steals;
+        }
+
+        /**
+         * Returns the number of scans of the pool's queues for tasks.
+         *
+         * @return the number of scans
+         */
+        public long getScanCount() {
+            return counts.scans;
+        }
+
+        /**
+         * Returns the number of times an idle worker blocked awaiting
+         * tasks.
+         *
+         * @return the number of parks
+         */
+        public long getParkCount() {
+            return counts.parks;
+        }
+
+        /**
+         * Returns the number of times a worker about to block in a
+         * join or {@link ManagedBlocker} released or created a spare
+         * thread to maintain parallelism.
+         *
+         * @return the number of compensations
+         */
+        public long getCompensationCount() {
+            return counts.compensations;
+        }
+
+        /**
+         * Returns a histogram of the number of tasks in the worker's
+         * own queue each time it started a top-level task.
+         *
+         * @return the queue depth histogram, with 32 buckets
+         */
+        public long[] getQueueDepthHistogram() {
+            return counts.queueDepths.clone();
+        }
+
+        /**
+         * Returns a histogram of the execution times, in nanoseconds,
+         * of a sample of top-level tasks.
+         *
+         * @return the task time histogram, with 64 buckets
+         */
+        public long[] getTaskTimeHistogram() {
+            return counts.taskTimes.clone();
+        }
+
+        /**
+         * Returns the number of tasks recorded in the task time
+         * histogram.
+         *
+         * @return the number of timed tasks
+         */
+        public long getTimedTaskCount() {
+            return counts.timedTasks;
+        }
+
+        /**
+         * Returns a string identifying these statistics, and their
+         * counts.
+         *
+         * @return a string identifying these statistics
+         */
+        public String toString() {
+            return ((poolIndex < 0) ? "pool" : "worker " + poolIndex) +
+                "[tasks = " + counts.tasks +
+                ", steals = " + counts.steals +
+                ", stealAttempts = " + counts.stealAttempts +
+                ", scans = " + counts.scans +
+                ", parks = " + counts.parks +
+                ", compensations = " + counts.compensations +
+                ", timedTasks = " + counts.timedTasks + "]";
+        }
+    }
+
     /**
      * Returns an estimate of the total number of tasks currently held
      * in queues by worker threads (but not including tasks submitted
@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks submitted under keys, sequentially for each key and
+ * concurrently across keys, using the threads of an underlying
+ * {@link Executor}.  Tasks submitted under equal keys (as determined
+ * by {@code equals}) run one at a time, in the order in which they
+ * were accepted, with each task <i>happening-before</i> the next;
+ * tasks under different keys may run in parallel.  This suits, for
+ * example, processing events per account or per connection without
+ * dedicating a thread to each.
+ *
+ * <p>Tasks pending for a key form a chain that is run by a single
+ * task of the underlying executor at a time, which is only submitted
+ * when the chain goes from empty to non-empty.  A chain yields its
+ * thread after running a batch of tasks, by resubmitting itself, so
+ * that keys with many pending tasks do not starve others.  With a
+ * {@link ForkJoinPool} as underlying executor, idle workers steal
+ * chains from busy ones.  Accepting a task is lock-free, except when
+ * waiting for space.
+ *
+ * <p>At most a fixed capacity of tasks may be pending (queued or
+ * running) per key.  When a key is at capacity, {@link #execute}
+ * throws {@link RejectedExecutionException}, {@link #offer(Object,
+ * Runnable) offer} returns {@code false}, and {@link #put} blocks
+ * until one of the tasks for that key completes.  Keys with no
+ * pending tasks hold no resources.
+ *
+ * <p>If a task throws an exception, the chain for its key carries on
+ * with the next task in a new submission to the underlying executor,
+ * and the exception propagates to the underlying executor as for any
+ * other failing task.  If the underlying executor rejects the
+ * submission of a chain, typically because it has been shut down, a
+ * task being submitted is rejected with {@code
+ * RejectedExecutionException}, but tasks already accepted are never
+ * discarded: the thread that found the chain rejected runs them
+ * itself, in order, before returning or throwing.
+ *
+ * <p>Memory consistency effects: Actions in a thread prior to
+ * submitting a task under a key <i>happen-before</i> the task runs,
+ * which in turn <i>happens-before</i> any later task accepted for
+ * the same key runs.
+ *
+ * @since 12
+ * @param <K> the type of keys
+ */
+public class KeyedExecutor<K> {
+
+    /*
+     * Each key with pending tasks maps to a Chain, holding a count of
+     * pending tasks and an intrusive multi-producer single-consumer
+     * linked queue of them (as in Vyukov's MPSC queue): producers
+     * swap themselves in as tail and then link from their
+     * predecessor, and the single consumer follows next links from a
+     * dummy head.  A producer first reserves its place by increasing
+     * the count (which enforces the bound), and the one increasing it
+     * from zero submits the chain to the executor.  The chain, as a
+     * Runnable, takes and runs tasks and decrements the count after
+     * each, ending when it reaches zero.  A consumer seeing a
+     * reserved but not yet linked node spins briefly for the link.
+     *
+     * A chain whose count reaches zero is retired by CASing the count
+     * to -1 and removed from the map; producers seeing a retired
+     * chain look up (or create) a new one.  If instead a producer
+     * increases the count from zero first, it submits the chain again.
+     *
+     * Producers waiting for space push themselves on a Treiber stack
+     * of waiters, which is released whenever a task completes.
+     */
+
+    /** Number of tasks a chain runs before yielding its thread */
+    static final int BATCH = 32;
+
+    /** Count of a chain that has been removed from the map */
+    static final int RETIRED = -1;
+
+    /** Results of Chain.tryAdd */
+    static final int ADDED = 0, FULL = 1, STALE = 2;
+
+    /** The executor running the chains */
+    private final Executor executor;
+
+    /** The maximum number of pending tasks per key */
+    private final int capacity;
+
+    /** Chains of keys with pending tasks */
+    private final ConcurrentHashMap<K, Chain> chains =
+        new ConcurrentHashMap<>();
+
+    /** Nodes of the task queue of a chain */
+    static final class Node {
+        Runnable task;
+        volatile Node next;
+        Node(Runnable task) { this.task = task; }
+    }
+
+    /** Nodes of the stack of threads waiting for space */
+    static final class WaitNode {
+        final Thread thread = Thread.currentThread();
+        WaitNode next;
+    }
+
+    /**
+     * The tasks pending for a key, and the Runnable running them.
+     */
+    final class Chain implements Runnable {
+        final K key;
+        volatile int count;
+        volatile Node tail;
+        Node head;                      // accessed only by the runner
+        volatile WaitNode waiters;
+
+        Chain(K key) {
+            this.key = key;
+            head = tail = new Node(null);
+        }
+
+        /**
+         * Appends the given node if not at capacity, submitting this
+         * chain if it was empty.
+         */
+        int tryAdd(Node node) {
+            for (int c;;) {
+                if ((c = count) == RETIRED)
+                    return STALE;
+                if (c >= capacity)
+                    return FULL;
+                if (COUNT.compareAndSet(this, c, c + 1)) {
+                    ((Node)TAIL.getAndSet(this, node)).next = node;
+                    if (c == 0 && !dispatch()) {
+                        // reject this task, but run any added meanwhile
+                        node.task = null;
+                        RejectedExecutionException rex =
+                            new RejectedExecutionException();
+                        Throwable ex = runHere();
+                        if (ex != null)
+                            rex.addSuppressed(ex);
+                        throw rex;
+                    }
+                    return ADDED;
+                }
+            }
+        }
+
+        /**
+         * Returns the next task, which must have been reserved, or
+         * null if it was rejected.
+         */
+        Runnable take() {
+            Node h = head, p;
+            while ((p = h.next) == null)
+                Thread.onSpinWait();    // producer between swap and link
+            head = p;
+            Runnable task = p.task;
+            p.task = null;
+            return task;
+        }
+
+        /**
+         * Releases the count of a completed task, retiring this chain
+         * if it was the last one.
+         *
+         * @return true if more tasks are pending
+         */
+        boolean finish() {
+            int c = (int)COUNT.getAndAdd(this, -1) - 1;
+            if (waiters != null) {
+                for (WaitNode w = (WaitNode)WAITERS.getAndSet(this, null);
+                     w != null; w = w.next)
+                    LockSupport.unpark(w.thread);
+            }
+            if (c > 0)
+                return true;
+            if (COUNT.compareAndSet(this, 0, RETIRED))
+                chains.remove(key, this);
+            return false;
+        }
+
+        /** Submits this chain, returning false if rejected. */
+        boolean dispatch() {
+            try {
+                executor.execute(this);
+                return true;
+            } catch (RejectedExecutionException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Runs all pending tasks in the current thread, once the
+         * executor has rejected this chain.
+         *
+         * @return the first exception thrown by a task, with any
+         *         later ones suppressed, or null if none
+         */
+        Throwable runHere() {
+            Throwable failure = null;
+            do {
+                Runnable task = take();
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (Throwable ex) {
+                        if (failure == null)
+                            failure = ex;
+                        else
+                            failure.addSuppressed(ex);
+                    }
+                }
+            } while (finish());
+            return failure;
+        }
+
+        public void run() {
+            for (int batch = BATCH;;) {
+                Runnable task = take();
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    if (finish() && !dispatch()) {
+                        Throwable more = runHere();
+                        if (more != null)
+                            ex.addSuppressed(more);
+                    }
+                    throw ex;
+                }
+                if (!finish())
+                    return;
+                if (--batch == 0) {
+                    if (dispatch())
+                        return;
+                    batch = BATCH;      // carry on in this thread
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a {@code KeyedExecutor} running tasks using the given
+     * executor, with no bound on the number of pending tasks per key.
+     *
+     * @param executor the executor running the tasks
+     * @throws NullPointerException if executor is null
+     */
+    public KeyedExecutor(Executor executor) {
+        this(executor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a {@code KeyedExecutor} running tasks using the given
+     * executor, with the given maximum number of pending tasks per key.
+     *
+     * @param executor the executor running the tasks
+     * @param capacity the maximum number of tasks pending, that is
+     *        queued or running, for each key
+     * @throws NullPointerException if executor is null
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public KeyedExecutor(Executor executor, int capacity) {
+        if (executor == null)
+            throw new NullPointerException();
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Tries to add the given node under the given key.
+     *
+     * @return null if added, else the chain of the key, which is full
+     */
+    private Chain add(K key, Node node) {
+        for (;;) {
+            Chain ch = chains.get(key);
+            if (ch == null) {
+                Chain c = new Chain(key);
+                if ((ch = chains.putIfAbsent(key, c)) == null)
+                    ch = c;
+            }
+            int r = ch.tryAdd(node);
+            if (r == ADDED)
+                return null;
+            if (r == FULL)
+                return ch;
+        }
+    }
+
+    /**
+     * Adds the given node under the given key, waiting if necessary.
+     *
+     * @return false if timed out
+     */
+    private boolean awaitAdd(K key, Node node, boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (Chain ch; (ch = add(key, node)) != null; ) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return false;
+            WaitNode w = new WaitNode();
+            WaitNode h;
+            do {
+                w.next = h = ch.waiters;
+            } while (!WAITERS.compareAndSet(ch, h, w));
+            if (ch.count >= capacity) { // recheck after push
+                if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the given task after all tasks previously accepted under
+     * the given key, if the key is not at capacity.
+     *
+     * @param key the key
+     * @param task the task
+     * @throws RejectedExecutionException if the key is at capacity,
+     *         or the underlying executor rejected the task
+     * @throws NullPointerException if key or task is null
+     */
+    public void execute(K key, Runnable task) {
+        if (!offer(key, task))
+            throw new RejectedExecutionException("Capacity exceeded for key");
+    }
+
+    /**
+     * Runs the given task after all tasks previously accepted under
+     * the given key, if the key is not at capacity.
+     *
+     * @param key the key
+     * @param task the task
+     * @return {@code true} if the task was accepted, else {@code false}
+     * @throws RejectedExecutionException if the underlying executor
+     *         rejected the task
+     * @throws NullPointerException if key or task is null
+     */
+    public boolean offer(K key, Runnable task) {
+        if (key == null || task == null)
+            throw new NullPointerException();
+        return add(key, new Node(task)) == null;
+    }
+
+    /**
+     * Runs the given task after all tasks previously accepted under
+     * the given key, waiting if necessary up to the specified wait
+     * time for the key to be below capacity.
+     *
+     * @param key the key
+     * @param task the task
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return {@code true} if the task was accepted, or {@code false}
+     *         if the specified waiting time elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     * @throws RejectedExecutionException if the underlying executor
+     *         rejected the task
+     * @throws NullPointerException if key, task or unit is null
+     */
+    public boolean offer(K key, Runnable task, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (key == null || task == null)
+            throw new NullPointerException();
+        return awaitAdd(key, new Node(task), true, unit.toNanos(timeout));
+    }
+
+    /**
+     * Runs the given task after all tasks previously accepted under
+     * the given key, waiting if necessary for the key to be below
+     * capacity.
+     *
+     * @param key the key
+     * @param task the task
+     * @throws InterruptedException if interrupted while waiting
+     * @throws RejectedExecutionException if the underlying executor
+     *         rejected the task
+     * @throws NullPointerException if key or task is null
+     */
+    public void put(K key, Runnable task) throws InterruptedException {
+        if (key == null || task == null)
+            throw new NullPointerException();
+        awaitAdd(key, new Node(task), false, 0L);
+    }
+
+    /**
+     * Submits a value-returning task to run after all tasks
+     * previously accepted under the given key, if the key is not at
+     * capacity, and returns a Future representing the pending result
+     * of the task.
+     *
+     * @param key the key
+     * @param task the task
+     * @param <T> the type of the task's result
+     * @return a Future representing pending completion of the task
+     * @throws RejectedExecutionException if the key is at capacity,
+     *         or the underlying executor rejected the task
+     * @throws NullPointerException if key or task is null
+     */
+    public <T> Future<T> submit(K key, Callable<T> task) {
+        if (task == null) throw new NullPointerException();
+        FutureTask<T> f = new FutureTask<T>(task);
+        execute(key, f);
+        return f;
+    }
+
+    /**
+     * Returns the number of tasks pending, that is queued or running,
+     * for the given key.  The value is only an estimate while tasks
+     * are being accepted or run.
+     *
+     * @param key the key
+     * @return the number of tasks pending for the key
+     * @throws NullPointerException if key is null
+     */
+    public int getPendingTaskCount(K key) {
+        Chain ch = chains.get(key);
+        int c;
+        return (ch == null || (c = ch.count) < 0) ? 0 : c;
+    }
+
+    /**
+     * Returns the maximum number of tasks pending per key.
+     *
+     * @return the maximum number of tasks pending per key
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the executor running the tasks.
+     *
+     * @return the executor running the tasks
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle COUNT;
+    private static final VarHandle TAIL;
+    private static final VarHandle WAITERS;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            COUNT = l.findVarHandle(KeyedExecutor.Chain.class, "count", int.class);
+            TAIL = l.findVarHandle(KeyedExecutor.Chain.class, "tail", Node.class);
+            WAITERS = l.findVarHandle(KeyedExecutor.Chain.class, "waiters", WaitNode.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
+        // Reduce the risk of rare disastrous classloading in first call to
+        // LockSupport.park: https://bugs.openjdk.java.net/browse/JDK-8074773
+        Class<?> ensureLoaded = LockSupport.class;
+    }
+}
@@ -244,6 +244,9 @@ import java.util.concurrent.locks.LockSupport;
  * expected synchronization rates. A value as low as four may
  * be appropriate for extremely small per-phase task bodies (thus
  * high rates), or up to hundreds for extremely large ones.
+ * Method {@link #newTree(Phaser, int) newTree} builds such a tree
+ * for a given number of parties, with a small fan-in when there are
+ * enough processors for arrivals to contend.
  *
  * <p><b>Implementation notes</b>: This implementation restricts the
  * maximum number of parties to 65535. Attempts to register additional
@@ -562,6 +565,69 @@ public class Phaser {
             ((long)parties);
     }
 
+    /**
+     * Equivalent to {@link #newTree(Phaser, int) newTree(null, parties)}.
+     *
+     * @param parties the number of parties
+     * @return the phasers on which each party arrives
+     * @throws IllegalArgumentException if parties less than zero
+     * @since 12
+     */
+    public static Phaser[] newTree(int parties) {
+        return newTree(null, parties);
+    }
+
+    /**
+     * Creates a tree of phasers registering the given number of
+     * parties, so that parties arriving at once contend only within
+     * small groups rather than all at the root.  The tree is balanced,
+     * each phaser in it registering only a few parties or child
+     * phasers, unless there are too few processors for arrivals to
+     * contend, in which case it has as few phasers as possible.  The
+     * returned array holds, for each party, the phaser it is
+     * registered with and should arrive at; this may be shared with
+     * other parties.  If the given parent is non-null, the tree is
+     * registered with it as a single child phaser, and the parent's
+     * {@link #onAdvance} method governs advancing; otherwise, the tree
+     * has its own root, reachable by {@link #getRoot}.
+     *
+     * @param parent the parent phaser, or null if none
+     * @param parties the number of parties
+     * @return the phasers on which each party arrives
+     * @throws IllegalArgumentException if parties less than zero
+     * @since 12
+     */
+    public static Phaser[] newTree(Phaser parent, int parties) {
+        if (parties < 0)
+            throw new IllegalArgumentException("Illegal number of parties");
+        Phaser[] phasers = new Phaser[parties];
+        if (parties > 0) {
+            int fanIn = (NCPU <= TREE_FAN_IN) ? MAX_PARTIES : TREE_FAN_IN;
+            buildTree(phasers, 0, parties, new Phaser(parent), fanIn);
+        }
+        return phasers;
+    }
+
+    /**
+     * Registers parties lo through hi-1 with the given phaser, or if
+     * more than fanIn, with balanced subtrees of child phasers.
+     */
+    private static void buildTree(Phaser[] phasers, int lo, int hi,
+                                  Phaser ph, int fanIn) {
+        int n = hi - lo;
+        if (n <= fanIn) {
+            for (int i = lo; i < hi; ++i)
+                phasers[i] = ph;
+            ph.bulkRegister(n);
+        }
+        else {
+            int step = (n - 1) / fanIn + 1;
+            for (int i = lo; i < hi; i += step)
+                buildTree(phasers, i, Math.min(i + step, hi),
+                          new Phaser(ph), fanIn);
+        }
+    }
+
     /**
      * Adds a new unarrived party to this phaser.  If an ongoing
      * invocation of {@link #onAdvance} is in progress, this method
@@ -1012,6 +1078,14 @@ public class Phaser {
      */
     static final int SPINS_PER_ARRIVAL = (NCPU < 2) ? 1 : 1 << 8;
 
+    /**
+     * The maximum number of parties or child phasers registered with
+     * each phaser in trees built by newTree, when there are more
+     * processors than this.  Small groups keep contention on each
+     * phaser low, at the price of more levels to propagate through.
+     */
+    static final int TREE_FAN_IN = 4;
+
     /**
      * Possibly blocks and waits for phase to advance unless aborted.
      * Call only on root phaser.
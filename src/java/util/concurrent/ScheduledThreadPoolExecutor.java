@@ -39,6 +39,8 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -46,6 +48,8 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -71,6 +75,17 @@ import java.util.concurrent.locks.ReentrantLock;
  * {@link #setRemoveOnCancelPolicy} to cause tasks to be immediately
  * removed from the work queue at time of cancellation.
  *
+ * <p>By default, tasks are kept in a priority queue, in which
+ * scheduling and cancelling take time logarithmic in the number of
+ * tasks, under a single lock.  Executors constructed with a tick
+ * duration instead keep them in a hierarchical timing wheel, in
+ * which these operations take constant time and rarely contend,
+ * which suits large numbers of short-lived timeouts.  In exchange,
+ * each task is enabled at the first tick at or after its trigger
+ * time, so up to one tick late.  Tasks enabled at the same tick are
+ * still enabled in order of their trigger times, and in FIFO order of
+ * submission for the same time.
+ *
  * <p>Successive executions of a periodic task scheduled via
  * {@link #scheduleAtFixedRate scheduleAtFixedRate} or
  * {@link #scheduleWithFixedDelay scheduleWithFixedDelay}
@@ -143,7 +158,8 @@ public class ScheduledThreadPoolExecutor
      *    using ExecutorService rather than ScheduledExecutorService
      *    methods, which are treated as tasks with a delay of zero.
      *
-     * 2. Using a custom queue (DelayedWorkQueue), a variant of
+     * 2. Using a custom queue (DelayedWorkQueue, or if constructed
+     *    with a tick duration, TimingWheelWorkQueue), a variant of
      *    unbounded DelayQueue. The lack of capacity constraint and
      *    the fact that corePoolSize and maximumPoolSize are
      *    effectively identical simplifies some execution mechanics
@@ -207,6 +223,11 @@ public class ScheduledThreadPoolExecutor
          */
         int heapIndex;
 
+        /**
+         * Node in timing wheel, to support faster cancellation.
+         */
+        TimingWheelWorkQueue.Node wheelNode;
+
         /**
          * Creates a one-shot action with given nanoTime-based trigger time.
          */
@@ -514,6 +535,58 @@ public class ScheduledThreadPoolExecutor
               new DelayedWorkQueue(), threadFactory, handler);
     }
 
+    /**
+     * Creates a new {@code ScheduledThreadPoolExecutor} with the
+     * given core pool size, that enables tasks at ticks of the given
+     * duration.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the interval between the times at which
+     *        tasks are enabled
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code unit} is null
+     * @since 12
+     */
+    public ScheduledThreadPoolExecutor(int corePoolSize,
+                                       long tickDuration, TimeUnit unit) {
+        super(corePoolSize, Integer.MAX_VALUE,
+              DEFAULT_KEEPALIVE_MILLIS, MILLISECONDS,
+              new TimingWheelWorkQueue(unit.toNanos(tickDuration)));
+    }
+
+    /**
+     * Creates a new {@code ScheduledThreadPoolExecutor} with the
+     * given initial parameters, that enables tasks at ticks of the
+     * given duration.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the interval between the times at which
+     *        tasks are enabled
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @param handler the handler to use when execution is blocked
+     *        because the thread bounds and queue capacities are reached
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code unit}, {@code threadFactory}
+     *         or {@code handler} is null
+     * @since 12
+     */
+    public ScheduledThreadPoolExecutor(int corePoolSize,
+                                       long tickDuration, TimeUnit unit,
+                                       ThreadFactory threadFactory,
+                                       RejectedExecutionHandler handler) {
+        super(corePoolSize, Integer.MAX_VALUE,
+              DEFAULT_KEEPALIVE_MILLIS, MILLISECONDS,
+              new TimingWheelWorkQueue(unit.toNanos(tickDuration)),
+              threadFactory, handler);
+    }
+
     /**
      * Returns the nanoTime-based trigger time of a delayed action.
      */
@@ -1347,4 +1420,710 @@ public class ScheduledThreadPoolExecutor
             }
         }
     }
+
+    /**
+     * Hierarchical timing wheel, used instead of DelayedWorkQueue by
+     * executors constructed with a tick duration.  As with
+     * DelayedWorkQueue, this class must be declared as a
+     * BlockingQueue<Runnable> even though it can only hold
+     * RunnableScheduledFutures.
+     */
+    static class TimingWheelWorkQueue extends AbstractQueue<Runnable>
+        implements BlockingQueue<Runnable> {
+
+        /*
+         * Time is divided into ticks counted from the creation of the
+         * queue, and each task is filed under the first tick at or
+         * after its trigger time.  Levels of WHEEL_SIZE buckets each
+         * cover WHEEL_SIZE times the span of the level below: a task
+         * is placed at the lowest level at which its tick and the
+         * current one differ only in that level's digit (in base
+         * WHEEL_SIZE), in the bucket for its digit.  Whenever the
+         * current tick crosses into a new bucket of some level, that
+         * bucket is emptied into lower levels ("cascaded"), so that
+         * tasks reach level 0 by the time their tick comes, when the
+         * level 0 bucket holds exactly the tasks due at that tick.
+         * Inserting and removing a task thus take constant time, and
+         * every task moves down at most once per level.
+         *
+         * Each bucket is a doubly linked list of nodes guarded by the
+         * bucket's monitor, so that threads scheduling and cancelling
+         * tasks contend only when they hit the same bucket.  Every
+         * ScheduledFutureTask records its node, for constant-time
+         * removal; other RunnableScheduledFutures are found by
+         * linear search, as in DelayedWorkQueue.  Nodes are linked
+         * into a bucket only while the current tick is the one used
+         * to choose the bucket, which inserters recheck under the
+         * bucket lock, and the thread advancing the current tick locks
+         * each bucket it empties after advancing.  Cascading holds
+         * the higher bucket's lock while taking lower ones, and no
+         * thread does the reverse.
+         *
+         * Due tasks are moved, in compareTo order within each batch,
+         * to a deque of ready tasks guarded by the queue lock, from
+         * which take and poll remove them.  Only threads holding the
+         * queue lock advance the wheel, each up to the current time,
+         * so ticks are processed one at a time in order.  As in
+         * DelayedWorkQueue, one waiting thread is the leader, and
+         * waits only until the next tick at which a bucket may need
+         * processing.  Inserters of a task due before the tick the
+         * leader is waiting for (wakeTick) lower it and signal.  The
+         * leader resets wakeTick to its maximum before scanning for
+         * the next tick, so that either its scan sees an insertion or
+         * the inserter sees the reset.
+         *
+         * When the wheel is empty and far behind the current time,
+         * the current tick jumps forward instead of being advanced
+         * one tick at a time.  It is set to JUMPING while the emptiness
+         * is rechecked; inserters, which count themselves in before
+         * reading the current tick, wait out the jump.
+         */
+
+        private static final int WHEEL_SHIFT = 8;
+        private static final int WHEEL_SIZE = 1 << WHEEL_SHIFT;
+        private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+        private static final long JUMPING = Long.MIN_VALUE;
+
+        /**
+         * A list of nodes, guarded by its monitor.  The head is
+         * volatile so that the leader may check for emptiness without
+         * locking.
+         */
+        static final class Bucket {
+            volatile Node head;
+            Node tail;
+        }
+
+        /** A task in a bucket. */
+        static final class Node {
+            final RunnableScheduledFuture<?> task;
+            final long tick;             // tick at which task is due
+            Node prev, next;             // guarded by bucket
+            volatile Bucket bucket;      // bucket holding node, or null
+
+            Node(RunnableScheduledFuture<?> task, long tick) {
+                this.task = task;
+                this.tick = tick;
+            }
+        }
+
+        private final long tickNanos;
+        private final long origin;           // System.nanoTime of tick 0
+        private final long maxTick;          // largest tick represented
+        private final Bucket[][] wheels;     // buckets by level and slot
+        private volatile long current;       // last tick processed
+        private final AtomicLong wakeTick = new AtomicLong(Long.MAX_VALUE);
+        private final LongAdder wheelCount = new LongAdder();
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private final ArrayDeque<RunnableScheduledFuture<?>> ready =
+            new ArrayDeque<>();
+        private Thread leader;               // as in DelayedWorkQueue
+
+        /**
+         * Creates a queue with the given tick duration.
+         *
+         * @throws IllegalArgumentException if tickNanos is not positive
+         */
+        TimingWheelWorkQueue(long tickNanos) {
+            if (tickNanos <= 0L)
+                throw new IllegalArgumentException();
+            this.tickNanos = tickNanos;
+            this.origin = System.nanoTime();
+            this.maxTick = Long.MAX_VALUE / tickNanos;
+            int bits = Long.SIZE - Long.numberOfLeadingZeros(maxTick);
+            int levels = Math.max(1, (bits + WHEEL_SHIFT - 1) / WHEEL_SHIFT);
+            Bucket[][] ws = new Bucket[levels][WHEEL_SIZE];
+            for (Bucket[] w : ws) {
+                for (int i = 0; i < WHEEL_SIZE; ++i)
+                    w[i] = new Bucket();
+            }
+            this.wheels = ws;
+        }
+
+        /**
+         * Returns the last tick at or before the given nanoTime.
+         */
+        private long tickAt(long nanoTime) {
+            return Math.floorDiv(nanoTime - origin, tickNanos);
+        }
+
+        /**
+         * Returns the first tick at or after the given task's trigger
+         * time.
+         */
+        private long tickOf(RunnableScheduledFuture<?> task) {
+            long delay = Math.min(task.getDelay(NANOSECONDS), Long.MAX_VALUE >> 1);
+            long t = -Math.floorDiv(origin - System.nanoTime() - delay, tickNanos);
+            return Math.min(t, maxTick);
+        }
+
+        private Bucket bucketFor(long tick, long cur) {
+            int level = (Long.SIZE - 1 -
+                         Long.numberOfLeadingZeros(tick ^ cur)) / WHEEL_SHIFT;
+            return wheels[level][(int)(tick >>> (level * WHEEL_SHIFT)) & WHEEL_MASK];
+        }
+
+        /**
+         * Sets f's node and heapIndex, used as an indication that it
+         * is in the queue, if it is a ScheduledFutureTask.
+         */
+        private static void setNode(RunnableScheduledFuture<?> f, Node node) {
+            if (f instanceof ScheduledFutureTask) {
+                ScheduledFutureTask<?> t = (ScheduledFutureTask<?>)f;
+                t.wheelNode = node;
+                t.heapIndex = (node == null) ? -1 : 0;
+            }
+        }
+
+        /**
+         * Links a node into the bucket for its tick, unless it is due.
+         * Called without locks, or by the thread advancing the wheel.
+         *
+         * @return false if the node is due
+         */
+        private boolean insert(Node node) {
+            long tick = node.tick;
+            for (;;) {
+                long cur = current;
+                if (cur == JUMPING)
+                    Thread.onSpinWait();
+                else if (tick <= cur)
+                    return false;
+                else {
+                    Bucket b = bucketFor(tick, cur);
+                    synchronized (b) {
+                        if (current == cur) {
+                            Node t = b.tail;
+                            node.prev = t;
+                            node.next = null;
+                            b.tail = node;
+                            if (t == null)
+                                b.head = node;
+                            else
+                                t.next = node;
+                            node.bucket = b;
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Unlinks a node from its bucket.  Call only when holding the
+         * bucket's lock.
+         */
+        private static void unlink(Bucket b, Node node) {
+            Node p = node.prev, n = node.next;
+            if (p == null)
+                b.head = n;
+            else
+                p.next = n;
+            if (n == null)
+                b.tail = p;
+            else
+                n.prev = p;
+            node.prev = node.next = null;
+            node.bucket = null;
+        }
+
+        /**
+         * Unlinks a node from the wheel, if it is still there.
+         */
+        private boolean unlink(Node node) {
+            for (Bucket b; (b = node.bucket) != null; ) {
+                synchronized (b) {
+                    if (node.bucket == b) {
+                        unlink(b, node);
+                        wheelCount.decrement();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Detaches and returns the nodes of a bucket, linked by next.
+         */
+        private static Node detach(Bucket b) {
+            Node h = b.head;
+            b.head = b.tail = null;
+            for (Node p = h; p != null; p = p.next)
+                p.bucket = null;
+            return h;
+        }
+
+        /**
+         * Processes all ticks up to the given one, moving due tasks
+         * to the ready deque.  Call only when holding lock.
+         */
+        private void advance(long tick) {
+            long cur = current;
+            if (tick - cur > WHEEL_SIZE && wheelCount.sum() == 0L) {
+                current = JUMPING;
+                if (wheelCount.sum() == 0L) {
+                    current = tick;
+                    return;
+                }
+                current = cur;
+            }
+            ArrayList<RunnableScheduledFuture<?>> due = null;
+            while (cur < tick) {
+                current = ++cur;
+                int top = Math.min(wheels.length - 1,
+                                   Long.numberOfTrailingZeros(cur) / WHEEL_SHIFT);
+                for (int level = top; level >= 0; --level) {
+                    Bucket b = wheels[level]
+                        [(int)(cur >>> (level * WHEEL_SHIFT)) & WHEEL_MASK];
+                    if (level > 0) {
+                        synchronized (b) {   // cascade, holding higher lock
+                            Node p = b.head, n;
+                            b.head = b.tail = null;
+                            for (; p != null; p = n) {
+                                n = p.next;    // keep bucket until moved
+                                p.prev = p.next = null;
+                                if (!insert(p)) {
+                                    p.bucket = null;
+                                    wheelCount.decrement();
+                                    if (due == null)
+                                        due = new ArrayList<>();
+                                    due.add(p.task);
+                                }
+                            }
+                        }
+                    }
+                    else {
+                        Node p;
+                        synchronized (b) {
+                            p = detach(b);
+                        }
+                        for (Node n; p != null; p = n) {
+                            n = p.next;
+                            p.prev = p.next = null;
+                            wheelCount.decrement();
+                            if (due == null)
+                                due = new ArrayList<>();
+                            due.add(p.task);
+                        }
+                    }
+                }
+            }
+            if (due != null) {
+                due.sort(null);
+                ready.addAll(due);
+            }
+        }
+
+        /**
+         * Returns the nanoseconds until the next tick at which the
+         * wheel may need processing, or Long.MAX_VALUE if it is empty.
+         * Call only when holding lock, after advancing.
+         */
+        private long nextDelay() {
+            AtomicLong wake = wakeTick;
+            wake.set(Long.MAX_VALUE);
+            long next = Long.MAX_VALUE;
+            if (wheelCount.sum() != 0L) {
+                long cur = current;
+                next = (cur | WHEEL_MASK) + 1L;    // next cascade
+                Bucket[] w = wheels[0];
+                for (long t = cur + 1L; t < next; ++t) {
+                    if (w[(int)t & WHEEL_MASK].head != null) {
+                        next = t;
+                        break;
+                    }
+                }
+            }
+            for (long k; next < (k = wake.get()); ) {
+                if (wake.compareAndSet(k, next))
+                    break;
+            }
+            next = wake.get();
+            return (next == Long.MAX_VALUE) ? Long.MAX_VALUE
+                : Math.max(0L, origin + next * tickNanos - System.nanoTime());
+        }
+
+        /**
+         * Wakes the leader if a task inserted for the given tick is
+         * due before it planned to wake.
+         */
+        private void signalIfEarlier(long tick) {
+            AtomicLong wake = wakeTick;
+            for (long k; tick < (k = wake.get()); ) {
+                if (wake.compareAndSet(k, tick)) {
+                    final ReentrantLock lock = this.lock;
+                    lock.lock();
+                    try {
+                        leader = null;
+                        available.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Advances the wheel and removes and returns a ready task, or
+         * returns null if none.  Call only when holding lock.
+         */
+        private RunnableScheduledFuture<?> pollReady() {
+            advance(tickAt(System.nanoTime()));
+            RunnableScheduledFuture<?> f = ready.poll();
+            if (f != null)
+                setNode(f, null);
+            return f;
+        }
+
+        /**
+         * Returns true if there are tasks that some thread should lead
+         * waiting for.  Call only when holding lock.
+         */
+        private boolean hasTasks() {
+            return !ready.isEmpty() || wheelCount.sum() != 0L;
+        }
+
+        /**
+         * Calls the given action for the task of each node in the
+         * wheel, each bucket under its lock.
+         */
+        private void forEachInWheel(Consumer<Node> action) {
+            for (Bucket[] w : wheels) {
+                for (Bucket b : w) {
+                    if (b.head != null) {
+                        synchronized (b) {
+                            for (Node p = b.head; p != null; p = p.next)
+                                action.accept(p);
+                        }
+                    }
+                }
+            }
+        }
+
+        public boolean contains(Object x) {
+            if (x == null)
+                return false;
+            if (x instanceof ScheduledFutureTask) {
+                Node node = ((ScheduledFutureTask<?>)x).wheelNode;
+                if (node != null && node.task == x && node.bucket != null)
+                    return true;
+            }
+            for (Object e : toArray()) {
+                if (x.equals(e))
+                    return true;
+            }
+            return false;
+        }
+
+        public boolean remove(Object x) {
+            if (x == null)
+                return false;
+            Node node = null;
+            if (x instanceof ScheduledFutureTask)
+                node = ((ScheduledFutureTask<?>)x).wheelNode;
+            else {
+                Node[] found = new Node[1];
+                forEachInWheel(p -> {
+                    if (found[0] == null && x.equals(p.task))
+                        found[0] = p;
+                });
+                node = found[0];
+            }
+            if (node != null && unlink(node)) {
+                setNode(node.task, null);
+                return true;
+            }
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                for (Iterator<RunnableScheduledFuture<?>> it = ready.iterator();
+                     it.hasNext(); ) {
+                    RunnableScheduledFuture<?> t = it.next();
+                    if (x.equals(t)) {
+                        it.remove();
+                        setNode(t, null);
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                long n = wheelCount.sum() + ready.size();
+                return (int)Math.min(Math.max(n, 0L), Integer.MAX_VALUE);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public int remainingCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Returns a ready task if there is one, else the task due
+         * first.  Takes time proportional to the size of the queue
+         * when no task is ready.
+         */
+        public RunnableScheduledFuture<?> peek() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance(tickAt(System.nanoTime()));
+                RunnableScheduledFuture<?> f = ready.peek();
+                if (f == null) {
+                    RunnableScheduledFuture<?>[] min =
+                        new RunnableScheduledFuture<?>[1];
+                    forEachInWheel(p -> {
+                        if (min[0] == null || p.task.compareTo(min[0]) < 0)
+                            min[0] = p.task;
+                    });
+                    f = min[0];
+                }
+                return f;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean offer(Runnable x) {
+            if (x == null)
+                throw new NullPointerException();
+            RunnableScheduledFuture<?> e = (RunnableScheduledFuture<?>)x;
+            Node node = new Node(e, tickOf(e));
+            setNode(e, node);
+            wheelCount.increment();
+            if (insert(node))
+                signalIfEarlier(node.tick);
+            else {
+                wheelCount.decrement();
+                final ReentrantLock lock = this.lock;
+                lock.lock();
+                try {
+                    ready.add(e);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return true;
+        }
+
+        public void put(Runnable e) {
+            offer(e);
+        }
+
+        public boolean add(Runnable e) {
+            return offer(e);
+        }
+
+        public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+            return offer(e);
+        }
+
+        public RunnableScheduledFuture<?> poll() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return pollReady();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public RunnableScheduledFuture<?> take() throws InterruptedException {
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    RunnableScheduledFuture<?> first = pollReady();
+                    if (first != null)
+                        return first;
+                    if (leader != null)
+                        available.await();
+                    else {
+                        Thread thisThread = Thread.currentThread();
+                        leader = thisThread;
+                        try {
+                            long delay = nextDelay();
+                            if (delay == Long.MAX_VALUE)
+                                available.await();
+                            else if (delay > 0L)
+                                available.awaitNanos(delay);
+                        } finally {
+                            if (leader == thisThread)
+                                leader = null;
+                        }
+                    }
+                }
+            } finally {
+                if (leader == null && hasTasks())
+                    available.signal();
+                lock.unlock();
+            }
+        }
+
+        public RunnableScheduledFuture<?> poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    RunnableScheduledFuture<?> first = pollReady();
+                    if (first != null)
+                        return first;
+                    if (nanos <= 0L)
+                        return null;
+                    if (leader != null)
+                        nanos = available.awaitNanos(nanos);
+                    else {
+                        Thread thisThread = Thread.currentThread();
+                        leader = thisThread;
+                        try {
+                            long delay = Math.min(nextDelay(), nanos);
+                            if (delay > 0L) {
+                                long timeLeft = available.awaitNanos(delay);
+                                nanos -= delay - timeLeft;
+                            }
+                        } finally {
+                            if (leader == thisThread)
+                                leader = null;
+                        }
+                    }
+                }
+            } finally {
+                if (leader == null && hasTasks())
+                    available.signal();
+                lock.unlock();
+            }
+        }
+
+        public void clear() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                for (Bucket[] w : wheels) {
+                    for (Bucket b : w) {
+                        if (b.head != null) {
+                            Node p;
+                            synchronized (b) {
+                                p = detach(b);
+                            }
+                            for (Node n; p != null; p = n) {
+                                n = p.next;
+                                p.prev = p.next = null;
+                                wheelCount.decrement();
+                                setNode(p.task, null);
+                            }
+                        }
+                    }
+                }
+                for (RunnableScheduledFuture<?> t; (t = ready.poll()) != null; )
+                    setNode(t, null);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            Objects.requireNonNull(c);
+            if (c == this)
+                throw new IllegalArgumentException();
+            if (maxElements <= 0)
+                return 0;
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance(tickAt(System.nanoTime()));
+                int n = 0;
+                for (RunnableScheduledFuture<?> first;
+                     n < maxElements && (first = ready.peek()) != null; ) {
+                    c.add(first);   // In this order, in case add() throws.
+                    ready.poll();
+                    setNode(first, null);
+                    ++n;
+                }
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Object[] toArray() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                ArrayList<Object> a = new ArrayList<>(ready);
+                forEachInWheel(p -> a.add(p.task));
+                return a.toArray();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(T[] a) {
+            Object[] es = toArray();
+            int size = es.length;
+            if (a.length < size)
+                return (T[]) Arrays.copyOf(es, size, a.getClass());
+            System.arraycopy(es, 0, a, 0, size);
+            if (a.length > size)
+                a[size] = null;
+            return a;
+        }
+
+        public Iterator<Runnable> iterator() {
+            return new Itr(toArray());
+        }
+
+        /**
+         * Snapshot iterator that works off a copy of the queue.
+         */
+        private class Itr implements Iterator<Runnable> {
+            final Object[] array;
+            int cursor;        // index of next element to return; initially 0
+            int lastRet = -1;  // index of last element returned; -1 if no such
+
+            Itr(Object[] array) {
+                this.array = array;
+            }
+
+            public boolean hasNext() {
+                return cursor < array.length;
+            }
+
+            public Runnable next() {
+                if (cursor >= array.length)
+                    throw new NoSuchElementException();
+                return (Runnable)array[lastRet = cursor++];
+            }
+
+            public void remove() {
+                if (lastRet < 0)
+                    throw new IllegalStateException();
+                TimingWheelWorkQueue.this.remove(array[lastRet]);
+                lastRet = -1;
+            }
+        }
+    }
 }
@@ -150,6 +150,18 @@ import java.util.concurrent.locks.AbstractQueuedSynchronizer;
  * them unless its acquire came first and Semaphore {@code s} is in
  * fair mode.
  *
+ * <p>Permits may also be acquired without blocking by {@link
+ * #acquireAsync(int) acquireAsync}, which returns a future that is
+ * completed when the permits have been acquired.  This suits threads,
+ * such as event loop threads, that must never block.  Asynchronous
+ * requests that cannot be satisfied immediately are queued, and are
+ * granted permits in first-in-first-out order regardless of the
+ * fairness setting: a request for many permits is not overtaken by
+ * later, smaller requests.  Queued asynchronous requests are granted
+ * permits ahead of threads blocked in an acquire method.  Cancelling
+ * the future of a queued request withdraws it, so that its weight no
+ * longer holds back the requests queued behind it.
+ *
  * <p>Memory consistency effects: Actions in a thread prior to calling
  * a "release" method such as {@code release()}
  * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
@@ -172,6 +184,15 @@ public class Semaphore implements java.io.Serializable {
     abstract static class Sync extends AbstractQueuedSynchronizer {
         private static final long serialVersionUID = 1192457210091910933L;
 
+        /**
+         * Head and tail of the queue of pending asynchronous
+         * acquires, guarded by the monitor of this Sync.  Both are
+         * null when the queue is empty.  The head is volatile so that
+         * releasers can check for pending requests without locking.
+         */
+        private transient volatile AsyncAcquire asyncHead;
+        private transient AsyncAcquire asyncTail;
+
         Sync(int permits) {
             setState(permits);
         }
@@ -196,8 +217,11 @@ public class Semaphore implements java.io.Serializable {
                 int next = current + releases;
                 if (next < current) // overflow
                     throw new Error("Maximum permit count exceeded");
-                if (compareAndSetState(current, next))
+                if (compareAndSetState(current, next)) {
+                    if (asyncHead != null)
+                        grantAsync();
                     return true;
+                }
             }
         }
 
@@ -219,6 +243,148 @@ public class Semaphore implements java.io.Serializable {
                     return current;
             }
         }
+
+        final boolean hasAsyncWaiters() {
+            return asyncHead != null;
+        }
+
+        /**
+         * Returns a future acquiring the given number of permits,
+         * either already completed, or queued behind any pending
+         * asynchronous requests.
+         */
+        final CompletableFuture<Void> acquireAsync(int permits) {
+            AsyncAcquire a = new AsyncAcquire(this, permits);
+            if (asyncHead == null &&
+                !(this instanceof FairSync && hasQueuedThreads()) &&
+                nonfairTryAcquireShared(permits) >= 0)
+                a.grant();
+            else {
+                synchronized (this) {
+                    AsyncAcquire t = asyncTail;
+                    a.queued = true;
+                    if (t == null)
+                        asyncHead = asyncTail = a;
+                    else {
+                        a.prev = t;
+                        t.next = a;
+                        asyncTail = a;
+                    }
+                }
+                // Recheck, in case of a release since the failed attempt,
+                // and let fair blocked threads proceed if the queue drained
+                grantAsync();
+                if (hasQueuedThreads())
+                    releaseShared(0);
+            }
+            return a;
+        }
+
+        /**
+         * Grants permits to queued asynchronous requests in FIFO
+         * order, for as long as the request at the head can be
+         * satisfied, unlinking abandoned requests along the way.
+         * Futures are completed after releasing the monitor, since
+         * completion runs dependent actions.
+         */
+        final void grantAsync() {
+            AsyncAcquire granted = null, last = null;
+            synchronized (this) {
+                for (AsyncAcquire h; (h = asyncHead) != null; ) {
+                    boolean live = !h.isDone();
+                    if (live && nonfairTryAcquireShared(h.permits) < 0)
+                        break;
+                    AsyncAcquire n = h.next;
+                    if ((asyncHead = n) == null)
+                        asyncTail = null;
+                    else
+                        n.prev = null;
+                    h.next = null;
+                    h.queued = false;
+                    if (live) {
+                        if (last == null)
+                            granted = h;
+                        else
+                            last.next = h;
+                        last = h;
+                    }
+                }
+            }
+            for (AsyncAcquire p = granted, n; p != null; p = n) {
+                n = p.next;
+                p.next = null;
+                p.grant();
+            }
+        }
+
+        /**
+         * Unlinks the given request if still queued, and lets the
+         * requests and threads it was holding back try again.
+         */
+        final void withdrawAsync(AsyncAcquire a) {
+            synchronized (this) {
+                if (!a.queued)
+                    return;
+                AsyncAcquire p = a.prev, n = a.next;
+                if (p == null)
+                    asyncHead = n;
+                else
+                    p.next = n;
+                if (n == null)
+                    asyncTail = p;
+                else
+                    n.prev = p;
+                a.prev = a.next = null;
+                a.queued = false;
+            }
+            releaseShared(0);
+        }
+    }
+
+    /**
+     * The future returned by acquireAsync, doubling as its queue node.
+     * Completing it other than by granting the permits, for example
+     * by cancellation or orTimeout, withdraws the request; if this
+     * races with a grant, the permits are released again.
+     */
+    static final class AsyncAcquire extends CompletableFuture<Void> {
+        final Sync sync;
+        final int permits;
+        AsyncAcquire prev, next;   // guarded by sync monitor
+        boolean queued;            // guarded by sync monitor
+
+        AsyncAcquire(Sync sync, int permits) {
+            this.sync = sync;
+            this.permits = permits;
+        }
+
+        /** Completes with the permits taken, or returns them if too late. */
+        void grant() {
+            if (!super.complete(null))
+                sync.releaseShared(permits);
+        }
+
+        @Override public <U> CompletableFuture<U> newIncompleteFuture() {
+            return new CompletableFuture<U>();
+        }
+        @Override public boolean complete(Void value) {
+            boolean done = super.complete(value);
+            if (done)
+                sync.withdrawAsync(this);
+            return done;
+        }
+        @Override public boolean completeExceptionally(Throwable ex) {
+            boolean done = super.completeExceptionally(ex);
+            if (done)
+                sync.withdrawAsync(this);
+            return done;
+        }
+        @Override public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean done = super.cancel(mayInterruptIfRunning);
+            if (done)
+                sync.withdrawAsync(this);
+            return done;
+        }
     }
 
     /**
@@ -248,7 +414,7 @@ public class Semaphore implements java.io.Serializable {
 
         protected int tryAcquireShared(int acquires) {
             for (;;) {
-                if (hasQueuedPredecessors())
+                if (hasQueuedPredecessors() || hasAsyncWaiters())
                     return -1;
                 int available = getState();
                 int remaining = available - acquires;
@@ -619,6 +785,52 @@ public class Semaphore implements java.io.Serializable {
         sync.releaseShared(permits);
     }
 
+    /**
+     * Acquires a permit from this semaphore without blocking, returning
+     * a future that is completed when the permit has been acquired.
+     *
+     * <p>Equivalent to {@code acquireAsync(1)}.
+     *
+     * @return a future completed when the permit has been acquired
+     * @since 12
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        return sync.acquireAsync(1);
+    }
+
+    /**
+     * Acquires the given number of permits from this semaphore without
+     * blocking, returning a future that is completed when the permits
+     * have been acquired.
+     *
+     * <p>If no other asynchronous request is pending and enough
+     * permits are available (and, for a fair semaphore, no thread is
+     * waiting to acquire), the permits are taken and the returned
+     * future is already complete.  Otherwise the request is queued
+     * behind other pending asynchronous requests, and is granted its
+     * permits, all at once, when a release makes enough of them
+     * available and all requests queued before it have been granted.
+     * The returned future is then completed normally, in the thread
+     * performing the release, which also runs any dependent actions
+     * not requested to run asynchronously.
+     *
+     * <p>If the returned future is completed other than by this
+     * semaphore before the permits are granted, for example by {@link
+     * CompletableFuture#cancel cancel} or {@link
+     * CompletableFuture#orTimeout orTimeout}, the request is withdrawn,
+     * and requests queued behind it may be granted instead.  No
+     * permits are acquired on its behalf.
+     *
+     * @param permits the number of permits to acquire
+     * @return a future completed when the permits have been acquired
+     * @throws IllegalArgumentException if {@code permits} is negative
+     * @since 12
+     */
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        if (permits < 0) throw new IllegalArgumentException();
+        return sync.acquireAsync(permits);
+    }
+
     /**
      * Returns the current number of permits available in this semaphore.
      *
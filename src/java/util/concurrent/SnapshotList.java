@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.PersistentVector;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe {@link List} holding an atomically replaced {@link
+ * PersistentVector}.  Like {@link CopyOnWriteArrayList}, every read,
+ * iteration and traversal operates on an immutable snapshot, never
+ * blocks and never throws {@code ConcurrentModificationException};
+ * unlike it, single-element mutations take <i>O(log<sub>32</sub>
+ * n)</i> time and produce a logarithmic amount of garbage instead of
+ * copying the whole list.  Bulk mutations such as {@link #removeIf} or
+ * {@link #sort} rebuild the vector and take linear time.
+ *
+ * <p>Every mutation is atomic: it computes a new vector from the
+ * current one and installs it with a compare-and-set, retrying if
+ * another thread got there first.  Functions passed to bulk mutations
+ * may therefore be applied more than once, and should be free of side
+ * effects.
+ *
+ * <p>Iterators, list iterators and sub lists reflect the snapshot
+ * taken when they were created, and do not support mutation.  The
+ * current snapshot itself is available from {@link #snapshot}.
+ *
+ * <p>Null elements are permitted.
+ *
+ * @param <E> the type of elements held in this list
+ * @since 12
+ */
+public class SnapshotList<E> extends AbstractList<E>
+        implements RandomAccess {
+
+    private volatile PersistentVector<E> vector;
+
+    /**
+     * Creates an empty list.
+     */
+    public SnapshotList() {
+        vector = PersistentVector.empty();
+    }
+
+    /**
+     * Creates a list containing the elements of the specified
+     * collection, in the order they are returned by the collection's
+     * iterator.
+     *
+     * @param c the collection of initially held elements
+     * @throws NullPointerException if the specified collection is null
+     */
+    public SnapshotList(Collection<? extends E> c) {
+        vector = PersistentVector.copyOf(c);
+    }
+
+    /**
+     * Returns the current contents of this list.
+     *
+     * @return an immutable snapshot of this list
+     */
+    public PersistentVector<E> snapshot() {
+        return vector;
+    }
+
+    private boolean casVector(PersistentVector<E> cmp, PersistentVector<E> val) {
+        return VECTOR.compareAndSet(this, cmp, val);
+    }
+
+    // Reads
+
+    public int size() {
+        return vector.size();
+    }
+
+    public boolean isEmpty() {
+        return vector.isEmpty();
+    }
+
+    public E get(int index) {
+        return vector.get(index);
+    }
+
+    public boolean contains(Object o) {
+        return vector.indexOf(o) >= 0;
+    }
+
+    public int indexOf(Object o) {
+        return vector.indexOf(o);
+    }
+
+    public int lastIndexOf(Object o) {
+        return vector.lastIndexOf(o);
+    }
+
+    public Object[] toArray() {
+        return vector.toArray();
+    }
+
+    public <T> T[] toArray(T[] a) {
+        return vector.toArray(a);
+    }
+
+    /**
+     * Returns an iterator over the elements of the current snapshot,
+     * in proper sequence.  The iterator does not support removal.
+     *
+     * @return an iterator over the elements in this list
+     */
+    public Iterator<E> iterator() {
+        return vector.iterator();
+    }
+
+    /**
+     * Returns a list iterator over the elements of the current
+     * snapshot, in proper sequence.  The iterator does not support
+     * {@code remove}, {@code set} or {@code add}.
+     */
+    public ListIterator<E> listIterator() {
+        return vector.listIterator();
+    }
+
+    /**
+     * Returns a list iterator over the elements of the current
+     * snapshot, in proper sequence, starting at the specified
+     * position.  The iterator does not support {@code remove},
+     * {@code set} or {@code add}.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public ListIterator<E> listIterator(int index) {
+        return vector.listIterator(index);
+    }
+
+    /**
+     * Returns an unmodifiable view of the portion of the current
+     * snapshot between {@code fromIndex}, inclusive, and
+     * {@code toIndex}, exclusive.  Later changes to this list are not
+     * reflected in the returned list.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public List<E> subList(int fromIndex, int toIndex) {
+        return vector.subList(fromIndex, toIndex);
+    }
+
+    public void forEach(Consumer<? super E> action) {
+        vector.forEach(action);
+    }
+
+    public Spliterator<E> spliterator() {
+        return vector.spliterator();
+    }
+
+    // Mutations
+
+    public boolean add(E e) {
+        for (PersistentVector<E> v;;) {
+            if (casVector(v = vector, v.plus(e)))
+                return true;
+        }
+    }
+
+    public void add(int index, E element) {
+        for (PersistentVector<E> v;;) {
+            if (casVector(v = vector, v.plus(index, element)))
+                return;
+        }
+    }
+
+    /**
+     * Appends the element, if not present.
+     *
+     * @param e element to be added to this list, if absent
+     * @return {@code true} if the element was added
+     */
+    public boolean addIfAbsent(E e) {
+        for (PersistentVector<E> v;;) {
+            if ((v = vector).indexOf(e) >= 0)
+                return false;
+            if (casVector(v, v.plus(e)))
+                return true;
+        }
+    }
+
+    public E set(int index, E element) {
+        for (PersistentVector<E> v;;) {
+            E old = (v = vector).get(index);
+            if (casVector(v, v.with(index, element)))
+                return old;
+        }
+    }
+
+    public E remove(int index) {
+        for (PersistentVector<E> v;;) {
+            E old = (v = vector).get(index);
+            if (casVector(v, v.minus(index)))
+                return old;
+        }
+    }
+
+    public boolean remove(Object o) {
+        for (PersistentVector<E> v;;) {
+            int i = (v = vector).indexOf(o);
+            if (i < 0)
+                return false;
+            if (casVector(v, v.minus(i)))
+                return true;
+        }
+    }
+
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        if (a.length == 0)
+            return false;
+        List<E> added = asList(a);
+        for (PersistentVector<E> v;;) {
+            if (casVector(v = vector, v.plusAll(added)))
+                return true;
+        }
+    }
+
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        for (PersistentVector<E> v;;) {
+            int size = (v = vector).size();
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + size);
+            if (a.length == 0)
+                return false;
+            PersistentVector<E> w = v;
+            for (int k = 0; k < a.length; k++) {
+                @SuppressWarnings("unchecked") E e = (E) a[k];
+                w = w.plus(index + k, e);
+            }
+            if (casVector(v, w))
+                return true;
+        }
+    }
+
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(c::contains);
+    }
+
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(e -> !c.contains(e));
+    }
+
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        for (PersistentVector<E> v;;) {
+            ArrayList<E> kept = new ArrayList<>();
+            for (E e : v = vector) {
+                if (!filter.test(e))
+                    kept.add(e);
+            }
+            if (kept.size() == v.size())
+                return false;
+            if (casVector(v, PersistentVector.copyOf(kept)))
+                return true;
+        }
+    }
+
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        for (PersistentVector<E> v;;) {
+            Object[] a = (v = vector).toArray();
+            for (int i = 0; i < a.length; i++) {
+                @SuppressWarnings("unchecked") E e = (E) a[i];
+                a[i] = operator.apply(e);
+            }
+            if (casVector(v, PersistentVector.copyOf(asList(a))))
+                return;
+        }
+    }
+
+    public void sort(Comparator<? super E> c) {
+        for (PersistentVector<E> v;;) {
+            @SuppressWarnings("unchecked")
+            E[] a = (E[]) (v = vector).toArray();
+            Arrays.sort(a, c);
+            if (casVector(v, PersistentVector.copyOf(Arrays.asList(a))))
+                return;
+        }
+    }
+
+    public void clear() {
+        vector = PersistentVector.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> asList(Object[] a) {
+        return (List<E>) Arrays.asList(a);
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle VECTOR;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            VECTOR = l.findVarHandle(SnapshotList.class, "vector",
+                                     PersistentVector.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
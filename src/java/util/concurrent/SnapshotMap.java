@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PersistentHashMap;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link ConcurrentMap} holding an atomically replaced {@link
+ * PersistentHashMap}.  Reads, iteration and traversal operate on an
+ * immutable snapshot and never block; updates take
+ * <i>O(log<sub>32</sub> n)</i> time and install the new map with a
+ * compare-and-set, retrying if another thread got there first.  This
+ * suits registries that are read far more often than they change but
+ * are too large to copy on every change.
+ *
+ * <p>The {@link #entrySet}, {@link #keySet} and {@link #values} views
+ * reflect the current snapshot each time one of their methods is
+ * called, and do not support removal; iterators over them traverse
+ * the snapshot taken when they were created.  The current snapshot
+ * itself is available from {@link #snapshot}.
+ *
+ * <p>Neither keys nor values may be {@code null}.  As with other
+ * {@code ConcurrentMap} implementations relying on the interface's
+ * default methods, the functions passed to {@code compute},
+ * {@code computeIfAbsent}, {@code computeIfPresent} and {@code merge}
+ * may be applied more than once under contention.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @since 12
+ */
+public class SnapshotMap<K,V> extends AbstractMap<K,V>
+        implements ConcurrentMap<K,V> {
+
+    private volatile PersistentHashMap<K,V> map;
+
+    /**
+     * Creates a new, empty map.
+     */
+    public SnapshotMap() {
+        map = PersistentHashMap.empty();
+    }
+
+    /**
+     * Creates a new map with the same mappings as the given map.
+     *
+     * @param m the map
+     * @throws NullPointerException if the specified map, or any of its
+     *         keys or values, is null
+     */
+    public SnapshotMap(Map<? extends K, ? extends V> m) {
+        map = PersistentHashMap.copyOf(m);
+    }
+
+    /**
+     * Returns the current contents of this map.
+     *
+     * @return an immutable snapshot of this map
+     */
+    public PersistentHashMap<K,V> snapshot() {
+        return map;
+    }
+
+    private boolean casMap(PersistentHashMap<K,V> cmp,
+                           PersistentHashMap<K,V> val) {
+        return MAP.compareAndSet(this, cmp, val);
+    }
+
+    // Reads
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    public V getOrDefault(Object key, V defaultValue) {
+        return map.getOrDefault(key, defaultValue);
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach(action);
+    }
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        return new EntrySetView();
+    }
+
+    /** An entry set delegating to the snapshot current at each call. */
+    private final class EntrySetView
+        extends AbstractSet<Map.Entry<K,V>> {
+        public int size() {
+            return map.size();
+        }
+
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return map.entrySet().iterator();
+        }
+
+        public boolean contains(Object o) {
+            return map.entrySet().contains(o);
+        }
+    }
+
+    // Updates
+
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        for (PersistentHashMap<K,V> m;;) {
+            V old = (m = map).get(key);
+            if (casMap(m, m.plus(key, value)))
+                return old;
+        }
+    }
+
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        for (PersistentHashMap<K,V> m;;) {
+            V old = (m = map).get(key);
+            if (old != null || casMap(m, m.plus(key, value)))
+                return old;
+        }
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (PersistentHashMap<K,V> cur;;) {
+            if (casMap(cur = map, cur.plusAll(m)))
+                return;
+        }
+    }
+
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        for (PersistentHashMap<K,V> m;;) {
+            V old = (m = map).get(key);
+            if (old == null || casMap(m, m.minus(key)))
+                return old;
+        }
+    }
+
+    public boolean remove(Object key, Object value) {
+        Objects.requireNonNull(key);
+        if (value == null)
+            return false;
+        for (PersistentHashMap<K,V> m;;) {
+            V old = (m = map).get(key);
+            if (old == null || !old.equals(value))
+                return false;
+            if (casMap(m, m.minus(key)))
+                return true;
+        }
+    }
+
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        for (PersistentHashMap<K,V> m;;) {
+            V old = (m = map).get(key);
+            if (old == null || !old.equals(oldValue))
+                return false;
+            if (casMap(m, m.plus(key, newValue)))
+                return true;
+        }
+    }
+
+    public V replace(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        for (PersistentHashMap<K,V> m;;) {
+            V old = (m = map).get(key);
+            if (old == null || casMap(m, m.plus(key, value)))
+                return old;
+        }
+    }
+
+    public void clear() {
+        map = PersistentHashMap.empty();
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle MAP;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            MAP = l.findVarHandle(SnapshotMap.class, "map",
+                                  PersistentHashMap.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
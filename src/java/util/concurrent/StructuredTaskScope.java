@@ -0,0 +1,653 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A scope in which a task splits into concurrent subtasks, run by an
+ * {@link Executor}, that must all finish before the task continues.
+ * Subtasks that are no longer needed, because one of them failed or
+ * the task gave up waiting for them, are cancelled by interrupting
+ * the threads running them, and closing the scope waits for them to
+ * stop, so that no subtask outlives the scope.
+ *
+ * <p>A scope is created and used by its <em>owner</em> thread, in
+ * try-with-resources form.  The owner forks subtasks with {@link
+ * #fork}, waits for them with {@link #join} or {@link #joinUntil},
+ * and processes their outcome.  Subtasks may complete, or call
+ * {@link #shutdown}, in any thread.  Shutting down cancels all
+ * unfinished subtasks, interrupting those that are running, causes
+ * {@code join} to return, and makes later forks return cancelled
+ * futures without running them.  {@link #close} shuts down the scope
+ * and waits for all subtasks to stop running.
+ *
+ * <p>Subclasses implement policies by overriding {@link
+ * #handleComplete}, which is invoked as each subtask completes
+ * normally or exceptionally while the scope is not shut down.  Two
+ * policies are provided: {@link ShutdownOnFailure} shuts down on the
+ * first subtask to fail, for when the results of all subtasks are
+ * needed; {@link ShutdownOnSuccess} shuts down on the first subtask to
+ * succeed, for when any one result will do.
+ *
+ * <p><b>Sample usage.</b> Here is a method fanning out to two blocking
+ * calls, failing fast if either fails or if they do not complete by a
+ * deadline:
+ *
+ * <pre> {@code
+ * Response handle(Executor executor, Instant deadline)
+ *     throws ExecutionException, InterruptedException, TimeoutException {
+ *   try (StructuredTaskScope.ShutdownOnFailure scope =
+ *        new StructuredTaskScope.ShutdownOnFailure(executor)) {
+ *     Future<String> user = scope.fork(() -> findUser());
+ *     Future<Integer> order = scope.fork(() -> fetchOrder());
+ *     scope.joinUntil(deadline);
+ *     scope.throwIfFailed();
+ *     return new Response(user.get(), order.get());
+ *   }
+ * }}</pre>
+ *
+ * <p>Since cancellation relies on interruption, subtasks should
+ * respond to interrupts promptly, as blocking library methods do.
+ * A subtask that ignores interrupts delays {@code close}.
+ *
+ * <p>Memory consistency effects: Actions in the owner thread prior to
+ * forking a subtask <i>happen-before</i> the subtask runs, which in
+ * turn <i>happens-before</i> {@code join}, {@code joinUntil} or
+ * {@code close} returns, if the subtask has completed by then.
+ *
+ * @since 12
+ * @param <T> the result type of subtasks
+ */
+public class StructuredTaskScope<T> implements AutoCloseable {
+
+    /*
+     * Subtasks are FutureTasks that count themselves out of the scope
+     * when their run method exits, or when they are cancelled before
+     * starting, whichever claims them first (via the started field).
+     * A count of live subtasks, and the set of them to cancel on
+     * shutdown, are guarded by a lock whose condition join and close
+     * wait on.  Cancellation is FutureTask.cancel(true), which
+     * interrupts the runner.
+     */
+
+    /** The executor running subtasks */
+    private final Executor executor;
+
+    /** The thread that created this scope */
+    private final Thread owner;
+
+    /** Guards the fields below */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when live reaches zero, or on shutdown */
+    private final Condition done = lock.newCondition();
+
+    /** Subtasks forked and not yet exited */
+    private final HashSet<Subtask<?>> forks = new HashSet<>();
+
+    /** The number of elements of forks */
+    private int live;
+
+    /** Set by shutdown; also read without locking */
+    private volatile boolean shutdown;
+
+    /** Set by close */
+    private boolean closed;
+
+    /**
+     * A forked subtask.
+     */
+    static final class Subtask<U> extends FutureTask<U> {
+        final StructuredTaskScope<?> scope;
+
+        /** 0 until claimed, 1 if run, 2 if cancelled before running */
+        volatile int started;
+
+        Subtask(StructuredTaskScope<?> scope, Callable<U> callable) {
+            super(callable);
+            this.scope = scope;
+        }
+
+        public void run() {
+            if (!STARTED.compareAndSet(this, 0, 1))
+                return;
+            try {
+                super.run();
+                if (!isCancelled() && !scope.shutdown)
+                    scope.onComplete(this);
+            } finally {
+                scope.exit(this);
+            }
+        }
+
+        /** Cancels this subtask, interrupting it if running. */
+        void cancelFork() {
+            if (STARTED.compareAndSet(this, 0, 2)) {
+                cancel(false);
+                scope.exit(this);
+            }
+            else
+                cancel(true);
+        }
+    }
+
+    /**
+     * Creates a scope whose subtasks are run by the given executor,
+     * owned by the current thread.
+     *
+     * @param executor the executor running subtasks
+     * @throws NullPointerException if executor is null
+     */
+    public StructuredTaskScope(Executor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        this.executor = executor;
+        this.owner = Thread.currentThread();
+    }
+
+    private void ensureOwner() {
+        if (Thread.currentThread() != owner)
+            throw new IllegalStateException("Current thread not owner");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onComplete(Subtask<?> subtask) {
+        handleComplete((Future<T>)subtask);
+    }
+
+    /** Counts out the given subtask. */
+    private void exit(Subtask<?> subtask) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (forks.remove(subtask) && --live == 0)
+                done.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invoked by a subtask, in the thread that ran it, when it
+     * completes normally or exceptionally while this scope is not
+     * shut down.  This method may be invoked by several threads at
+     * once.  The default implementation does nothing.
+     *
+     * @param future the completed subtask
+     */
+    protected void handleComplete(Future<T> future) {
+    }
+
+    /**
+     * Starts a subtask in this scope, running the given task using
+     * the executor of this scope.  If this scope is shut down, the
+     * subtask is not run and the returned future is cancelled.
+     *
+     * @param task the task to run
+     * @param <U> the result type
+     * @return a future representing the subtask
+     * @throws IllegalStateException if the current thread is not the
+     *         owner, or this scope is closed
+     * @throws RejectedExecutionException if the executor rejected the
+     *         subtask
+     * @throws NullPointerException if task is null
+     */
+    @SuppressWarnings("unchecked")
+    public <U extends T> Future<U> fork(Callable<? extends U> task) {
+        if (task == null)
+            throw new NullPointerException();
+        ensureOwner();
+        Subtask<U> f = new Subtask<U>(this, (Callable<U>)task);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("Scope is closed");
+            if (shutdown) {
+                f.started = 2;
+                f.cancel(false);
+                return f;
+            }
+            forks.add(f);
+            ++live;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            executor.execute(f);
+        } catch (RejectedExecutionException ex) {
+            f.cancelFork();
+            throw ex;
+        }
+        return f;
+    }
+
+    /**
+     * Waits for all subtasks of this scope to complete, or for this
+     * scope to be shut down.
+     *
+     * @return this scope
+     * @throws IllegalStateException if the current thread is not the
+     *         owner, or this scope is closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public StructuredTaskScope<T> join() throws InterruptedException {
+        ensureOwner();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            if (closed)
+                throw new IllegalStateException("Scope is closed");
+            while (live > 0 && !shutdown)
+                done.await();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Waits for all subtasks of this scope to complete, or for this
+     * scope to be shut down, up to the given deadline.  If the
+     * deadline passes first, this scope is shut down, cancelling the
+     * unfinished subtasks, and {@code TimeoutException} is thrown.
+     *
+     * @param deadline the deadline
+     * @return this scope
+     * @throws IllegalStateException if the current thread is not the
+     *         owner, or this scope is closed
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if the deadline passed while waiting
+     * @throws NullPointerException if deadline is null
+     */
+    public StructuredTaskScope<T> joinUntil(Instant deadline)
+        throws InterruptedException, TimeoutException {
+        long nanos = TimeUnit.NANOSECONDS.convert(
+            Duration.between(Instant.now(), deadline));
+        ensureOwner();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            if (closed)
+                throw new IllegalStateException("Scope is closed");
+            while (live > 0 && !shutdown) {
+                if (nanos <= 0L)
+                    break;
+                nanos = done.awaitNanos(nanos);
+            }
+            if (live == 0 || shutdown)
+                return this;
+        } finally {
+            lock.unlock();
+        }
+        shutdown();
+        throw new TimeoutException();
+    }
+
+    /**
+     * Shuts down this scope, cancelling all unfinished subtasks and
+     * interrupting those that are running.  Threads waiting in {@link
+     * #join} or {@link #joinUntil} return, and subtasks forked later
+     * are not run.  This method may be invoked by the owner or by
+     * subtasks.  Invocation has no additional effect if already shut
+     * down.
+     */
+    public void shutdown() {
+        ArrayList<Subtask<?>> unfinished;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (shutdown)
+                return;
+            shutdown = true;
+            unfinished = new ArrayList<>(forks);
+            done.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Subtask<?> f : unfinished)
+            f.cancelFork();
+    }
+
+    /**
+     * Returns {@code true} if this scope has been shut down.
+     *
+     * @return {@code true} if this scope has been shut down
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Shuts down this scope, then waits for all subtasks that are
+     * running to stop.  Waiting is not interruptible.  Invocation has
+     * no additional effect if already closed.
+     *
+     * @throws IllegalStateException if the current thread is not the
+     *         owner
+     */
+    public void close() {
+        ensureOwner();
+        shutdown();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            while (live > 0)
+                done.awaitUninterruptibly();
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the exception of the given completed future, or null
+     * if it completed normally.
+     */
+    static Throwable exceptionOf(Future<?> future) {
+        try {
+            future.get();
+            return null;
+        } catch (ExecutionException ex) {
+            return ex.getCause();
+        } catch (InterruptedException | CancellationException ex) {
+            return ex;                  // cannot happen
+        }
+    }
+
+    /**
+     * A scope that shuts down when a subtask completes successfully,
+     * capturing its result.  This suits racing subtasks that compute
+     * the same thing, for example querying replicas.
+     *
+     * @param <T> the result type of subtasks
+     * @since 12
+     */
+    public static final class ShutdownOnSuccess<T>
+        extends StructuredTaskScope<T> {
+        private static final Object NONE = new Object();
+
+        /** The first result, or NONE */
+        private volatile Object firstResult = NONE;
+
+        /** The first exception, if no result */
+        private volatile Throwable firstException;
+
+        /**
+         * Creates a scope whose subtasks are run by the given
+         * executor, owned by the current thread.
+         *
+         * @param executor the executor running subtasks
+         * @throws NullPointerException if executor is null
+         */
+        public ShutdownOnSuccess(Executor executor) {
+            super(executor);
+        }
+
+        /**
+         * Captures the result of the first subtask to complete
+         * normally and shuts down this scope, or if none has yet,
+         * captures the exception of the first to fail.
+         *
+         * @param future the completed subtask
+         */
+        @Override
+        protected void handleComplete(Future<T> future) {
+            Throwable ex = exceptionOf(future);
+            if (ex == null) {
+                if (FIRST_RESULT.compareAndSet(this, NONE, getDone(future)))
+                    shutdown();
+            }
+            else if (firstException == null)
+                FIRST_EXCEPTION.compareAndSet(this, null, ex);
+        }
+
+        private static <T> T getDone(Future<T> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new IllegalStateException(ex); // cannot happen
+            }
+        }
+
+        /**
+         * Waits for a subtask to succeed, all subtasks to complete,
+         * or this scope to be shut down.
+         *
+         * @return this scope
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        @Override
+        public ShutdownOnSuccess<T> join() throws InterruptedException {
+            super.join();
+            return this;
+        }
+
+        /**
+         * Waits for a subtask to succeed, all subtasks to complete,
+         * or this scope to be shut down, up to the given deadline.
+         *
+         * @param deadline the deadline
+         * @return this scope
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         * @throws InterruptedException if interrupted while waiting
+         * @throws TimeoutException if the deadline passed while waiting
+         * @throws NullPointerException if deadline is null
+         */
+        @Override
+        public ShutdownOnSuccess<T> joinUntil(Instant deadline)
+            throws InterruptedException, TimeoutException {
+            super.joinUntil(deadline);
+            return this;
+        }
+
+        /**
+         * Returns the result of the first subtask to complete
+         * normally.
+         *
+         * @return the result
+         * @throws ExecutionException if no subtask completed
+         *         normally but at least one failed, with the exception
+         *         of the first to fail as cause
+         * @throws IllegalStateException if no subtask completed
+         */
+        public T result() throws ExecutionException {
+            return result(ExecutionException::new);
+        }
+
+        /**
+         * Returns the result of the first subtask to complete
+         * normally, or throws an exception produced by the given
+         * function from the exception of the first to fail.
+         *
+         * @param esf the function producing the exception to throw
+         * @param <X> the type of the exception to throw
+         * @return the result
+         * @throws X if no subtask completed normally but at least one
+         *         failed
+         * @throws IllegalStateException if no subtask completed
+         * @throws NullPointerException if esf is null
+         */
+        @SuppressWarnings("unchecked")
+        public <X extends Throwable> T result(
+            Function<Throwable, ? extends X> esf) throws X {
+            if (esf == null)
+                throw new NullPointerException();
+            Object r = firstResult;
+            if (r != NONE)
+                return (T)r;
+            Throwable ex = firstException;
+            if (ex == null)
+                throw new IllegalStateException("No completed subtasks");
+            throw esf.apply(ex);
+        }
+    }
+
+    /**
+     * A scope that shuts down when a subtask fails, capturing its
+     * exception.  This suits subtasks whose results are all needed,
+     * failing fast rather than waiting for the others.
+     *
+     * @since 12
+     */
+    public static final class ShutdownOnFailure
+        extends StructuredTaskScope<Object> {
+        /** The first exception */
+        private volatile Throwable firstException;
+
+        /**
+         * Creates a scope whose subtasks are run by the given
+         * executor, owned by the current thread.
+         *
+         * @param executor the executor running subtasks
+         * @throws NullPointerException if executor is null
+         */
+        public ShutdownOnFailure(Executor executor) {
+            super(executor);
+        }
+
+        /**
+         * Captures the exception of the first subtask to fail, and
+         * shuts down this scope.
+         *
+         * @param future the completed subtask
+         */
+        @Override
+        protected void handleComplete(Future<Object> future) {
+            Throwable ex = exceptionOf(future);
+            if (ex != null && firstException == null &&
+                FIRST_FAILURE.compareAndSet(this, null, ex))
+                shutdown();
+        }
+
+        /**
+         * Waits for all subtasks to succeed, or a subtask to fail, or
+         * this scope to be shut down.
+         *
+         * @return this scope
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        @Override
+        public ShutdownOnFailure join() throws InterruptedException {
+            super.join();
+            return this;
+        }
+
+        /**
+         * Waits for all subtasks to succeed, or a subtask to fail, or
+         * this scope to be shut down, up to the given deadline.
+         *
+         * @param deadline the deadline
+         * @return this scope
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         * @throws InterruptedException if interrupted while waiting
+         * @throws TimeoutException if the deadline passed while waiting
+         * @throws NullPointerException if deadline is null
+         */
+        @Override
+        public ShutdownOnFailure joinUntil(Instant deadline)
+            throws InterruptedException, TimeoutException {
+            super.joinUntil(deadline);
+            return this;
+        }
+
+        /**
+         * Returns the exception of the first subtask to fail, if any.
+         *
+         * @return the exception, or an empty Optional if no subtask
+         *         failed
+         */
+        public Optional<Throwable> exception() {
+            return Optional.ofNullable(firstException);
+        }
+
+        /**
+         * Throws if a subtask failed.
+         *
+         * @throws ExecutionException if a subtask failed, with the
+         *         exception of the first to fail as cause
+         */
+        public void throwIfFailed() throws ExecutionException {
+            throwIfFailed(ExecutionException::new);
+        }
+
+        /**
+         * Throws an exception produced by the given function from the
+         * exception of the first subtask to fail, if any.
+         *
+         * @param esf the function producing the exception to throw
+         * @param <X> the type of the exception to throw
+         * @throws X if a subtask failed
+         * @throws NullPointerException if esf is null
+         */
+        public <X extends Throwable> void throwIfFailed(
+            Function<Throwable, ? extends X> esf) throws X {
+            if (esf == null)
+                throw new NullPointerException();
+            Throwable ex = firstException;
+            if (ex != null)
+                throw esf.apply(ex);
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle STARTED;
+    private static final VarHandle FIRST_RESULT;
+    private static final VarHandle FIRST_EXCEPTION;
+    private static final VarHandle FIRST_FAILURE;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            STARTED = l.findVarHandle(Subtask.class, "started", int.class);
+            FIRST_RESULT = l.findVarHandle(ShutdownOnSuccess.class,
+                                           "firstResult", Object.class);
+            FIRST_EXCEPTION = l.findVarHandle(ShutdownOnSuccess.class,
+                                              "firstException",
+                                              Throwable.class);
+            FIRST_FAILURE = l.findVarHandle(ShutdownOnFailure.class,
+                                            "firstException",
+                                            Throwable.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -39,6 +39,8 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
@@ -93,6 +95,15 @@ import static java.util.concurrent.Flow.Subscription;
  * immediately or with bounded timeout), but provide an opportunity to
  * interpose a handler and then retry.
  *
+ * <p>Methods {@link #submitAll submitAll} and {@link #offerAll(Collection,
+ * BiPredicate) offerAll} publish a batch of items at once, in order,
+ * amortizing synchronization and consumer task signalling across the
+ * batch, which may greatly reduce per-item overhead when publishing
+ * many small items.  Subscribers implementing {@link BatchSubscriber}
+ * are similarly issued consecutive available items in batches, via a
+ * single call to {@link BatchSubscriber#onNextBatch onNextBatch},
+ * rather than one call to {@code onNext} per item.
+ *
  * <p>If any Subscriber method throws an exception, its subscription
  * is cancelled.  If a handler is supplied as a constructor argument,
  * it is invoked before cancellation upon an exception in method
@@ -601,6 +612,218 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         return doOffer(item, nanos, onDrop);
     }
 
+    /**
+     * Common implementation for all three forms of submitAll and
+     * offerAll.  Acts as submitAll if nanos == Long.MAX_VALUE, else
+     * offerAll.  Each subscriber is first offered the whole batch,
+     * which it takes as far as its buffer allows with a single
+     * consumer signal; saturated ones are placed in the retries list
+     * along with the index of the first item not taken.
+     */
+    private int doOfferAll(Collection<? extends T> items, long nanos,
+                           BiPredicate<Subscriber<? super T>, ? super T> onDrop) {
+        Object[] a = items.toArray();
+        for (Object x : a)
+            if (x == null) throw new NullPointerException();
+        int n = a.length, lag = 0;
+        boolean complete, unowned;
+        synchronized (this) {
+            Thread t = Thread.currentThread(), o;
+            BufferedSubscription<T> b = clients;
+            if ((unowned = ((o = owner) != t)) && o != null)
+                owner = null;                     // disable bias
+            if (b == null)
+                complete = closed;
+            else {
+                complete = false;
+                boolean cleanMe = false;
+                BufferedSubscription<T> retries = null, rtail = null, next;
+                do {
+                    next = b.next;
+                    int k = b.offerAll(a, 0, n, unowned);
+                    if (k < 0)                    // closed
+                        cleanMe = true;           // remove later
+                    else {
+                        if (k < n) {              // saturated; add to retry list
+                            b.retryIndex = k;
+                            b.nextRetry = null;
+                            if (rtail == null)
+                                retries = b;
+                            else
+                                rtail.nextRetry = b;
+                            rtail = b;
+                        }
+                        int stat = b.estimateLag();
+                        if (stat > lag)
+                            lag = stat;
+                    }
+                } while ((b = next) != null);
+
+                if (retries != null || cleanMe)
+                    lag = retryOfferAll(a, nanos, onDrop, retries, lag, cleanMe);
+            }
+        }
+        if (complete)
+            throw new IllegalStateException("Closed");
+        else
+            return lag;
+    }
+
+    /**
+     * Batch version of retryOffer: for each buffer on the list,
+     * helps, (timed) waits for, and/or drops each remaining item,
+     * re-offering the rest of the batch whenever there is space.  A
+     * timeout applies to the batch as a whole.  Returns lag or
+     * negative drops.
+     */
+    private int retryOfferAll(Object[] a, long nanos,
+                              BiPredicate<Subscriber<? super T>, ? super T> onDrop,
+                              BufferedSubscription<T> retries, int lag,
+                              boolean cleanMe) {
+        int n = a.length;
+        boolean timed = (nanos > 0L && nanos < Long.MAX_VALUE);
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (BufferedSubscription<T> r = retries; r != null;) {
+            BufferedSubscription<T> nextRetry = r.nextRetry;
+            r.nextRetry = null;
+            for (int i = r.retryIndex; i < n;) {
+                long ns = !timed ? nanos : deadline - System.nanoTime();
+                if (ns > 0L)
+                    r.awaitSpace(ns);
+                int k = r.offerAll(a, i, n, true);
+                if (k > 0) {
+                    i += k;
+                    continue;
+                }
+                int stat = k;
+                if (stat == 0 && onDrop != null) {
+                    @SuppressWarnings("unchecked") T item = (T) a[i];
+                    if (onDrop.test(r.subscriber, item))
+                        stat = r.retryOffer(item);
+                }
+                if (stat < 0) {
+                    cleanMe = true;
+                    break;
+                }
+                if (stat == 0)
+                    lag = (lag >= 0) ? -1 : lag - 1;
+                ++i;
+            }
+            int stat = r.estimateLag();
+            if (lag >= 0 && stat > lag)
+                lag = stat;
+            r = nextRetry;
+        }
+        if (cleanMe)
+            cleanAndCount();
+        return lag;
+    }
+
+    /**
+     * Publishes the given items, in order, to each current subscriber
+     * as if by calling {@link #submit(Object) submit} for each of them,
+     * blocking uninterruptibly while resources for any subscriber are
+     * unavailable.  Items are added to each subscriber's buffer as a
+     * batch, signalling the subscriber once rather than per item,
+     * and no other items are interleaved with them.  This method
+     * returns an estimate of the maximum lag (number of items
+     * submitted but not yet consumed) among all current subscribers.
+     *
+     * <p>If the Executor for this publisher throws a
+     * RejectedExecutionException (or any other RuntimeException or
+     * Error) when attempting to asynchronously notify subscribers,
+     * then this exception is rethrown, in which case not all
+     * subscribers will have been issued all items.
+     *
+     * @param items the (non-null) items to publish
+     * @return the estimated maximum lag among subscribers
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if the collection or any of its
+     * items is null
+     * @throws RejectedExecutionException if thrown by Executor
+     * @since 12
+     */
+    public int submitAll(Collection<? extends T> items) {
+        return doOfferAll(items, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Publishes the given items, in order and if possible, to each
+     * current subscriber as if by calling {@link #offer(Object,
+     * BiPredicate) offer} for each of them, but adding them to each
+     * subscriber's buffer as a batch.  Each item that cannot be
+     * buffered for a subscriber is dropped, in which case the given
+     * handler (if non-null) is invoked with that item, and if it
+     * returns true, the item is retried once.  Other calls to methods
+     * in this class by other threads are blocked while the handler is
+     * invoked.
+     *
+     * <p>This method returns a status indicator: If negative, it
+     * represents the (negative) number of drops, summed over items
+     * and subscribers. Otherwise it is an estimate of the maximum lag
+     * (number of items submitted but not yet consumed) among all
+     * current subscribers.
+     *
+     * @param items the (non-null) items to publish
+     * @param onDrop if non-null, the handler invoked upon a drop to a
+     * subscriber, with arguments of the subscriber and item; if it
+     * returns true, an offer is re-attempted (once)
+     * @return if negative, the (negative) number of drops; otherwise
+     * an estimate of maximum lag
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if the collection or any of its
+     * items is null
+     * @throws RejectedExecutionException if thrown by Executor
+     * @since 12
+     */
+    public int offerAll(Collection<? extends T> items,
+                        BiPredicate<Subscriber<? super T>, ? super T> onDrop) {
+        return doOfferAll(items, 0L, onDrop);
+    }
+
+    /**
+     * Publishes the given items, in order and if possible, to each
+     * current subscriber as if by calling {@link #offer(Object, long,
+     * TimeUnit, BiPredicate) offer} for each of them, but adding them
+     * to each subscriber's buffer as a batch, and blocking while
+     * resources for any subscription are unavailable, up to the
+     * specified timeout for the batch as a whole or until the caller
+     * thread is interrupted.  Each item that then cannot be buffered
+     * for a subscriber is dropped, in which case the given handler (if
+     * non-null) is invoked with that item, and if it returns true, the
+     * item is retried once.  Other calls to methods in this class by
+     * other threads are blocked while the handler is invoked.
+     *
+     * <p>This method returns a status indicator: If negative, it
+     * represents the (negative) number of drops, summed over items
+     * and subscribers. Otherwise it is an estimate of the maximum lag
+     * (number of items submitted but not yet consumed) among all
+     * current subscribers.
+     *
+     * @param items the (non-null) items to publish
+     * @param timeout how long to wait for resources for any subscriber
+     * before giving up, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     * {@code timeout} parameter
+     * @param onDrop if non-null, the handler invoked upon a drop to a
+     * subscriber, with arguments of the subscriber and item; if it
+     * returns true, an offer is re-attempted (once)
+     * @return if negative, the (negative) number of drops; otherwise
+     * an estimate of maximum lag
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if the collection or any of its
+     * items is null
+     * @throws RejectedExecutionException if thrown by Executor
+     * @since 12
+     */
+    public int offerAll(Collection<? extends T> items, long timeout, TimeUnit unit,
+                        BiPredicate<Subscriber<? super T>, ? super T> onDrop) {
+        long nanos = unit.toNanos(timeout);
+        // distinguishes from untimed (only wrt interrupt policy)
+        if (nanos == Long.MAX_VALUE) --nanos;
+        return doOfferAll(items, nanos, onDrop);
+    }
+
     /**
      * Unless already closed, issues {@link
      * Flow.Subscriber#onComplete() onComplete} signals to current
@@ -879,6 +1102,35 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         return status;
     }
 
+    /**
+     * A {@link Flow.Subscriber} that is issued items by a
+     * SubmissionPublisher in batches.  Whenever several consecutive
+     * items are available and requested, the publisher invokes {@link
+     * #onNextBatch onNextBatch} once with all of them (up to an
+     * internal bound related to the buffer capacity), instead of
+     * invoking {@link Flow.Subscriber#onNext onNext} for each.  Items
+     * in a batch count against demand individually, so a batch never
+     * holds more items than have been requested.  Other publishers
+     * invoke {@code onNext} as usual.
+     *
+     * <p>If {@code onNextBatch} throws an exception, the
+     * subscription is cancelled as for {@code onNext}, after
+     * invoking the publisher's handler if one was supplied.
+     *
+     * @param <T> the subscribed item type
+     * @since 12
+     */
+    public static interface BatchSubscriber<T> extends Subscriber<T> {
+        /**
+         * Method invoked with one or more consecutive items of the
+         * Subscription, in order, in place of one invocation of
+         * {@link Flow.Subscriber#onNext onNext} per item.
+         *
+         * @param items the items, in an unmodifiable non-empty list
+         */
+        void onNextBatch(List<? extends T> items);
+    }
+
     /** Subscriber for method consume */
     static final class ConsumerSubscriber<T> implements Subscriber<T> {
         final CompletableFuture<Void> status;
@@ -1016,6 +1268,8 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         Throwable pendingError;            // holds until onError issued
         BufferedSubscription<T> next;      // used only by publisher
         BufferedSubscription<T> nextRetry; // used only by publisher
+        int retryIndex;                    // used only by publisher
+        final BatchSubscriber<? super T> batchSubscriber; // if batching
 
         @jdk.internal.vm.annotation.Contended("c") // segregate
         volatile long demand;              // # unfilled requests
@@ -1040,6 +1294,8 @@ public class SubmissionPublisher<T> implements Publisher<T>,
                              Object[] array,
                              int maxBufferCapacity) {
             this.subscriber = subscriber;
+            this.batchSubscriber = (subscriber instanceof BatchSubscriber)
+                ? (BatchSubscriber<? super T>) subscriber : null;
             this.executor = executor;
             this.onNextHandler = onNextHandler;
             this.array = array;
@@ -1090,6 +1346,16 @@ public class SubmissionPublisher<T> implements Publisher<T>,
          * @return negative if closed, 0 if saturated, else estimated lag
          */
         final int offer(T item, boolean unowned) {
+            return startOnOffer(add(item, unowned, true));
+        }
+
+        /**
+         * Tries to add item, without starting consumer task.  If owned
+         * and not saturated, the item is put in release mode, or in
+         * plain mode if the caller has already issued a release fence.
+         * @return 0 if saturated, else estimated lag
+         */
+        final int add(T item, boolean unowned, boolean release) {
             Object[] a;
             int stat = 0, cap = ((a = array) == null) ? 0 : a.length;
             int t = tail, i = t & (cap - 1), n = t + 1 - head;
@@ -1100,7 +1366,10 @@ public class SubmissionPublisher<T> implements Publisher<T>,
                 else if (n >= cap || unowned)      // need volatile CAS
                     added = QA.compareAndSet(a, i, null, item);
                 else {                             // can use release mode
-                    QA.setRelease(a, i, item);
+                    if (release)
+                        QA.setRelease(a, i, item);
+                    else
+                        QA.set(a, i, item);
                     added = true;
                 }
                 if (added) {
@@ -1108,7 +1377,27 @@ public class SubmissionPublisher<T> implements Publisher<T>,
                     stat = n;
                 }
             }
-            return startOnOffer(stat);
+            return stat;
+        }
+
+        /**
+         * Tries to add items from index {@code from} (inclusive) to
+         * {@code to} (exclusive), stopping at the first one that does
+         * not fit, and then starts consumer task if necessary.  When
+         * owned, a single release fence issued before any of them is
+         * put covers all items, which are then put in plain mode.
+         * @return negative if closed, else number of items added
+         */
+        final int offerAll(Object[] items, int from, int to, boolean unowned) {
+            int k = from;
+            if (!unowned && k < to)
+                VarHandle.releaseFence();
+            for (; k < to; ++k) {
+                @SuppressWarnings("unchecked") T item = (T) items[k];
+                if (add(item, unowned, false) == 0)
+                    break;
+            }
+            return startOnOffer(k - from);
         }
 
         /**
@@ -1284,6 +1573,9 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         final int takeItems(Subscriber<? super T> s, long d, int h) {
             Object[] a;
             int k = 0, cap;
+            BatchSubscriber<? super T> bs;
+            if ((bs = batchSubscriber) != null)
+                return takeBatch(bs, d, h);
             if ((a = array) != null && (cap = a.length) > 0) {
                 int m = cap - 1, b = (m >>> 3) + 1; // min(1, cap/8)
                 int n = (d < (long)b) ? (int)d : b;
@@ -1300,6 +1592,42 @@ public class SubmissionPublisher<T> implements Publisher<T>,
             return k;
         }
 
+        /**
+         * Version of takeItems for BatchSubscribers: takes available
+         * items under the same bounds, and issues them in one call.
+         */
+        final int takeBatch(BatchSubscriber<? super T> s, long d, int h) {
+            Object[] a, items = null;
+            int k = 0, cap;
+            if ((a = array) != null && (cap = a.length) > 0) {
+                int m = cap - 1, b = (m >>> 3) + 1; // min(1, cap/8)
+                int n = (d < (long)b) ? (int)d : b;
+                for (; k < n; ++h, ++k) {
+                    Object x = QA.getAndSet(a, h & m, null);
+                    if (waiting != 0)
+                        signalWaiter();
+                    if (x == null)
+                        break;
+                    else if (items == null)
+                        items = new Object[n];
+                    items[k] = x;
+                }
+                if (k > 0)
+                    consumeBatch(s, (k < n) ? Arrays.copyOf(items, k) : items);
+            }
+            return k;
+        }
+
+        final void consumeBatch(BatchSubscriber<? super T> s, Object[] items) {
+            try {
+                @SuppressWarnings("unchecked")
+                List<T> batch = (List<T>) Arrays.asList(items);
+                s.onNextBatch(Collections.unmodifiableList(batch));
+            } catch (Throwable ex) {
+                handleOnNext(s, ex);
+            }
+        }
+
         final boolean consumeNext(Subscriber<? super T> s, Object x) {
             try {
                 @SuppressWarnings("unchecked") T y = (T) x;
@@ -35,12 +35,16 @@
 
 package java.util.concurrent;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -261,6 +265,17 @@ import java.util.concurrent.locks.ReentrantLock;
  * assist in storage reclamation when large numbers of queued tasks
  * become cancelled.</dd>
  *
+ * <dt>Statistics</dt>
+ *
+ * <dd>Method {@link #enableStatistics} starts recording the time each
+ * task spends running, and for a sample of tasks passed to {@link
+ * #execute}, the time it spends waiting to start, together with the
+ * number of rejected tasks and the fraction of time workers are busy.
+ * Recording needs no wrapping of tasks, so it does not interfere with
+ * {@link #remove(Runnable)} or the hook methods, and is cheap enough
+ * to leave enabled.  A snapshot of the values recorded is returned by
+ * {@link #getStatistics}.</dd>
+ *
  * <dt>Reclamation</dt>
  *
  * <dd>A pool that is no longer referenced in a program <em>AND</em>
@@ -554,6 +569,18 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     private static final RejectedExecutionHandler defaultHandler =
         new AbortPolicy();
 
+    /**
+     * Statistics shared by workers, or null if not enabled.  Once
+     * set, never changes.
+     */
+    private volatile PoolStats stats;
+
+    /**
+     * Adaptive sizing controller, or null if the core pool size is
+     * set only explicitly.
+     */
+    private volatile SizingController sizing;
+
     /**
      * Permission required for callers of shutdown and shutdownNow.
      * We additionally require (see checkShutdownAccess) that callers
@@ -609,6 +636,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Runnable firstTask;
         /** Per-thread task counter */
         volatile long completedTasks;
+        /** Statistics written by this worker, or null if not enabled */
+        volatile WorkerStats stats;
 
         // TODO: switch to AbstractQueuedLongSynchronizer and move
         // completedTasks into the lock word.
@@ -667,6 +696,342 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /** Mask of the random numbers selecting tasks to time in queue */
+    private static final int SAMPLE_MASK = (1 << 6) - 1;
+
+    /** Number of tasks that may be timed in queue at once */
+    private static final int SAMPLE_SLOTS = 16;
+
+    /**
+     * Statistics recorded by a single worker, written only by it and
+     * read racily by getStatistics.  Counts are written in opaque
+     * mode, so that each is read whole and never appears to decrease,
+     * and the task and wait counts last, in release mode, so that a
+     * reader acquiring them first sees the totals and histogram
+     * counts of at least as many tasks.  Also used, under mainLock,
+     * to accumulate the statistics of exited workers.
+     * Histograms have logarithmic buckets of nanoseconds: element 0
+     * counts zero values, and element i > 0 counts values v with
+     * 2^(i-1) <= v < 2^i, computed as the bit length of v.
+     */
+    private static final class WorkerStats {
+        final long startTime;      // System.nanoTime when created
+        long tasks;                // tasks run
+        long busyNanos;            // total time running tasks
+        long waits;                // sampled tasks recorded in queueWaits
+        long workerNanos;          // lifetimes of exited workers
+        final long[] runTimes = new long[Long.SIZE];
+        final long[] queueWaits = new long[Long.SIZE];
+
+        WorkerStats(long startTime) {
+            this.startTime = startTime;
+        }
+
+        static int bucket(long nanos) {
+            return Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0L));
+        }
+
+        /**
+         * Records the end of a task that started at the given time.
+         */
+        void ran(long start) {
+            long d = System.nanoTime() - start;
+            int b = bucket(d);
+            COUNTS.setOpaque(runTimes, b, runTimes[b] + 1L);
+            BUSY_NANOS.setOpaque(this, busyNanos + d);
+            TASKS.setRelease(this, tasks + 1L);
+        }
+
+        /**
+         * Records the queue wait of a sampled task.
+         */
+        void waited(long d) {
+            int b = bucket(d);
+            COUNTS.setOpaque(queueWaits, b, queueWaits[b] + 1L);
+            WAITS.setRelease(this, waits + 1L);
+        }
+
+        /**
+         * Adds the statistics of the given worker, counting its
+         * lifetime up to the given time.  Must be called under
+         * mainLock.
+         */
+        void add(WorkerStats w, long now) {
+            tasks += (long)TASKS.getAcquire(w);
+            waits += (long)WAITS.getAcquire(w);
+            busyNanos += (long)BUSY_NANOS.getOpaque(w);
+            workerNanos += w.workerNanos + (now - w.startTime);
+            for (int i = 0; i < Long.SIZE; ++i) {
+                runTimes[i] += (long)COUNTS.getOpaque(w.runTimes, i);
+                queueWaits[i] += (long)COUNTS.getOpaque(w.queueWaits, i);
+            }
+        }
+
+        // VarHandle mechanics
+        private static final VarHandle TASKS;
+        private static final VarHandle BUSY_NANOS;
+        private static final VarHandle WAITS;
+        private static final VarHandle COUNTS;
+        static {
+            try {
+                MethodHandles.Lookup l = MethodHandles.lookup();
+                TASKS = l.findVarHandle(WorkerStats.class, "tasks", long.class);
+                BUSY_NANOS = l.findVarHandle(WorkerStats.class, "busyNanos", long.class);
+                WAITS = l.findVarHandle(WorkerStats.class, "waits", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+            COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+        }
+    }
+
+    /**
+     * Statistics shared by all workers.  Rather than wrapping tasks to
+     * timestamp them, execute timestamps one in (SAMPLE_MASK + 1)
+     * tasks by placing it, with the current time, in a free slot of a
+     * small table, which the worker running a task searches only if
+     * there are any samples pending.  A sample that is never run
+     * (because the task was removed from the queue some other way)
+     * occupies its slot until the table is full while the queue is
+     * empty, when all samples must be stale and are discarded.
+     */
+    private static final class PoolStats {
+        final AtomicReferenceArray<Runnable> samples =
+            new AtomicReferenceArray<>(SAMPLE_SLOTS);
+        // Written before the sample is published by CAS.  Two callers
+        // racing for the same free slot may both write the time, but
+        // both times are then the current time.
+        final long[] sampleTimes = new long[SAMPLE_SLOTS];
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicLong rejections = new AtomicLong();
+        final WorkerStats retired;   // of exited workers; under mainLock
+
+        PoolStats(long startTime) {
+            retired = new WorkerStats(startTime);
+        }
+
+        /**
+         * Possibly records the time the given task was submitted.
+         *
+         * @return true if the task was selected for sampling, whether
+         *         or not there was room to record it
+         */
+        boolean sample(Runnable task, BlockingQueue<Runnable> queue) {
+            int r = ThreadLocalRandom.nextSecondarySeed();
+            if ((r & SAMPLE_MASK) != 0)
+                return false;
+            else {
+                AtomicReferenceArray<Runnable> a = samples;
+                for (int i = 0; i < SAMPLE_SLOTS; ++i) {
+                    if (a.get(i) == task)          // resubmitted instance
+                        return true;
+                }
+                for (int k = 0, i = r >>> 28; k < SAMPLE_SLOTS;
+                     ++k, i = (i + 1) & (SAMPLE_SLOTS - 1)) {
+                    if (a.get(i) == null) {
+                        sampleTimes[i] = System.nanoTime();
+                        if (a.compareAndSet(i, null, task)) {
+                            pending.getAndIncrement();
+                            return true;
+                        }
+                    }
+                }
+                if (queue.isEmpty()) {             // discard stale samples
+                    for (int i = 0; i < SAMPLE_SLOTS; ++i) {
+                        if (a.getAndSet(i, null) != null)
+                            pending.getAndDecrement();
+                    }
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Returns the time the oldest pending sample was submitted,
+         * or the given time if there are none.
+         */
+        long oldestSample(long now) {
+            long oldest = now;
+            if (pending.get() != 0) {
+                for (int i = 0; i < SAMPLE_SLOTS; ++i) {
+                    long t;
+                    if (samples.get(i) != null && (t = sampleTimes[i]) - oldest < 0)
+                        oldest = t;
+                }
+            }
+            return oldest;
+        }
+
+        /**
+         * If the given task was sampled, removes the sample, and if
+         * the worker stats are nonnull, records in them its wait up
+         * to the given time.
+         *
+         * @return the wait, or -1 if the task was not sampled
+         */
+        long unsample(Runnable task, WorkerStats w, long now) {
+            if (pending.get() != 0) {
+                AtomicReferenceArray<Runnable> a = samples;
+                for (int i = 0; i < SAMPLE_SLOTS; ++i) {
+                    if (a.get(i) == task) {
+                        long d = now - sampleTimes[i];
+                        if (a.compareAndSet(i, task, null)) {
+                            pending.getAndDecrement();
+                            if (w != null)
+                                w.waited(d);
+                            return Math.max(d, 0L);
+                        }
+                        break;
+                    }
+                }
+            }
+            return -1L;
+        }
+    }
+
+    /** Number of calm intervals before the core pool size shrinks */
+    private static final int CALM_INTERVALS = 3;
+
+    /** Number of intervals to hold the core size after an unhelpful growth */
+    private static final int HOLD_INTERVALS = 10;
+
+    /**
+     * Adjusts the core pool size from the queue waits sampled by
+     * PoolStats, in the style of CoDel: if even the shortest wait
+     * observed during an interval exceeds the target, there is a
+     * standing queue, and the pool grows.  Growth is kept only if it
+     * raises throughput (completed tasks per interval), which stops
+     * the pool from growing into context-switch thrash when tasks
+     * are not CPU-starved but blocked on something else.  The pool
+     * shrinks by one thread after CALM_INTERVALS consecutive
+     * intervals with an empty queue and waits below half the target;
+     * waits between half the target and the target leave the size
+     * alone, which with the growth hold provides hysteresis.
+     *
+     * Samples identify tasks by instance, so when the same instance is
+     * queued many times, a run of one copy may be matched to the
+     * sample of another and report too short a wait.  The wait is
+     * therefore taken to be at least the backlog, the time the
+     * current queue would take to drain at the throughput of the last
+     * interval (Little's law), so that a growing queue is always seen.
+     * If no sampled task started, the age of the oldest pending
+     * sample is used, capped at an interval, since samples of tasks
+     * removed from the queue may linger.  A growth step is judged
+     * against the throughput of the interval before it.
+     *
+     * Evaluation is driven by sampled submissions and waits, by
+     * whichever thread first notices that an interval has elapsed, so
+     * an idle pool is reassessed on its next submission.  New core
+     * sizes are installed using setCorePoolSize, which starts
+     * workers or interrupts idle ones as usual.
+     */
+    private final class SizingController {
+        final int minCore, maxCore;
+        final long target, interval;
+        final AtomicLong minWait = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong deadline;
+        // Accessed only while evaluating an interval, under the lock
+        // of this controller
+        long lastCompleted;
+        long lastTime;             // time of last evaluation
+        double baseThroughput;     // completions per nanosecond before
+                                   // the last growth
+        int lastStep;              // size of last growth, or 0
+        int calm;                  // consecutive calm intervals
+        int hold;                  // intervals left before growing
+
+        SizingController(int minCore, int maxCore, long target) {
+            this.minCore = minCore;
+            this.maxCore = maxCore;
+            this.target = target;
+            this.interval = Math.max(target * 20L, 1_000_000L);
+            this.lastTime = System.nanoTime();
+            this.deadline = new AtomicLong(lastTime + interval);
+            this.lastCompleted = getCompletedTaskCount();
+        }
+
+        /**
+         * Records a sampled queue wait observed at the given time.
+         */
+        void observe(long wait, long now) {
+            AtomicLong m = minWait;
+            for (long w; wait < (w = m.get()); ) {
+                if (m.compareAndSet(w, wait))
+                    break;
+            }
+            tick(now);
+        }
+
+        /**
+         * Evaluates the last interval, if it has elapsed and no other
+         * thread is doing so.
+         */
+        void tick(long now) {
+            long d = deadline.get();
+            if (now - d >= 0L && deadline.compareAndSet(d, now + interval))
+                evaluate(now);
+        }
+
+        private synchronized void evaluate(long now) {
+            long completed = getCompletedTaskCount();
+            double throughput = (double)(completed - lastCompleted) /
+                Math.max(now - lastTime, 1L);
+            lastCompleted = completed;
+            lastTime = now;
+            long wait = minWait.getAndSet(Long.MAX_VALUE);
+            boolean observed = (wait != Long.MAX_VALUE);
+            int queued = workQueue.size();
+            if (!observed)                     // none started; use oldest
+                wait = (queued == 0) ? 0L :
+                    Math.min(now - stats.oldestSample(now), interval);
+            if (queued > 0) {                  // at least the backlog
+                double backlog = (throughput > 0.0) ?
+                    queued / throughput : (double)interval;
+                wait = Math.max(wait, (long)Math.min(backlog, interval));
+            }
+            int core = corePoolSize, size = core;
+            if (wait > target) {
+                calm = 0;
+                if (lastStep > 0 && throughput <= baseThroughput *
+                    (1.0 + 1.0 / 32)) {        // growth did not help
+                    size = core - lastStep;
+                    hold = HOLD_INTERVALS;
+                    lastStep = 0;
+                }
+                else if (hold > 0) {
+                    --hold;
+                    lastStep = 0;
+                }
+                else {
+                    size = Math.min(core + Math.max(1, core >>> 3), maxCore);
+                    if ((lastStep = size - core) > 0)
+                        baseThroughput = throughput;
+                }
+            }
+            else {
+                if (observed)                  // else growth not yet judged
+                    lastStep = 0;
+                if (hold > 0)
+                    --hold;
+                if (wait >= target >>> 1 || queued > 0)
+                    calm = 0;
+                else if (++calm >= CALM_INTERVALS) {
+                    calm = 0;
+                    size = core - 1;
+                }
+            }
+            size = Math.min(Math.max(minCore, Math.min(size, maxCore)),
+                            maximumPoolSize);
+            if (size != core && sizing == this) {
+                try {
+                    setCorePoolSize(size);
+                } catch (IllegalArgumentException ignore) {
+                    // raced with setMaximumPoolSize; retry next interval
+                }
+            }
+        }
+    }
+
     /*
      * Methods for setting control state
      */
@@ -822,6 +1187,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Package-protected for use by ScheduledThreadPoolExecutor.
      */
     final void reject(Runnable command) {
+        PoolStats ps;
+        if ((ps = stats) != null) {
+            ps.rejections.getAndIncrement();
+            ps.unsample(command, null, 0L);
+        }
         handler.rejectedExecution(command, this);
     }
 
@@ -925,6 +1295,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                         if (t.isAlive()) // precheck that t is startable
                             throw new IllegalThreadStateException();
                         workers.add(w);
+                        if (stats != null)
+                            w.stats = new WorkerStats(System.nanoTime());
                         int s = workers.size();
                         if (s > largestPoolSize)
                             largestPoolSize = s;
@@ -986,6 +1358,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         mainLock.lock();
         try {
             completedTaskCount += w.completedTasks;
+            PoolStats ps; WorkerStats ws;
+            if ((ps = stats) != null && (ws = w.stats) != null)
+                ps.retired.add(ws, System.nanoTime());
             workers.remove(w);
         } finally {
             mainLock.unlock();
@@ -1124,8 +1499,22 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     wt.interrupt();
                 try {
                     beforeExecute(wt, task);
+                    WorkerStats ws = w.stats;
+                    long start = 0L;
+                    if (ws != null) {
+                        SizingController sc;
+                        start = System.nanoTime();
+                        long wait = stats.unsample(task, ws, start);
+                        if (wait >= 0L && (sc = sizing) != null)
+                            sc.observe(wait, start);
+                    }
                     try {
-                        task.run();
+                        try {
+                            task.run();
+                        } finally {
+                            if (ws != null)
+                                ws.ran(start);
+                        }
                         afterExecute(task, null);
                     } catch (Throwable ex) {
                         afterExecute(task, ex);
@@ -1318,6 +1707,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     public void execute(Runnable command) {
         if (command == null)
             throw new NullPointerException();
+        PoolStats ps; SizingController sc;
+        if ((ps = stats) != null && ps.sample(command, workQueue) &&
+            (sc = sizing) != null)
+            sc.tick(System.nanoTime());
         /*
          * Proceed in 3 steps:
          *
@@ -1560,6 +1953,77 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         return corePoolSize;
     }
 
+    /**
+     * Lets the executor adjust its core pool size, within the given
+     * bounds, to keep the time tasks wait in the queue near the given
+     * target.  The executor adds core threads while even the shortest
+     * wait it observes exceeds the target, as long as doing so raises
+     * the rate at which tasks complete, and removes them once waits
+     * stay well below the target with nothing queued.  Adjustments
+     * are made at most once every twenty times the target delay (and
+     * at least a millisecond), by threads submitting or running
+     * tasks; they take effect as if by {@link #setCorePoolSize}.
+     *
+     * <p>Queue waits are sampled as for {@link #getStatistics}, so
+     * this method also {@linkplain #enableStatistics enables
+     * statistics}.  The core pool size is set to the nearest bound if
+     * outside them.  The maximum pool size still limits the core pool
+     * size, so it must be at least {@code minCorePoolSize}, and should
+     * be at least {@code maxCorePoolSize} for the pool to reach that
+     * size.  If the maximum pool size is later set below {@code
+     * minCorePoolSize}, the core pool size is kept at the maximum.
+     *
+     * @param minCorePoolSize the smallest core pool size to set
+     * @param maxCorePoolSize the largest core pool size to set
+     * @param targetDelay the target queue wait
+     * @param unit the time unit of the {@code targetDelay} argument
+     * @throws IllegalArgumentException if {@code minCorePoolSize <= 0},
+     *         {@code maxCorePoolSize < minCorePoolSize},
+     *         {@code minCorePoolSize} is greater than the {@linkplain
+     *         #getMaximumPoolSize() maximum pool size}, or
+     *         {@code targetDelay <= 0}
+     * @throws NullPointerException if {@code unit} is null
+     * @see #disableAdaptiveSizing
+     * @since 12
+     */
+    public void enableAdaptiveSizing(int minCorePoolSize, int maxCorePoolSize,
+                                     long targetDelay, TimeUnit unit) {
+        long target = unit.toNanos(targetDelay);
+        if (minCorePoolSize <= 0 || maxCorePoolSize < minCorePoolSize ||
+            maximumPoolSize < minCorePoolSize || target <= 0L)
+            throw new IllegalArgumentException();
+        enableStatistics();
+        sizing = new SizingController(minCorePoolSize, maxCorePoolSize,
+                                      target);
+        int core = corePoolSize;
+        int size = Math.max(minCorePoolSize, Math.min(core, maxCorePoolSize));
+        if (size != core)
+            setCorePoolSize(Math.min(size, maximumPoolSize));
+    }
+
+    /**
+     * Stops adaptive adjustment of the core pool size, leaving it at
+     * its current value.
+     *
+     * @see #enableAdaptiveSizing
+     * @since 12
+     */
+    public void disableAdaptiveSizing() {
+        sizing = null;
+    }
+
+    /**
+     * Returns {@code true} if the core pool size is being adjusted
+     * adaptively.
+     *
+     * @return {@code true} if adaptive sizing is enabled
+     * @see #enableAdaptiveSizing
+     * @since 12
+     */
+    public boolean isAdaptiveSizingEnabled() {
+        return sizing != null;
+    }
+
     /**
      * Starts a core thread, causing it to idly wait for work. This
      * overrides the default policy of starting core threads only when
@@ -1886,6 +2350,209 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Enables the recording of statistics, available from {@link
+     * #getStatistics}.  Tasks already running or queued when this
+     * method is invoked are not timed.  Once enabled, recording
+     * cannot be disabled.
+     *
+     * @since 12
+     */
+    public void enableStatistics() {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            if (stats == null) {
+                long now = System.nanoTime();
+                stats = new PoolStats(now);
+                for (Worker w : workers)
+                    w.stats = new WorkerStats(now);
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if statistics are being recorded.
+     *
+     * @return {@code true} if statistics are being recorded
+     * @since 12
+     */
+    public boolean isStatisticsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * Returns a snapshot of the statistics recorded since {@link
+     * #enableStatistics} was invoked.  Workers are not stopped while
+     * their statistics are read, so values recorded by a busy worker
+     * may not all correspond to the same instant, but none decreases
+     * across successive calls.
+     *
+     * <p>Run times are recorded for every task, but queue waits only
+     * for a random sample of about one in 64 submitted tasks, of which
+     * at most 16 may be waiting in the queue at once, so that {@code
+     * execute} need not timestamp every task.  The queue wait
+     * histogram is thus a sparse sample, whose size is given by
+     * {@link Statistics#getSampledTaskCount}, and under-represents
+     * waits during bursts that fill the sample table.
+     *
+     * @return the statistics, which are all zero if not enabled
+     * @since 12
+     */
+    public Statistics getStatistics() {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            long now = System.nanoTime();
+            PoolStats ps = stats;
+            WorkerStats total = new WorkerStats(now);
+            if (ps == null)
+                return new Statistics(total, 0L);
+            total.add(ps.retired, ps.retired.startTime);
+            for (Worker w : workers) {
+                WorkerStats ws;
+                if ((ws = w.stats) != null)
+                    total.add(ws, now);
+            }
+            return new Statistics(total, ps.rejections.get());
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot of the statistics recorded by a {@code
+     * ThreadPoolExecutor}, obtained from {@link #getStatistics}.
+     * The run time histogram counts every task run, but the queue
+     * wait histogram only a sample of tasks, as described in {@link
+     * ThreadPoolExecutor#getStatistics}.
+     * Histograms have logarithmic buckets of nanoseconds: element 0
+     * counts zero durations, and element <i>i</i> &gt; 0 counts
+     * durations <i>d</i> such that 2<sup><i>i</i>-1</sup> &le;
+     * <i>d</i> &lt; 2<sup><i>i</i></sup>.
+     *
+     * @since 12
+     */
+    public static final class Statistics {
+        private final long taskCount;
+        private final long busyNanos;
+        private final long workerNanos;
+        private final long sampledTaskCount;
+        private final long rejectedTaskCount;
+        private final long[] runTimes;
+        private final long[] queueWaits;
+
+        Statistics(WorkerStats total, long rejectedTaskCount) {
+            this.taskCount = total.tasks;
+            this.busyNanos = total.busyNanos;
+            this.workerNanos = total.workerNanos;
+            this.sampledTaskCount = total.waits;
+            this.rejectedTaskCount = rejectedTaskCount;
+            this.runTimes = total.runTimes;
+            this.queueWaits = total.queueWaits;
+        }
+
+        /**
+         * Returns the number of tasks that have finished running.
+         *
+         * @return the number of tasks
+         */
+        public long getTaskCount() {
+            return taskCount;
+        }
+
+        /**
+         * Returns the number of tasks rejected, whether because the
+         * executor was saturated or shut down.
+         *
+         * @return the number of rejected tasks
+         */
+        public long getRejectedTaskCount() {
+            return rejectedTaskCount;
+        }
+
+        /**
+         * Returns the number of tasks whose time spent waiting to start
+         * was recorded in the queue wait histogram.
+         *
+         * @return the number of sampled tasks
+         */
+        public long getSampledTaskCount() {
+            return sampledTaskCount;
+        }
+
+        /**
+         * Returns a histogram of the times, in nanoseconds, that tasks
+         * spent running, excluding {@code beforeExecute} and {@code
+         * afterExecute}.
+         *
+         * @return the run time histogram, with 64 buckets
+         */
+        public long[] getRunTimeHistogram() {
+            return runTimes.clone();
+        }
+
+        /**
+         * Returns a histogram of the times, in nanoseconds, between
+         * the submission of a random sample of about one in 64 tasks
+         * and the start of their execution.  The histogram is not of
+         * all tasks; its total is {@link #getSampledTaskCount}.
+         *
+         * @return the queue wait histogram, with 64 buckets
+         */
+        public long[] getQueueWaitHistogram() {
+            return queueWaits.clone();
+        }
+
+        /**
+         * Returns the total time, in nanoseconds, that worker threads
+         * spent running tasks.
+         *
+         * @return the busy time
+         */
+        public long getBusyTime() {
+            return busyNanos;
+        }
+
+        /**
+         * Returns the total time, in nanoseconds, that worker threads
+         * existed, busy or not.
+         *
+         * @return the total worker time
+         */
+        public long getWorkerTime() {
+            return workerNanos;
+        }
+
+        /**
+         * Returns the fraction of the total worker time that workers
+         * spent running tasks.
+         *
+         * @return the utilization, between 0.0 and 1.0
+         */
+        public double getUtilization() {
+            return (workerNanos <= 0L) ? 0.0 :
+                Math.min(1.0, (double)busyNanos / workerNanos);
+        }
+
+        /**
+         * Returns a string identifying these statistics, and their
+         * counts.
+         *
+         * @return a string identifying these statistics
+         */
+        public String toString() {
+            return super.toString() +
+                "[tasks = " + taskCount +
+                ", rejected tasks = " + rejectedTaskCount +
+                ", sampled tasks = " + sampledTaskCount +
+                ", utilization = " + getUtilization() +
+                "]";
+        }
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state and estimated worker and
@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent.atomic;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A histogram of non-negative {@code long} values, such as latencies
+ * in nanoseconds, that many threads may record into concurrently.
+ * Values are counted in log-linear buckets: each power of two range
+ * is divided into equal-width buckets, so that every value is counted
+ * within a fixed relative error, set by a number of significant
+ * decimal digits.  The highest value recorded is tracked exactly.
+ *
+ * <p>As in {@link LongAdder}, recording normally updates a single
+ * array of counts, and when records are contended across threads,
+ * the histogram grows dynamically into several stripes of counts, up
+ * to the number of processors, each thread recording into one of
+ * them.  Recording is thus free of locking and of contended updates,
+ * at the expense of higher space consumption under contention.  It
+ * does not allocate once stripes are in place, and so may be used
+ * freely from instrumentation code.
+ *
+ * <p>Reading methods return an immutable {@link Snapshot}, from which
+ * percentiles, the mean and other statistics can be computed.
+ * {@link #snapshot} combines all stripes, and {@link
+ * #snapshotThenReset} additionally clears the counts it reads,
+ * giving interval histograms in which each record appears in exactly
+ * one interval, even with concurrent records.  A snapshot is
+ * <em>NOT</em> an atomic cut: records concurrent with it may appear
+ * in it only in part, for example in counts but not yet in the
+ * highest value.  Snapshots of histograms with the same configuration
+ * may be merged, and added to another histogram.
+ *
+ * @since 12
+ */
+public class LongHistogram {
+
+    /*
+     * Bucket indices: with s sub-bucket bits, values below 2^s each
+     * have a bucket of their own.  A value v with highest one bit e
+     * >= s is shifted right by e - s, leaving a sub-bucket number in
+     * [2^s, 2^(s+1)), and lands in bucket ((e - s) << s) + (v >>> (e
+     * - s)).  Each range [2^e, 2^(e+1)) thus has 2^s buckets of width
+     * 2^(e-s), a relative width of at most 2^-s, and indices are
+     * contiguous from zero.
+     *
+     * Striping follows Striped64, with arrays of counts in place of
+     * cells: records CAS the count in the base array until a CAS
+     * fails, then in a table of lazily created Stripes indexed by the
+     * thread probe, initialized, filled and doubled under a spinlock
+     * up to the number of CPUs, with rehashing on collisions.  Counts
+     * are updated by CAS rather than getAndAdd, since failed CASes
+     * are the contention signal.  Stripes are padded as Cells are;
+     * their count arrays are separate objects, large enough that
+     * sharing cache lines at their ends is of little consequence.
+     */
+
+    /** Number of CPUS, to place bound on table size */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Counts of one stripe.
+     */
+    @jdk.internal.vm.annotation.Contended static final class Stripe {
+        final long[] counts;
+
+        Stripe(int length) {
+            counts = new long[length];
+        }
+    }
+
+    /** The number of sub-bucket bits */
+    private final int subBits;
+
+    /** The highest value counted in a bucket of its own range */
+    private final long highestTrackableValue;
+
+    /** The base counts, used while uncontended */
+    private final long[] base;
+
+    /** Table of stripes. When non-null, size is a power of 2. */
+    private volatile Stripe[] stripes;
+
+    /** Spinlock (locked via CAS) used when resizing and/or creating Stripes. */
+    private volatile int stripesBusy;
+
+    /** The highest value recorded */
+    private volatile long maxValue;
+
+    /**
+     * Creates a histogram counting values from zero up to the given
+     * highest trackable value, within a relative error set by the
+     * given number of significant decimal digits.  Higher values are
+     * counted in the last bucket, but are still reflected in the
+     * highest value recorded.
+     *
+     * @param highestTrackableValue the highest value to count
+     *        within the relative error
+     * @param significantDigits the number of significant decimal
+     *        digits to which values are counted, between 0 and 5
+     * @throws IllegalArgumentException if {@code highestTrackableValue}
+     *         is less than 1, or {@code significantDigits} is out of
+     *         range
+     */
+    public LongHistogram(long highestTrackableValue, int significantDigits) {
+        if (highestTrackableValue < 1L ||
+            significantDigits < 0 || significantDigits > 5)
+            throw new IllegalArgumentException();
+        long p = pow10(significantDigits);
+        int s = 0;                      // smallest s with 2^-s <= 10^-d
+        while ((1L << s) < p)
+            ++s;
+        this.subBits = s;
+        this.highestTrackableValue = highestTrackableValue;
+        this.base = new long[bucketIndex(highestTrackableValue, s) + 1];
+    }
+
+    private static long pow10(int d) {
+        long p = 1L;
+        while (--d >= 0)
+            p *= 10L;
+        return p;
+    }
+
+    /** Returns the bucket of v, which must be non-negative. */
+    static int bucketIndex(long v, int s) {
+        if (v < (1L << s))
+            return (int)v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - s;
+        return (shift << s) + (int)(v >>> shift);
+    }
+
+    /** Returns the lowest value counted in bucket i. */
+    static long lowestValue(int i, int s) {
+        int shift = (i >>> s) - 1;
+        return (shift <= 0) ? i : (long)(i - (shift << s)) << shift;
+    }
+
+    /** Returns the highest value counted in bucket i. */
+    static long highestValue(int i, int s) {
+        int shift = (i >>> s) - 1;
+        return (shift <= 0) ? i : lowestValue(i, s) + (1L << shift) - 1L;
+    }
+
+    /**
+     * CASes element i of counts from its current value to that plus x.
+     */
+    private static boolean casCount(long[] counts, int i, long x) {
+        long v = (long)COUNTS.getVolatile(counts, i);
+        return COUNTS.compareAndSet(counts, i, v, v + x);
+    }
+
+    /**
+     * Records the given value.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public void record(long value) {
+        record(value, 1L);
+    }
+
+    /**
+     * Records the given value the given number of times.
+     *
+     * @param value the value
+     * @param count the number of times to record it
+     * @throws IllegalArgumentException if {@code value} or {@code
+     *         count} is negative
+     */
+    public void record(long value, long count) {
+        if (value < 0L || count < 0L)
+            throw new IllegalArgumentException();
+        final long[] base = this.base;
+        int i = (value > highestTrackableValue) ? base.length - 1 :
+            bucketIndex(value, subBits);
+        Stripe[] ss; Stripe st; int m;
+        if ((ss = stripes) != null || !casCount(base, i, count)) {
+            boolean uncontended = true;
+            if (ss == null || (m = ss.length - 1) < 0 ||
+                (st = ss[Striped64.getProbe() & m]) == null ||
+                !(uncontended = casCount(st.counts, i, count)))
+                recordContended(i, count, uncontended);
+        }
+        long mv;
+        while (value > (mv = maxValue) &&
+               !MAX_VALUE.weakCompareAndSet(this, mv, value))
+            ;
+    }
+
+    /**
+     * Handles records involving initialization, resizing, creating
+     * new Stripes, and/or contention, as Striped64.longAccumulate
+     * does for Cells.
+     *
+     * @param i the bucket
+     * @param x the count to add
+     * @param wasUncontended false if CAS failed before call
+     */
+    private void recordContended(int i, long x, boolean wasUncontended) {
+        int h;
+        if ((h = Striped64.getProbe()) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = Striped64.getProbe();
+            wasUncontended = true;
+        }
+        final int length = base.length;
+        boolean collide = false;                // True if last slot nonempty
+        done: for (;;) {
+            Stripe[] ss; Stripe st; int n;
+            if ((ss = stripes) != null && (n = ss.length) > 0) {
+                if ((st = ss[(n - 1) & h]) == null) {
+                    if (stripesBusy == 0 && casStripesBusy()) {
+                        try {                   // Recheck under lock
+                            Stripe[] rs; int m, j;
+                            if ((rs = stripes) != null &&
+                                (m = rs.length) > 0 &&
+                                rs[j = (m - 1) & h] == null) {
+                                Stripe r = new Stripe(length);
+                                r.counts[i] = x;
+                                rs[j] = r;
+                                break done;
+                            }
+                        } finally {
+                            stripesBusy = 0;
+                        }
+                        continue;               // Slot is now non-empty
+                    }
+                    collide = false;
+                }
+                else if (!wasUncontended)       // CAS already known to fail
+                    wasUncontended = true;      // Continue after rehash
+                else if (casCount(st.counts, i, x))
+                    break;
+                else if (n >= NCPU || stripes != ss)
+                    collide = false;            // At max size or stale
+                else if (!collide)
+                    collide = true;
+                else if (stripesBusy == 0 && casStripesBusy()) {
+                    try {
+                        if (stripes == ss)      // Expand table unless stale
+                            stripes = Arrays.copyOf(ss, n << 1);
+                    } finally {
+                        stripesBusy = 0;
+                    }
+                    collide = false;
+                    continue;                   // Retry with expanded table
+                }
+                h = Striped64.advanceProbe(h);
+            }
+            else if (stripesBusy == 0 && stripes == ss && casStripesBusy()) {
+                try {                           // Initialize table
+                    if (stripes == ss) {
+                        Stripe[] rs = new Stripe[2];
+                        Stripe r = new Stripe(length);
+                        r.counts[i] = x;
+                        rs[h & 1] = r;
+                        stripes = rs;
+                        break done;
+                    }
+                } finally {
+                    stripesBusy = 0;
+                }
+            }
+            // Fall back on using base
+            else if (casCount(base, i, x))
+                break done;
+        }
+    }
+
+    private boolean casStripesBusy() {
+        return STRIPES_BUSY.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Adds the counts of the given snapshot to this histogram, as if
+     * its values had been recorded here.
+     *
+     * @param snapshot the snapshot
+     * @throws IllegalArgumentException if the snapshot is of a
+     *         histogram with a different configuration
+     */
+    public void add(Snapshot snapshot) {
+        final long[] base = this.base, counts = snapshot.counts;
+        if (snapshot.subBits != subBits || counts.length != base.length)
+            throw new IllegalArgumentException("Incompatible histogram");
+        for (int i = 0; i < counts.length; ++i) {
+            long c = counts[i];
+            if (c != 0L)
+                COUNTS.getAndAdd(base, i, c);
+        }
+        long value = snapshot.maxValue, mv;
+        while (value > (mv = maxValue) &&
+               !MAX_VALUE.weakCompareAndSet(this, mv, value))
+            ;
+    }
+
+    /**
+     * Returns a snapshot of the values recorded so far.  The returned
+     * value is <em>NOT</em> an atomic snapshot; invocation in the
+     * absence of concurrent records returns an accurate result, but
+     * concurrent records might be incorporated only in part.
+     *
+     * @return a snapshot of this histogram
+     */
+    public Snapshot snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * Returns a snapshot of the values recorded since the last reset,
+     * and clears the counts read.  Each count is read and cleared
+     * atomically, so a concurrent record is reflected either in this
+     * snapshot or in a later one, although not necessarily in the
+     * highest value of the same one.
+     *
+     * @return a snapshot of this histogram
+     */
+    public Snapshot snapshotThenReset() {
+        return collect(true);
+    }
+
+    /**
+     * Resets this histogram to its initial, empty state.  This method
+     * may be a useful alternative to creating a new histogram, but is
+     * only effective if there are no concurrent records.
+     */
+    public void reset() {
+        collect(true);
+    }
+
+    private Snapshot collect(boolean reset) {
+        final long[] base = this.base;
+        final int n = base.length;
+        long[] sum = new long[n];
+        long max = reset ? (long)MAX_VALUE.getAndSet(this, 0L) : maxValue;
+        addTo(sum, base, reset);
+        Stripe[] ss = stripes;
+        if (ss != null) {
+            for (Stripe st : ss)
+                if (st != null)
+                    addTo(sum, st.counts, reset);
+        }
+        return new Snapshot(subBits, sum, max);
+    }
+
+    private static void addTo(long[] sum, long[] counts, boolean reset) {
+        for (int i = 0; i < counts.length; ++i)
+            sum[i] += reset ? (long)COUNTS.getAndSet(counts, i, 0L) :
+                (long)COUNTS.getVolatile(counts, i);
+    }
+
+    /**
+     * Returns a String summarizing a {@link #snapshot} of this
+     * histogram.
+     *
+     * @return a String summarizing this histogram
+     */
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable set of counts taken from a {@link LongHistogram}.
+     * Statistics computed from it are accurate to the relative error
+     * of the histogram, and at most the highest value recorded.
+     *
+     * @since 12
+     */
+    public static final class Snapshot {
+        final int subBits;
+        final long[] counts;
+        final long maxValue;
+        final long totalCount;
+
+        Snapshot(int subBits, long[] counts, long maxValue) {
+            long total = 0L;
+            for (long c : counts)
+                total += c;
+            this.subBits = subBits;
+            this.counts = counts;
+            this.maxValue = maxValue;
+            this.totalCount = total;
+        }
+
+        /**
+         * Returns a snapshot combining the counts of this snapshot
+         * and the given one.
+         *
+         * @param other the other snapshot
+         * @return the merged snapshot
+         * @throws IllegalArgumentException if the other snapshot is of
+         *         a histogram with a different configuration
+         */
+        public Snapshot merge(Snapshot other) {
+            final long[] a = counts, b = other.counts;
+            if (other.subBits != subBits || b.length != a.length)
+                throw new IllegalArgumentException("Incompatible histogram");
+            long[] sum = new long[a.length];
+            for (int i = 0; i < a.length; ++i)
+                sum[i] = a[i] + b[i];
+            return new Snapshot(subBits, sum,
+                                Math.max(maxValue, other.maxValue));
+        }
+
+        /**
+         * Returns the number of values recorded.
+         *
+         * @return the number of values recorded
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the highest value recorded, or zero if none.
+         *
+         * @return the highest value recorded
+         */
+        public long getMaxValue() {
+            return maxValue;
+        }
+
+        /**
+         * Returns the lowest value of the bucket of the lowest value
+         * recorded, or zero if none.
+         *
+         * @return the lowest value recorded, within the relative error
+         */
+        public long getMinValue() {
+            for (int i = 0; i < counts.length; ++i)
+                if (counts[i] != 0L)
+                    return lowestValue(i, subBits);
+            return 0L;
+        }
+
+        /**
+         * Returns the mean of the values recorded, or zero if none,
+         * counting each value as the midpoint of its bucket, where the
+         * last bucket extends to the highest value recorded.
+         *
+         * @return the mean of the values recorded
+         */
+        public double getMean() {
+            if (totalCount == 0L)
+                return 0.0;
+            double sum = 0.0;
+            for (int i = 0, last = counts.length - 1; i <= last; ++i) {
+                long c = counts[i];
+                if (c != 0L) {
+                    long lo = lowestValue(i, subBits);
+                    long hi = highestValue(i, subBits);
+                    if (i == last)
+                        hi = Math.max(hi, maxValue);
+                    double mid = lo + (hi - lo) / 2.0;
+                    sum += Math.min(mid, (double)maxValue) * c;
+                }
+            }
+            return sum / totalCount;
+        }
+
+        /**
+         * Returns the value at the given percentile: the highest
+         * value of the bucket holding the recorded value below which
+         * the given percentage of recorded values fall, bounded by
+         * the highest value recorded.  For example, {@code
+         * getValueAtPercentile(99.0)} returns the 99th percentile.
+         * Values above the highest trackable value are not
+         * distinguished, so percentiles falling among them are
+         * reported as the highest value recorded.  Returns zero if
+         * no values were recorded.
+         *
+         * @param percentile the percentile, from 0.0 to 100.0
+         * @return the value at the given percentile
+         * @throws IllegalArgumentException if {@code percentile} is
+         *         out of range
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0.0 && percentile <= 100.0))
+                throw new IllegalArgumentException();
+            if (totalCount == 0L)
+                return 0L;
+            long target = Math.max(1L, (long)Math.ceil(
+                                       percentile / 100.0 * totalCount));
+            long seen = 0L;
+            for (int i = 0, last = counts.length - 1; i < last; ++i) {
+                if ((seen += counts[i]) >= target)
+                    return Math.min(highestValue(i, subBits), maxValue);
+            }
+            return maxValue;                    // in the last bucket
+        }
+
+        /**
+         * Returns the number of buckets, for use in exporting the
+         * counts.
+         *
+         * @return the number of buckets
+         */
+        public int getBucketCount() {
+            return counts.length;
+        }
+
+        /**
+         * Returns the number of values recorded in the given bucket.
+         *
+         * @param bucket the bucket index
+         * @return the number of values recorded in the bucket
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long getCount(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * Returns the lowest value counted in the given bucket.
+         *
+         * @param bucket the bucket index
+         * @return the lowest value counted in the bucket
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long getLowestValue(int bucket) {
+            if (bucket < 0 || bucket >= counts.length)
+                throw new IndexOutOfBoundsException(bucket);
+            return lowestValue(bucket, subBits);
+        }
+
+        /**
+         * Returns the highest value counted in the given bucket.  The
+         * last bucket also counts all values above the highest
+         * trackable value, so for it this method returns {@code
+         * Long.MAX_VALUE}.
+         *
+         * @param bucket the bucket index
+         * @return the highest value counted in the bucket
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long getHighestValue(int bucket) {
+            if (bucket < 0 || bucket >= counts.length)
+                throw new IndexOutOfBoundsException(bucket);
+            return (bucket == counts.length - 1) ? Long.MAX_VALUE :
+                highestValue(bucket, subBits);
+        }
+
+        /**
+         * Returns a String summarizing this snapshot: its count, mean,
+         * median, 99th and 99.9th percentiles and highest value.
+         *
+         * @return a String summarizing this snapshot
+         */
+        public String toString() {
+            return "[count=" + totalCount +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50.0) +
+                ", p99=" + getValueAtPercentile(99.0) +
+                ", p999=" + getValueAtPercentile(99.9) +
+                ", max=" + maxValue + "]";
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle COUNTS;
+    private static final VarHandle STRIPES_BUSY;
+    private static final VarHandle MAX_VALUE;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            STRIPES_BUSY = l.findVarHandle(LongHistogram.class,
+                    "stripesBusy", int.class);
+            MAX_VALUE = l.findVarHandle(LongHistogram.class,
+                    "maxValue", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+    }
+}
@@ -106,6 +106,12 @@
  * used for example, to represent version numbers corresponding to
  * series of updates.
  *
+ * <p>The {@link java.util.concurrent.atomic.LongHistogram} class
+ * records the distribution of {@code long} values, such as latencies,
+ * from many threads.  Like {@link java.util.concurrent.atomic.LongAdder},
+ * it spreads contended updates over several cells, and combines them
+ * only when read.
+ *
  * @since 1.5
  */
 package java.util.concurrent.atomic;
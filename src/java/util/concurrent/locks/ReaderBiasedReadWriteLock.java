@@ -0,0 +1,737 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent.locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReadWriteLock} biased towards readers, for data that is
+ * read far more often than it is written.  In {@link
+ * ReentrantReadWriteLock} and {@link StampedLock}, every acquisition
+ * and release of a read lock updates a single word of shared state,
+ * so that on machines with many cores, concurrent readers contend for
+ * its cache line even when there are no writers.  While a lock of
+ * this class is <em>read-biased</em>, a reader instead announces
+ * itself by publishing a reference to the lock in a slot of a large
+ * table shared by all such locks, chosen by hashing the lock and the
+ * reading thread, so that readers on different cores seldom touch the
+ * same cache line.
+ *
+ * <p>A writer <em>revokes</em> the bias, and then waits for the
+ * readers announced in the table to leave; after that, and until the
+ * bias is restored, all readers and writers go through an internal
+ * {@link ReentrantReadWriteLock}.  Because revocation is expensive,
+ * the bias is restored by a reader only after a period proportional
+ * to the time the last revocation took, which bounds the cost of
+ * revocation relative to the time spent writing.  Readers whose slot
+ * is occupied by another reader also go through the internal lock.
+ *
+ * <p>Apart from performance, this lock behaves as a {@code
+ * ReentrantReadWriteLock} constructed with the same fairness policy:
+ * both locks are reentrant, the write lock may be downgraded to a
+ * read lock but not upgraded, and the write lock supports {@link
+ * Condition}s while the read lock does not.  Acquiring the write
+ * lock is considerably more expensive than for a {@code
+ * ReentrantReadWriteLock} whenever the lock is read-biased, and the
+ * fairness policy applies only among threads using the internal
+ * lock.  Methods {@link #isReadBiased} and {@link #isWriteLocked}
+ * are designed for monitoring, not for synchronization control.
+ *
+ * <p>Sample usage, in a class holding a rarely updated
+ * configuration:
+ *
+ * <pre> {@code
+ * class Settings {
+ *   private final ReadWriteLock rwl = new ReaderBiasedReadWriteLock();
+ *   private final Map<String, String> values = new HashMap<>();
+ *
+ *   String get(String key) {
+ *     rwl.readLock().lock();
+ *     try {
+ *       return values.get(key);
+ *     } finally {
+ *       rwl.readLock().unlock();
+ *     }
+ *   }
+ *
+ *   void put(String key, String value) {
+ *     rwl.writeLock().lock();
+ *     try {
+ *       values.put(key, value);
+ *     } finally {
+ *       rwl.writeLock().unlock();
+ *     }
+ *   }
+ * }}</pre>
+ *
+ * @since 12
+ */
+public class ReaderBiasedReadWriteLock implements ReadWriteLock {
+    /*
+     * This follows the BRAVO design (Dice and Kogan, "BRAVO -- Biased
+     * Locking for Reader-Writer Locks", USENIX ATC 2019) layered over
+     * a ReentrantReadWriteLock.
+     *
+     * A fast reader CASes its slot in the visibleReaders table from
+     * null to the lock and then rechecks readBias, clearing the slot
+     * and taking the slow path if it was revoked meanwhile.  A writer
+     * first takes the internal write lock, and if readBias is set,
+     * clears it and scans the table, waiting for each slot holding
+     * the lock to be cleared.  Both sides use volatile (or CAS)
+     * writes followed by volatile reads, so either the reader sees
+     * the revocation or the writer sees the reader.
+     *
+     * Slow readers holding the internal read lock restore readBias
+     * once inhibitUntil has passed, unless the write lock is held
+     * (necessarily by the same thread, downgrading), so bias is
+     * never restored while a writer is active.  inhibitUntil is only
+     * written while holding the write lock and only read while
+     * holding the read lock, so needs no further ordering.
+     *
+     * A reader already holding its slot must not reacquire through
+     * the internal lock, since a writer holding it may be waiting for
+     * that very slot to be cleared.  So the thread holding a slot is
+     * recorded in readerThreads, and further holds are counted in
+     * readerHolds.  These are written only by the holding thread,
+     * which clears its entry before releasing the slot; by coherence,
+     * a thread can then read its own identity from an entry only
+     * while it holds the slot, so no stronger ordering is needed.
+     *
+     * Lock.unlock has no way of telling which path a reader took.
+     * Each thread holds at most one slot per lock, so unlock releases
+     * an internal read hold if the thread has any, and a hold on its
+     * slot otherwise.  Holds may thus be released in a different
+     * order than acquired, but the totals are always right.  When
+     * there are no slow readers at all, checking the internal hold
+     * count reads only the internal lock state.
+     *
+     * Writers awaiting fast readers spin briefly, then yield, then
+     * park with exponential backoff, since readers never signal
+     * them.
+     */
+
+    /** Number of slots in the visible readers table, a power of two. */
+    private static final int SLOTS = 1 << 12;
+
+    /**
+     * Multiple of the duration of a revocation for which the bias
+     * remains disabled afterwards.
+     */
+    private static final int INHIBIT_MULTIPLIER = 9;
+
+    /** Spins before yielding while awaiting fast readers. */
+    private static final int SPINS = 1 << 6;
+
+    /** Maximum time to park while awaiting fast readers. */
+    private static final long MAX_PARK_NANOS = 1L << 20;
+
+    /**
+     * The visible readers table, shared by all instances.  Each slot
+     * is null or holds the lock read-held by some thread.
+     */
+    private static final Object[] visibleReaders = new Object[SLOTS];
+
+    /**
+     * The thread holding each occupied slot of visibleReaders, and
+     * its number of reentrant holds beyond the first.  Each entry is
+     * written only by the thread holding the slot, and read only to
+     * check whether the current thread holds it.
+     */
+    private static final Thread[] readerThreads = new Thread[SLOTS];
+    private static final int[] readerHolds = new int[SLOTS];
+
+    /** The lock used by writers, and by readers while not biased. */
+    final ReentrantReadWriteLock lock;
+    /** Inner class providing readlock */
+    private final ReadLock readerLock;
+    /** Inner class providing writelock */
+    private final WriteLock writerLock;
+    /** Hash seed for this lock */
+    private final int seed;
+    /** True if readers may use the visible readers table */
+    volatile boolean readBias;
+    /** Time before which bias is not restored, as from System.nanoTime */
+    long inhibitUntil;
+
+    /**
+     * Creates a new {@code ReaderBiasedReadWriteLock} with default
+     * (nonfair) ordering properties.
+     */
+    public ReaderBiasedReadWriteLock() {
+        this(false);
+    }
+
+    /**
+     * Creates a new {@code ReaderBiasedReadWriteLock} with the given
+     * fairness policy.
+     *
+     * @param fair {@code true} if threads using the internal lock
+     *        should use a fair ordering policy
+     */
+    public ReaderBiasedReadWriteLock(boolean fair) {
+        lock = new ReentrantReadWriteLock(fair);
+        readerLock = new ReadLock(this);
+        writerLock = new WriteLock(this);
+        seed = System.identityHashCode(this);
+        readBias = true;
+    }
+
+    public ReaderBiasedReadWriteLock.WriteLock writeLock() { return writerLock; }
+    public ReaderBiasedReadWriteLock.ReadLock  readLock()  { return readerLock; }
+
+    /**
+     * Returns the index of the current thread's slot for this lock.
+     */
+    final int slot() {
+        int h = seed + (int)Thread.currentThread().getId() * 0x9e3779b9;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & (SLOTS - 1);
+    }
+
+    /**
+     * Tries to read-lock via the visible readers table.
+     */
+    final boolean tryFastRead() {
+        int i = slot();
+        Thread t = Thread.currentThread();
+        if (visibleReaders[i] == this && readerThreads[i] == t) {
+            ++readerHolds[i];                 // reentrant
+            return true;
+        }
+        if (readBias && visibleReaders[i] == null &&
+            SLOT.compareAndSet(visibleReaders, i, null, this)) {
+            if (readBias) {
+                readerThreads[i] = t;
+                return true;
+            }
+            SLOT.setVolatile(visibleReaders, i, null);
+        }
+        return false;
+    }
+
+    /**
+     * Restores bias if due.  Call only while holding the internal
+     * read lock.
+     */
+    final void readAcquired() {
+        if (!readBias && inhibitUntil - System.nanoTime() <= 0L &&
+            !lock.isWriteLocked())
+            readBias = true;
+    }
+
+    final void readRelease() {
+        if (lock.getReadHoldCount() > 0)
+            lock.readLock().unlock();
+        else {
+            int i = slot();
+            if (visibleReaders[i] != this ||
+                readerThreads[i] != Thread.currentThread())
+                throw new IllegalMonitorStateException();
+            if (readerHolds[i] > 0)
+                --readerHolds[i];
+            else {
+                readerThreads[i] = null;
+                SLOT.setRelease(visibleReaders, i, null);
+            }
+        }
+    }
+
+    /**
+     * Revokes bias, if set, and waits for fast readers to leave.
+     * Call only while holding the internal write lock.  If not
+     * completed, bias is reinstated, so that cleared readBias always
+     * implies that there are no fast readers.
+     *
+     * @param interruptible true if interrupts abort waiting
+     * @param timed true if timed wait
+     * @param deadline the deadline, if timed, as from System.nanoTime
+     * @return true if there are no fast readers, false if timed out
+     * @throws InterruptedException if interruptible and interrupted
+     */
+    final boolean revoke(boolean interruptible, boolean timed, long deadline)
+        throws InterruptedException {
+        if (!readBias)
+            return true;
+        readBias = false;
+        boolean interrupted = false, completed = false;
+        long start = System.nanoTime();
+        try {
+            Object[] vr = visibleReaders;
+            for (int i = 0; i < SLOTS; ++i) {
+                long park = 1L;
+                for (int spins = 0; SLOT.getVolatile(vr, i) == this; ++spins) {
+                    if (Thread.interrupted()) {
+                        if (interruptible)
+                            throw new InterruptedException();
+                        interrupted = true;
+                    }
+                    long nanos = 0L;
+                    if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                        return false;
+                    if (spins < SPINS)
+                        Thread.onSpinWait();
+                    else if (spins < SPINS << 1)
+                        Thread.yield();
+                    else {
+                        if (park < MAX_PARK_NANOS)
+                            park <<= 1;
+                        LockSupport.parkNanos(this, (timed && nanos < park) ?
+                                              nanos : park);
+                    }
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed)
+                readBias = true;
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        long now = System.nanoTime();
+        inhibitUntil = now + (now - start) * INHIBIT_MULTIPLIER;
+        return true;
+    }
+
+    /**
+     * Revokes bias, if set, ignoring interrupts.  Call only while
+     * holding the internal write lock.
+     */
+    final void revokeUninterruptibly() {
+        try {
+            revoke(false, false, 0L);
+        } catch (InterruptedException cannotHappen) {
+            throw new Error(cannotHappen);
+        }
+    }
+
+    /**
+     * Revokes bias, if set, only if there are no fast readers.  Call
+     * only while holding the internal write lock.
+     */
+    final boolean tryRevoke() {
+        if (readBias) {
+            readBias = false;
+            Object[] vr = visibleReaders;
+            for (int i = 0; i < SLOTS; ++i) {
+                if (SLOT.getVolatile(vr, i) == this) {
+                    readBias = true;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The lock returned by method {@link ReaderBiasedReadWriteLock#readLock}.
+     */
+    public static class ReadLock implements Lock {
+        private final ReaderBiasedReadWriteLock rw;
+        private final ReentrantReadWriteLock.ReadLock slow;
+
+        /**
+         * Constructor for use by subclasses.
+         *
+         * @param lock the outer lock object
+         * @throws NullPointerException if the lock is null
+         */
+        protected ReadLock(ReaderBiasedReadWriteLock lock) {
+            rw = lock;
+            slow = lock.lock.readLock();
+        }
+
+        /**
+         * Acquires the read lock.
+         *
+         * <p>If the lock is read-biased, the read lock is acquired via
+         * the visible readers table, without updating any state
+         * specific to this lock.  Otherwise, it is acquired as by
+         * {@link ReentrantReadWriteLock.ReadLock#lock}.
+         */
+        public void lock() {
+            if (!rw.tryFastRead()) {
+                slow.lock();
+                rw.readAcquired();
+            }
+        }
+
+        /**
+         * Acquires the read lock unless the current thread is
+         * {@linkplain Thread#interrupt interrupted}.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (!rw.tryFastRead()) {
+                slow.lockInterruptibly();
+                rw.readAcquired();
+            }
+        }
+
+        /**
+         * Acquires the read lock only if the write lock is not held
+         * by another thread at the time of invocation.
+         *
+         * @return {@code true} if the read lock was acquired
+         */
+        public boolean tryLock() {
+            if (rw.tryFastRead())
+                return true;
+            if (!slow.tryLock())
+                return false;
+            rw.readAcquired();
+            return true;
+        }
+
+        /**
+         * Acquires the read lock if the write lock is not held by
+         * another thread within the given waiting time and the current
+         * thread has not been {@linkplain Thread#interrupt interrupted}.
+         *
+         * @param timeout the time to wait for the read lock
+         * @param unit the time unit of the timeout argument
+         * @return {@code true} if the read lock was acquired
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws NullPointerException if the time unit is null
+         */
+        public boolean tryLock(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (rw.tryFastRead())
+                return true;
+            if (!slow.tryLock(timeout, unit))
+                return false;
+            rw.readAcquired();
+            return true;
+        }
+
+        /**
+         * Attempts to release this lock.
+         *
+         * @throws IllegalMonitorStateException if the current thread
+         * is detected not to hold the read lock
+         */
+        public void unlock() {
+            rw.readRelease();
+        }
+
+        /**
+         * Throws {@code UnsupportedOperationException} because
+         * {@code ReadLocks} do not support conditions.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Returns a string identifying this lock, as well as its bias.
+         *
+         * @return a string identifying this lock, as well as its bias
+         */
+        public String toString() {
+            return super.toString() +
+                (rw.readBias ? "[Read-biased]" : "[Unbiased]");
+        }
+    }
+
+    /**
+     * The lock returned by method {@link ReaderBiasedReadWriteLock#writeLock}.
+     */
+    public static class WriteLock implements Lock {
+        private final ReaderBiasedReadWriteLock rw;
+        private final ReentrantReadWriteLock.WriteLock slow;
+
+        /**
+         * Constructor for use by subclasses.
+         *
+         * @param lock the outer lock object
+         * @throws NullPointerException if the lock is null
+         */
+        protected WriteLock(ReaderBiasedReadWriteLock lock) {
+            rw = lock;
+            slow = lock.lock.writeLock();
+        }
+
+        /**
+         * Acquires the write lock.
+         *
+         * <p>Acquires the write lock as by {@link
+         * ReentrantReadWriteLock.WriteLock#lock}, and then, if the
+         * lock is read-biased, revokes the bias and waits for readers
+         * that acquired the read lock via the visible readers table
+         * to release it.
+         */
+        public void lock() {
+            slow.lock();
+            rw.revokeUninterruptibly();
+        }
+
+        /**
+         * Acquires the write lock unless the current thread is
+         * {@linkplain Thread#interrupt interrupted}.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        public void lockInterruptibly() throws InterruptedException {
+            slow.lockInterruptibly();
+            boolean revoked = false;
+            try {
+                revoked = rw.revoke(true, false, 0L);
+            } finally {
+                if (!revoked)
+                    slow.unlock();
+            }
+        }
+
+        /**
+         * Acquires the write lock only if neither the read nor write
+         * lock is held by another thread at the time of invocation.
+         *
+         * @return {@code true} if the write lock was acquired
+         */
+        public boolean tryLock() {
+            if (!slow.tryLock())
+                return false;
+            if (rw.tryRevoke())
+                return true;
+            slow.unlock();
+            return false;
+        }
+
+        /**
+         * Acquires the write lock if it is not held by another thread,
+         * and all readers have left, within the given waiting time and
+         * the current thread has not been {@linkplain Thread#interrupt
+         * interrupted}.
+         *
+         * @param timeout the time to wait for the write lock
+         * @param unit the time unit of the timeout argument
+         * @return {@code true} if the write lock was acquired
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws NullPointerException if the time unit is null
+         */
+        public boolean tryLock(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!slow.tryLock(timeout, unit))
+                return false;
+            boolean revoked = false;
+            try {
+                revoked = rw.revoke(true, true, deadline);
+            } finally {
+                if (!revoked)
+                    slow.unlock();
+            }
+            return revoked;
+        }
+
+        /**
+         * Attempts to release this lock.
+         *
+         * @throws IllegalMonitorStateException if the current thread does not
+         * hold this lock
+         */
+        public void unlock() {
+            slow.unlock();
+        }
+
+        /**
+         * Returns a {@link Condition} instance for use with this
+         * {@link Lock} instance, with the same properties as those of
+         * {@link ReentrantReadWriteLock.WriteLock#newCondition}.  On
+         * reacquiring the write lock after waiting, the bias is
+         * revoked again if it was restored in the meantime.
+         *
+         * @return the Condition object
+         */
+        public Condition newCondition() {
+            return new WriterCondition(rw, slow.newCondition());
+        }
+
+        /**
+         * Returns a string identifying this lock, as well as its lock
+         * state.
+         *
+         * @return a string identifying this lock, as well as its lock state
+         */
+        public String toString() {
+            String s = slow.toString();
+            return super.toString() + s.substring(s.indexOf('['));
+        }
+
+        /**
+         * Queries if this write lock is held by the current thread.
+         *
+         * @return {@code true} if the current thread holds this lock and
+         *         {@code false} otherwise
+         */
+        public boolean isHeldByCurrentThread() {
+            return slow.isHeldByCurrentThread();
+        }
+
+        /**
+         * Queries the number of holds on this write lock by the current
+         * thread.
+         *
+         * @return the number of holds on this lock by the current thread,
+         *         or zero if this lock is not held by the current thread
+         */
+        public int getHoldCount() {
+            return slow.getHoldCount();
+        }
+    }
+
+    /**
+     * A Condition of the write lock, revoking bias after reacquiring it.
+     */
+    static final class WriterCondition implements Condition {
+        private final ReaderBiasedReadWriteLock rw;
+        private final Condition cond;
+
+        WriterCondition(ReaderBiasedReadWriteLock rw, Condition cond) {
+            this.rw = rw;
+            this.cond = cond;
+        }
+
+        public void await() throws InterruptedException {
+            try {
+                cond.await();
+            } finally {
+                rw.revokeUninterruptibly();
+            }
+        }
+
+        public void awaitUninterruptibly() {
+            try {
+                cond.awaitUninterruptibly();
+            } finally {
+                rw.revokeUninterruptibly();
+            }
+        }
+
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            try {
+                return cond.awaitNanos(nanosTimeout);
+            } finally {
+                rw.revokeUninterruptibly();
+            }
+        }
+
+        public boolean await(long time, TimeUnit unit)
+                throws InterruptedException {
+            try {
+                return cond.await(time, unit);
+            } finally {
+                rw.revokeUninterruptibly();
+            }
+        }
+
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            try {
+                return cond.awaitUntil(deadline);
+            } finally {
+                rw.revokeUninterruptibly();
+            }
+        }
+
+        public void signal() {
+            cond.signal();
+        }
+
+        public void signalAll() {
+            cond.signalAll();
+        }
+    }
+
+    /**
+     * Returns {@code true} if this lock has fairness set true.
+     *
+     * @return {@code true} if this lock has fairness set true
+     */
+    public final boolean isFair() {
+        return lock.isFair();
+    }
+
+    /**
+     * Queries if this lock is currently read-biased, so that readers
+     * need not update state specific to this lock.
+     *
+     * @return {@code true} if this lock is read-biased
+     */
+    public boolean isReadBiased() {
+        return readBias;
+    }
+
+    /**
+     * Queries if the write lock is held by any thread.
+     *
+     * @return {@code true} if any thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLocked() {
+        return lock.isWriteLocked();
+    }
+
+    /**
+     * Queries if the write lock is held by the current thread.
+     *
+     * @return {@code true} if the current thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLockedByCurrentThread() {
+        return lock.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * Returns a string identifying this lock, as well as its lock state.
+     * The state, in brackets, includes the String {@code "Write locks ="}
+     * followed by the number of reentrantly held write locks, the
+     * String {@code "Read locks ="} followed by the number of read
+     * locks held via the internal lock, which excludes those held via
+     * the visible readers table, and whether the lock is read-biased.
+     *
+     * @return a string identifying this lock, as well as its lock state
+     */
+    public String toString() {
+        String s = lock.toString();
+        return super.toString() + s.substring(s.indexOf('['), s.length() - 1) +
+            (readBias ? ", read-biased]" : ", unbiased]");
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle SLOT =
+        MethodHandles.arrayElementVarHandle(Object[].class);
+}
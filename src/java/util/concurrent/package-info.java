@@ -99,13 +99,22 @@
  * throughput for tasks conforming to restrictions that often hold in
  * computation-intensive parallel processing.
  *
+ * <p>Class {@link java.util.concurrent.KeyedExecutor} runs tasks
+ * submitted under keys on an underlying Executor, sequentially for
+ * each key and concurrently across keys.  Class {@link
+ * java.util.concurrent.StructuredTaskScope} forks subtasks on an
+ * Executor and joins them, cancelling those no longer needed.
+ *
  * <h2>Queues</h2>
  *
  * The {@link java.util.concurrent.ConcurrentLinkedQueue} class
  * supplies an efficient scalable thread-safe non-blocking FIFO queue.
  * The {@link java.util.concurrent.ConcurrentLinkedDeque} class is
  * similar, but additionally supports the {@link java.util.Deque}
- * interface.
+ * interface.  Under heavy contention from many threads, {@link
+ * java.util.concurrent.ConcurrentSegmentQueue} scales better as a
+ * FIFO queue, and {@link java.util.concurrent.ConcurrentLinkedStack}
+ * as a LIFO one.
  *
  * <p>Five implementations in {@code java.util.concurrent} support
  * the extended {@link java.util.concurrent.BlockingQueue}
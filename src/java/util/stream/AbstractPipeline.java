@@ -26,6 +26,8 @@ package java.util.stream;
 
 import java.util.Objects;
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
@@ -148,6 +150,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      */
     private boolean parallel;
 
+    /**
+     * The pool in which parallel evaluation runs, or null for the common
+     * pool; only valid for the source stage.
+     */
+    private ForkJoinPool pool;
+
     /**
      * Constructor for the head of a stream pipeline.
      *
@@ -230,10 +238,28 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         linkedOrConsumed = true;
 
         return isParallel()
-               ? terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()))
+               ? inPool(() -> terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags())))
                : terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
     }
 
+    /**
+     * Performs a parallel evaluation in the pool this pipeline is bound to,
+     * if any.  Evaluation already running in that pool, or evaluation of a
+     * pipeline not bound to a pool, proceeds in the calling thread, forking
+     * tasks into the pool of the caller or else into the common pool.
+     *
+     * @param <R> the type of result
+     * @param evaluation the evaluation to perform
+     * @return the result of the evaluation
+     */
+    private <R> R inPool(Supplier<R> evaluation) {
+        ForkJoinPool p = sourceStage.pool;
+        if (p == null || ForkJoinTask.getPool() == p)
+            return evaluation.get();
+        else
+            return p.invoke(ForkJoinTask.adapt(evaluation::get));
+    }
+
     /**
      * Collect the elements output from the pipeline stage.
      *
@@ -254,7 +280,10 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             // upstream slice and upstream operations will not be included
             // in this slice
             depth = 0;
-            return opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator);
+            return inPool(() -> opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator));
+        }
+        else if (isParallel()) {
+            return inPool(() -> evaluate(sourceSpliterator(0), true, generator));
         }
         else {
             return evaluate(sourceSpliterator(0), true, generator);
@@ -302,6 +331,7 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     @SuppressWarnings("unchecked")
     public final S sequential() {
         sourceStage.parallel = false;
+        sourceStage.pool = null;
         return (S) this;
     }
 
@@ -309,6 +339,16 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     @SuppressWarnings("unchecked")
     public final S parallel() {
         sourceStage.parallel = true;
+        sourceStage.pool = null;
+        return (S) this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final S parallel(ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        sourceStage.parallel = true;
+        sourceStage.pool = pool;
         return (S) this;
     }
 
@@ -364,7 +404,8 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             }
         }
         else {
-            return wrap(this, () -> sourceSpliterator(0), isParallel());
+            // Stateful operations are evaluated when traversal begins
+            return wrap(this, () -> inPool(() -> sourceSpliterator(0)), isParallel());
         }
     }
 
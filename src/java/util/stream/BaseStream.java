@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 
@@ -124,6 +125,40 @@ public interface BaseStream<T, S extends BaseStream<T, S>>
      */
     S parallel();
 
+    /**
+     * Returns an equivalent stream that is parallel, and whose parallel
+     * evaluation runs in the given pool rather than in the
+     * {@linkplain ForkJoinPool#commonPool() common pool}.  May return
+     * itself, either because the stream was already bound to the pool, or
+     * because the underlying stream state was modified.
+     *
+     * <p>The terminal operation blocks the calling thread until the pool
+     * has completed the evaluation, unless it is invoked from a task
+     * running in that pool, in which case the calling thread takes part
+     * in the evaluation.  The pool's {@linkplain
+     * ForkJoinPool#getParallelism() parallelism}, rather than that of the
+     * common pool, determines how finely the source is split.  This
+     * isolates a stream pipeline from others sharing the common pool.  A
+     * later call to {@link #parallel()} or {@link #sequential()} undoes
+     * the binding.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation throws {@code UnsupportedOperationException}.
+     *
+     * @param pool the pool in which to evaluate this stream
+     * @return a parallel stream bound to {@code pool}
+     * @throws NullPointerException if {@code pool} is null
+     * @throws UnsupportedOperationException if this stream cannot be
+     *         evaluated in a given pool
+     * @since 12
+     */
+    default S parallel(ForkJoinPool pool) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Returns an equivalent stream that is
      * <a href="package-summary.html#Ordering">unordered</a>.  May return
@@ -35,8 +35,10 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IntSummaryStatistics;
+import java.util.IntObjectMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.LongLongMap;
 import java.util.LongSummaryStatistics;
 import java.util.Map;
 import java.util.Objects;
@@ -693,6 +695,91 @@ public final class Collectors {
                 a -> a[0], CH_NOID);
     }
 
+    /**
+     * Returns a {@code Collector} that adds an integer-valued function
+     * applied to each input element to the slot of the given array selected
+     * by an index function, and produces that array.  This computes per-slot
+     * sums, or with a mapper returning 1 per-slot counts, over a small dense
+     * key space without boxing either keys or sums.
+     *
+     * <p>Each element is accumulated into a private array of the same
+     * length, and arrays are combined slot by slot, so parallel pipelines
+     * allocate one such array per leaf task; the total is added to
+     * {@code sums} by the finisher.  Sums overflow silently, as with
+     * {@link #summingInt}.
+     *
+     * <p>For example, to compute the total quantity ordered per day of week:
+     * <pre>{@code
+     * int[] quantityByDay = orders.stream().collect(
+     *     summingIntInto(new int[7], o -> o.getDay().ordinal(), Order::getQuantity));
+     * }</pre>
+     *
+     * @param <T> the type of the input elements
+     * @param sums the array to which the sums are added
+     * @param indexer a function mapping input elements to indices of
+     *                {@code sums}
+     * @param mapper a function extracting the property to be summed
+     * @return a {@code Collector} that adds to and produces {@code sums}
+     * @throws NullPointerException if any argument is null
+     * @since 12
+     */
+    public static <T> Collector<T, ?, int[]>
+    summingIntInto(int[] sums, ToIntFunction<? super T> indexer,
+                   ToIntFunction<? super T> mapper) {
+        Objects.requireNonNull(sums);
+        Objects.requireNonNull(indexer);
+        Objects.requireNonNull(mapper);
+        return new CollectorImpl<>(
+                () -> new int[sums.length],
+                (a, t) -> { a[indexer.applyAsInt(t)] += mapper.applyAsInt(t); },
+                (a, b) -> {
+                    for (int i = 0; i < a.length; i++)
+                        a[i] += b[i];
+                    return a;
+                },
+                a -> {
+                    for (int i = 0; i < a.length; i++)
+                        sums[i] += a[i];
+                    return sums;
+                }, CH_NOID);
+    }
+
+    /**
+     * Returns a {@code Collector} that adds a long-valued function applied
+     * to each input element to the slot of the given array selected by an
+     * index function, and produces that array.  This is the {@code long}
+     * counterpart of {@link #summingIntInto}.
+     *
+     * @param <T> the type of the input elements
+     * @param sums the array to which the sums are added
+     * @param indexer a function mapping input elements to indices of
+     *                {@code sums}
+     * @param mapper a function extracting the property to be summed
+     * @return a {@code Collector} that adds to and produces {@code sums}
+     * @throws NullPointerException if any argument is null
+     * @since 12
+     */
+    public static <T> Collector<T, ?, long[]>
+    summingLongInto(long[] sums, ToIntFunction<? super T> indexer,
+                    ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(sums);
+        Objects.requireNonNull(indexer);
+        Objects.requireNonNull(mapper);
+        return new CollectorImpl<>(
+                () -> new long[sums.length],
+                (a, t) -> { a[indexer.applyAsInt(t)] += mapper.applyAsLong(t); },
+                (a, b) -> {
+                    for (int i = 0; i < a.length; i++)
+                        a[i] += b[i];
+                    return a;
+                },
+                a -> {
+                    for (int i = 0; i < a.length; i++)
+                        sums[i] += a[i];
+                    return sums;
+                }, CH_NOID);
+    }
+
     /**
      * Returns a {@code Collector} that produces the sum of a double-valued
      * function applied to the input elements.  If no elements are present,
@@ -1148,6 +1235,140 @@ public final class Collectors {
         }
     }
 
+    /**
+     * Returns a {@code Collector} implementing a "group by" operation on
+     * input elements of type {@code T}, grouping elements according to an
+     * {@code int}-valued classification function, and returning the results
+     * in an {@link IntObjectMap}.
+     *
+     * <p>This behaves as {@link #groupingBy(Function)}, except that keys are
+     * neither boxed nor hashed through {@code Integer} objects.
+     *
+     * @implSpec
+     * This produces a result similar to:
+     * <pre>{@code
+     *     groupingByInt(classifier, toList());
+     * }</pre>
+     *
+     * @param <T> the type of the input elements
+     * @param classifier the classifier function mapping input elements to keys
+     * @return a {@code Collector} implementing the group-by operation
+     * @throws NullPointerException if the classifier is null
+     * @see #groupingByInt(ToIntFunction, Collector)
+     * @since 12
+     */
+    public static <T> Collector<T, ?, IntObjectMap<List<T>>>
+    groupingByInt(ToIntFunction<? super T> classifier) {
+        return groupingByInt(classifier, toList());
+    }
+
+    /**
+     * Returns a {@code Collector} implementing a cascaded "group by" operation
+     * on input elements of type {@code T}, grouping elements according to an
+     * {@code int}-valued classification function, and then performing a
+     * reduction operation on the values associated with a given key using the
+     * specified downstream {@code Collector}.  The results are returned in an
+     * {@link IntObjectMap}.
+     *
+     * <p>This behaves as {@link #groupingBy(Function, Collector)}, except that
+     * keys are neither boxed nor hashed through {@code Integer} objects.
+     *
+     * @implNote
+     * The returned {@code Collector} is not concurrent.  For parallel stream
+     * pipelines, the {@code combiner} function merges the keys of the smaller
+     * map into the larger one, passing the downstream containers to the
+     * downstream combiner in encounter order.
+     *
+     * @param <T> the type of the input elements
+     * @param <A> the intermediate accumulation type of the downstream collector
+     * @param <D> the result type of the downstream reduction
+     * @param classifier a classifier function mapping input elements to keys
+     * @param downstream a {@code Collector} implementing the downstream reduction
+     * @return a {@code Collector} implementing the cascaded group-by operation
+     * @throws NullPointerException if the classifier or downstream collector
+     *         is null
+     * @see #groupingBy(Function, Collector)
+     * @since 12
+     */
+    public static <T, A, D>
+    Collector<T, ?, IntObjectMap<D>> groupingByInt(ToIntFunction<? super T> classifier,
+                                                   Collector<? super T, A, D> downstream) {
+        Objects.requireNonNull(classifier);
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        BiConsumer<IntObjectMap<A>, T> accumulator = (m, t) -> {
+            A container = m.computeIfAbsent(classifier.applyAsInt(t), k -> downstreamSupplier.get());
+            downstreamAccumulator.accept(container, t);
+        };
+        BinaryOperator<IntObjectMap<A>> merger = (m1, m2) -> {
+            if (m1.size() >= m2.size()) {
+                m2.forEach((k, v) -> m1.merge(k, v, downstreamCombiner));
+                return m1;
+            }
+            else {
+                m1.forEach((k, v) -> m2.merge(k, v, (r, l) -> downstreamCombiner.apply(l, r)));
+                return m2;
+            }
+        };
+
+        if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+            @SuppressWarnings("unchecked")
+            Collector<T, ?, IntObjectMap<D>> c = (Collector<T, ?, IntObjectMap<D>>) (Collector<T, ?, ?>)
+                    new CollectorImpl<>(IntObjectMap<A>::new, accumulator, merger, CH_ID);
+            return c;
+        }
+        else {
+            Function<? super A, ? extends D> downstreamFinisher = downstream.finisher();
+            Function<IntObjectMap<A>, IntObjectMap<D>> finisher = intermediate -> {
+                IntObjectMap<D> result = new IntObjectMap<>(intermediate.size());
+                intermediate.forEach((k, v) -> result.put(k, downstreamFinisher.apply(v)));
+                return result;
+            };
+            return new CollectorImpl<>(IntObjectMap<A>::new, accumulator, merger, finisher, CH_NOID);
+        }
+    }
+
+    /**
+     * Returns a {@code Collector} counting the input elements of type
+     * {@code T} by a {@code long}-valued classification function, and
+     * returning the counts in a {@link LongLongMap}.
+     *
+     * <p>This behaves as {@code groupingBy(classifier, counting())}, except
+     * that no {@code Long} keys or counts, and no per-key containers, are
+     * allocated.  A key absent from the result was not encountered.
+     *
+     * @implNote
+     * The returned {@code Collector} is not concurrent.  For parallel stream
+     * pipelines, the {@code combiner} function adds the counts of the smaller
+     * map to those of the larger one.
+     *
+     * @param <T> the type of the input elements
+     * @param classifier a classifier function mapping input elements to keys
+     * @return a {@code Collector} implementing the counting operation
+     * @throws NullPointerException if the classifier is null
+     * @see #groupingBy(Function, Collector)
+     * @see #counting()
+     * @since 12
+     */
+    public static <T> Collector<T, ?, LongLongMap>
+    countingByLong(ToLongFunction<? super T> classifier) {
+        Objects.requireNonNull(classifier);
+        return new CollectorImpl<>(
+                LongLongMap::new,
+                (m, t) -> { m.addTo(classifier.applyAsLong(t), 1L); },
+                (m1, m2) -> {
+                    if (m1.size() >= m2.size()) {
+                        m2.forEach(m1::addTo);
+                        return m1;
+                    }
+                    else {
+                        m1.forEach(m2::addTo);
+                        return m2;
+                    }
+                }, CH_ID);
+    }
+
     /**
      * Returns a concurrent {@code Collector} implementing a "group by"
      * operation on input elements of type {@code T}, grouping elements
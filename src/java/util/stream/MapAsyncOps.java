@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package java.util.stream;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Factory for instances of "mapAsync" operations that apply a mapping
+ * function to the elements of their input stream asynchronously, with a
+ * bounded number of applications in flight.
+ *
+ * @since 12
+ */
+final class MapAsyncOps {
+
+    private MapAsyncOps() { }
+
+    static final int ORDERED_FLAGS = StreamOpFlag.NOT_SORTED | StreamOpFlag.NOT_DISTINCT;
+
+    static final int UNORDERED_FLAGS = ORDERED_FLAGS | StreamOpFlag.NOT_ORDERED;
+
+    /**
+     * Appends a "mapAsync" operation to the provided stream.
+     *
+     * @param <T> the type of input elements
+     * @param <R> the type of output elements
+     * @param upstream a reference stream with element type T
+     * @param mapper the function to apply to each element
+     * @param maxConcurrency the maximum number of applications in flight
+     * @param executor the executor to apply the function in
+     * @param ordered true if results are produced in encounter order,
+     *        false if in completion order
+     */
+    static <T, R> Stream<R> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                    Function<? super T, ? extends R> mapper,
+                                    int maxConcurrency, Executor executor,
+                                    boolean ordered) {
+        checkArguments(mapper, maxConcurrency, executor);
+        return new ReferencePipeline.StatefulOp<T, R>(upstream, StreamShape.REFERENCE,
+                                                      ordered ? ORDERED_FLAGS : UNORDERED_FLAGS) {
+            @Override
+            public Sink<T> opWrapSink(int flags, Sink<R> sink) {
+                return new Sink.ChainedReference<T, R>(sink) {
+                    AsyncMapper<T, R> m;
+
+                    @Override
+                    public void begin(long size) {
+                        m = new AsyncMapper<>(mapper, maxConcurrency, executor, ordered);
+                        downstream.begin(size);
+                    }
+
+                    @Override
+                    public void accept(T t) {
+                        while (m.isFull())
+                            downstream.accept(m.take());
+                        m.submit(t);
+                        while (m.isReady() && !downstream.cancellationRequested())
+                            downstream.accept(m.take());
+                    }
+
+                    @Override
+                    public void end() {
+                        while (!m.isEmpty() && !downstream.cancellationRequested())
+                            downstream.accept(m.take());
+                        m.cancel();
+                        m = null;
+                        downstream.end();
+                    }
+
+                    @Override
+                    public boolean cancellationRequested() {
+                        if (!downstream.cancellationRequested())
+                            return false;
+                        if (m != null)
+                            m.cancel();
+                        return true;
+                    }
+                };
+            }
+
+            /**
+             * Collects the output of the upstream pipeline in parallel, and
+             * then maps it from the calling thread, so that the bound on
+             * concurrency holds for the pipeline as a whole.  As with
+             * windowing, the helper produces elements of type T, not R.
+             */
+            @Override
+            @SuppressWarnings("unchecked")
+            <P_IN> Node<R> opEvaluateParallel(PipelineHelper<R> helper,
+                                              Spliterator<P_IN> spliterator,
+                                              IntFunction<R[]> generator) {
+                PipelineHelper<T> upstreamHelper = (PipelineHelper<T>) (PipelineHelper<?>) helper;
+                Node<T> elements = upstreamHelper.evaluate(spliterator, true, Nodes.castingArray());
+                Node.Builder<R> nb = Nodes.builder(elements.count(), generator);
+                Sink<T> sink = opWrapSink(helper.getStreamAndOpFlags(), nb);
+                sink.begin(elements.count());
+                elements.forEach(sink);
+                sink.end();
+                return nb.build();
+            }
+        };
+    }
+
+    static void checkArguments(Function<?, ?> mapper, int maxConcurrency,
+                               Executor executor) {
+        Objects.requireNonNull(mapper);
+        Objects.requireNonNull(executor);
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+    }
+
+    /**
+     * Applies a function to elements asynchronously, keeping at most
+     * {@code maxConcurrency} applications in flight, and hands out their
+     * results in submission or completion order.  Methods are invoked by a
+     * single consumer thread; only completion signals arrive from other
+     * threads.
+     *
+     * @param <T> the type of input elements
+     * @param <R> the type of results
+     */
+    static final class AsyncMapper<T, R> {
+        private final Function<? super T, ? extends R> mapper;
+        private final int maxConcurrency;
+        private final Executor executor;
+        private final boolean ordered;
+        // outstanding futures in submission order, if ordered
+        private final ArrayDeque<CompletableFuture<R>> pending;
+        // outstanding futures, and those completed in completion order, if not
+        private final HashSet<CompletableFuture<R>> outstanding;
+        private final LinkedBlockingQueue<CompletableFuture<R>> completed;
+        private int inFlight;
+
+        AsyncMapper(Function<? super T, ? extends R> mapper, int maxConcurrency,
+                    Executor executor, boolean ordered) {
+            this.mapper = mapper;
+            this.maxConcurrency = maxConcurrency;
+            this.executor = executor;
+            this.ordered = ordered;
+            if (ordered) {
+                pending = new ArrayDeque<>();
+                outstanding = null;
+                completed = null;
+            }
+            else {
+                pending = null;
+                outstanding = new HashSet<>();
+                completed = new LinkedBlockingQueue<>();
+            }
+        }
+
+        boolean isFull() {
+            return inFlight >= maxConcurrency;
+        }
+
+        boolean isEmpty() {
+            return inFlight == 0;
+        }
+
+        /**
+         * Returns true if {@link #take} would not block.
+         */
+        boolean isReady() {
+            if (ordered) {
+                CompletableFuture<R> f = pending.peekFirst();
+                return f != null && f.isDone();
+            }
+            else
+                return inFlight > 0 && !completed.isEmpty();
+        }
+
+        /**
+         * Starts applying the function to an element; must not be called
+         * when {@link #isFull}.
+         */
+        void submit(T t) {
+            CompletableFuture<R> f;
+            try {
+                f = CompletableFuture.supplyAsync(() -> mapper.apply(t), executor);
+            } catch (RuntimeException | Error ex) {
+                cancel();
+                throw ex;
+            }
+            inFlight++;
+            if (ordered)
+                pending.addLast(f);
+            else {
+                outstanding.add(f);
+                f.whenComplete((r, x) -> completed.add(f));
+            }
+        }
+
+        /**
+         * Waits if necessary for the next result and returns it; must not
+         * be called when {@link #isEmpty}.  If the function threw an
+         * exception, or the wait is interrupted, all outstanding
+         * applications are cancelled, and the exception is rethrown.
+         */
+        R take() {
+            try {
+                CompletableFuture<R> f;
+                if (ordered)
+                    f = pending.pollFirst();
+                else
+                    outstanding.remove(f = completed.take());
+                inFlight--;
+                return f.get();
+            } catch (InterruptedException ie) {
+                cancel();
+                Thread.currentThread().interrupt();
+                CancellationException ce =
+                    new CancellationException("Interrupted awaiting a mapped element");
+                ce.initCause(ie);
+                throw ce;
+            } catch (ExecutionException ee) {
+                cancel();
+                Throwable x = ee.getCause();
+                if (x instanceof RuntimeException)
+                    throw (RuntimeException) x;
+                if (x instanceof Error)
+                    throw (Error) x;
+                throw new CompletionException(x);
+            }
+        }
+
+        /**
+         * Cancels all outstanding applications not yet started, and
+         * discards their results.
+         */
+        void cancel() {
+            if (ordered) {
+                for (CompletableFuture<R> f; (f = pending.pollFirst()) != null; )
+                    f.cancel(false);
+            }
+            else {
+                for (CompletableFuture<R> f : outstanding)
+                    f.cancel(false);
+                outstanding.clear();
+                completed.clear();
+            }
+            inFlight = 0;
+        }
+    }
+
+    /**
+     * A spliterator mapping the elements of a source spliterator
+     * asynchronously as it is traversed.  It does not split.
+     *
+     * @param <T> the type of source elements
+     * @param <R> the type of mapped elements
+     */
+    static final class MapAsyncSpliterator<T, R> implements Spliterator<R> {
+        private final Spliterator<T> s;
+        private final AsyncMapper<T, R> m;
+        private final Consumer<T> submitter;
+        private boolean exhausted;
+
+        MapAsyncSpliterator(Spliterator<T> s, Function<? super T, ? extends R> mapper,
+                            int maxConcurrency, Executor executor, boolean ordered) {
+            checkArguments(mapper, maxConcurrency, executor);
+            this.s = s;
+            this.m = new AsyncMapper<>(mapper, maxConcurrency, executor, ordered);
+            this.submitter = m::submit;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            Objects.requireNonNull(action);
+            while (!exhausted && !m.isFull() && !m.isReady()) {
+                if (!s.tryAdvance(submitter))
+                    exhausted = true;
+            }
+            if (m.isEmpty())
+                return false;
+            action.accept(m.take());
+            return true;
+        }
+
+        @Override
+        public Spliterator<R> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            long n = (exhausted ? 0 : s.estimateSize()) + m.inFlight;
+            return (n >= 0) ? n : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return m.ordered ? s.characteristics() & Spliterator.ORDERED : 0;
+        }
+    }
+}
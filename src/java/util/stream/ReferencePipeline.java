@@ -26,10 +26,12 @@ package java.util.stream;
 
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
@@ -490,6 +492,28 @@ abstract class ReferencePipeline<P_IN, P_OUT>
         return WhileOps.makeDropWhileRef(this, predicate);
     }
 
+    @Override
+    public final <R> Stream<R> mapAsync(Function<? super P_OUT, ? extends R> mapper,
+                                        int maxConcurrency, Executor executor) {
+        return MapAsyncOps.makeRef(this, mapper, maxConcurrency, executor, true);
+    }
+
+    @Override
+    public final <R> Stream<R> mapAsyncUnordered(Function<? super P_OUT, ? extends R> mapper,
+                                                 int maxConcurrency, Executor executor) {
+        return MapAsyncOps.makeRef(this, mapper, maxConcurrency, executor, false);
+    }
+
+    @Override
+    public final Stream<List<P_OUT>> chunked(int size) {
+        return WindowOps.makeRef(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<List<P_OUT>> windowed(int size, int step) {
+        return WindowOps.makeRef(this, size, step, false);
+    }
+
     // Terminal operations from Stream
 
     @Override
@@ -113,6 +113,12 @@ final class SliceOps {
 
         return new ReferencePipeline.StatefulOp<T, T>(upstream, StreamShape.REFERENCE,
                                                       flags(limit)) {
+            {
+                // An upstream sort need only retain the elements that
+                // can survive this slice; done once this stage is linked
+                SortedOps.bound(upstream, calcSliceFence(skip, limit));
+            }
+
             Spliterator<T> unorderedSkipLimitSpliterator(Spliterator<T> s,
                                                          long skip, long limit, long sizeIfKnown) {
                 if (skip <= sizeIfKnown) {
@@ -229,6 +235,12 @@ final class SliceOps {
 
         return new IntPipeline.StatefulOp<Integer>(upstream, StreamShape.INT_VALUE,
                                                    flags(limit)) {
+            {
+                // An upstream sort need only retain the elements that
+                // can survive this slice; done once this stage is linked
+                SortedOps.bound(upstream, calcSliceFence(skip, limit));
+            }
+
             Spliterator.OfInt unorderedSkipLimitSpliterator(
                     Spliterator.OfInt s, long skip, long limit, long sizeIfKnown) {
                 if (skip <= sizeIfKnown) {
@@ -338,6 +350,12 @@ final class SliceOps {
 
         return new LongPipeline.StatefulOp<Long>(upstream, StreamShape.LONG_VALUE,
                                                  flags(limit)) {
+            {
+                // An upstream sort need only retain the elements that
+                // can survive this slice; done once this stage is linked
+                SortedOps.bound(upstream, calcSliceFence(skip, limit));
+            }
+
             Spliterator.OfLong unorderedSkipLimitSpliterator(
                     Spliterator.OfLong s, long skip, long limit, long sizeIfKnown) {
                 if (skip <= sizeIfKnown) {
@@ -447,6 +465,12 @@ final class SliceOps {
 
         return new DoublePipeline.StatefulOp<Double>(upstream, StreamShape.DOUBLE_VALUE,
                                                      flags(limit)) {
+            {
+                // An upstream sort need only retain the elements that
+                // can survive this slice; done once this stage is linked
+                SortedOps.bound(upstream, calcSliceFence(skip, limit));
+            }
+
             Spliterator.OfDouble unorderedSkipLimitSpliterator(
                     Spliterator.OfDouble s, long skip, long limit, long sizeIfKnown) {
                 if (skip <= sizeIfKnown) {
@@ -93,6 +93,31 @@ final class SortedOps {
         return new OfDouble(upstream);
     }
 
+    /**
+     * Bounds a "sorted" operation, if {@code upstream} is one, to its
+     * least {@code fence} output elements.  This is called by a "slice"
+     * operation appended to {@code upstream}, which discards all later
+     * elements anyway; the sort then retains a bounded heap of
+     * candidates rather than buffering every element, in
+     * <em>O(n log k)</em> time and <em>O(k)</em> space.
+     *
+     * @param upstream the stage the slice operation is appended to
+     * @param fence the number of leading elements the slice operation
+     *        may consume
+     */
+    static void bound(AbstractPipeline<?, ?, ?> upstream, long fence) {
+        if (fence < 0 || fence >= Nodes.MAX_ARRAY_SIZE)
+            return;
+        if (upstream instanceof OfRef)
+            ((OfRef<?>) upstream).limit = fence;
+        else if (upstream instanceof OfInt)
+            ((OfInt) upstream).limit = fence;
+        else if (upstream instanceof OfLong)
+            ((OfLong) upstream).limit = fence;
+        else if (upstream instanceof OfDouble)
+            ((OfDouble) upstream).limit = fence;
+    }
+
     /**
      * Specialized subtype for sorting reference streams
      */
@@ -102,6 +127,11 @@ final class SortedOps {
          */
         private final boolean isNaturalSort;
         private final Comparator<? super T> comparator;
+        /**
+         * Number of leading elements consumed downstream, or -1 if all
+         * are; see {@link SortedOps#bound}
+         */
+        long limit = -1;
 
         /**
          * Sort using natural order of {@literal <T>} which must be
@@ -137,6 +167,8 @@ final class SortedOps {
             // also naturally sorted then this is a no-op
             if (StreamOpFlag.SORTED.isKnown(flags) && isNaturalSort)
                 return sink;
+            else if (limit >= 0)
+                return new RefTopKSink<>(sink, comparator, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedRefSortingSink<>(sink, comparator);
             else
@@ -152,6 +184,17 @@ final class SortedOps {
             if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags()) && isNaturalSort) {
                 return helper.evaluate(spliterator, false, generator);
             }
+            else if (limit >= 0) {
+                // Retain the least elements of each leaf, then merge
+                RefTopK<T> top = ReduceOps.<T, RefTopK<T>>makeRef(
+                        () -> new RefTopK<>(comparator, limit, -1),
+                        RefTopK::accept, RefTopK::combine)
+                        .evaluateParallel(helper, spliterator);
+                Object[] elements = top.sortedElements();
+                T[] array = generator.apply(top.size());
+                System.arraycopy(elements, 0, array, 0, array.length);
+                return Nodes.node(array);
+            }
             else {
                 // @@@ Weak two-pass parallel implementation; parallel collect, parallel sort
                 T[] flattenedData = helper.evaluate(spliterator, true, generator).asArray(generator);
@@ -165,6 +208,12 @@ final class SortedOps {
      * Specialized subtype for sorting int streams.
      */
     private static final class OfInt extends IntPipeline.StatefulOp<Integer> {
+        /**
+         * Number of leading elements consumed downstream, or -1 if all
+         * are; see {@link SortedOps#bound}
+         */
+        long limit = -1;
+
         OfInt(AbstractPipeline<?, Integer, ?> upstream) {
             super(upstream, StreamShape.INT_VALUE,
                   StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
@@ -176,6 +225,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (limit >= 0)
+                return new IntTopKSink(sink, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedIntSortingSink(sink);
             else
@@ -189,6 +240,13 @@ final class SortedOps {
             if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
                 return helper.evaluate(spliterator, false, generator);
             }
+            else if (limit >= 0) {
+                IntTopK top = ReduceOps.makeInt(
+                        () -> new IntTopK(limit, -1),
+                        IntTopK::accept, IntTopK::combine)
+                        .evaluateParallel(helper, spliterator);
+                return Nodes.node(top.sortedElements());
+            }
             else {
                 Node.OfInt n = (Node.OfInt) helper.evaluate(spliterator, true, generator);
 
@@ -204,6 +262,12 @@ final class SortedOps {
      * Specialized subtype for sorting long streams.
      */
     private static final class OfLong extends LongPipeline.StatefulOp<Long> {
+        /**
+         * Number of leading elements consumed downstream, or -1 if all
+         * are; see {@link SortedOps#bound}
+         */
+        long limit = -1;
+
         OfLong(AbstractPipeline<?, Long, ?> upstream) {
             super(upstream, StreamShape.LONG_VALUE,
                   StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
@@ -215,6 +279,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (limit >= 0)
+                return new LongTopKSink(sink, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedLongSortingSink(sink);
             else
@@ -228,6 +294,13 @@ final class SortedOps {
             if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
                 return helper.evaluate(spliterator, false, generator);
             }
+            else if (limit >= 0) {
+                LongTopK top = ReduceOps.makeLong(
+                        () -> new LongTopK(limit, -1),
+                        LongTopK::accept, LongTopK::combine)
+                        .evaluateParallel(helper, spliterator);
+                return Nodes.node(top.sortedElements());
+            }
             else {
                 Node.OfLong n = (Node.OfLong) helper.evaluate(spliterator, true, generator);
 
@@ -243,6 +316,12 @@ final class SortedOps {
      * Specialized subtype for sorting double streams.
      */
     private static final class OfDouble extends DoublePipeline.StatefulOp<Double> {
+        /**
+         * Number of leading elements consumed downstream, or -1 if all
+         * are; see {@link SortedOps#bound}
+         */
+        long limit = -1;
+
         OfDouble(AbstractPipeline<?, Double, ?> upstream) {
             super(upstream, StreamShape.DOUBLE_VALUE,
                   StreamOpFlag.IS_ORDERED | StreamOpFlag.IS_SORTED);
@@ -254,6 +333,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (limit >= 0)
+                return new DoubleTopKSink(sink, limit);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedDoubleSortingSink(sink);
             else
@@ -267,6 +348,13 @@ final class SortedOps {
             if (StreamOpFlag.SORTED.isKnown(helper.getStreamAndOpFlags())) {
                 return helper.evaluate(spliterator, false, generator);
             }
+            else if (limit >= 0) {
+                DoubleTopK top = ReduceOps.makeDouble(
+                        () -> new DoubleTopK(limit, -1),
+                        DoubleTopK::accept, DoubleTopK::combine)
+                        .evaluateParallel(helper, spliterator);
+                return Nodes.node(top.sortedElements());
+            }
             else {
                 Node.OfDouble n = (Node.OfDouble) helper.evaluate(spliterator, true, generator);
 
@@ -706,4 +794,461 @@ final class SortedOps {
             b.accept(t);
         }
     }
+
+    /**
+     * Retains the least {@code k} of the elements it accepts, according
+     * to a comparator, in a bounded max-heap.
+     *
+     * <p>Elements are buffered as accepted until {@code k} are held, at
+     * which point the buffer is heapified; from then on an element is
+     * admitted only if it is less than the greatest one held, which it
+     * replaces.  Each element is tagged with its position in encounter
+     * order and ties are broken by position, so the result is the
+     * first {@code k} elements a stable sort would produce.  Instances
+     * are combined left to right, as by {@link ReduceOps}, with the
+     * positions of the right instance following those of the left.
+     */
+    private static final class RefTopK<T> {
+        private final Comparator<? super T> comparator;
+        private final int k;
+        private Object[] elements;
+        private long[] positions;
+        private int size;
+        // number of elements accepted, including those combined in
+        private long count;
+
+        RefTopK(Comparator<? super T> comparator, long k, long sizeIfKnown) {
+            this.comparator = comparator;
+            this.k = (int) k;
+            int capacity = (int) ((sizeIfKnown >= 0) ? Math.min(k, sizeIfKnown)
+                                                     : Math.min(k, 16));
+            elements = new Object[capacity];
+            positions = new long[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void accept(T t) {
+            offer(t, count++);
+        }
+
+        RefTopK<T> combine(RefTopK<T> right) {
+            long base = count;
+            for (int i = 0; i < right.size; i++) {
+                @SuppressWarnings("unchecked") T t = (T) right.elements[i];
+                offer(t, base + right.positions[i]);
+            }
+            count += right.count;
+            return this;
+        }
+
+        private void offer(T t, long position) {
+            if (size < k) {
+                if (size == elements.length) {
+                    int capacity = (int) Math.min(k, Math.max(16L, 2L * size));
+                    elements = Arrays.copyOf(elements, capacity);
+                    positions = Arrays.copyOf(positions, capacity);
+                }
+                elements[size] = t;
+                positions[size] = position;
+                if (++size == k) {
+                    for (int i = (k >>> 1) - 1; i >= 0; i--)
+                        siftDown(i, k);
+                }
+            }
+            else if (k > 0 && compare(t, position, 0) < 0) {
+                elements[0] = t;
+                positions[0] = position;
+                siftDown(0, k);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(Object t, long position, int i) {
+            int c = comparator.compare((T) t, (T) elements[i]);
+            return (c != 0) ? c : Long.compare(position, positions[i]);
+        }
+
+        private void siftDown(int i, int n) {
+            Object t = elements[i];
+            long position = positions[i];
+            for (int child; (child = (i << 1) + 1) < n; i = child) {
+                if (child + 1 < n && compare(elements[child + 1],
+                                             positions[child + 1], child) > 0)
+                    child++;
+                if (compare(t, position, child) >= 0)
+                    break;
+                elements[i] = elements[child];
+                positions[i] = positions[child];
+            }
+            elements[i] = t;
+            positions[i] = position;
+        }
+
+        /**
+         * Sorts the retained elements in place, by heapsort, and
+         * returns the array holding them at indices {@code [0, size())}.
+         * No further elements may be accepted.
+         */
+        Object[] sortedElements() {
+            if (size < k) {
+                for (int i = (size >>> 1) - 1; i >= 0; i--)
+                    siftDown(i, size);
+            }
+            for (int n = size - 1; n > 0; n--) {
+                Object t = elements[n];
+                long position = positions[n];
+                elements[n] = elements[0];
+                positions[n] = positions[0];
+                elements[0] = t;
+                positions[0] = position;
+                siftDown(0, n);
+            }
+            return elements;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on reference streams of which
+     * only the least {@code limit} elements are consumed.
+     */
+    private static final class RefTopKSink<T> extends AbstractRefSortingSink<T> {
+        private final long limit;
+        private RefTopK<T> top;
+
+        RefTopKSink(Sink<? super T> sink, Comparator<? super T> comparator, long limit) {
+            super(sink, comparator);
+            this.limit = limit;
+        }
+
+        @Override
+        public void begin(long size) {
+            top = new RefTopK<>(comparator, limit, size);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void end() {
+            Object[] array = top.sortedElements();
+            int n = top.size();
+            downstream.begin(n);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < n; i++)
+                    downstream.accept((T) array[i]);
+            }
+            else {
+                for (int i = 0; i < n && !downstream.cancellationRequested(); i++)
+                    downstream.accept((T) array[i]);
+            }
+            downstream.end();
+            top = null;
+        }
+
+        @Override
+        public void accept(T t) {
+            top.accept(t);
+        }
+    }
+
+    /**
+     * Retains the least {@code k} of the int values it accepts in a
+     * bounded max-heap; see {@link RefTopK}.
+     */
+    private static final class IntTopK {
+        private final int k;
+        private int[] elements;
+        private int size;
+
+        IntTopK(long k, long sizeIfKnown) {
+            this.k = (int) k;
+            elements = new int[(int) ((sizeIfKnown >= 0) ? Math.min(k, sizeIfKnown)
+                                                     : Math.min(k, 16))];
+        }
+
+        void accept(int t) {
+            if (size < k) {
+                if (size == elements.length)
+                    elements = Arrays.copyOf(elements,
+                                             (int) Math.min(k, Math.max(16L, 2L * size)));
+                elements[size] = t;
+                if (++size == k) {
+                    for (int i = (k >>> 1) - 1; i >= 0; i--)
+                        siftDown(i);
+                }
+            }
+            else if (k > 0 && t < elements[0]) {
+                elements[0] = t;
+                siftDown(0);
+            }
+        }
+
+        IntTopK combine(IntTopK right) {
+            for (int i = 0; i < right.size; i++)
+                accept(right.elements[i]);
+            return this;
+        }
+
+        private void siftDown(int i) {
+            int t = elements[i];
+            for (int child; (child = (i << 1) + 1) < k; i = child) {
+                if (child + 1 < k && elements[child + 1] > elements[child])
+                    child++;
+                if (t >= elements[child])
+                    break;
+                elements[i] = elements[child];
+            }
+            elements[i] = t;
+        }
+
+        /**
+         * Returns the retained values in ascending order.
+         */
+        int[] sortedElements() {
+            int[] array = Arrays.copyOf(elements, size);
+            Arrays.sort(array);
+            return array;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on int streams of which only
+     * the least {@code limit} elements are consumed.
+     */
+    private static final class IntTopKSink extends AbstractIntSortingSink {
+        private final long limit;
+        private IntTopK top;
+
+        IntTopKSink(Sink<? super Integer> downstream, long limit) {
+            super(downstream);
+            this.limit = limit;
+        }
+
+        @Override
+        public void begin(long size) {
+            top = new IntTopK(limit, size);
+        }
+
+        @Override
+        public void end() {
+            int[] array = top.sortedElements();
+            downstream.begin(array.length);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < array.length; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < array.length && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            top = null;
+        }
+
+        @Override
+        public void accept(int t) {
+            top.accept(t);
+        }
+    }
+
+    /**
+     * Retains the least {@code k} of the long values it accepts in a
+     * bounded max-heap; see {@link RefTopK}.
+     */
+    private static final class LongTopK {
+        private final int k;
+        private long[] elements;
+        private int size;
+
+        LongTopK(long k, long sizeIfKnown) {
+            this.k = (int) k;
+            elements = new long[(int) ((sizeIfKnown >= 0) ? Math.min(k, sizeIfKnown)
+                                                     : Math.min(k, 16))];
+        }
+
+        void accept(long t) {
+            if (size < k) {
+                if (size == elements.length)
+                    elements = Arrays.copyOf(elements,
+                                             (int) Math.min(k, Math.max(16L, 2L * size)));
+                elements[size] = t;
+                if (++size == k) {
+                    for (int i = (k >>> 1) - 1; i >= 0; i--)
+                        siftDown(i);
+                }
+            }
+            else if (k > 0 && t < elements[0]) {
+                elements[0] = t;
+                siftDown(0);
+            }
+        }
+
+        LongTopK combine(LongTopK right) {
+            for (int i = 0; i < right.size; i++)
+                accept(right.elements[i]);
+            return this;
+        }
+
+        private void siftDown(int i) {
+            long t = elements[i];
+            for (int child; (child = (i << 1) + 1) < k; i = child) {
+                if (child + 1 < k && elements[child + 1] > elements[child])
+                    child++;
+                if (t >= elements[child])
+                    break;
+                elements[i] = elements[child];
+            }
+            elements[i] = t;
+        }
+
+        /**
+         * Returns the retained values in ascending order.
+         */
+        long[] sortedElements() {
+            long[] array = Arrays.copyOf(elements, size);
+            Arrays.sort(array);
+            return array;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on long streams of which only
+     * the least {@code limit} elements are consumed.
+     */
+    private static final class LongTopKSink extends AbstractLongSortingSink {
+        private final long limit;
+        private LongTopK top;
+
+        LongTopKSink(Sink<? super Long> downstream, long limit) {
+            super(downstream);
+            this.limit = limit;
+        }
+
+        @Override
+        public void begin(long size) {
+            top = new LongTopK(limit, size);
+        }
+
+        @Override
+        public void end() {
+            long[] array = top.sortedElements();
+            downstream.begin(array.length);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < array.length; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < array.length && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            top = null;
+        }
+
+        @Override
+        public void accept(long t) {
+            top.accept(t);
+        }
+    }
+
+    /**
+     * Retains the least {@code k} of the double values it accepts in a
+     * bounded max-heap, ordered as by {@link Double#compare}; see {@link RefTopK}.
+     */
+    private static final class DoubleTopK {
+        private final int k;
+        private double[] elements;
+        private int size;
+
+        DoubleTopK(long k, long sizeIfKnown) {
+            this.k = (int) k;
+            elements = new double[(int) ((sizeIfKnown >= 0) ? Math.min(k, sizeIfKnown)
+                                                     : Math.min(k, 16))];
+        }
+
+        void accept(double t) {
+            if (size < k) {
+                if (size == elements.length)
+                    elements = Arrays.copyOf(elements,
+                                             (int) Math.min(k, Math.max(16L, 2L * size)));
+                elements[size] = t;
+                if (++size == k) {
+                    for (int i = (k >>> 1) - 1; i >= 0; i--)
+                        siftDown(i);
+                }
+            }
+            else if (k > 0 && Double.compare(t, elements[0]) < 0) {
+                elements[0] = t;
+                siftDown(0);
+            }
+        }
+
+        DoubleTopK combine(DoubleTopK right) {
+            for (int i = 0; i < right.size; i++)
+                accept(right.elements[i]);
+            return this;
+        }
+
+        private void siftDown(int i) {
+            double t = elements[i];
+            for (int child; (child = (i << 1) + 1) < k; i = child) {
+                if (child + 1 < k && Double.compare(elements[child + 1], elements[child]) > 0)
+                    child++;
+                if (Double.compare(t, elements[child]) >= 0)
+                    break;
+                elements[i] = elements[child];
+            }
+            elements[i] = t;
+        }
+
+        /**
+         * Returns the retained values in ascending order.
+         */
+        double[] sortedElements() {
+            double[] array = Arrays.copyOf(elements, size);
+            Arrays.sort(array);
+            return array;
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on double streams of which only
+     * the least {@code limit} elements are consumed.
+     */
+    private static final class DoubleTopKSink extends AbstractDoubleSortingSink {
+        private final long limit;
+        private DoubleTopK top;
+
+        DoubleTopKSink(Sink<? super Double> downstream, long limit) {
+            super(downstream);
+            this.limit = limit;
+        }
+
+        @Override
+        public void begin(long size) {
+            top = new DoubleTopK(limit, size);
+        }
+
+        @Override
+        public void end() {
+            double[] array = top.sortedElements();
+            downstream.begin(array.length);
+            if (!cancellationRequestedCalled) {
+                for (int i = 0; i < array.length; i++)
+                    downstream.accept(array[i]);
+            }
+            else {
+                for (int i = 0; i < array.length && !downstream.cancellationRequested(); i++)
+                    downstream.accept(array[i]);
+            }
+            downstream.end();
+            top = null;
+        }
+
+        @Override
+        public void accept(double t) {
+            top.accept(t);
+        }
+    }
 }
@@ -29,11 +29,13 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
@@ -627,6 +629,201 @@ public interface Stream<T> extends BaseStream<T, Stream<T>> {
                 isParallel()).onClose(this::close);
     }
 
+    /**
+     * Returns a stream consisting of the results of applying the given
+     * function to the elements of this stream, where the function is applied
+     * asynchronously in the given executor, to at most
+     * {@code maxConcurrency} elements at a time.  Results are produced in
+     * encounter order; a result that completes early is held until those of
+     * all preceding elements have been produced.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.  The thread traversing the stream submits
+     * elements to the executor as long as fewer than {@code maxConcurrency}
+     * are in flight, and otherwise waits for the next result, so a slow
+     * function holds back the consumption of this stream rather than
+     * flooding the executor.  When a downstream short-circuiting operation
+     * needs no further elements, applications that have not yet started are
+     * cancelled.  If the function throws an exception for an element, that
+     * exception is relayed to the caller of the terminal operation, once
+     * that element is reached, and all other applications that have not yet
+     * started are cancelled.  In parallel pipelines, the elements of this
+     * stream are buffered, and the bound applies to the pipeline as a whole.
+     *
+     * @apiNote
+     * This suits functions that spend their time waiting, such as remote
+     * lookups:
+     * <pre>{@code
+     *     Stream<Profile> profiles = userIds.stream()
+     *         .mapAsync(directory::lookup, 64, ioExecutor);
+     * }</pre>
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, wraps that spliterator so as to support the semantics
+     * of this operation on traversal, and returns a new stream associated with
+     * the wrapped spliterator.  The returned stream preserves the execution
+     * characteristics of this stream (namely parallel or sequential execution
+     * as per {@link #isParallel()}) but the wrapped spliterator does not
+     * support splitting.  When the returned stream is closed, the close
+     * handlers for both the returned and this stream are invoked.
+     *
+     * @param <R> The element type of the new stream
+     * @param mapper a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *               <a href="package-summary.html#Statelessness">stateless</a>
+     *               function to apply to each element
+     * @param maxConcurrency the maximum number of elements to which the
+     *        function is being applied at any time
+     * @param executor the executor in which to apply the function
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not
+     *         positive
+     * @see #mapAsyncUnordered(Function, int, Executor)
+     * @since 12
+     */
+    default <R> Stream<R> mapAsync(Function<? super T, ? extends R> mapper,
+                                   int maxConcurrency, Executor executor) {
+        return StreamSupport.stream(
+                new MapAsyncOps.MapAsyncSpliterator<T, R>(spliterator(), mapper,
+                                                          maxConcurrency, executor, true),
+                isParallel()).onClose(this::close);
+    }
+
+    /**
+     * Returns a stream consisting of the results of applying the given
+     * function to the elements of this stream, where the function is applied
+     * asynchronously in the given executor, to at most
+     * {@code maxConcurrency} elements at a time.  Results are produced in
+     * the order in which they complete, and the returned stream is
+     * unordered.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>, which behaves as
+     * {@link #mapAsync(Function, int, Executor)} except that a slow
+     * application does not hold back the results of others.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, wraps that spliterator so as to support the semantics
+     * of this operation on traversal, and returns a new stream associated with
+     * the wrapped spliterator.  The returned stream preserves the execution
+     * characteristics of this stream (namely parallel or sequential execution
+     * as per {@link #isParallel()}) but the wrapped spliterator does not
+     * support splitting.  When the returned stream is closed, the close
+     * handlers for both the returned and this stream are invoked.
+     *
+     * @param <R> The element type of the new stream
+     * @param mapper a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *               <a href="package-summary.html#Statelessness">stateless</a>
+     *               function to apply to each element
+     * @param maxConcurrency the maximum number of elements to which the
+     *        function is being applied at any time
+     * @param executor the executor in which to apply the function
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not
+     *         positive
+     * @see #mapAsync(Function, int, Executor)
+     * @since 12
+     */
+    default <R> Stream<R> mapAsyncUnordered(Function<? super T, ? extends R> mapper,
+                                            int maxConcurrency, Executor executor) {
+        return StreamSupport.stream(
+                new MapAsyncOps.MapAsyncSpliterator<T, R>(spliterator(), mapper,
+                                                          maxConcurrency, executor, false),
+                isParallel()).onClose(this::close);
+    }
+
+    /**
+     * Returns a stream consisting of the elements of this stream grouped, in
+     * encounter order, into consecutive non-overlapping lists of
+     * {@code size} elements.  The last list holds the remaining elements,
+     * and may be smaller.
+     *
+     * <p>For example, {@code Stream.of(1, 2, 3, 4, 5).chunked(2)} consists
+     * of {@code [1, 2]}, {@code [3, 4]} and {@code [5]}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.  On sequential stream pipelines it is
+     * lazy and holds at most one chunk of elements at a time, and it
+     * preserves the short-circuiting of downstream operations.  Each list
+     * is newly created; there are no guarantees on its type or mutability.
+     *
+     * @apiNote
+     * This operation suits pipelines writing elements to a sink in batches,
+     * for example:
+     * <pre>{@code
+     *     records.chunked(1000).forEach(batch -> table.insertAll(batch));
+     * }</pre>
+     * On parallel pipelines, whether ordered or not, all elements of this
+     * stream are buffered before being grouped, as with {@link #sorted()}.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, wraps that spliterator so as to support the semantics
+     * of this operation on traversal, and returns a new stream associated with
+     * the wrapped spliterator.  The returned stream preserves the execution
+     * characteristics of this stream (namely parallel or sequential execution
+     * as per {@link #isParallel()}) but the wrapped spliterator does not
+     * support splitting.  When the returned stream is closed, the close
+     * handlers for both the returned and this stream are invoked.
+     *
+     * @param size the number of elements in each list but the last
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @since 12
+     */
+    default Stream<List<T>> chunked(int size) {
+        return StreamSupport.stream(
+                new WindowOps.WindowingSpliterator<>(spliterator(), size, size, true),
+                isParallel()).onClose(this::close);
+    }
+
+    /**
+     * Returns a stream consisting of the lists of {@code size} consecutive
+     * elements of this stream, in encounter order, that start every
+     * {@code step} elements.  Windows overlap if {@code step} is less than
+     * {@code size}, and elements are skipped between windows if it is
+     * greater.  Trailing elements too few to fill a window are dropped.
+     *
+     * <p>For example, {@code Stream.of(1, 2, 3, 4, 5).windowed(3, 1)}
+     * consists of {@code [1, 2, 3]}, {@code [2, 3, 4]} and
+     * {@code [3, 4, 5]}.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.  On sequential stream pipelines it is
+     * lazy and holds at most {@code size} elements at a time, and it
+     * preserves the short-circuiting of downstream operations.  Each list
+     * is newly created; there are no guarantees on its type or mutability.
+     *
+     * @apiNote
+     * On parallel pipelines, whether ordered or not, all elements of this
+     * stream are buffered before being grouped, as with {@link #sorted()}.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, wraps that spliterator so as to support the semantics
+     * of this operation on traversal, and returns a new stream associated with
+     * the wrapped spliterator.  The returned stream preserves the execution
+     * characteristics of this stream (namely parallel or sequential execution
+     * as per {@link #isParallel()}) but the wrapped spliterator does not
+     * support splitting.  When the returned stream is closed, the close
+     * handlers for both the returned and this stream are invoked.
+     *
+     * @param size the number of elements in each window
+     * @param step the distance, in elements, between the first elements of
+     *        consecutive windows
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} or {@code step} is not
+     *         positive
+     * @see #chunked(int)
+     * @since 12
+     */
+    default Stream<List<T>> windowed(int size, int step) {
+        return StreamSupport.stream(
+                new WindowOps.WindowingSpliterator<>(spliterator(), size, step, false),
+                isParallel()).onClose(this::close);
+    }
+
     /**
      * Performs an action for each element of this stream.
      *
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package java.util.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Factory for instances of "chunked" and "windowed" operations that group
+ * consecutive elements of their input stream into lists.
+ *
+ * @since 12
+ */
+final class WindowOps {
+
+    private WindowOps() { }
+
+    static final int FLAGS = StreamOpFlag.NOT_SIZED | StreamOpFlag.NOT_SORTED |
+                             StreamOpFlag.NOT_DISTINCT;
+
+    /**
+     * The largest initial capacity of a window buffer, so that a huge
+     * window size does not allocate up front for elements that may never
+     * arrive.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1 << 12;
+
+    /**
+     * Appends a "window" operation to the provided stream.
+     *
+     * @param <T> the type of input elements
+     * @param upstream a reference stream with element type T
+     * @param size the number of elements in each window
+     * @param step the distance, in elements, between the starts of
+     *        consecutive windows
+     * @param partial true if a trailing window of fewer than {@code size}
+     *        elements is to be produced; requires {@code step == size}
+     */
+    static <T> Stream<List<T>> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                       int size, int step, boolean partial) {
+        checkArguments(size, step);
+        assert !partial || step == size;
+        return new ReferencePipeline.StatefulOp<T, List<T>>(upstream, StreamShape.REFERENCE, FLAGS) {
+            @Override
+            public Sink<T> opWrapSink(int flags, Sink<List<T>> sink) {
+                return new Sink.ChainedReference<T, List<T>>(sink) {
+                    Window<T> window;
+
+                    @Override
+                    public void begin(long sizeIfKnown) {
+                        window = new Window<>(size, step, partial);
+                        downstream.begin(-1);
+                    }
+
+                    @Override
+                    public void accept(T t) {
+                        List<T> w = window.add(t);
+                        if (w != null)
+                            downstream.accept(w);
+                    }
+
+                    @Override
+                    public void end() {
+                        List<T> w = window.remainder();
+                        window = null;
+                        if (w != null && !downstream.cancellationRequested())
+                            downstream.accept(w);
+                        downstream.end();
+                    }
+                };
+            }
+
+            @Override
+            <P_IN> Spliterator<List<T>> opEvaluateParallelLazy(PipelineHelper<List<T>> helper,
+                                                               Spliterator<P_IN> spliterator) {
+                return new ArrayWindowSpliterator<>(
+                        collect(helper, spliterator), size, step, partial);
+            }
+
+            @Override
+            <P_IN> Node<List<T>> opEvaluateParallel(PipelineHelper<List<T>> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<List<T>[]> generator) {
+                return windows(collect(helper, spliterator), size, step, partial, generator);
+            }
+
+            /**
+             * Collects the output of the upstream pipeline into an array.
+             * Unlike other stateful operations, this one does not preserve
+             * the element type, so the helper, typed by the output of this
+             * operation, in fact produces elements of type T.
+             */
+            @SuppressWarnings("unchecked")
+            private <P_IN> T[] collect(PipelineHelper<List<T>> helper,
+                                       Spliterator<P_IN> spliterator) {
+                PipelineHelper<T> upstreamHelper = (PipelineHelper<T>) (PipelineHelper<?>) helper;
+                return upstreamHelper.evaluate(spliterator, true, Nodes.castingArray())
+                        .asArray(Nodes.castingArray());
+            }
+        };
+    }
+
+    static void checkArguments(int size, int step) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+        if (step <= 0)
+            throw new IllegalArgumentException("Window step must be positive: " + step);
+    }
+
+    /**
+     * Returns the number of windows over {@code length} elements.
+     */
+    static int windowCount(int length, int size, int step, boolean partial) {
+        if (partial)
+            return (int) (((long) length + size - 1) / size);
+        else
+            return (length < size) ? 0 : (length - size) / step + 1;
+    }
+
+    /**
+     * Returns the window with the given index over an array of elements.
+     */
+    static <T> List<T> window(T[] elements, int index, int size, int step) {
+        long from = (long) index * step;
+        long to = Math.min(from + size, elements.length);
+        return Arrays.asList(Arrays.copyOfRange(elements, (int) from, (int) to));
+    }
+
+    /**
+     * Returns a node of the windows over an array of elements, in an array
+     * created by the given generator, which toArray may have supplied for
+     * some element type other than {@code List}.
+     */
+    @SuppressWarnings("unchecked")
+    static <T, W> Node<W> windows(T[] elements, int size, int step, boolean partial,
+                                  IntFunction<W[]> generator) {
+        W[] windows = generator.apply(windowCount(elements.length, size, step, partial));
+        Arrays.parallelSetAll(windows, i -> (W) window(elements, i, size, step));
+        return Nodes.node(windows);
+    }
+
+    /**
+     * Groups elements, presented one at a time in encounter order, into
+     * windows.  Memory use is proportional to the window size.
+     *
+     * @param <T> the type of elements
+     */
+    static final class Window<T> {
+        private final int size;
+        private final int step;
+        private final boolean partial;
+        private ArrayList<T> buffer;
+        // number of elements to drop before the next window starts
+        private int skip;
+
+        Window(int size, int step, boolean partial) {
+            this.size = size;
+            this.step = step;
+            this.partial = partial;
+            this.buffer = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+        }
+
+        /**
+         * Adds the next element.
+         *
+         * @return the window completed by the element, or null if none
+         */
+        List<T> add(T t) {
+            if (skip > 0) {
+                skip--;
+                return null;
+            }
+            buffer.add(t);
+            if (buffer.size() < size)
+                return null;
+            List<T> w;
+            if (step >= size) {
+                // Windows do not overlap; hand over the buffer
+                w = buffer;
+                buffer = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+                skip = step - size;
+            }
+            else {
+                w = new ArrayList<>(buffer);
+                buffer.subList(0, step).clear();
+            }
+            return w;
+        }
+
+        /**
+         * Returns the incomplete trailing window, if partial windows are
+         * produced and there is one, otherwise null.  No further elements
+         * may be added.
+         */
+        List<T> remainder() {
+            List<T> w = (partial && !buffer.isEmpty()) ? buffer : null;
+            buffer = null;
+            return w;
+        }
+    }
+
+    /**
+     * A spliterator over the windows of an array of elements, which splits
+     * by window index.
+     *
+     * @param <T> the type of elements
+     */
+    static final class ArrayWindowSpliterator<T> implements Spliterator<List<T>> {
+        private final T[] elements;
+        private final int size;
+        private final int step;
+        private int index;        // current window index, modified on advance/split
+        private final int fence;  // one past last window index
+
+        ArrayWindowSpliterator(T[] elements, int size, int step, boolean partial) {
+            this(elements, size, step, 0, windowCount(elements.length, size, step, partial));
+        }
+
+        private ArrayWindowSpliterator(T[] elements, int size, int step,
+                                       int origin, int fence) {
+            this.elements = elements;
+            this.size = size;
+            this.step = step;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<List<T>> trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            return (lo >= mid)
+                   ? null
+                   : new ArrayWindowSpliterator<>(elements, size, step, lo, index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<T>> action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                action.accept(window(elements, index++, size, step));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super List<T>> action) {
+            Objects.requireNonNull(action);
+            int i = index, hi = fence;
+            index = hi;
+            for (; i < hi; i++)
+                action.accept(window(elements, i, size, step));
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED |
+                   Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * A spliterator producing the windows of a source spliterator as it is
+     * traversed.  It does not split.
+     *
+     * @param <T> the type of elements
+     */
+    static final class WindowingSpliterator<T>
+            implements Spliterator<List<T>>, Consumer<T> {
+        private final Spliterator<T> s;
+        private final Window<T> window;
+        private List<T> next;
+        private boolean finished;
+
+        WindowingSpliterator(Spliterator<T> s, int size, int step, boolean partial) {
+            checkArguments(size, step);
+            this.s = s;
+            this.window = new Window<>(size, step, partial);
+        }
+
+        @Override
+        public void accept(T t) {
+            next = window.add(t);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<T>> action) {
+            Objects.requireNonNull(action);
+            while (next == null && !finished) {
+                if (!s.tryAdvance(this)) {
+                    finished = true;
+                    next = window.remainder();
+                }
+            }
+            if (next == null)
+                return false;
+            List<T> w = next;
+            next = null;
+            action.accept(w);
+            return true;
+        }
+
+        @Override
+        public Spliterator<List<T>> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return finished ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return (s.characteristics() & Spliterator.ORDERED) | Spliterator.NONNULL;
+        }
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.internal.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+
+import jdk.internal.misc.Unsafe;
+
+/**
+ * A concurrent hash map whose keys and/or values may be held through weak
+ * or soft references, intended for JDK-internal caches keyed by objects
+ * such as {@code Class} instances that must not be kept alive by the cache.
+ *
+ * <p>Compared with a {@code ConcurrentHashMap} whose keys are hand-rolled
+ * {@code WeakReference} subclasses, this map
+ * <ul>
+ * <li>does not allocate on lookup: {@link #get} hashes the raw key and
+ *     compares it directly with the referent of each candidate entry;
+ * <li>never drains its reference queue in full on the caller's thread:
+ *     each update removes at most a small, fixed number of entries whose
+ *     referents have been cleared, and {@link #get} performs no expunging
+ *     at all;
+ * <li>treats an entry whose key or value has been cleared as absent, so
+ *     callers need no retry loops around {@code putIfAbsent}.
+ * </ul>
+ *
+ * <p>The table is split into segments.  Retrievals are lock-free and
+ * updates lock only the segment holding the key.  Keys are compared either
+ * by identity or by {@code equals}, as selected at construction time.
+ * Neither keys nor values may be {@code null}.
+ *
+ * <p>This is not a {@code java.util.Map}: it offers no views and no
+ * iteration.  {@link #size} counts entries whose referents may already have
+ * been cleared but not yet expunged.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class ConcurrentReferenceHashMap<K,V> {
+
+    /**
+     * How strongly a key or value is held by the map.
+     */
+    public enum Strength {
+        /** Held through an ordinary reference. */
+        STRONG,
+        /** Held through a {@link SoftReference}. */
+        SOFT,
+        /** Held through a {@link WeakReference}. */
+        WEAK
+    }
+
+    /** Maximum number of stale entries expunged by a single update. */
+    private static final int EXPUNGE_BATCH = 16;
+
+    private static final int MAXIMUM_SEGMENTS = 1 << 16;
+    private static final int MAXIMUM_SEGMENT_CAPACITY = 1 << 30;
+    private static final int MINIMUM_SEGMENT_CAPACITY = 2;
+
+    private final Strength keyStrength;
+    private final Strength valueStrength;
+    private final boolean identity;
+
+    /** Queue of cleared key and value references, or null if none can be. */
+    private final ReferenceQueue<Object> queue;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * Creates a new, empty map with a default initial capacity and
+     * concurrency level.
+     *
+     * @param keyStrength how strongly keys are held
+     * @param valueStrength how strongly values are held
+     * @param identity if {@code true} keys are compared by identity,
+     *        otherwise by {@code equals}
+     */
+    public ConcurrentReferenceHashMap(Strength keyStrength,
+                                      Strength valueStrength,
+                                      boolean identity) {
+        this(keyStrength, valueStrength, identity, 64, 16);
+    }
+
+    /**
+     * Creates a new, empty map.
+     *
+     * @param keyStrength how strongly keys are held
+     * @param valueStrength how strongly values are held
+     * @param identity if {@code true} keys are compared by identity,
+     *        otherwise by {@code equals}
+     * @param initialCapacity the expected number of mappings
+     * @param concurrencyLevel the expected number of concurrently
+     *        updating threads
+     * @throws IllegalArgumentException if {@code initialCapacity} is
+     *         negative or {@code concurrencyLevel} is not positive
+     */
+    public ConcurrentReferenceHashMap(Strength keyStrength,
+                                      Strength valueStrength,
+                                      boolean identity,
+                                      int initialCapacity,
+                                      int concurrencyLevel) {
+        if (initialCapacity < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException();
+        this.keyStrength = Objects.requireNonNull(keyStrength);
+        this.valueStrength = Objects.requireNonNull(valueStrength);
+        this.identity = identity;
+        this.queue = (keyStrength == Strength.STRONG &&
+                      valueStrength == Strength.STRONG)
+            ? null : new ReferenceQueue<>();
+
+        int nsegs = 1;
+        int shift = 0;
+        while (nsegs < concurrencyLevel && nsegs < MAXIMUM_SEGMENTS) {
+            nsegs <<= 1;
+            shift++;
+        }
+        segmentShift = 32 - shift;
+        int cap = MINIMUM_SEGMENT_CAPACITY;
+        int perSegment = (initialCapacity + nsegs - 1) / nsegs;
+        while (cap < perSegment && cap < MAXIMUM_SEGMENT_CAPACITY)
+            cap <<= 1;
+        segments = new Segment[nsegs];
+        for (int i = 0; i < nsegs; i++)
+            segments[i] = new Segment(cap);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key or the
+     * value has been cleared.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value, or {@code null}
+     * @throws NullPointerException if the key is null
+     */
+    public V get(Object key) {
+        int h = hash(key);
+        Entry[] tab = segmentFor(h).table;
+        for (Entry e = entryAt(tab, h & (tab.length - 1)); e != null;
+             e = e.next) {
+            if (e.hash == h && matches(e.key, key))
+                return value(e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a live mapping for the
+     * specified key.
+     *
+     * @param key the key whose presence is to be tested
+     * @return {@code true} if a live mapping exists
+     * @throws NullPointerException if the key is null
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the specified key to the specified value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value associated with the key, or {@code null}
+     *         if there was none or it had been cleared
+     * @throws NullPointerException if the key or value is null
+     */
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Maps the specified key to the specified value unless a live mapping
+     * for the key already exists.  A mapping whose value has been cleared
+     * is replaced.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the current value associated with the key, or {@code null}
+     *         if the given value was installed
+     * @throws NullPointerException if the key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * Removes the mapping for the specified key, if present.
+     *
+     * @param key the key
+     * @return the previous value, or {@code null} if there was none or it
+     *         had been cleared
+     * @throws NullPointerException if the key is null
+     */
+    public V remove(Object key) {
+        return remove(key, null, false);
+    }
+
+    /**
+     * Removes the mapping for the specified key only if it is currently
+     * mapped to the specified value.
+     *
+     * @param key the key
+     * @param value the value expected to be associated with the key
+     * @return {@code true} if the mapping was removed
+     * @throws NullPointerException if the key or value is null
+     */
+    public boolean remove(Object key, Object value) {
+        Objects.requireNonNull(value);
+        return remove(key, value, true) != null;
+    }
+
+    /**
+     * Returns the number of entries in this map, including entries whose
+     * key or value has been cleared but which have not yet been expunged.
+     *
+     * @return the number of entries in this map
+     */
+    public int size() {
+        long n = 0;
+        for (Segment seg : segments)
+            n += seg.count;
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns {@code true} if this map contains no entries.
+     *
+     * @return {@code true} if this map contains no entries
+     */
+    public boolean isEmpty() {
+        for (Segment seg : segments) {
+            if (seg.count != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.table = new Entry[MINIMUM_SEGMENT_CAPACITY];
+                seg.count = 0;
+            }
+        }
+    }
+
+    /**
+     * Removes all entries whose key or value has been cleared.  Unlike the
+     * bounded expunging performed by each update, this drains the reference
+     * queue in full and is meant for callers that choose to pay for it,
+     * such as a background or idle-time task.
+     */
+    public void expungeStaleEntries() {
+        expungeStale(Integer.MAX_VALUE);
+    }
+
+    // Internals
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+        int h = hash(key);
+        expungeStale(EXPUNGE_BATCH);
+        Segment seg = segmentFor(h);
+        synchronized (seg) {
+            Entry[] tab = seg.table;
+            int i = h & (tab.length - 1);
+            for (Entry e = entryAt(tab, i); e != null; e = e.next) {
+                if (e.hash == h && matches(e.key, key)) {
+                    V old = value(e);
+                    if (old == null || !onlyIfAbsent)
+                        e.value = wrap(valueStrength, value, h);
+                    return old;
+                }
+            }
+            Entry e = new Entry(h, wrap(keyStrength, key, h),
+                                wrap(valueStrength, value, h),
+                                entryAt(tab, i));
+            setEntryAt(tab, i, e);
+            int c = seg.count + 1;
+            seg.count = c;
+            if (c > tab.length - (tab.length >>> 2) &&
+                tab.length < MAXIMUM_SEGMENT_CAPACITY)
+                rehash(seg, tab);
+            return null;
+        }
+    }
+
+    private V remove(Object key, Object value, boolean matchValue) {
+        int h = hash(key);
+        expungeStale(EXPUNGE_BATCH);
+        Segment seg = segmentFor(h);
+        synchronized (seg) {
+            Entry[] tab = seg.table;
+            int i = h & (tab.length - 1);
+            for (Entry e = entryAt(tab, i), pred = null; e != null;
+                 pred = e, e = e.next) {
+                if (e.hash == h && matches(e.key, key)) {
+                    V old = value(e);
+                    if (matchValue &&
+                        (old == null || (old != value && !old.equals(value))))
+                        return null;
+                    unlink(seg, tab, i, pred, e);
+                    return old;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Doubles the capacity of the given segment, dropping stale entries.
+     * Entries are copied rather than relinked so that concurrent readers
+     * traversing the old table still see consistent chains.
+     */
+    private void rehash(Segment seg, Entry[] oldTab) {
+        Entry[] newTab = new Entry[oldTab.length << 1];
+        int mask = newTab.length - 1;
+        int c = 0;
+        for (Entry head : oldTab) {
+            for (Entry e = head; e != null; e = e.next) {
+                if (isStale(e))
+                    continue;
+                int i = e.hash & mask;
+                newTab[i] = new Entry(e.hash, e.key, e.value, newTab[i]);
+                c++;
+            }
+        }
+        seg.count = c;
+        seg.table = newTab;
+    }
+
+    /**
+     * Polls at most {@code max} cleared references from the queue and
+     * removes the entries that hold them.
+     */
+    private void expungeStale(int max) {
+        ReferenceQueue<Object> q = queue;
+        if (q == null)
+            return;
+        Reference<?> ref;
+        for (int n = 0; n < max && (ref = q.poll()) != null; n++) {
+            int h = ((HashedReference) ref).hash();
+            Segment seg = segmentFor(h);
+            synchronized (seg) {
+                Entry[] tab = seg.table;
+                int i = h & (tab.length - 1);
+                for (Entry e = entryAt(tab, i), pred = null; e != null;
+                     pred = e, e = e.next) {
+                    if (e.key == ref || e.value == ref) {
+                        unlink(seg, tab, i, pred, e);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void unlink(Segment seg, Entry[] tab, int i,
+                               Entry pred, Entry e) {
+        if (pred == null)
+            setEntryAt(tab, i, e.next);
+        else
+            pred.next = e.next;
+        seg.count = seg.count - 1;
+    }
+
+    private int hash(Object key) {
+        int h = identity ? System.identityHashCode(key) : key.hashCode();
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segmentFor(int h) {
+        // high bits pick the segment, low bits the bucket
+        return segments[(int) ((h & 0xffffffffL) >>> segmentShift)
+                        & (segments.length - 1)];
+    }
+
+    private boolean matches(Object entryKey, Object key) {
+        Object k = (keyStrength == Strength.STRONG)
+            ? entryKey : ((Reference<?>) entryKey).get();
+        return k == key || (!identity && k != null && key.equals(k));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Entry e) {
+        Object v = e.value;
+        return (V) ((valueStrength == Strength.STRONG)
+                    ? v : ((Reference<?>) v).get());
+    }
+
+    private boolean isStale(Entry e) {
+        return (keyStrength != Strength.STRONG &&
+                ((Reference<?>) e.key).get() == null) ||
+               (valueStrength != Strength.STRONG &&
+                ((Reference<?>) e.value).get() == null);
+    }
+
+    private Object wrap(Strength strength, Object o, int h) {
+        switch (strength) {
+            case SOFT: return new SoftRef(o, queue, h);
+            case WEAK: return new WeakRef(o, queue, h);
+            default:   return o;
+        }
+    }
+
+    private static Entry entryAt(Entry[] tab, int i) {
+        return (Entry) U.getObjectAcquire(tab, ((long) i << ASHIFT) + ABASE);
+    }
+
+    private static void setEntryAt(Entry[] tab, int i, Entry e) {
+        U.putObjectRelease(tab, ((long) i << ASHIFT) + ABASE, e);
+    }
+
+    /**
+     * A hash chain node.  The key is either the key itself or a reference
+     * to it, and likewise the value; which one is decided by the map's
+     * strengths.  Fields are only written while holding the segment lock.
+     */
+    private static final class Entry {
+        final int hash;
+        final Object key;
+        volatile Object value;
+        volatile Entry next;
+
+        Entry(int hash, Object key, Object value, Entry next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A lock domain holding part of the table.  Updates synchronize on the
+     * segment; retrievals read the volatile table without locking.
+     */
+    private static final class Segment {
+        volatile Entry[] table;
+        volatile int count;
+
+        Segment(int capacity) {
+            table = new Entry[capacity];
+        }
+    }
+
+    /**
+     * A key or value reference that remembers the hash of its entry, so
+     * that the entry can be found once the referent has been cleared.
+     */
+    private interface HashedReference {
+        int hash();
+    }
+
+    private static final class WeakRef extends WeakReference<Object>
+        implements HashedReference {
+        private final int hash;
+
+        WeakRef(Object referent, ReferenceQueue<Object> q, int hash) {
+            super(referent, q);
+            this.hash = hash;
+        }
+
+        public int hash() {
+            return hash;
+        }
+    }
+
+    private static final class SoftRef extends SoftReference<Object>
+        implements HashedReference {
+        private final int hash;
+
+        SoftRef(Object referent, ReferenceQueue<Object> q, int hash) {
+            super(referent, q);
+            this.hash = hash;
+        }
+
+        public int hash() {
+            return hash;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final Unsafe U = Unsafe.getUnsafe();
+    private static final int ABASE = U.arrayBaseOffset(Entry[].class);
+    private static final int ASHIFT;
+
+    static {
+        int scale = U.arrayIndexScale(Entry[].class);
+        if ((scale & (scale - 1)) != 0)
+            throw new ExceptionInInitializerError("array index scale not a power of two");
+        ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+    }
+}
@@ -26,6 +26,7 @@
 package sun.security.util;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.ref.*;
 
 /**
@@ -39,11 +40,17 @@ import java.lang.ref.*;
  *
  *  . keys and values must be non-null
  *
- *  . maximum size. Replacements are made in LRU order.
+ *  . maximum size. Replacements are made in approximately LRU order:
+ *    large caches are divided into segments by key hash, each holding an
+ *    equal share of the entries and replacing its own least recently
+ *    used entry.
  *
  *  . optional lifetime, specified in seconds.
  *
- *  . safe for concurrent use by multiple threads
+ *  . safe for concurrent use by multiple threads. Each segment is locked
+ *    separately, so threads using different keys rarely contend.
+ *
+ *  . hit, miss and eviction counts, see {@link #stats}.
  *
  *  . values are held by either standard references or via SoftReferences.
  *    SoftReferences have the advantage that they are automatically cleared
@@ -57,14 +64,10 @@ import java.lang.ref.*;
  * eagerly. Performance may be improved if the Java heap size is set to larger
  * value using e.g. java -ms64M -mx128M foo.Test
  *
- * Cache sizing: the memory cache is implemented on top of a LinkedHashMap.
- * In its current implementation, the number of buckets (NOT entries) in
- * (Linked)HashMaps is always a power of two. It is recommended to set the
- * maximum cache size to value that uses those buckets fully. For example,
- * if a cache with somewhere between 500 and 1000 entries is desired, a
- * maximum size of 750 would be a good choice: try 1024 buckets, with a
- * load factor of 0.75f, the number of entries can be calculated as
- * buckets / 4 * 3. As mentioned above, with a SoftReference cache, it is
+ * Cache sizing: each segment of the memory cache is implemented on top of
+ * a LinkedHashMap, and a cache is only divided while each segment would
+ * still hold at least 32 entries, so small caches consist of a single
+ * LinkedHashMap. As mentioned above, with a SoftReference cache, it is
  * generally reasonable to set the size to a fairly large value.
  *
  * @author Andreas Sterbenz
@@ -115,6 +118,14 @@ public abstract class Cache<K,V> {
      */
     public abstract void accept(CacheVisitor<K,V> visitor);
 
+    /**
+     * Return a snapshot of the statistics of this cache. Caches that do
+     * not keep statistics return all zero counts.
+     */
+    public Stats stats() {
+        return Stats.NONE;
+    }
+
     /**
      * Return a new memory cache with the specified maximum size, unlimited
      * lifetime for entries, with the values held by SoftReferences.
@@ -194,6 +205,45 @@ public abstract class Cache<K,V> {
         public void visit(Map<K,V> map);
     }
 
+    /**
+     * Cache statistics: the number of lookups that found a valid entry
+     * (hits), the number that did not (misses), and the number of entries
+     * removed by the cache itself because of its maximum size, their
+     * lifetime, or their values having been garbage collected
+     * (evictions). Counts are cumulative from the creation of the cache.
+     */
+    public static final class Stats {
+
+        static final Stats NONE = new Stats(0, 0, 0);
+
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        Stats(long hitCount, long missCount, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        public long hitCount() {
+            return hitCount;
+        }
+
+        public long missCount() {
+            return missCount;
+        }
+
+        public long evictionCount() {
+            return evictionCount;
+        }
+
+        public String toString() {
+            return "hits=" + hitCount + ", misses=" + missCount +
+                    ", evictions=" + evictionCount;
+        }
+    }
+
 }
 
 class NullCache<K,V> extends Cache<K,V> {
@@ -238,6 +288,18 @@ class NullCache<K,V> extends Cache<K,V> {
 
 }
 
+/**
+ * The memory cache used by the factory methods of Cache.  It is divided
+ * into segments selected by key hash, each an access-ordered
+ * LinkedHashMap guarded by its own monitor, so that threads using
+ * different keys rarely contend.  Each segment holds an equal share of
+ * the maximum size and evicts its own least recently used entry, which
+ * makes replacement approximately LRU for the cache as a whole.  Since
+ * shares are rounded up, a count of all entries also bounds the cache
+ * as a whole: an insertion that takes it past the maximum size evicts
+ * further entries, first from its own segment.  Small caches use a
+ * single segment and so behave exactly as one LRU map.
+ */
 class MemoryCache<K,V> extends Cache<K,V> {
 
     private static final float LOAD_FACTOR = 0.75f;
@@ -245,9 +307,37 @@ class MemoryCache<K,V> extends Cache<K,V> {
     // XXXX
     private static final boolean DEBUG = false;
 
-    private final Map<K, CacheEntry<K,V>> cacheMap;
-    private int maxSize;
-    private long lifetime;
+    /**
+     * The least number of entries per segment for a bounded cache to be
+     * divided further.
+     */
+    private static final int MIN_SEGMENT_SIZE = 32;
+
+    /**
+     * The maximum number of segments.
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    /**
+     * The minimum interval in milliseconds between scans of a segment
+     * for expired entries when it overflows. Between scans, overflow
+     * evicts the least recently used entry even if expired entries
+     * remain; those are still never returned, and are removed by the
+     * next scan or lookup.
+     */
+    private static final long EXPUNGE_INTERVAL = 1000L;
+
+    private final Segment<K,V>[] segments;
+
+    // the number of entries in all segments
+    private final AtomicInteger count = new AtomicInteger();
+
+    // shift and mask of the spread hash that select a segment
+    private final int segmentShift;
+    private final int segmentMask;
+
+    private volatile int maxSize;
+    private volatile long lifetime;
 
     // ReferenceQueue is of type V instead of Cache<K,V>
     // to allow SoftCacheEntry to extend SoftReference<V>
@@ -265,8 +355,64 @@ class MemoryCache<K,V> extends Cache<K,V> {
         else
             this.queue = null;
 
-        int buckets = (int)(maxSize / LOAD_FACTOR) + 1;
-        cacheMap = new LinkedHashMap<>(buckets, LOAD_FACTOR, true);
+        int target = Math.min(MAX_SEGMENTS,
+                2 * Runtime.getRuntime().availableProcessors());
+        int n = 1, bits = 0;
+        while (n < target &&
+                (maxSize <= 0 || maxSize / (n << 1) >= MIN_SEGMENT_SIZE)) {
+            n <<= 1;
+            bits++;
+        }
+        segmentShift = 32 - bits;
+        segmentMask = n - 1;
+
+        int segmentSize = segmentSize(maxSize, n);
+        @SuppressWarnings("unchecked")
+        Segment<K,V>[] segs = (Segment<K,V>[])new Segment<?,?>[n];
+        for (int i = 0; i < n; i++) {
+            segs[i] = new Segment<>(segmentSize, count);
+        }
+        segments = segs;
+    }
+
+    /**
+     * Return the maximum size of each of n segments of a cache of the
+     * given maximum size, or 0 if unbounded.
+     */
+    private static int segmentSize(int maxSize, int n) {
+        return (maxSize <= 0) ? 0 : (maxSize + n - 1) / n;
+    }
+
+    private int segmentIndex(Object key) {
+        // Use the high bits of the spread hash, as the segment maps
+        // index their buckets by the low bits
+        int h = key.hashCode() * 0x9e3779b9;
+        return (h >>> segmentShift) & segmentMask;
+    }
+
+    private Segment<K,V> segmentFor(Object key) {
+        return segments[segmentIndex(key)];
+    }
+
+    /**
+     * Evict least recently used entries while the cache holds more
+     * than its maximum size, taking them from the segment with the
+     * given index and then from the following ones. The segment with
+     * the given index keeps at least keep entries.
+     */
+    private void trimToSize(int index, int keep) {
+        for (int i = 0; i < segments.length; i++) {
+            Segment<K,V> s = segments[(index + i) & segmentMask];
+            int max;
+            while ((max = maxSize) > 0 && count.get() > max) {
+                if (!s.evictEldest(i == 0 ? keep : 0)) {
+                    break;
+                }
+            }
+            if (max <= 0 || count.get() <= max) {
+                return;
+            }
+        }
     }
 
     /**
@@ -280,7 +426,7 @@ class MemoryCache<K,V> extends Cache<K,V> {
         if (queue == null) {
             return;
         }
-        int startSize = cacheMap.size();
+        int cnt = 0;
         while (true) {
             @SuppressWarnings("unchecked")
             CacheEntry<K,V> entry = (CacheEntry<K,V>)queue.poll();
@@ -292,22 +438,27 @@ class MemoryCache<K,V> extends Cache<K,V> {
                 // key is null, entry has already been removed
                 continue;
             }
-            CacheEntry<K,V> currentEntry = cacheMap.remove(key);
-            // check if the entry in the map corresponds to the expired
-            // entry. If not, readd the entry
-            if ((currentEntry != null) && (entry != currentEntry)) {
-                cacheMap.put(key, currentEntry);
+            // only remove the map entry if it is the collected one
+            if (segmentFor(key).removeCollected(key, entry)) {
+                cnt++;
             }
         }
         if (DEBUG) {
-            int endSize = cacheMap.size();
-            if (startSize != endSize) {
-                System.out.println("*** Expunged " + (startSize - endSize)
-                        + " entries, " + endSize + " entries left");
+            if (cnt != 0) {
+                System.out.println("*** Expunged " + cnt
+                        + " entries, " + size0() + " entries left");
             }
         }
     }
 
+    private int size0() {
+        int size = 0;
+        for (Segment<K,V> s : segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
     /**
      * Scan all entries and remove all expired ones.
      */
@@ -318,114 +469,73 @@ class MemoryCache<K,V> extends Cache<K,V> {
         }
         int cnt = 0;
         long time = System.currentTimeMillis();
-        for (Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
-                t.hasNext(); ) {
-            CacheEntry<K,V> entry = t.next();
-            if (entry.isValid(time) == false) {
-                t.remove();
-                cnt++;
-            }
+        for (Segment<K,V> s : segments) {
+            cnt += s.expungeExpiredEntries(time);
         }
         if (DEBUG) {
             if (cnt != 0) {
                 System.out.println("Removed " + cnt
-                        + " expired entries, remaining " + cacheMap.size());
+                        + " expired entries, remaining " + size0());
             }
         }
     }
 
-    public synchronized int size() {
+    public int size() {
         expungeExpiredEntries();
-        return cacheMap.size();
+        return size0();
     }
 
-    public synchronized void clear() {
+    public void clear() {
+        for (Segment<K,V> s : segments) {
+            s.clear(queue != null);
+        }
         if (queue != null) {
-            // if this is a SoftReference cache, first invalidate() all
-            // entries so that GC does not have to enqueue them
-            for (CacheEntry<K,V> entry : cacheMap.values()) {
-                entry.invalidate();
-            }
             while (queue.poll() != null) {
                 // empty
             }
         }
-        cacheMap.clear();
     }
 
-    public synchronized void put(K key, V value) {
+    public void put(K key, V value) {
         emptyQueue();
+        long lifetime = this.lifetime;
         long expirationTime = (lifetime == 0) ? 0 :
                                         System.currentTimeMillis() + lifetime;
         CacheEntry<K,V> newEntry = newEntry(key, value, expirationTime, queue);
-        CacheEntry<K,V> oldEntry = cacheMap.put(key, newEntry);
-        if (oldEntry != null) {
-            oldEntry.invalidate();
-            return;
-        }
-        if (maxSize > 0 && cacheMap.size() > maxSize) {
-            expungeExpiredEntries();
-            if (cacheMap.size() > maxSize) { // still too large?
-                Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
-                CacheEntry<K,V> lruEntry = t.next();
-                if (DEBUG) {
-                    System.out.println("** Overflow removal "
-                        + lruEntry.getKey() + " | " + lruEntry.getValue());
-                }
-                t.remove();
-                lruEntry.invalidate();
-            }
+        int i = segmentIndex(key);
+        segments[i].put(key, newEntry, lifetime != 0);
+        int max = maxSize;
+        if (max > 0 && count.get() > max) {
+            trimToSize(i, 1);
         }
     }
 
-    public synchronized V get(Object key) {
+    public V get(Object key) {
         emptyQueue();
-        CacheEntry<K,V> entry = cacheMap.get(key);
-        if (entry == null) {
-            return null;
-        }
         long time = (lifetime == 0) ? 0 : System.currentTimeMillis();
-        if (entry.isValid(time) == false) {
-            if (DEBUG) {
-                System.out.println("Ignoring expired entry");
-            }
-            cacheMap.remove(key);
-            return null;
-        }
-        return entry.getValue();
+        return segmentFor(key).get(key, time);
     }
 
-    public synchronized void remove(Object key) {
+    public void remove(Object key) {
         emptyQueue();
-        CacheEntry<K,V> entry = cacheMap.remove(key);
-        if (entry != null) {
-            entry.invalidate();
-        }
+        segmentFor(key).remove(key);
     }
 
-    public synchronized void setCapacity(int size) {
+    public void setCapacity(int size) {
         expungeExpiredEntries();
-        if (size > 0 && cacheMap.size() > size) {
-            Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
-            for (int i = cacheMap.size() - size; i > 0; i--) {
-                CacheEntry<K,V> lruEntry = t.next();
-                if (DEBUG) {
-                    System.out.println("** capacity reset removal "
-                        + lruEntry.getKey() + " | " + lruEntry.getValue());
-                }
-                t.remove();
-                lruEntry.invalidate();
-            }
-        }
-
         maxSize = size > 0 ? size : 0;
+        int segmentSize = segmentSize(size, segments.length);
+        for (Segment<K,V> s : segments) {
+            s.setCapacity(segmentSize);
+        }
+        trimToSize(0, 0);
 
         if (DEBUG) {
             System.out.println("** capacity reset to " + size);
         }
     }
 
-    public synchronized void setTimeout(int timeout) {
+    public void setTimeout(int timeout) {
         emptyQueue();
         lifetime = timeout > 0 ? timeout * 1000L : 0L;
 
@@ -435,18 +545,30 @@ class MemoryCache<K,V> extends Cache<K,V> {
     }
 
     // it is a heavyweight method.
-    public synchronized void accept(CacheVisitor<K,V> visitor) {
+    public void accept(CacheVisitor<K,V> visitor) {
         expungeExpiredEntries();
         Map<K,V> cached = getCachedEntries();
 
         visitor.visit(cached);
     }
 
+    public Stats stats() {
+        long hits = 0, misses = 0, evictions = 0;
+        for (Segment<K,V> s : segments) {
+            synchronized (s) {
+                hits += s.hitCount;
+                misses += s.missCount;
+                evictions += s.evictionCount;
+            }
+        }
+        return new Stats(hits, misses, evictions);
+    }
+
     private Map<K,V> getCachedEntries() {
-        Map<K,V> kvmap = new HashMap<>(cacheMap.size());
+        Map<K,V> kvmap = new HashMap<>(size0());
 
-        for (CacheEntry<K,V> entry : cacheMap.values()) {
-            kvmap.put(entry.getKey(), entry.getValue());
+        for (Segment<K,V> s : segments) {
+            s.copyTo(kvmap);
         }
 
         return kvmap;
@@ -461,6 +583,165 @@ class MemoryCache<K,V> extends Cache<K,V> {
         }
     }
 
+    /**
+     * A part of the cache: an LRU map of the entries whose keys select
+     * this segment, together with its share of the maximum size and its
+     * statistics.  All methods synchronize on the segment.
+     */
+    private static final class Segment<K,V> {
+
+        private final Map<K, CacheEntry<K,V>> cacheMap;
+        private final AtomicInteger count; // of the whole cache
+        private int maxSize;
+        private long nextExpungeTime;
+        long hitCount;
+        long missCount;
+        long evictionCount;
+
+        Segment(int maxSize, AtomicInteger count) {
+            this.maxSize = maxSize;
+            this.count = count;
+            int buckets = (int)(Math.min(maxSize, 1 << 16) / LOAD_FACTOR) + 1;
+            cacheMap = new LinkedHashMap<>(buckets, LOAD_FACTOR, true);
+        }
+
+        synchronized int size() {
+            return cacheMap.size();
+        }
+
+        synchronized int expungeExpiredEntries(long time) {
+            int cnt = 0;
+            for (Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
+                    t.hasNext(); ) {
+                CacheEntry<K,V> entry = t.next();
+                if (entry.isValid(time) == false) {
+                    t.remove();
+                    cnt++;
+                }
+            }
+            evictionCount += cnt;
+            count.addAndGet(-cnt);
+            return cnt;
+        }
+
+        synchronized boolean removeCollected(K key, CacheEntry<K,V> entry) {
+            if (cacheMap.get(key) == entry) {
+                cacheMap.remove(key);
+                evictionCount++;
+                count.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void clear(boolean soft) {
+            if (soft) {
+                // if this is a SoftReference cache, first invalidate() all
+                // entries so that GC does not have to enqueue them
+                for (CacheEntry<K,V> entry : cacheMap.values()) {
+                    entry.invalidate();
+                }
+            }
+            count.addAndGet(-cacheMap.size());
+            cacheMap.clear();
+        }
+
+        synchronized void put(K key, CacheEntry<K,V> newEntry,
+                boolean timed) {
+            CacheEntry<K,V> oldEntry = cacheMap.put(key, newEntry);
+            if (oldEntry != null) {
+                oldEntry.invalidate();
+                return;
+            }
+            count.incrementAndGet();
+            if (maxSize > 0 && cacheMap.size() > maxSize) {
+                if (timed) {
+                    long time = System.currentTimeMillis();
+                    if (time - nextExpungeTime >= 0) {
+                        expungeExpiredEntries(time);
+                        nextExpungeTime = time + EXPUNGE_INTERVAL;
+                    }
+                }
+                if (cacheMap.size() > maxSize) { // still too large?
+                    evictEldest(0);
+                }
+            }
+        }
+
+        /**
+         * Evict the least recently used entry, unless no more than
+         * keep entries remain.
+         */
+        synchronized boolean evictEldest(int keep) {
+            if (cacheMap.size() <= keep) {
+                return false;
+            }
+            Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
+            CacheEntry<K,V> lruEntry = t.next();
+            if (DEBUG) {
+                System.out.println("** Overflow removal "
+                    + lruEntry.getKey() + " | " + lruEntry.getValue());
+            }
+            t.remove();
+            lruEntry.invalidate();
+            evictionCount++;
+            count.decrementAndGet();
+            return true;
+        }
+
+        synchronized V get(Object key, long time) {
+            CacheEntry<K,V> entry = cacheMap.get(key);
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+            if (entry.isValid(time) == false) {
+                if (DEBUG) {
+                    System.out.println("Ignoring expired entry");
+                }
+                cacheMap.remove(key);
+                missCount++;
+                evictionCount++;
+                count.decrementAndGet();
+                return null;
+            }
+            hitCount++;
+            return entry.getValue();
+        }
+
+        synchronized void remove(Object key) {
+            CacheEntry<K,V> entry = cacheMap.remove(key);
+            if (entry != null) {
+                entry.invalidate();
+                count.decrementAndGet();
+            }
+        }
+
+        synchronized void setCapacity(int size) {
+            if (size > 0 && cacheMap.size() > size) {
+                Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
+                for (int i = cacheMap.size() - size; i > 0; i--) {
+                    CacheEntry<K,V> lruEntry = t.next();
+                    if (DEBUG) {
+                        System.out.println("** capacity reset removal "
+                            + lruEntry.getKey() + " | " + lruEntry.getValue());
+                    }
+                    t.remove();
+                    lruEntry.invalidate();
+                    evictionCount++;
+                    count.decrementAndGet();
+                }
+            }
+            maxSize = size > 0 ? size : 0;
+        }
+
+        synchronized void copyTo(Map<K,V> kvmap) {
+            for (CacheEntry<K,V> entry : cacheMap.values()) {
+                kvmap.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     private static interface CacheEntry<K,V> {
 
         boolean isValid(long currentTime);